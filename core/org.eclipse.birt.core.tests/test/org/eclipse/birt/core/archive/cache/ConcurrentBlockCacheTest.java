@@ -0,0 +1,40 @@
+package org.eclipse.birt.core.archive.cache;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class ConcurrentBlockCacheTest extends TestCase
+{
+	@Test
+    public void testConcurrentBlockCache( )
+	{
+		ConcurrentBlockCache<String> cache = new ConcurrentBlockCache<String>( 0 );
+		// nothing is cached without cache size
+		assertEquals( "a", cache.putIfAbsent( 1, "a" ) );
+		assertNull( cache.get( 1 ) );
+		assertEquals( 0, cache.size( ) );
+
+		cache.setMaxCacheSize( 64 );
+		assertEquals( "a", cache.putIfAbsent( 1, "a" ) );
+		// the first loaded block is shared
+		assertEquals( "a", cache.putIfAbsent( 1, "b" ) );
+		assertEquals( "a", cache.get( 1 ) );
+		assertEquals( 1, cache.size( ) );
+
+		for ( int i = 0; i < 1000; i++ )
+		{
+			cache.putIfAbsent( i, String.valueOf( i ) );
+		}
+		assertTrue( cache.size( ) <= 64 );
+		// the least recently used blocks are released first
+		assertEquals( "999", cache.get( 999 ) );
+
+		cache.setMaxCacheSize( 0 );
+		assertEquals( 0, cache.size( ) );
+		cache.setMaxCacheSize( 64 );
+		cache.putIfAbsent( 1, "a" );
+		cache.clear( );
+		assertEquals( 0, cache.size( ) );
+	}
+}
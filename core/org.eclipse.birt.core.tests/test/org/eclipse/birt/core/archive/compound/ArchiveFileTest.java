@@ -3,6 +3,8 @@ package org.eclipse.birt.core.archive.compound;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Before;
@@ -144,6 +146,151 @@ public class ArchiveFileTest extends TestCase
 		archive.close( );
 	}
 
+	@Test
+    public void testConcurrentRead( ) throws Exception
+	{
+		IArchiveFile archive = new ArchiveFileV2( ARCHIVE_FILE, "rw" );
+		createEntries( archive );
+		archive.close( );
+		archive = new ArchiveFileV2( ARCHIVE_FILE, "r" );
+		archive.setCacheSize( 16 * 4096 );
+		checkConcurrentRead( archive );
+		archive.close( );
+
+		archive = new ArchiveFileV3( ARCHIVE_FILE, "rw" );
+		createEntries( archive );
+		archive.close( );
+		archive = new ArchiveFileV3( ARCHIVE_FILE, "r" );
+		archive.setCacheSize( 16 * 4096 );
+		checkConcurrentRead( archive );
+		archive.close( );
+	}
+
+	@Test
+	public void testInterruptedRead( ) throws Exception
+	{
+		// read by the file channel, which is closed by an interrupted read
+		String mapped = System.getProperty( MappedFile.PROPERTY_MEMORY_MAPPED );
+		System.setProperty( MappedFile.PROPERTY_MEMORY_MAPPED, "false" );
+		try
+		{
+			IArchiveFile archive = new ArchiveFileV2( ARCHIVE_FILE, "rw" );
+			createEntries( archive );
+			archive.close( );
+			archive = new ArchiveFileV2( ARCHIVE_FILE, "r" );
+			checkInterruptedRead( archive );
+			archive.close( );
+
+			archive = new ArchiveFileV3( ARCHIVE_FILE, "rw" );
+			createEntries( archive );
+			archive.close( );
+			archive = new ArchiveFileV3( ARCHIVE_FILE, "r" );
+			checkInterruptedRead( archive );
+			archive.close( );
+		}
+		finally
+		{
+			if ( mapped == null )
+			{
+				System.clearProperty( MappedFile.PROPERTY_MEMORY_MAPPED );
+			}
+			else
+			{
+				System.setProperty( MappedFile.PROPERTY_MEMORY_MAPPED, mapped );
+			}
+		}
+	}
+
+	void checkInterruptedRead( IArchiveFile archive ) throws Exception
+	{
+		ArchiveEntry entry = archive.openEntry( "/entry/15" );
+		byte[] b = new byte[(int) entry.getLength( )];
+		Thread.currentThread( ).interrupt( );
+		try
+		{
+			assertEquals( b.length, entry.read( 0, b, 0, b.length ) );
+		}
+		finally
+		{
+			// the interrupt is kept for the caller
+			assertTrue( Thread.interrupted( ) );
+		}
+		for ( int j = 0; j < b.length; j++ )
+		{
+			assertEquals( (byte) ( 15 + j ), b[j] );
+		}
+		entry.close( );
+		// the other readers still read the archive
+		checkConcurrentRead( archive );
+	}
+
+	void createEntries( IArchiveFile archive ) throws IOException
+	{
+		for ( int i = 0; i < 16; i++ )
+		{
+			byte[] b = new byte[10000 + i * 1000];
+			for ( int j = 0; j < b.length; j++ )
+			{
+				b[j] = (byte) ( i + j );
+			}
+			ArchiveEntry entry = archive.createEntry( "/entry/" + i );
+			entry.write( 0, b, 0, b.length );
+			entry.close( );
+		}
+	}
+
+	void checkConcurrentRead( final IArchiveFile archive ) throws Exception
+	{
+		final List<Throwable> errors = new ArrayList<Throwable>( );
+		Thread[] threads = new Thread[8];
+		for ( int t = 0; t < threads.length; t++ )
+		{
+			final int seed = t;
+			threads[t] = new Thread( ) {
+
+				public void run( )
+				{
+					try
+					{
+						for ( int n = 0; n < 64; n++ )
+						{
+							int i = ( seed + n ) % 16;
+							ArchiveEntry entry = archive.openEntry( "/entry/"
+									+ i );
+							try
+							{
+								byte[] b = new byte[(int) entry.getLength( )];
+								assertEquals( b.length,
+										entry.read( 0, b, 0, b.length ) );
+								for ( int j = 0; j < b.length; j++ )
+								{
+									assertEquals( (byte) ( i + j ), b[j] );
+								}
+							}
+							finally
+							{
+								entry.close( );
+							}
+						}
+					}
+					catch ( Throwable ex )
+					{
+						synchronized ( errors )
+						{
+							errors.add( ex );
+						}
+					}
+				}
+			};
+			threads[t].start( );
+		}
+		for ( Thread thread : threads )
+		{
+			thread.join( );
+		}
+		assertTrue( errors.toString( ), errors.isEmpty( ) );
+	}
+
 	void createArchive( ArchiveFile archive ) throws IOException
 	{
 		int entryCount = 1024;
@@ -0,0 +1,256 @@
+package org.eclipse.birt.core.archive.compound;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class CompressedArchiveEntryTest extends TestCase
+{
+
+	static final String ARCHIVE_FOLDER = "./utest/";
+	static final String ARCHIVE_FILE = ARCHIVE_FOLDER + "compressed.rptdocument";
+
+	@Before
+    public void setUp()
+	{
+		new File( ARCHIVE_FOLDER ).mkdirs( );
+	}
+	@After
+    public void tearDown()
+	{
+		new File( ARCHIVE_FILE ).delete( );
+		new File( ARCHIVE_FOLDER ).delete( );
+	}
+	@Test
+    public void testCompressedEntry( ) throws IOException
+	{
+		// compressible data, larger than several blocks
+		byte[] data = new byte[200000];
+		for ( int i = 0; i < data.length; i++ )
+		{
+			data[i] = (byte) ( ( i / 7 ) % 13 );
+		}
+
+		ArchiveFileV3 archive = new ArchiveFileV3( ARCHIVE_FILE, "rw" );
+		archive.setCompressedEntries( new String[]{"/content/"} );
+		ArchiveEntry entry = archive.createEntry( "/content/page" );
+		assertTrue( entry instanceof CompressedArchiveEntry );
+		entry.write( 0, data, 0, data.length );
+		// rewrite a written block, and write the head at last
+		data[1000] = 100;
+		entry.write( 1000, data, 1000, 1 );
+		entry.write( 150000, data, 150000, 100 );
+		data[0] = 1;
+		entry.write( 0, data, 0, 1 );
+		entry.close( );
+
+		ArchiveEntry plain = archive.createEntry( "/data" );
+		assertFalse( plain instanceof CompressedArchiveEntry );
+		plain.write( 0, data, 0, 100 );
+		plain.close( );
+		archive.close( );
+
+		assertTrue( new File( ARCHIVE_FILE ).length( ) < data.length / 2 );
+
+		archive = new ArchiveFileV3( ARCHIVE_FILE, "r" );
+		entry = archive.openEntry( "/content/page" );
+		assertTrue( entry instanceof CompressedArchiveEntry );
+		assertEquals( data.length, entry.getLength( ) );
+		byte[] b = new byte[data.length];
+		assertEquals( data.length, entry.read( 0, b, 0, b.length ) );
+		for ( int i = 0; i < data.length; i++ )
+		{
+			assertEquals( data[i], b[i] );
+		}
+		// random access
+		Random random = new Random( 1 );
+		for ( int i = 0; i < 100; i++ )
+		{
+			int pos = random.nextInt( data.length );
+			int len = Math.min( random.nextInt( 50000 ), data.length - pos );
+			assertEquals( len, entry.read( pos, b, 0, len ) );
+			for ( int j = 0; j < len; j++ )
+			{
+				assertEquals( data[pos + j], b[j] );
+			}
+		}
+		assertEquals( -1, entry.read( data.length, b, 0, 1 ) );
+		entry.close( );
+
+		plain = archive.openEntry( "/data" );
+		assertFalse( plain instanceof CompressedArchiveEntry );
+		assertEquals( 100, plain.getLength( ) );
+		plain.close( );
+		archive.close( );
+	}
+	@Test
+    public void testSetLength( ) throws IOException
+	{
+		byte[] data = new byte[100000];
+		new Random( 2 ).nextBytes( data );
+
+		ArchiveFileV3 archive = new ArchiveFileV3( ARCHIVE_FILE, "rw" );
+		archive.setCompressedEntries( new String[]{"/"} );
+		ArchiveEntry entry = archive.createEntry( "/random" );
+		entry.write( 0, data, 0, data.length );
+		entry.setLength( 40000 );
+		// the truncated data is read as zeros once extended
+		entry.setLength( 50000 );
+		archive.close( );
+
+		archive = new ArchiveFileV3( ARCHIVE_FILE, "r" );
+		entry = archive.openEntry( "/random" );
+		assertEquals( 50000, entry.getLength( ) );
+		byte[] b = new byte[50000];
+		assertEquals( 50000, entry.read( 0, b, 0, b.length ) );
+		for ( int i = 0; i < 40000; i++ )
+		{
+			assertEquals( data[i], b[i] );
+		}
+		for ( int i = 40000; i < 50000; i++ )
+		{
+			assertEquals( 0, b[i] );
+		}
+		entry.close( );
+		archive.close( );
+	}
+	@Test
+    public void testRewriteHead( ) throws IOException
+	{
+		// the page hints are appended and the total page at the head is
+		// written again after each page
+		byte[] data = new byte[200000];
+		Random random = new Random( 3 );
+		for ( int i = 0; i < data.length; i++ )
+		{
+			data[i] = (byte) random.nextInt( 16 );
+		}
+		ArchiveFileV3 archive = new ArchiveFileV3( ARCHIVE_FILE, "rw" );
+		archive.setCompressedEntries( new String[]{"/"} );
+		CompressedArchiveEntry entry = (CompressedArchiveEntry) archive
+				.createEntry( "/pages" );
+		int pageSize = 100;
+		for ( int pos = 8; pos < data.length; pos += pageSize )
+		{
+			entry.write( pos, data, pos, Math.min( pageSize, data.length
+					- pos ) );
+			data[pos % 8] = (byte) pos;
+			entry.write( 0, data, 0, 8 );
+			entry.flush( );
+		}
+		// the blocks written again are not appended
+		long storedLength = entry.file.length( );
+		assertTrue( storedLength < data.length );
+		entry.close( );
+		assertTrue( entry.file.length( ) <= storedLength );
+		archive.close( );
+
+		archive = new ArchiveFileV3( ARCHIVE_FILE, "r" );
+		ArchiveEntry reader = archive.openEntry( "/pages" );
+		assertEquals( data.length, reader.getLength( ) );
+		byte[] b = new byte[data.length];
+		assertEquals( data.length, reader.read( 0, b, 0, b.length ) );
+		for ( int i = 0; i < data.length; i++ )
+		{
+			assertEquals( data[i], b[i] );
+		}
+		reader.close( );
+		archive.close( );
+	}
+
+	@Test
+	public void testCompactOnClose( ) throws IOException
+	{
+		byte[] data = new byte[100000];
+		new Random( 4 ).nextBytes( data );
+		ArchiveFileV3 archive = new ArchiveFileV3( ARCHIVE_FILE, "rw" );
+		archive.setCompressedEntries( new String[]{"/"} );
+		CompressedArchiveEntry entry = (CompressedArchiveEntry) archive
+				.createEntry( "/data" );
+		entry.write( 0, data, 0, data.length );
+		entry.flush( );
+		long writtenLength = entry.file.length( );
+		// the compressible blocks are written again in the same space
+		for ( int i = 0; i < data.length; i++ )
+		{
+			data[i] = (byte) ( ( i / 7 ) % 13 );
+		}
+		entry.write( 0, data, 0, data.length );
+		entry.flush( );
+		assertEquals( writtenLength, entry.file.length( ) );
+		entry.close( );
+		// the space left by the head block is reclaimed
+		long compactLength = entry.file.length( );
+		archive.close( );
+
+		archive = new ArchiveFileV3( ARCHIVE_FILE, "r" );
+		ArchiveEntry reader = archive.openEntry( "/data" );
+		byte[] b = new byte[data.length];
+		assertEquals( data.length, reader.read( 0, b, 0, b.length ) );
+		for ( int i = 0; i < data.length; i++ )
+		{
+			assertEquals( data[i], b[i] );
+		}
+		reader.close( );
+		archive.close( );
+
+		// the same content written once takes the same space
+		new File( ARCHIVE_FILE ).delete( );
+		archive = new ArchiveFileV3( ARCHIVE_FILE, "rw" );
+		archive.setCompressedEntries( new String[]{"/"} );
+		entry = (CompressedArchiveEntry) archive.createEntry( "/data" );
+		entry.write( 0, data, 0, data.length );
+		entry.close( );
+		assertEquals( entry.file.length( ), compactLength );
+		archive.close( );
+	}
+
+	@Test
+	public void testArchiveVersion( ) throws IOException
+	{
+		ArchiveFileV3 archive = new ArchiveFileV3( ARCHIVE_FILE, "rw" );
+		ArchiveEntry entry = archive.createEntry( "/data" );
+		entry.write( 0, new byte[100], 0, 100 );
+		entry.close( );
+		archive.close( );
+		assertEquals( 0, readArchiveVersion( ) );
+
+		archive = new ArchiveFileV3( ARCHIVE_FILE, "rw" );
+		archive.setCompressedEntries( new String[]{"/content/"} );
+		entry = archive.createEntry( "/content/page" );
+		entry.write( 0, new byte[100], 0, 100 );
+		entry.close( );
+		archive.close( );
+		// the readers without the compressed entries reject the archive
+		assertEquals( 1, readArchiveVersion( ) );
+
+		archive = new ArchiveFileV3( ARCHIVE_FILE, "r" );
+		entry = archive.openEntry( "/content/page" );
+		assertEquals( 100, entry.getLength( ) );
+		entry.close( );
+		archive.close( );
+	}
+
+	private int readArchiveVersion( ) throws IOException
+	{
+		DataInputStream in = new DataInputStream( new FileInputStream(
+				ARCHIVE_FILE ) );
+		try
+		{
+			in.readLong( );
+			return in.readInt( );
+		}
+		finally
+		{
+			in.close( );
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package org.eclipse.birt.core.archive.compound;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class MappedFileTest extends TestCase
+{
+
+	static final String ARCHIVE_FOLDER = "./utest/";
+	static final String MAPPED_FILE = ARCHIVE_FOLDER + "mapped.rptdocument";
+
+	@Before
+    public void setUp()
+	{
+		new File( ARCHIVE_FOLDER ).mkdirs( );
+	}
+	@After
+    public void tearDown()
+	{
+		new File( MAPPED_FILE ).delete( );
+		new File( ARCHIVE_FOLDER ).delete( );
+	}
+	@Test
+    public void testChunkedRead( ) throws IOException
+	{
+		byte[] data = new byte[10000];
+		for ( int i = 0; i < data.length; i++ )
+		{
+			data[i] = (byte) i;
+		}
+		RandomAccessFile rf = new RandomAccessFile( MAPPED_FILE, "rw" );
+		try
+		{
+			rf.write( data );
+			// map in chunks of 1024 bytes
+			MappedFile file = MappedFile.map( rf.getChannel( ), 10 );
+			assertEquals( data.length, file.length( ) );
+
+			// read across the chunks
+			byte[] b = new byte[3000];
+			assertEquals( 3000, file.read( 1000, b, 0, 3000 ) );
+			for ( int i = 0; i < b.length; i++ )
+			{
+				assertEquals( data[1000 + i], b[i] );
+			}
+
+			// read at the end of file
+			assertEquals( 100, file.read( 9900, b, 10, 3000 ) );
+			assertEquals( data[9900], b[10] );
+			assertEquals( data[9999], b[109] );
+			assertEquals( -1, file.read( 10000, b, 0, 1 ) );
+		}
+		finally
+		{
+			rf.close( );
+		}
+	}
+	@Test
+    public void testMappedArchive( ) throws IOException
+	{
+		ArchiveFileV2 archive = new ArchiveFileV2( MAPPED_FILE, "rw" );
+		ArchiveEntry entry = archive.createEntry( "/entry" );
+		byte[] data = new byte[20000];
+		for ( int i = 0; i < data.length; i++ )
+		{
+			data[i] = (byte) ( i * 7 );
+		}
+		entry.write( 0, data, 0, data.length );
+		entry.close( );
+		archive.close( );
+
+		String mapped = System.getProperty( MappedFile.PROPERTY_MEMORY_MAPPED );
+		System.setProperty( MappedFile.PROPERTY_MEMORY_MAPPED, "true" );
+		try
+		{
+			archive = new ArchiveFileV2( MAPPED_FILE, "r" );
+			assertTrue( archive.isMapped( ) );
+			entry = archive.openEntry( "/entry" );
+			byte[] b = new byte[data.length];
+			assertEquals( data.length, entry.read( 0, b, 0, data.length ) );
+			for ( int i = 0; i < data.length; i++ )
+			{
+				assertEquals( data[i], b[i] );
+			}
+			assertEquals( 100, entry.read( 5000, b, 0, 100 ) );
+			assertEquals( data[5000], b[0] );
+			entry.close( );
+			archive.close( );
+		}
+		finally
+		{
+			if ( mapped == null )
+			{
+				System.clearProperty( MappedFile.PROPERTY_MEMORY_MAPPED );
+			}
+			else
+			{
+				System.setProperty( MappedFile.PROPERTY_MEMORY_MAPPED, mapped );
+			}
+		}
+	}
+}
@@ -77,6 +77,101 @@ public class BTreeCursorTest extends TestCase
 		}
 	}
 
+	@Test
+    public void testRangeCursor( ) throws Exception
+	{
+		new File( "./utest/btree.dat" ).delete( );
+		FileBTreeFile file = new FileBTreeFile( "./utest/btree.dat" );
+		try
+		{
+			BTreeOption<Integer, String> option = new BTreeOption<Integer, String>( );
+			option.setFile( file, true );
+			BTree<Integer, String> btree = new BTree<Integer, String>( option );
+			for ( int i = 0; i <= 10000; i += 2 )
+			{
+				btree.insert( Integer.valueOf( i ), String.valueOf( i ) );
+			}
+			btree.close( );
+
+			option.setReadOnly( true );
+			btree = new BTree<Integer, String>( option );
+			try
+			{
+				BTreeCursor<Integer, String> cursor = btree.createCursor( 100,
+						201 );
+				try
+				{
+					int key = 100;
+					while ( cursor.next( ) )
+					{
+						assertEquals( Integer.valueOf( key ), cursor.getKey( ) );
+						assertEquals( String.valueOf( key ), cursor.getValue( ) );
+						key += 2;
+					}
+					assertEquals( 202, key );
+					assertTrue( cursor.isAfterLast( ) );
+					while ( cursor.previous( ) )
+					{
+						key -= 2;
+						assertEquals( Integer.valueOf( key ), cursor.getKey( ) );
+					}
+					assertEquals( 100, key );
+					assertTrue( cursor.isBeforeFirst( ) );
+
+					assertTrue( cursor.moveTo( 150 ) );
+					assertFalse( cursor.moveTo( 151 ) );
+					assertEquals( Integer.valueOf( 150 ), cursor.getKey( ) );
+					assertFalse( cursor.moveTo( 99 ) );
+					assertTrue( cursor.isBeforeFirst( ) );
+					assertFalse( cursor.moveTo( 500 ) );
+					assertEquals( Integer.valueOf( 200 ), cursor.getKey( ) );
+				}
+				finally
+				{
+					cursor.close( );
+				}
+
+				// the high key is excluded
+				cursor = btree.createCursor( 99, 200 );
+				assertTrue( cursor.first( ) );
+				assertEquals( Integer.valueOf( 100 ), cursor.getKey( ) );
+				assertTrue( cursor.last( ) );
+				assertEquals( Integer.valueOf( 198 ), cursor.getKey( ) );
+				cursor.close( );
+
+				// the ranges without keys
+				cursor = btree.createCursor( 101, 102 );
+				assertFalse( cursor.next( ) );
+				assertFalse( cursor.last( ) );
+				cursor.close( );
+				cursor = btree.createCursor( 10001, null );
+				assertFalse( cursor.next( ) );
+				cursor.close( );
+				cursor = btree.createCursor( null, 0 );
+				assertFalse( cursor.first( ) );
+				cursor.close( );
+
+				// the open ranges
+				cursor = btree.createCursor( 9990, null );
+				int count = 0;
+				while ( cursor.next( ) )
+				{
+					count++;
+				}
+				assertEquals( 6, count );
+				cursor.close( );
+			}
+			finally
+			{
+				btree.close( );
+			}
+		}
+		finally
+		{
+			file.close( );
+		}
+	}
+
 	public void doTestNext( BTreeCursor<Integer, String> cursor )
 			throws IOException
 	{
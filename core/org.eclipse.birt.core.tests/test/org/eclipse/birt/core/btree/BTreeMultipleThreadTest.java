@@ -14,6 +14,7 @@ package org.eclipse.birt.core.btree;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -68,6 +69,103 @@ public class BTreeMultipleThreadTest extends TestCase
 			file.close( );
 		}
 	}
+	@Test
+    public void testReadOnlyTree( ) throws Exception
+	{
+		new File( "./utest/btree.dat" ).delete( );
+		FileBTreeFile file = new FileBTreeFile( "./utest/btree.dat" );
+		try
+		{
+			BTreeOption<String, String> option = new BTreeOption<String, String>( );
+			option.setFile( file, true );
+			BTree<String, String> btree = new BTree<String, String>( option );
+			createBTree( btree );
+			btree.close( );
+
+			// a small cache to load the nodes again and again
+			option.setReadOnly( true );
+			option.setCacheSize( 4 );
+			final BTree<String, String> readOnlyTree = new BTree<String, String>(
+					option );
+			try
+			{
+				final ArrayList<Throwable> errors = new ArrayList<Throwable>( );
+				Thread[] threads = new Thread[8];
+				for ( int i = 0; i < threads.length; i++ )
+				{
+					final int seed = i;
+					threads[i] = new Thread( ) {
+
+						public void run( )
+						{
+							try
+							{
+								Random random = new Random( seed );
+								for ( int j = 0; j < 2000; j++ )
+								{
+									String key = String.valueOf( random
+											.nextInt( KEY_COUNT ) );
+									if ( !key.equals( readOnlyTree
+											.getValue( key ) ) )
+									{
+										throw new IOException( key );
+									}
+								}
+								// all the keys start with "1" are from "1" to
+								// "2" exclusive
+								BTreeCursor<String, String> cursor = readOnlyTree
+										.createCursor( "1", "2" );
+								int count = 0;
+								while ( cursor.next( ) )
+								{
+									if ( !cursor.getKey( ).startsWith( "1" )
+											|| !cursor.getKey( ).equals(
+													cursor.getValue( ) ) )
+									{
+										throw new IOException( cursor
+												.getKey( ) );
+									}
+									count++;
+								}
+								cursor.close( );
+								if ( count != 1111 )
+								{
+									throw new IOException( "range count "
+											+ count );
+								}
+							}
+							catch ( Throwable ex )
+							{
+								synchronized ( errors )
+								{
+									errors.add( ex );
+								}
+							}
+						}
+					};
+					threads[i].start( );
+				}
+				for ( Thread thread : threads )
+				{
+					thread.join( );
+				}
+				for ( Throwable ex : errors )
+				{
+					ex.printStackTrace( );
+				}
+				assertTrue( errors.isEmpty( ) );
+			}
+			finally
+			{
+				readOnlyTree.close( );
+			}
+		}
+		finally
+		{
+			file.close( );
+		}
+	}
+
 	static boolean hasError;
 
 	static void createBTree( BTree<String, String> btree ) throws IOException
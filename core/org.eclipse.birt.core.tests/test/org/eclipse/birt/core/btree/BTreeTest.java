@@ -20,6 +20,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Random;
+import java.util.TreeMap;
 
 import org.junit.Ignore;
 import org.junit.Test;
@@ -444,4 +445,171 @@ public class BTreeTest extends BTreeTestCase
 
 		btree.close( );
 	}
+
+	@Test
+    public void testBulkLoad( ) throws IOException
+	{
+		RAMBTreeFile file = new RAMBTreeFile( );
+		BTreeOption<String, Integer> option = new BTreeOption<String, Integer>( );
+		option.setHasValue( true );
+		option.setValueSize( 4 );
+		option.setValueSerializer( new IntegerSerializer( ) );
+		option.setPrefixCompression( true );
+		option.setFile( file );
+
+		TreeMap<String, Integer> entries = new TreeMap<String, Integer>( );
+		for ( int i = 0; i < 100000; i += 2 )
+		{
+			entries.put( "__bookmark_" + i, Integer.valueOf( i ) );
+		}
+
+		BTree<String, Integer> btree = new BTree<String, Integer>( option );
+		btree.bulkLoad( entries.entrySet( ).iterator( ) );
+		assertEquals( entries.size( ), btree.getTotalKeys( ) );
+		assertEquals( entries.size( ), btree.getTotalValues( ) );
+		// the tree is not empty, the keys are inserted
+		TreeMap<String, Integer> more = new TreeMap<String, Integer>( );
+		for ( int i = 1; i < 100000; i += 20 )
+		{
+			more.put( "__bookmark_" + i, Integer.valueOf( i ) );
+		}
+		btree.bulkLoad( more.entrySet( ).iterator( ) );
+		entries.putAll( more );
+		assertEquals( entries.size( ), btree.getTotalKeys( ) );
+		btree.close( );
+
+		btree = new BTree<String, Integer>( option );
+		assertEquals( entries.size( ), btree.getTotalKeys( ) );
+		for ( Map.Entry<String, Integer> entry : entries.entrySet( ) )
+		{
+			assertEquals( entry.getValue( ), btree.getValue( entry.getKey( ) ) );
+		}
+		assertTrue( !btree.exist( "__bookmark_3" ) );
+
+		BTreeCursor<String, Integer> cursor = btree.createCursor( );
+		for ( Map.Entry<String, Integer> entry : entries.entrySet( ) )
+		{
+			assertTrue( cursor.next( ) );
+			assertEquals( entry.getKey( ), cursor.getKey( ) );
+		}
+		assertTrue( !cursor.next( ) );
+		for ( String key : entries.descendingKeySet( ) )
+		{
+			assertTrue( cursor.previous( ) );
+			assertEquals( key, cursor.getKey( ) );
+		}
+		cursor.close( );
+		btree.close( );
+	}
+
+	@Test
+    public void testBulkLoadDuplicate( ) throws IOException
+	{
+		RAMBTreeFile file = new RAMBTreeFile( );
+		BTreeOption<Integer, String> option = new BTreeOption<Integer, String>( );
+		option.setHasValue( true );
+		option.setKeySize( 4 );
+		option.setAllowDuplicate( true );
+		option.setKeySerializer( new IntegerSerializer( ) );
+		option.setFile( file );
+
+		ArrayList<Map.Entry<Integer, String>> entries = new ArrayList<Map.Entry<Integer, String>>( );
+		for ( int i = 0; i < 10000; i++ )
+		{
+			for ( int j = 0; j < 3; j++ )
+			{
+				HashMap<Integer, String> entry = new HashMap<Integer, String>( );
+				entry.put( Integer.valueOf( i ), i + "." + j );
+				entries.addAll( entry.entrySet( ) );
+			}
+		}
+		BTree<Integer, String> btree = new BTree<Integer, String>( option );
+		btree.bulkLoad( entries.iterator( ) );
+		assertEquals( 10000, btree.getTotalKeys( ) );
+		assertEquals( 30000, btree.getTotalValues( ) );
+		btree.close( );
+
+		btree = new BTree<Integer, String>( option );
+		for ( int i = 0; i < 10000; i++ )
+		{
+			Collection<String> values = btree.getValues( Integer.valueOf( i ) );
+			assertEquals( Arrays.asList( i + ".0", i + ".1", i + ".2" ),
+					new ArrayList<String>( values ) );
+		}
+		btree.close( );
+
+		// the keys must be sorted
+		btree = new BTree<Integer, String>( new BTreeOption<Integer, String>( ) );
+		HashMap<Integer, String> unsorted = new HashMap<Integer, String>( );
+		unsorted.put( Integer.valueOf( 2 ), "2" );
+		ArrayList<Map.Entry<Integer, String>> list = new ArrayList<Map.Entry<Integer, String>>(
+				unsorted.entrySet( ) );
+		unsorted.clear( );
+		unsorted.put( Integer.valueOf( 1 ), "1" );
+		list.addAll( unsorted.entrySet( ) );
+		try
+		{
+			btree.bulkLoad( list.iterator( ) );
+			fail( );
+		}
+		catch ( IllegalArgumentException ex )
+		{
+		}
+		btree.close( );
+	}
+
+	@Test
+    public void testPrefixCompression( ) throws Exception
+	{
+		RAMBTreeFile file = new RAMBTreeFile( );
+		BTreeOption<String, Integer> option = new BTreeOption<String, Integer>( );
+		option.setHasValue( true );
+		option.setValueSize( 4 );
+		option.setValueSerializer( new IntegerSerializer( ) );
+		option.setAllowNullKey( true );
+		option.setPrefixCompression( true );
+		option.setFile( file );
+
+		RAMBTreeFile plainFile = new RAMBTreeFile( );
+		BTreeOption<String, Integer> plainOption = new BTreeOption<String, Integer>( );
+		plainOption.setHasValue( true );
+		plainOption.setValueSize( 4 );
+		plainOption.setValueSerializer( new IntegerSerializer( ) );
+		plainOption.setAllowNullKey( true );
+		plainOption.setFile( plainFile );
+
+		BTree<String, Integer> btree = new BTree<String, Integer>( option );
+		BTree<String, Integer> plainTree = new BTree<String, Integer>(
+				plainOption );
+		assertTrue( btree.isPrefixCompression( ) );
+		assertTrue( !plainTree.isPrefixCompression( ) );
+
+		// insert in random order to split the nodes in the middle
+		HashMap<String, Integer> values = new HashMap<String, Integer>( );
+		Random random = new Random( 0 );
+		for ( int i = 0; i < 20000; i++ )
+		{
+			int value = random.nextInt( 100000 );
+			String key = "/report/table/row[" + value + "]";
+			values.put( key, Integer.valueOf( value ) );
+			btree.insert( key, Integer.valueOf( value ) );
+			plainTree.insert( key, Integer.valueOf( value ) );
+		}
+		btree.insert( null, Integer.valueOf( -1 ) );
+		btree.close( );
+		plainTree.close( );
+		assertTrue( file.getTotalBlock( ) < plainFile.getTotalBlock( ) * 2 / 3 );
+
+		// the setting saved in the file is used
+		option.setPrefixCompression( false );
+		btree = new BTree<String, Integer>( option );
+		assertTrue( btree.isPrefixCompression( ) );
+		assertEquals( values.size( ) + 1, btree.getTotalKeys( ) );
+		for ( Map.Entry<String, Integer> entry : values.entrySet( ) )
+		{
+			assertEquals( entry.getValue( ), btree.getValue( entry.getKey( ) ) );
+		}
+		assertEquals( Integer.valueOf( -1 ), btree.getValue( (String) null ) );
+		btree.close( );
+	}
 }
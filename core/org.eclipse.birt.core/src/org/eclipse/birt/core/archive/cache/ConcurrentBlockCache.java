@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The block cache of a read only archive.
+ *
+ * The blocks of a read only archive never change once loaded, so they are
+ * shared by all the readers without reference counting. The cache is divided
+ * into stripes by block id, each with its own lock and least recently used
+ * order, so that the readers of different blocks never wait for each other.
+ *
+ * If the maximum size is 0, nothing is cached.
+ */
+public class ConcurrentBlockCache<T>
+{
+
+	private static final int STRIPE_COUNT = 16;
+
+	private final Stripe<T>[] stripes;
+
+	private volatile int maxCacheSize;
+
+	@SuppressWarnings("unchecked")
+	public ConcurrentBlockCache( int maxCacheSize )
+	{
+		this.stripes = new Stripe[STRIPE_COUNT];
+		for ( int i = 0; i < STRIPE_COUNT; i++ )
+		{
+			stripes[i] = new Stripe<T>( );
+		}
+		setMaxCacheSize( maxCacheSize );
+	}
+
+	/**
+	 * set the maximum number of cached blocks.
+	 *
+	 * @param maxCacheSize
+	 *            the maximum block count, 0 to disable the cache.
+	 */
+	public void setMaxCacheSize( int maxCacheSize )
+	{
+		this.maxCacheSize = maxCacheSize;
+		int stripeSize = ( maxCacheSize + STRIPE_COUNT - 1 ) / STRIPE_COUNT;
+		for ( Stripe<T> stripe : stripes )
+		{
+			stripe.setMaxSize( stripeSize );
+		}
+	}
+
+	public int getMaxCacheSize( )
+	{
+		return maxCacheSize;
+	}
+
+	/**
+	 * get the cached block.
+	 *
+	 * @param blockId
+	 *            the block id
+	 * @return the block or null if it is not cached.
+	 */
+	public T get( int blockId )
+	{
+		Stripe<T> stripe = getStripe( blockId );
+		synchronized ( stripe )
+		{
+			return stripe.get( Integer.valueOf( blockId ) );
+		}
+	}
+
+	/**
+	 * add a block into the cache unless another reader has added it first.
+	 *
+	 * @param blockId
+	 *            the block id
+	 * @param block
+	 *            the block just loaded
+	 * @return the cached block, which is the one to use.
+	 */
+	public T putIfAbsent( int blockId, T block )
+	{
+		if ( maxCacheSize <= 0 )
+		{
+			return block;
+		}
+		Stripe<T> stripe = getStripe( blockId );
+		synchronized ( stripe )
+		{
+			Integer key = Integer.valueOf( blockId );
+			T cached = stripe.get( key );
+			if ( cached != null )
+			{
+				return cached;
+			}
+			stripe.put( key, block );
+			return block;
+		}
+	}
+
+	public int size( )
+	{
+		int size = 0;
+		for ( Stripe<T> stripe : stripes )
+		{
+			synchronized ( stripe )
+			{
+				size += stripe.size( );
+			}
+		}
+		return size;
+	}
+
+	public void clear( )
+	{
+		for ( Stripe<T> stripe : stripes )
+		{
+			synchronized ( stripe )
+			{
+				stripe.clear( );
+			}
+		}
+	}
+
+	private Stripe<T> getStripe( int blockId )
+	{
+		// the adjacent blocks are read together, spread them over the stripes
+		int hash = blockId * 0x9E3779B9;
+		return stripes[( hash >>> 28 ) & ( STRIPE_COUNT - 1 )];
+	}
+
+	private static class Stripe<T> extends LinkedHashMap<Integer, T>
+	{
+
+		private static final long serialVersionUID = 1L;
+
+		private int maxSize;
+
+		Stripe( )
+		{
+			super( 16, 0.75f, true );
+		}
+
+		void setMaxSize( int maxSize )
+		{
+			synchronized ( this )
+			{
+				this.maxSize = maxSize;
+				while ( size( ) > maxSize )
+				{
+					remove( keySet( ).iterator( ).next( ) );
+				}
+			}
+		}
+
+		protected boolean removeEldestEntry( Map.Entry<Integer, T> eldest )
+		{
+			return size( ) > maxSize;
+		}
+	}
+}
@@ -251,6 +251,21 @@ public class ArchiveFile implements IArchiveFile
 		}
 	}
 
+	/**
+	 * set the entries compressed block by block. It is supported only by the
+	 * archives of ext2 format.
+	 * 
+	 * @param namePrefixes
+	 *            the name prefixes of the compressed entries.
+	 */
+	public void setCompressedEntries( String[] namePrefixes )
+	{
+		if ( af instanceof ArchiveFileV3 )
+		{
+			( (ArchiveFileV3) af ).setCompressedEntries( namePrefixes );
+		}
+	}
+
 	public long getUsedCache( )
 	{
 		if ( isArchiveFileAvailable( af ) )
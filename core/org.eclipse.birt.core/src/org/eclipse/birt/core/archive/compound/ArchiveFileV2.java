@@ -15,6 +15,9 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
@@ -23,6 +26,7 @@ import java.util.List;
 
 import org.eclipse.birt.core.archive.cache.CacheListener;
 import org.eclipse.birt.core.archive.cache.Cacheable;
+import org.eclipse.birt.core.archive.cache.ConcurrentBlockCache;
 import org.eclipse.birt.core.archive.cache.FileCacheManager;
 import org.eclipse.birt.core.i18n.CoreMessages;
 import org.eclipse.birt.core.i18n.ResourceConstants;
@@ -33,6 +37,12 @@ import org.eclipse.birt.core.i18n.ResourceConstants;
  * <li> "rw" create the file for read/write
  * <li> "rw+" open file is open for read/write
  * <li> "rwt" create the transient file, it will be removed after closing.
+ * <p>
+ * A read only archive is read with positional reads of the file channel and
+ * caches its blocks in a striped cache, so the concurrent readers never wait
+ * for each other. If the file can be memory mapped, the entries are read from
+ * the mapping directly, without the block cache. A writable archive is
+ * synchronized as a whole.
  */
 public class ArchiveFileV2 implements IArchiveFile, ArchiveConstants
 {
@@ -40,10 +50,20 @@ public class ArchiveFileV2 implements IArchiveFile, ArchiveConstants
 	/** the physical file correspond to this compound file system */
 	protected RandomAccessFile rf;
 
+	/**
+	 * the channel of the read only file, used by the unsynchronized reads.
+	 */
+	protected volatile FileChannel channel;
+
+	/**
+	 * the memory mapping of the read only file, null if it is not mapped.
+	 */
+	protected volatile MappedFile mappedFile;
+
 	/**
 	 * if the file is closed.
 	 */
-	protected boolean isClosed;
+	protected volatile boolean isClosed;
 	/**
 	 * the archive file is writable.
 	 */
@@ -91,6 +111,11 @@ public class ArchiveFileV2 implements IArchiveFile, ArchiveConstants
 	 */
 	protected FileCacheManager caches;
 
+	/**
+	 * block cache of the read only archive file.
+	 */
+	protected ConcurrentBlockCache<Block> readCaches;
+
 	/**
 	 * the total blocks exits in this file
 	 */
@@ -213,6 +238,7 @@ public class ArchiveFileV2 implements IArchiveFile, ArchiveConstants
 		this.dependId = dependId;
 		this.caches = new FileCacheManager( );
 		caches.setCacheListener( new ArchiveFileV2CacheListener( ) );
+		this.readCaches = new ConcurrentBlockCache<Block>( 0 );
 
 		setupArchiveMode( mode );
 
@@ -252,19 +278,17 @@ public class ArchiveFileV2 implements IArchiveFile, ArchiveConstants
 	public void setCacheSize( long cacheSize )
 	{
 		long cacheBlocks = ( cacheSize + BLOCK_SIZE - 1 ) / BLOCK_SIZE;
-		if ( cacheBlocks > Integer.MAX_VALUE )
-		{
-			caches.setMaxCacheSize( Integer.MAX_VALUE );
-		}
-		else
-		{
-			caches.setMaxCacheSize( (int) cacheBlocks );
-		}
+		int maxCacheSize = cacheBlocks > Integer.MAX_VALUE
+				? Integer.MAX_VALUE
+				: (int) cacheBlocks;
+		caches.setMaxCacheSize( maxCacheSize );
+		readCaches.setMaxCacheSize( maxCacheSize );
 	}
 
 	public long getUsedCache( )
 	{
-		return (long) caches.getUsedCacheSize( ) * BLOCK_SIZE;
+		return (long) ( caches.getUsedCacheSize( ) + readCaches.size( ) )
+				* BLOCK_SIZE;
 	}
 
 	public String getDependId( )
@@ -302,6 +326,11 @@ public class ArchiveFileV2 implements IArchiveFile, ArchiveConstants
 					rf = new RandomAccessFile( archiveName, "rw" );
 				}
 			}
+			if ( !isWritable )
+			{
+				channel = rf.getChannel( );
+				mappedFile = MappedFile.map( channel );
+			}
 
 			head = ArchiveHeader.read( rf );
 			if ( systemId == null )
@@ -330,6 +359,8 @@ public class ArchiveFileV2 implements IArchiveFile, ArchiveConstants
 				rf.close( );
 				rf = null;
 			}
+			channel = null;
+			mappedFile = null;
 			throw ex;
 		}
 	}
@@ -403,11 +434,14 @@ public class ArchiveFileV2 implements IArchiveFile, ArchiveConstants
 				flush( );
 			}
 		}
+		isClosed = true;
 		if ( rf != null )
 		{
 			rf.close( );
 			rf = null;
 		}
+		channel = null;
+		mappedFile = null;
 		if ( isTransient )
 		{
 			new File( archiveName ).delete( );
@@ -416,7 +450,7 @@ public class ArchiveFileV2 implements IArchiveFile, ArchiveConstants
 		{
 			caches.clear( );
 		}
-		isClosed = true;
+		readCaches.clear( );
 	}
 
 	public synchronized void flush( ) throws IOException
@@ -451,6 +485,12 @@ public class ArchiveFileV2 implements IArchiveFile, ArchiveConstants
 		{
 			totalBlocks = (int) ( ( rf.length( ) + BLOCK_SIZE - 1 ) / BLOCK_SIZE );
 			totalDiskBlocks = totalBlocks;
+			// the last block may have been appended
+			readCaches.clear( );
+			if ( mappedFile != null && mappedFile.length( ) != rf.length( ) )
+			{
+				mappedFile = MappedFile.map( channel );
+			}
 			head.refresh( this );
 			allocTbl.refresh( );
 			entryTbl.refresh( );
@@ -570,6 +610,15 @@ public class ArchiveFileV2 implements IArchiveFile, ArchiveConstants
 		return totalBlocks;
 	}
 
+	/**
+	 * return if the file is memory mapped, so the data can be read without
+	 * loading the blocks.
+	 */
+	boolean isMapped( )
+	{
+		return mappedFile != null;
+	}
+
 	int allocateBlock( ) throws IOException
 	{
 		assertWritable( );
@@ -615,8 +664,21 @@ public class ArchiveFileV2 implements IArchiveFile, ArchiveConstants
 	 *            read length
 	 * @throws IOException
 	 */
-	synchronized int read( int blockId, int blockOff, byte[] b, int off, int len )
+	int read( int blockId, int blockOff, byte[] b, int off, int len )
 			throws IOException
+	{
+		if ( !isWritable )
+		{
+			return readAt( blockId, blockOff, b, off, len );
+		}
+		synchronized ( this )
+		{
+			return readFile( blockId, blockOff, b, off, len );
+		}
+	}
+
+	private int readFile( int blockId, int blockOff, byte[] b, int off,
+			int len ) throws IOException
 	{
 		assertOpen( );
 		long pos = (long) blockId * BLOCK_SIZE + blockOff;
@@ -634,6 +696,74 @@ public class ArchiveFileV2 implements IArchiveFile, ArchiveConstants
 		return readSize;
 	}
 
+	/**
+	 * read the data with positional reads, which neither move the file
+	 * pointer nor need the archive lock.
+	 */
+	private int readAt( int blockId, int blockOff, byte[] b, int off, int len )
+			throws IOException
+	{
+		assertOpen( );
+		long pos = (long) blockId * BLOCK_SIZE + blockOff;
+		MappedFile mf = mappedFile;
+		if ( mf != null && pos + len <= mf.length( ) )
+		{
+			return mf.read( pos, b, off, len );
+		}
+		FileChannel fc = channel;
+		if ( fc == null )
+		{
+			// not opened by openDocument, fall back to the shared file
+			synchronized ( this )
+			{
+				return readFile( blockId, blockOff, b, off, len );
+			}
+		}
+		ByteBuffer buffer = ByteBuffer.wrap( b, off, len );
+		int readSize = 0;
+		try
+		{
+			do
+			{
+				int size = fc.read( buffer, pos + readSize );
+				if ( size < 0 )
+				{
+					break;
+				}
+				readSize += size;
+			} while ( readSize < len );
+		}
+		catch ( ClosedChannelException ex )
+		{
+			// a reader interrupted in the read closes the channel and the
+			// file shared by all the readers, so reopen them and read the
+			// data with the file reads, which are not interruptible
+			synchronized ( this )
+			{
+				reopenFile( fc );
+				return readFile( blockId, blockOff, b, off, len );
+			}
+		}
+		return readSize;
+	}
+
+	/**
+	 * reopen the read only file after its channel is closed by an interrupted
+	 * reader.
+	 * 
+	 * @param closedChannel
+	 *            the channel closed.
+	 */
+	private void reopenFile( FileChannel closedChannel ) throws IOException
+	{
+		assertOpen( );
+		if ( channel == closedChannel )
+		{
+			rf = new RandomAccessFile( archiveName, "r" );
+			channel = rf.getChannel( );
+		}
+	}
+
 	/**
 	 * write the data into cache.
 	 * 
@@ -670,12 +800,39 @@ public class ArchiveFileV2 implements IArchiveFile, ArchiveConstants
 		return block;
 	}
 
-	synchronized protected void unloadBlock( Block block ) throws IOException
+	protected void unloadBlock( Block block ) throws IOException
 	{
-		caches.releaseCache( block );
+		if ( !isWritable )
+		{
+			// the read only blocks are shared without reference count
+			return;
+		}
+		synchronized ( this )
+		{
+			caches.releaseCache( block );
+		}
+	}
+
+	Block loadBlock( int blockId ) throws IOException
+	{
+		if ( !isWritable )
+		{
+			Block block = readCaches.get( blockId );
+			if ( block == null )
+			{
+				block = new Block( this, blockId, BLOCK_SIZE );
+				block.refresh( );
+				block = readCaches.putIfAbsent( blockId, block );
+			}
+			return block;
+		}
+		synchronized ( this )
+		{
+			return loadCachedBlock( blockId );
+		}
 	}
 
-	synchronized Block loadBlock( int blockId ) throws IOException
+	private Block loadCachedBlock( int blockId ) throws IOException
 	{
 		Object cacheKey = Integer.valueOf( blockId );
 		Block block = (Block) caches.getCache( cacheKey );
@@ -14,6 +14,8 @@ package org.eclipse.birt.core.archive.compound;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -22,14 +24,36 @@ import org.eclipse.birt.core.archive.compound.v3.Ext2Entry;
 import org.eclipse.birt.core.archive.compound.v3.Ext2File;
 import org.eclipse.birt.core.archive.compound.v3.Ext2FileSystem;
 
+/**
+ * The archive of the ext2 file system.
+ * <p>
+ * The entries whose names start with one of the compressed entry prefixes are
+ * compressed block by block, see {@link CompressedArchiveEntry}. The prefixes
+ * are set by {@link #setCompressedEntries(String[])}, or by the system
+ * property {@link #PROPERTY_COMPRESSED_ENTRIES} as a comma separated list.
+ * An archive containing compressed entries is marked by the property
+ * {@link #PROPERTY_COMPRESSION}, so the entries of the other archives are
+ * never taken as compressed, and by the file system version
+ * {@link Ext2FileSystem#EXT2_VERSION_1}, so the readers not supporting the
+ * compressed entries reject it.
+ */
 public class ArchiveFileV3 implements IArchiveFile
 {
 
 	public static final String PROPERTY_SYSTEM_ID = "archive.system-id";
 	public static final String PROPERTY_DEPEND_ID = "archive.depened-id";
+	public static final String PROPERTY_COMPRESSION = "archive.compression";
+
+	/**
+	 * the system property defines the name prefixes of the compressed entries.
+	 */
+	public static final String PROPERTY_COMPRESSED_ENTRIES = "org.eclipse.birt.core.archive.compound.COMPRESSED_ENTRIES";
+
+	static final String COMPRESSION_DEFLATE = "deflate";
 
 	protected Ext2FileSystem fs;
 	protected HashSet<ArchiveEntryV3> openedEntries = new HashSet<ArchiveEntryV3>( );
+	protected String[] compressedEntries = getDefaultCompressedEntries( );
 
 	public ArchiveFileV3( String fileName, String mode ) throws IOException
 
@@ -77,12 +101,75 @@ public class ArchiveFileV3 implements IArchiveFile
 		fs.setProperty( PROPERTY_DEPEND_ID, id );
 	}
 
+	/**
+	 * set the entries to be compressed. It applies to the entries created
+	 * after.
+	 * 
+	 * @param namePrefixes
+	 *            the name prefixes of the compressed entries, null or empty
+	 *            to compress nothing.
+	 */
+	synchronized public void setCompressedEntries( String[] namePrefixes )
+	{
+		compressedEntries = namePrefixes == null
+				? new String[0]
+				: namePrefixes.clone( );
+	}
+
 	synchronized public ArchiveEntry createEntry( String name ) throws IOException
 	{
 		Ext2File file = fs.createFile( name );
+		if ( isCompressedEntry( name ) )
+		{
+			if ( fs.getProperty( PROPERTY_COMPRESSION ) == null )
+			{
+				fs.setProperty( PROPERTY_COMPRESSION, COMPRESSION_DEFLATE );
+			}
+			// the readers before the compressed entries must reject the
+			// archive instead of reading the compressed data
+			fs.setVersion( Ext2FileSystem.EXT2_VERSION_1 );
+			return new CompressedArchiveEntry( this, file );
+		}
 		return new ArchiveEntryV3( this, file );
 	}
 
+	private boolean isCompressedEntry( String name )
+	{
+		for ( String prefix : compressedEntries )
+		{
+			if ( name.startsWith( prefix ) )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String[] getDefaultCompressedEntries( )
+	{
+		String value = AccessController
+				.doPrivileged( new PrivilegedAction<String>( ) {
+
+					public String run( )
+					{
+						return System.getProperty( PROPERTY_COMPRESSED_ENTRIES );
+					}
+				} );
+		ArrayList<String> prefixes = new ArrayList<String>( );
+		if ( value != null )
+		{
+			for ( String prefix : value.split( "," ) )
+			{
+				prefix = prefix.trim( );
+				if ( prefix.length( ) > 0 )
+				{
+					prefixes.add( prefix );
+				}
+			}
+		}
+		return prefixes.toArray( new String[prefixes.size( )] );
+	}
+
 	public boolean exists( String name )
 	{
 		return fs.existFile( name );
@@ -108,6 +195,17 @@ public class ArchiveFileV3 implements IArchiveFile
 		if ( fs.existFile( name ) )
 		{
 			Ext2File file = fs.openFile( name );
+			if ( fs.getProperty( PROPERTY_COMPRESSION ) != null
+					&& file.length( ) >= CompressedArchiveEntry.HEADER_SIZE )
+			{
+				byte[] header = new byte[CompressedArchiveEntry.HEADER_SIZE];
+				file.seek( 0 );
+				file.read( header, 0, header.length );
+				if ( CompressedArchiveEntry.isCompressed( header ) )
+				{
+					return new CompressedArchiveEntry( this, file, header );
+				}
+			}
 			return new ArchiveEntryV3( this, file );
 		}
 		throw new FileNotFoundException( name );
@@ -0,0 +1,602 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.compound;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.eclipse.birt.core.archive.compound.v3.Ext2File;
+
+/**
+ * An entry whose data is compressed block by block.
+ * <p>
+ * The data is divided into logical blocks of BLOCK_SIZE bytes, each
+ * compressed separately and appended to the ext2 file, so any position can be
+ * read by decompressing a single block. The file is:
+ *
+ * <pre>
+ * header: magic tag(long), version(int), block size(int), length(long), index offset(long)
+ * compressed blocks
+ * index: block count(int), [offset(long), size(int)]*
+ * </pre>
+ *
+ * A block with negative size is stored uncompressed, a block with offset -1
+ * has never been written and is read as zeros. A block changed after it has
+ * been written is written again at the same offset if it still fits in the
+ * space it has taken, otherwise it is appended, and the index is rewritten
+ * after the last block when the entry is flushed. The space left by the
+ * appended blocks is reclaimed when the entry is closed.
+ */
+class CompressedArchiveEntry extends ArchiveEntryV3
+{
+
+	/** The magic tag of the compressed entry: "RPTCMPR1" */
+	static final long COMPRESSED_ENTRY_TAG = 0x525054434D505231L;
+
+	static final int VERSION_0 = 0;
+
+	static final int HEADER_SIZE = 32;
+
+	static final int BLOCK_SIZE = 32 * 1024;
+
+	/**
+	 * the entry is compacted on close if more than 1/COMPACT_RATIO of the
+	 * data is unused.
+	 */
+	static final int COMPACT_RATIO = 4;
+
+	private final int blockSize;
+
+	/**
+	 * logical length of the entry
+	 */
+	private long length;
+
+	/**
+	 * the end of the compressed blocks, the index is written here
+	 */
+	private long dataEnd;
+
+	private long[] blockOffsets;
+	private int[] blockSizes;
+	/**
+	 * the space taken by the block in the file, which is not less than the
+	 * stored size
+	 */
+	private int[] blockCapacities;
+	private int blockCount;
+
+	/**
+	 * the decompressed data of the current block
+	 */
+	private final byte[] blockData;
+	private int blockId;
+	private boolean blockDirty;
+	private boolean indexDirty;
+	/**
+	 * the blocks have been written or removed since the entry is opened
+	 */
+	private boolean modified;
+
+	private byte[] compressedData;
+	private Deflater deflater;
+	private Inflater inflater;
+
+	/**
+	 * create a compressed entry on an empty file.
+	 */
+	CompressedArchiveEntry( ArchiveFileV3 archive, Ext2File file )
+			throws IOException
+	{
+		super( archive, file );
+		this.blockSize = BLOCK_SIZE;
+		this.blockData = new byte[blockSize];
+		this.blockOffsets = new long[16];
+		this.blockSizes = new int[16];
+		this.blockCapacities = new int[16];
+		this.blockId = -1;
+		this.dataEnd = HEADER_SIZE;
+		writeIndex( );
+		writeHeader( );
+	}
+
+	/**
+	 * open a compressed entry from the header and index saved in the file.
+	 */
+	CompressedArchiveEntry( ArchiveFileV3 archive, Ext2File file,
+			byte[] header ) throws IOException
+	{
+		super( archive, file );
+		DataInputStream in = new DataInputStream( new ByteArrayInputStream(
+				header ) );
+		in.readLong( );
+		in.readInt( );
+		this.blockSize = in.readInt( );
+		this.blockData = new byte[blockSize];
+		this.blockId = -1;
+		readIndex( in.readLong( ), in.readLong( ) );
+	}
+
+	/**
+	 * reload the header and index, which may have been changed by the writer.
+	 */
+	public synchronized void refresh( ) throws IOException
+	{
+		if ( blockDirty || indexDirty )
+		{
+			return;
+		}
+		byte[] header = new byte[HEADER_SIZE];
+		readFully( 0, header, HEADER_SIZE );
+		DataInputStream in = new DataInputStream( new ByteArrayInputStream(
+				header ) );
+		in.skipBytes( 16 );
+		readIndex( in.readLong( ), in.readLong( ) );
+		blockId = -1;
+	}
+
+	/**
+	 * test if the header is the header of a compressed entry.
+	 */
+	static boolean isCompressed( byte[] header )
+	{
+		long tag = 0;
+		for ( int i = 0; i < 8; i++ )
+		{
+			tag = ( tag << 8 ) | ( header[i] & 0xFF );
+		}
+		return tag == COMPRESSED_ENTRY_TAG;
+	}
+
+	public synchronized long getLength( ) throws IOException
+	{
+		return length;
+	}
+
+	public synchronized void setLength( long newLength ) throws IOException
+	{
+		if ( newLength < length )
+		{
+			int newBlockCount = (int) ( ( newLength + blockSize - 1 ) / blockSize );
+			if ( blockId >= newBlockCount )
+			{
+				// the block is removed, discard it
+				blockId = -1;
+				blockDirty = false;
+			}
+			if ( blockCount > newBlockCount )
+			{
+				blockCount = newBlockCount;
+			}
+			int tail = (int) ( newLength % blockSize );
+			if ( tail != 0 )
+			{
+				// the data after the new length must be read as zeros
+				loadBlock( newBlockCount - 1 );
+				Arrays.fill( blockData, tail, blockSize, (byte) 0 );
+				blockDirty = true;
+			}
+		}
+		length = newLength;
+		indexDirty = true;
+		modified = true;
+	}
+
+	public synchronized int read( long pos, byte[] b, int off, int len )
+			throws IOException
+	{
+		if ( pos >= length )
+		{
+			return -1;
+		}
+		if ( len > length - pos )
+		{
+			len = (int) ( length - pos );
+		}
+		int readSize = 0;
+		while ( readSize < len )
+		{
+			int blockOff = (int) ( pos % blockSize );
+			int size = Math.min( blockSize - blockOff, len - readSize );
+			loadBlock( (int) ( pos / blockSize ) );
+			System.arraycopy( blockData, blockOff, b, off + readSize, size );
+			readSize += size;
+			pos += size;
+		}
+		return readSize;
+	}
+
+	public synchronized void write( long pos, byte[] b, int off, int len )
+			throws IOException
+	{
+		int writeSize = 0;
+		while ( writeSize < len )
+		{
+			int blockOff = (int) ( pos % blockSize );
+			int size = Math.min( blockSize - blockOff, len - writeSize );
+			loadBlock( (int) ( pos / blockSize ) );
+			System.arraycopy( b, off + writeSize, blockData, blockOff, size );
+			blockDirty = true;
+			writeSize += size;
+			pos += size;
+			if ( pos > length )
+			{
+				length = pos;
+				indexDirty = true;
+			}
+		}
+	}
+
+	public synchronized void flush( ) throws IOException
+	{
+		super.flush( );
+		if ( blockDirty )
+		{
+			flushBlock( );
+		}
+		if ( indexDirty )
+		{
+			writeIndex( );
+			writeHeader( );
+			indexDirty = false;
+		}
+	}
+
+	public synchronized void close( ) throws IOException
+	{
+		try
+		{
+			flush( );
+			if ( modified && getUnusedSize( ) * COMPACT_RATIO > dataEnd
+					- HEADER_SIZE )
+			{
+				compact( );
+			}
+		}
+		finally
+		{
+			if ( deflater != null )
+			{
+				deflater.end( );
+				deflater = null;
+			}
+			if ( inflater != null )
+			{
+				inflater.end( );
+				inflater = null;
+			}
+			super.close( );
+		}
+	}
+
+	/**
+	 * load the block into blockData, the current block is saved first if it
+	 * has been changed.
+	 */
+	private void loadBlock( int id ) throws IOException
+	{
+		if ( id == blockId )
+		{
+			return;
+		}
+		if ( blockDirty )
+		{
+			flushBlock( );
+		}
+		blockId = id;
+		if ( id >= blockCount || blockOffsets[id] == -1 )
+		{
+			Arrays.fill( blockData, (byte) 0 );
+			return;
+		}
+		int storedSize = blockSizes[id];
+		if ( storedSize < 0 )
+		{
+			// stored without compression
+			readFully( blockOffsets[id], blockData, -storedSize );
+			Arrays.fill( blockData, -storedSize, blockSize, (byte) 0 );
+			return;
+		}
+		byte[] data = getCompressedBuffer( storedSize );
+		readFully( blockOffsets[id], data, storedSize );
+		if ( inflater == null )
+		{
+			inflater = new Inflater( );
+		}
+		inflater.reset( );
+		inflater.setInput( data, 0, storedSize );
+		try
+		{
+			int size = 0;
+			while ( size < blockSize && !inflater.finished( ) )
+			{
+				int count = inflater.inflate( blockData, size, blockSize
+						- size );
+				if ( count == 0 && inflater.needsInput( ) )
+				{
+					break;
+				}
+				size += count;
+			}
+			Arrays.fill( blockData, size, blockSize, (byte) 0 );
+		}
+		catch ( DataFormatException ex )
+		{
+			IOException ioex = new IOException( ex.getMessage( ) );
+			ioex.initCause( ex );
+			throw ioex;
+		}
+	}
+
+	/**
+	 * compress the current block and append it to the file.
+	 */
+	private void flushBlock( ) throws IOException
+	{
+		long blockStart = (long) blockId * blockSize;
+		int size = (int) Math.min( blockSize, length - blockStart );
+		if ( size <= 0 )
+		{
+			blockDirty = false;
+			return;
+		}
+		if ( deflater == null )
+		{
+			deflater = new Deflater( Deflater.BEST_SPEED );
+		}
+		deflater.reset( );
+		deflater.setInput( blockData, 0, size );
+		deflater.finish( );
+		// the compressed data is used only if it is smaller
+		byte[] data = getCompressedBuffer( size );
+		int compressedSize = 0;
+		while ( !deflater.finished( ) && compressedSize < size )
+		{
+			int count = deflater.deflate( data, compressedSize, size
+					- compressedSize );
+			if ( count == 0 )
+			{
+				break;
+			}
+			compressedSize += count;
+		}
+		ensureBlockCount( blockId + 1 );
+		int storedSize;
+		if ( deflater.finished( ) && compressedSize < size )
+		{
+			storedSize = compressedSize;
+		}
+		else
+		{
+			// stored without compression
+			data = blockData;
+			storedSize = size;
+		}
+		long offset = blockOffsets[blockId];
+		if ( offset == -1 || storedSize > blockCapacities[blockId] )
+		{
+			int capacity = storedSize;
+			if ( offset != -1 && offset + blockCapacities[blockId] == dataEnd )
+			{
+				// the last block grows over the index, which is written
+				// again when the entry is flushed
+			}
+			else
+			{
+				if ( offset != -1 )
+				{
+					// the block is appended again and its space is left
+					// unused, leave room for it to grow once more
+					capacity = Math.min( blockSize, storedSize + storedSize
+							/ 8 );
+				}
+				offset = dataEnd;
+			}
+			blockOffsets[blockId] = offset;
+			blockCapacities[blockId] = capacity;
+			dataEnd = offset + capacity;
+		}
+		super.write( offset, data, 0, storedSize );
+		blockSizes[blockId] = data == blockData ? -storedSize : storedSize;
+		blockDirty = false;
+		indexDirty = true;
+		modified = true;
+	}
+
+	/**
+	 * @return the size of the data space not used by the blocks
+	 */
+	private long getUnusedSize( )
+	{
+		long usedSize = 0;
+		for ( int i = 0; i < blockCount; i++ )
+		{
+			if ( blockOffsets[i] != -1 )
+			{
+				usedSize += Math.abs( blockSizes[i] );
+			}
+		}
+		return dataEnd - HEADER_SIZE - usedSize;
+	}
+
+	/**
+	 * move the blocks to the head of the file in the order of their offsets,
+	 * so the unused space is reclaimed.
+	 */
+	private void compact( ) throws IOException
+	{
+		Integer[] ids = getBlocksByOffset( );
+		long offset = HEADER_SIZE;
+		for ( int i = 0; i < ids.length; i++ )
+		{
+			int id = ids[i].intValue( );
+			int storedSize = Math.abs( blockSizes[id] );
+			if ( blockOffsets[id] != offset )
+			{
+				// the block is read before it is written, so it can overlap
+				// its old space
+				byte[] data = getCompressedBuffer( storedSize );
+				readFully( blockOffsets[id], data, storedSize );
+				super.write( offset, data, 0, storedSize );
+				blockOffsets[id] = offset;
+			}
+			blockCapacities[id] = storedSize;
+			offset += storedSize;
+		}
+		dataEnd = offset;
+		writeIndex( );
+		writeHeader( );
+		super.setLength( dataEnd + 4 + blockCount * 12 );
+	}
+
+	/**
+	 * @return the id of the written blocks, in the order of their offsets.
+	 */
+	private Integer[] getBlocksByOffset( )
+	{
+		ArrayList<Integer> ids = new ArrayList<Integer>( blockCount );
+		for ( int i = 0; i < blockCount; i++ )
+		{
+			if ( blockOffsets[i] != -1 )
+			{
+				ids.add( Integer.valueOf( i ) );
+			}
+		}
+		Integer[] result = ids.toArray( new Integer[ids.size( )] );
+		Arrays.sort( result, new Comparator<Integer>( ) {
+
+			public int compare( Integer id1, Integer id2 )
+			{
+				long offset1 = blockOffsets[id1.intValue( )];
+				long offset2 = blockOffsets[id2.intValue( )];
+				return offset1 < offset2 ? -1 : ( offset1 == offset2 ? 0 : 1 );
+			}
+		} );
+		return result;
+	}
+
+	private void ensureBlockCount( int count )
+	{
+		if ( count > blockOffsets.length )
+		{
+			int capacity = Math.max( count, blockOffsets.length * 2 );
+			blockOffsets = Arrays.copyOf( blockOffsets, capacity );
+			blockSizes = Arrays.copyOf( blockSizes, capacity );
+			blockCapacities = Arrays.copyOf( blockCapacities, capacity );
+		}
+		for ( int i = blockCount; i < count; i++ )
+		{
+			blockOffsets[i] = -1;
+			blockSizes[i] = 0;
+			blockCapacities[i] = 0;
+		}
+		if ( count > blockCount )
+		{
+			blockCount = count;
+		}
+	}
+
+	private byte[] getCompressedBuffer( int size )
+	{
+		if ( compressedData == null || compressedData.length < size )
+		{
+			compressedData = new byte[Math.max( size, blockSize )];
+		}
+		return compressedData;
+	}
+
+	private void readFully( long pos, byte[] b, int len ) throws IOException
+	{
+		int readSize = 0;
+		while ( readSize < len )
+		{
+			int size = super.read( pos + readSize, b, readSize, len
+					- readSize );
+			if ( size <= 0 )
+			{
+				throw new IOException( "Unexpected end of compressed entry "
+						+ name );
+			}
+			readSize += size;
+		}
+	}
+
+	private void writeHeader( ) throws IOException
+	{
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream( HEADER_SIZE );
+		DataOutputStream out = new DataOutputStream( buffer );
+		out.writeLong( COMPRESSED_ENTRY_TAG );
+		out.writeInt( VERSION_0 );
+		out.writeInt( blockSize );
+		out.writeLong( length );
+		out.writeLong( dataEnd );
+		byte[] bytes = buffer.toByteArray( );
+		super.write( 0, bytes, 0, bytes.length );
+	}
+
+	private void writeIndex( ) throws IOException
+	{
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(
+				4 + blockCount * 12 );
+		DataOutputStream out = new DataOutputStream( buffer );
+		out.writeInt( blockCount );
+		for ( int i = 0; i < blockCount; i++ )
+		{
+			out.writeLong( blockOffsets[i] );
+			out.writeInt( blockSizes[i] );
+		}
+		byte[] bytes = buffer.toByteArray( );
+		super.write( dataEnd, bytes, 0, bytes.length );
+	}
+
+	private void readIndex( long length, long indexOffset ) throws IOException
+	{
+		this.length = length;
+		this.dataEnd = indexOffset;
+		byte[] count = new byte[4];
+		readFully( indexOffset, count, 4 );
+		blockCount = new DataInputStream( new ByteArrayInputStream( count ) )
+				.readInt( );
+		byte[] bytes = new byte[blockCount * 12];
+		readFully( indexOffset + 4, bytes, bytes.length );
+		DataInputStream in = new DataInputStream( new ByteArrayInputStream(
+				bytes ) );
+		blockOffsets = new long[Math.max( blockCount, 16 )];
+		blockSizes = new int[blockOffsets.length];
+		blockCapacities = new int[blockOffsets.length];
+		for ( int i = 0; i < blockCount; i++ )
+		{
+			blockOffsets[i] = in.readLong( );
+			blockSizes[i] = in.readInt( );
+		}
+		// a block may use the space up to the next block
+		Integer[] ids = getBlocksByOffset( );
+		for ( int i = 0; i < ids.length; i++ )
+		{
+			int id = ids[i].intValue( );
+			long end = i + 1 < ids.length
+					? blockOffsets[ids[i + 1].intValue( )]
+					: dataEnd;
+			blockCapacities[id] = (int) Math.min( Integer.MAX_VALUE, end
+					- blockOffsets[id] );
+		}
+	}
+}
@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.compound;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A read only file mapped into memory.
+ * <p>
+ * The file is mapped in chunks of 1G bytes, so files over 2G bytes can be
+ * mapped. The reads copy the data from the mapping directly, they never call
+ * the file system and never wait for each other.
+ * <p>
+ * The mapping is released when the object is collected, and some platforms
+ * don't allow to remove a mapped file until then. So the files are not mapped
+ * on Windows unless the system property
+ * {@link #PROPERTY_MEMORY_MAPPED} is "true", and they are never mapped if it
+ * is "false".
+ */
+public class MappedFile
+{
+
+	/**
+	 * the system property defines if the read only archives are memory mapped.
+	 */
+	public static final String PROPERTY_MEMORY_MAPPED = "org.eclipse.birt.core.archive.compound.MEMORY_MAPPED";
+
+	static final int DEFAULT_CHUNK_SIZE_BITS = 30;
+
+	private static Logger logger = Logger.getLogger( MappedFile.class
+			.getName( ) );
+
+	private final ByteBuffer[] chunks;
+	private final int chunkSizeBits;
+	private final long chunkOffsetMask;
+	private final long length;
+
+	private MappedFile( ByteBuffer[] chunks, int chunkSizeBits, long length )
+	{
+		this.chunks = chunks;
+		this.chunkSizeBits = chunkSizeBits;
+		this.chunkOffsetMask = ( 1L << chunkSizeBits ) - 1;
+		this.length = length;
+	}
+
+	/**
+	 * map the whole file into memory.
+	 *
+	 * @param channel
+	 *            the channel of the file opened for read.
+	 * @return the mapped file, or null if the file should be read by the
+	 *         channel, as the mapping is disabled or fails.
+	 */
+	public static MappedFile map( FileChannel channel )
+	{
+		if ( !isMappingEnabled( ) )
+		{
+			return null;
+		}
+		return map( channel, DEFAULT_CHUNK_SIZE_BITS );
+	}
+
+	static MappedFile map( FileChannel channel, int chunkSizeBits )
+	{
+		try
+		{
+			long length = channel.size( );
+			if ( length == 0 )
+			{
+				return null;
+			}
+			long chunkSize = 1L << chunkSizeBits;
+			int chunkCount = (int) ( ( length + chunkSize - 1 ) >> chunkSizeBits );
+			ByteBuffer[] chunks = new ByteBuffer[chunkCount];
+			for ( int i = 0; i < chunkCount; i++ )
+			{
+				long position = (long) i << chunkSizeBits;
+				long size = Math.min( chunkSize, length - position );
+				chunks[i] = channel.map( FileChannel.MapMode.READ_ONLY,
+						position, size );
+			}
+			return new MappedFile( chunks, chunkSizeBits, length );
+		}
+		catch ( IOException ex )
+		{
+			// run out of address space, read it by the channel
+			logger.log( Level.FINE, "failed to map the file", ex ); //$NON-NLS-1$
+			return null;
+		}
+	}
+
+	private static boolean isMappingEnabled( )
+	{
+		String value = AccessController
+				.doPrivileged( new PrivilegedAction<String>( ) {
+
+					public String run( )
+					{
+						return System.getProperty( PROPERTY_MEMORY_MAPPED );
+					}
+				} );
+		if ( value != null )
+		{
+			return Boolean.valueOf( value ).booleanValue( );
+		}
+		String os = AccessController
+				.doPrivileged( new PrivilegedAction<String>( ) {
+
+					public String run( )
+					{
+						return System.getProperty( "os.name" ); //$NON-NLS-1$
+					}
+				} );
+		return os == null || !os.startsWith( "Windows" ); //$NON-NLS-1$
+	}
+
+	/**
+	 * the length of the file when it is mapped.
+	 */
+	public long length( )
+	{
+		return length;
+	}
+
+	/**
+	 * read the data at <code>position</code> into <code>b</code>.
+	 *
+	 * @param position
+	 *            the position in the file
+	 * @param b
+	 *            the buffer
+	 * @param off
+	 *            the offset in the buffer
+	 * @param len
+	 *            the bytes to read
+	 * @return the bytes read, less than <code>len</code> at the end of file,
+	 *         -1 if the position is beyond the end of file.
+	 */
+	public int read( long position, byte[] b, int off, int len )
+	{
+		if ( position >= length )
+		{
+			return -1;
+		}
+		if ( len > length - position )
+		{
+			len = (int) ( length - position );
+		}
+		int readSize = 0;
+		while ( readSize < len )
+		{
+			// the buffer position is not thread safe, read from a duplicate
+			ByteBuffer chunk = chunks[(int) ( position >> chunkSizeBits )]
+					.duplicate( );
+			chunk.position( (int) ( position & chunkOffsetMask ) );
+			int size = Math.min( len - readSize, chunk.remaining( ) );
+			chunk.get( b, off + readSize, size );
+			readSize += size;
+			position += size;
+		}
+		return readSize;
+	}
+}
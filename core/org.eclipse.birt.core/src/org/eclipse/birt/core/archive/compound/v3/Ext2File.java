@@ -12,6 +12,7 @@
 package org.eclipse.birt.core.archive.compound.v3;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.eclipse.birt.core.i18n.CoreMessages;
 import org.eclipse.birt.core.i18n.ResourceConstants;
@@ -211,11 +212,11 @@ public class Ext2File
 		int fileBlockId = getDataBlock( blockId );
 		if ( size <= blockSize )
 		{
-			fs.readBlock( fileBlockId, blockOff, buffer, off, size );
+			readDataBlock( fileBlockId, blockOff, buffer, off, size );
 		}
 		else
 		{
-			fs.readBlock( fileBlockId, blockOff, buffer, off, blockSize );
+			readDataBlock( fileBlockId, blockOff, buffer, off, blockSize );
 			off += blockSize;
 			int remainSize = size - blockSize;
 			int wholeBlocks = remainSize >> BLOCK_SIZE_BITS;
@@ -223,10 +224,7 @@ public class Ext2File
 			{
 				blockId++;
 				fileBlockId = getDataBlock( blockId );
-				if ( fileBlockId != -1 )
-				{
-					fs.readBlock( fileBlockId, 0, buffer, off, BLOCK_SIZE );
-				}
+				readDataBlock( fileBlockId, 0, buffer, off, BLOCK_SIZE );
 				off += BLOCK_SIZE;
 			}
 			remainSize = remainSize & BLOCK_OFFSET_MASK;
@@ -234,16 +232,28 @@ public class Ext2File
 			{
 				blockId++;
 				fileBlockId = getDataBlock( blockId );
-				if ( fileBlockId != -1 )
-				{
-					fs.readBlock( fileBlockId, 0, buffer, off, remainSize );
-				}
+				readDataBlock( fileBlockId, 0, buffer, off, remainSize );
 			}
 		}
 		position += size;
 		return size;
 	}
 
+	/**
+	 * read the data of a block, the block not allocated in a read only file is
+	 * read as zeros like the cached read.
+	 */
+	private void readDataBlock( int fileBlockId, int blockOff, byte[] buffer,
+			int off, int size ) throws IOException
+	{
+		if ( fileBlockId == -1 )
+		{
+			Arrays.fill( buffer, off, off + size, (byte) 0 );
+			return;
+		}
+		fs.readBlock( fileBlockId, blockOff, buffer, off, size );
+	}
+
 	private int read_with_cache( byte[] buffer, int off, int size )
 			throws IOException
 	{
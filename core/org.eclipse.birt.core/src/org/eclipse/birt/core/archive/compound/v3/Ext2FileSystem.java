@@ -15,10 +15,14 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -26,8 +30,10 @@ import java.util.Map.Entry;
 
 import org.eclipse.birt.core.archive.cache.CacheListener;
 import org.eclipse.birt.core.archive.cache.Cacheable;
+import org.eclipse.birt.core.archive.cache.ConcurrentBlockCache;
 import org.eclipse.birt.core.archive.cache.FileCacheManager;
 import org.eclipse.birt.core.archive.cache.SystemCacheManager;
+import org.eclipse.birt.core.archive.compound.MappedFile;
 import org.eclipse.birt.core.i18n.CoreMessages;
 import org.eclipse.birt.core.i18n.ResourceConstants;
 
@@ -37,11 +43,23 @@ import org.eclipse.birt.core.i18n.ResourceConstants;
  * 
  * 
  * 
+ * A read only file system reads its blocks with positional reads of the file
+ * channel and shares them through a striped cache, so the readers of the
+ * opened files never wait for each other. If the file can be memory mapped,
+ * the opened files read the mapping directly, without the data block cache.
  */
 public class Ext2FileSystem
 {
 
 	private volatile RandomAccessFile rf;
+	/**
+	 * the channel of the read only file, used by the unsynchronized reads
+	 */
+	private volatile FileChannel channel;
+	/**
+	 * the memory mapping of the read only file, null if it is not mapped
+	 */
+	private volatile MappedFile mappedFile;
 	private long length;
 	private int maxBlockId;
 
@@ -55,7 +73,17 @@ public class Ext2FileSystem
 	private final HashMap<String, String> properties = new HashMap<String, String>( );
 	private boolean propertyDirty = true;
 
+	/**
+	 * the version saved in the file header
+	 */
+	private int version = EXT2_VERSION_0;
+	private boolean headerDirty;
+
 	protected final FileCacheManager cacheManager = new FileCacheManager( );
+	/**
+	 * the shared blocks of the read only file system
+	 */
+	protected final ConcurrentBlockCache<Ext2Block> readCacheManager = new ConcurrentBlockCache<Ext2Block>( 0 );
 	/**
 	 * nodes define the logical stream
 	 */
@@ -151,6 +179,11 @@ public class Ext2FileSystem
 				rf = new RandomAccessFile( fileName, "rw" );
 			}
 		}
+		if ( readOnly )
+		{
+			channel = rf.getChannel( );
+			mappedFile = MappedFile.map( channel );
+		}
 		length = rf.length( );
 		maxBlockId = (int) ( ( length + BLOCK_SIZE - 1 ) / BLOCK_SIZE ) + 1;
 
@@ -216,10 +249,13 @@ public class Ext2FileSystem
 			entryTable.clear( );
 			nodeTable.clear( );
 			cacheManager.clear( );
+			readCacheManager.clear( );
 			freeTable.clear( );
 		}
 		finally
 		{
+			channel = null;
+			mappedFile = null;
 			if ( rf != null )
 			{
 				rf.close( );
@@ -266,6 +302,10 @@ public class Ext2FileSystem
 			freeTable.write( );
 			nodeTable.write( NodeTable.INODE_FREE_TABLE );
 			cacheManager.touchAllCaches( new Ext2FileSystemCacheListener( ) );
+			if ( headerDirty )
+			{
+				writeHeader( );
+			}
 		}
 	}
 
@@ -297,11 +337,12 @@ public class Ext2FileSystem
 	public void setCacheSize( int cacheSize )
 	{
 		cacheManager.setMaxCacheSize( cacheSize );
+		readCacheManager.setMaxCacheSize( cacheSize );
 	}
 
 	public int getUsedCacheSize( )
 	{
-		return cacheManager.getUsedCacheSize( );
+		return cacheManager.getUsedCacheSize( ) + readCacheManager.size( );
 	}
 
 	synchronized public Ext2File createFile( String name ) throws IOException
@@ -330,7 +371,8 @@ public class Ext2FileSystem
 		if ( entry != null )
 		{
 			Ext2Node node = nodeTable.getNode( entry.inode );
-			return new Ext2File( this, entry, node );
+			// the mapped data needn't be copied into the data block cache
+			return new Ext2File( this, entry, node, mappedFile == null );
 		}
 
 		if ( !readOnly )
@@ -410,10 +452,38 @@ public class Ext2FileSystem
 		propertyDirty = true;
 	}
 
+	public int getVersion( )
+	{
+		return version;
+	}
+
+	/**
+	 * set the version saved in the file header. It is written when the file
+	 * system is flushed or closed.
+	 * 
+	 * @param version
+	 *            EXT2_VERSION_0 or EXT2_VERSION_1.
+	 */
+	public void setVersion( int version )
+	{
+		assert version == EXT2_VERSION_0 || version == EXT2_VERSION_1;
+		if ( this.version != version )
+		{
+			this.version = version;
+			headerDirty = true;
+		}
+	}
+
 	static final int HEADER_SIZE = 1024;
 	/** the document tag: RPTDOCV2 */
 	public static final long EXT2_MAGIC_TAG = 0x525054444f435632L;
 	static final int EXT2_VERSION_0 = 0;
+	/**
+	 * the version of the file systems with the entries only readable by the
+	 * archives supporting the compressed entries. The readers of version 0
+	 * reject it.
+	 */
+	public static final int EXT2_VERSION_1 = 1;
 	static final int BLOCK_SIZE = 4096;
 	static final int BLOCK_SIZE_BITS = 12;
 	static final int BLOCK_OFFSET_MASK = 0xFFF;
@@ -433,12 +503,13 @@ public class Ext2FileSystem
 					ResourceConstants.NOT_EXT2_ARCHIVE, new Object[]{magicTag} ) );
 		}
 		int version = in.readInt( );
-		if ( version != EXT2_VERSION_0 )
+		if ( version != EXT2_VERSION_0 && version != EXT2_VERSION_1 )
 		{
 			throw new IOException( CoreMessages.getFormattedString(
 					ResourceConstants.UNSUPPORTED_ARCHIVE_VERSION,
 					new Object[]{version} ) );
 		}
+		this.version = version;
 
 		int blockSize = in.readInt( );
 		if ( blockSize != BLOCK_SIZE )
@@ -482,10 +553,11 @@ public class Ext2FileSystem
 		ByteArrayOutputStream bytes = new ByteArrayOutputStream( BLOCK_SIZE );
 		DataOutputStream out = new DataOutputStream( bytes );
 		out.writeLong( EXT2_MAGIC_TAG );
-		out.writeInt( EXT2_VERSION_0 );
+		out.writeInt( version );
 		out.writeInt( BLOCK_SIZE );
 		rf.seek( 0 );
 		rf.write( bytes.toByteArray( ) );
+		headerDirty = false;
 	}
 
 	private void writeProperties( ) throws IOException
@@ -550,13 +622,40 @@ public class Ext2FileSystem
 		return block;
 	}
 
-	synchronized protected void unloadBlock( Block block ) throws IOException
+	protected void unloadBlock( Block block ) throws IOException
 	{
-		cacheManager.releaseCache( block );
+		if ( readOnly )
+		{
+			// the read only blocks are shared without reference count
+			return;
+		}
+		synchronized ( this )
+		{
+			cacheManager.releaseCache( block );
+		}
 	}
 
-	synchronized protected FatBlock loadFatBlock( int blockId )
-			throws IOException
+	protected FatBlock loadFatBlock( int blockId ) throws IOException
+	{
+		if ( readOnly )
+		{
+			FatBlock block = (FatBlock) readCacheManager.get( blockId );
+			if ( block == null )
+			{
+				block = new FatBlock( this, blockId );
+				block.refresh( );
+				block = (FatBlock) readCacheManager.putIfAbsent( blockId,
+						block );
+			}
+			return block;
+		}
+		synchronized ( this )
+		{
+			return loadCachedFatBlock( blockId );
+		}
+	}
+
+	private FatBlock loadCachedFatBlock( int blockId ) throws IOException
 	{
 		FatBlock block = (FatBlock) cacheManager.getCache( blockId );
 		if ( block == null )
@@ -568,7 +667,27 @@ public class Ext2FileSystem
 		return block;
 	}
 
-	synchronized DataBlock loadDataBlock( int blockId ) throws IOException
+	DataBlock loadDataBlock( int blockId ) throws IOException
+	{
+		if ( readOnly )
+		{
+			DataBlock block = (DataBlock) readCacheManager.get( blockId );
+			if ( block == null )
+			{
+				block = new DataBlock( this, blockId );
+				block.refresh( );
+				block = (DataBlock) readCacheManager.putIfAbsent( blockId,
+						block );
+			}
+			return block;
+		}
+		synchronized ( this )
+		{
+			return loadCachedDataBlock( blockId );
+		}
+	}
+
+	private DataBlock loadCachedDataBlock( int blockId ) throws IOException
 	{
 		Object cacheKey = Integer.valueOf( blockId );
 		DataBlock block = (DataBlock) cacheManager.getCache( cacheKey );
@@ -587,7 +706,98 @@ public class Ext2FileSystem
 		readBlock( blockId, offset, buffer, offset, size );
 	}
 
-	synchronized void readBlock( int blockId, int blockOff, byte[] buffer,
+	void readBlock( int blockId, int blockOff, byte[] buffer, int offset,
+			int size ) throws IOException
+	{
+		MappedFile mf = mappedFile;
+		if ( readOnly && mf != null )
+		{
+			long position = ( ( (long) blockId ) << BLOCK_SIZE_BITS )
+					+ blockOff;
+			if ( position < length )
+			{
+				mf.read( position, buffer, offset,
+						(int) Math.min( size, length - position ) );
+			}
+			return;
+		}
+		FileChannel fc = channel;
+		if ( readOnly && fc != null )
+		{
+			readBlockAt( fc, blockId, blockOff, buffer, offset, size );
+			return;
+		}
+		synchronized ( this )
+		{
+			readFileBlock( blockId, blockOff, buffer, offset, size );
+		}
+	}
+
+	/**
+	 * read the block with positional reads, which neither move the file
+	 * pointer nor need the file system lock.
+	 */
+	private void readBlockAt( FileChannel fc, int blockId, int blockOff,
+			byte[] buffer, int offset, int size ) throws IOException
+	{
+		long position = ( ( (long) blockId ) << BLOCK_SIZE_BITS ) + blockOff;
+		if ( position < length )
+		{
+			long remainSize = length - position;
+			if ( remainSize < size )
+			{
+				size = (int) remainSize;
+			}
+			ByteBuffer bytes = ByteBuffer.wrap( buffer, offset, size );
+			try
+			{
+				while ( bytes.hasRemaining( ) )
+				{
+					if ( fc.read( bytes, position + bytes.position( )
+							- offset ) < 0 )
+					{
+						throw new EOFException( );
+					}
+				}
+			}
+			catch ( ClosedChannelException ex )
+			{
+				// a reader interrupted in the read closes the channel and the
+				// file shared by all the readers, so reopen them and read the
+				// block with the file reads, which are not interruptible
+				synchronized ( this )
+				{
+					reopenFile( fc, ex );
+					readFileBlock( blockId, blockOff, buffer, offset, size );
+				}
+			}
+		}
+	}
+
+	/**
+	 * reopen the read only file after its channel is closed by an interrupted
+	 * reader.
+	 * 
+	 * @param closedChannel
+	 *            the channel closed.
+	 * @param ex
+	 *            the exception thrown if the file system has been closed.
+	 */
+	private void reopenFile( FileChannel closedChannel,
+			ClosedChannelException ex ) throws IOException
+	{
+		if ( rf == null )
+		{
+			throw ex;
+		}
+		if ( channel == closedChannel )
+		{
+			rf = new RandomAccessFile( fileName, "r" );
+			channel = rf.getChannel( );
+		}
+	}
+
+	private void readFileBlock( int blockId, int blockOff, byte[] buffer,
 			int offset, int size ) throws IOException
 	{
 		assert buffer != null;
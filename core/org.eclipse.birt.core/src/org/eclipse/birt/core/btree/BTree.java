@@ -27,11 +27,17 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.eclipse.birt.core.archive.cache.ConcurrentBlockCache;
 import org.eclipse.birt.core.i18n.CoreMessages;
 import org.eclipse.birt.core.i18n.ResourceConstants;
 
 /**
  * 
+ * A read only btree can be used by several threads at the same time. Its nodes
+ * never change once loaded, so they are loaded without locking the tree and
+ * shared by all the threads in a concurrent cache, and only the block reads
+ * of the file are serialized. A cursor is used by one thread, but many
+ * cursors can scan the tree at the same time.
  * 
  * @param <K>
  * @param <V>
@@ -58,8 +64,11 @@ public class BTree<K, V> implements BTreeConstants
 	private int totalKeys;
 	private int totalValues;
 	private int cacheSize;
+	private boolean prefixCompression;
 
 	protected boolean readOnly;
+	// the node cache of the read only tree
+	private ConcurrentBlockCache<BTreeNode<K, V>> readCache;
 	protected BTreeSerializer<K> keySerializer;
 	protected BTreeSerializer<V> valueSerializer;
 	protected Comparator<K> comparator;
@@ -102,6 +111,11 @@ public class BTree<K, V> implements BTreeConstants
 		this.valueSize = option.valueSize;
 		this.headNodeId = option.headNodeId;
 		this.cacheSize = option.cacheSize;
+		this.prefixCompression = option.prefixCompression;
+		if ( prefixCompression )
+		{
+			this.version = BTREE_VERSION_1;
+		}
 
 		if ( file != null )
 		{
@@ -122,6 +136,14 @@ public class BTree<K, V> implements BTreeConstants
 				file.writeBlock( headNodeId, buffer.toByteArray( ) );
 			}
 			totalBlocks = file.getTotalBlock( );
+			if ( readOnly )
+			{
+				file = new ReadOnlyNodeFile( file );
+			}
+		}
+		if ( readOnly )
+		{
+			readCache = new ConcurrentBlockCache<BTreeNode<K, V>>( cacheSize );
 		}
 	}
 
@@ -161,6 +183,10 @@ public class BTree<K, V> implements BTreeConstants
 		finally
 		{
 			file = null;
+			if ( readCache != null )
+			{
+				readCache.clear( );
+			}
 		}
 	}
 
@@ -373,6 +399,150 @@ public class BTree<K, V> implements BTreeConstants
 		}
 	}
 
+	/**
+	 * load the entries sorted by the keys into an empty btree.
+	 * <p>
+	 * The leaf nodes are filled one after another and the index nodes are
+	 * built bottom-up from the first keys of their children, so each node is
+	 * written once and full, instead of being searched and split for every
+	 * key. The entries of the same key are merged as by {@link #insert}. If
+	 * the btree is not empty, the entries are inserted one by one.
+	 * 
+	 * @param entries
+	 *            the entries in the ascending order of the keys.
+	 * @throws IOException
+	 * @throws IllegalArgumentException
+	 *             if the entries are not sorted.
+	 */
+	public void bulkLoad( Iterator<? extends Map.Entry<K, V>> entries )
+			throws IOException
+	{
+		if ( readOnly )
+		{
+			throw new IOException(
+					CoreMessages.getString( ResourceConstants.READ_ONLY_TREE ) );
+		}
+		if ( rootNodeId != -1 )
+		{
+			while ( entries.hasNext( ) )
+			{
+				Map.Entry<K, V> entry = entries.next( );
+				insertEntry( entry.getKey( ), entry.getValue( ) );
+			}
+			return;
+		}
+
+		// the first key and the node id of the nodes in the current level
+		ArrayList<IndexEntry<K, V>> children = new ArrayList<IndexEntry<K, V>>( );
+		LeafNode<K, V> leafNode = null;
+		try
+		{
+			BTreeValue<K> lastKey = null;
+			while ( entries.hasNext( ) )
+			{
+				Map.Entry<K, V> entry = entries.next( );
+				K k = entry.getKey( );
+				if ( !allowNullKey && k == null )
+				{
+					throw new NullPointerException( "key can not be null" );
+				}
+				BTreeValue<K> key = createKey( k );
+				@SuppressWarnings("unchecked")
+				BTreeValue<V>[] values = (BTreeValue<V>[]) new BTreeValue[1];
+				if ( hasValue( ) )
+				{
+					values[0] = createValue( entry.getValue( ) );
+				}
+				if ( lastKey != null )
+				{
+					int result = compare( lastKey, key );
+					if ( result > 0 )
+					{
+						throw new IllegalArgumentException(
+								"the keys are not sorted: " + k ); //$NON-NLS-1$
+					}
+					if ( result == 0 )
+					{
+						leafNode.insert( key, values );
+						continue;
+					}
+				}
+				if ( leafNode == null || !leafNode.append( key, values ) )
+				{
+					LeafNode<K, V> newNode = createLeafNode( );
+					newNode.setNextNodeId( -1 );
+					if ( leafNode != null )
+					{
+						newNode.setPrevNodeId( leafNode.getNodeId( ) );
+						leafNode.setNextNodeId( newNode.getNodeId( ) );
+						leafNode.unlock( );
+					}
+					leafNode = newNode;
+					leafNode.append( key, values );
+					children.add( new IndexEntry<K, V>( null, key, leafNode
+							.getNodeId( ) ) );
+				}
+				lastKey = key;
+			}
+		}
+		finally
+		{
+			if ( leafNode != null )
+			{
+				leafNode.unlock( );
+			}
+		}
+		if ( children.isEmpty( ) )
+		{
+			return;
+		}
+		totalLevels = 1;
+
+		while ( children.size( ) > 1 )
+		{
+			ArrayList<IndexEntry<K, V>> parents = new ArrayList<IndexEntry<K, V>>( );
+			IndexNode<K, V> indexNode = null;
+			try
+			{
+				int lastIndex = children.size( ) - 1;
+				for ( int i = 0; i <= lastIndex; i++ )
+				{
+					IndexEntry<K, V> child = children.get( i );
+					// an index node can't have the first child only, so the
+					// last child goes to the full node
+					if ( indexNode == null
+							|| !indexNode.append( child.getKey( ),
+									child.getChildNodeId( ), i == lastIndex ) )
+					{
+						// the key of the first child moves to the parent
+						IndexNode<K, V> newNode = createIndexNode( );
+						newNode.setNextNodeId( -1 );
+						newNode.setFirstChild( child.getChildNodeId( ) );
+						if ( indexNode != null )
+						{
+							newNode.setPrevNodeId( indexNode.getNodeId( ) );
+							indexNode.setNextNodeId( newNode.getNodeId( ) );
+							indexNode.unlock( );
+						}
+						indexNode = newNode;
+						parents.add( new IndexEntry<K, V>( null, child
+								.getKey( ), indexNode.getNodeId( ) ) );
+					}
+				}
+			}
+			finally
+			{
+				if ( indexNode != null )
+				{
+					indexNode.unlock( );
+				}
+			}
+			children = parents;
+			totalLevels++;
+		}
+		rootNodeId = children.get( 0 ).getChildNodeId( );
+	}
+
 	public int getTotalKeys( )
 	{
 		return totalKeys;
@@ -481,6 +651,51 @@ public class BTree<K, V> implements BTreeConstants
 		return new BTreeCursor<K, V>( this );
 	}
 
+	/**
+	 * create a cursor which scans the keys from <code>fromKey</code>
+	 * (inclusive) to <code>toKey</code> (exclusive).
+	 * 
+	 * @param fromKey
+	 *            the lowest key, null to scan from the first key.
+	 * @param toKey
+	 *            the key after the highest key, null to scan to the last key.
+	 * @return the cursor, before the first key in the range.
+	 * @throws IOException
+	 */
+	public BTreeCursor<K, V> createCursor( K fromKey, K toKey )
+			throws IOException
+	{
+		return new BTreeCursor<K, V>( this, fromKey == null
+				? null
+				: createKey( fromKey ), toKey == null
+				? null
+				: createKey( toKey ) );
+	}
+
+	/**
+	 * set the number of nodes kept in memory, the nodes out of the cache are
+	 * written back and released as the other nodes are loaded.
+	 * 
+	 * @param cacheSize
+	 *            the maximum node count.
+	 */
+	public void setCacheSize( int cacheSize )
+	{
+		synchronized ( this )
+		{
+			this.cacheSize = cacheSize;
+		}
+		if ( readCache != null )
+		{
+			readCache.setMaxCacheSize( cacheSize );
+		}
+	}
+
+	public int getCacheSize( )
+	{
+		return cacheSize;
+	}
+
 	int compare( BTreeValue<K> k1, BTreeValue<K> k2 ) throws IOException
 	{
 		K key1 = getKey( k1 );
@@ -587,21 +802,43 @@ public class BTree<K, V> implements BTreeConstants
 		}
 	}
 
-	synchronized BTreeNode<K, V> loadBTreeNode( int nodeId ) throws IOException
+	BTreeNode<K, V> loadBTreeNode( int nodeId ) throws IOException
 	{
-		BTreeNode<K, V> node = nodeCaches.get( nodeId );
-		if ( node != null )
+		if ( readOnly )
 		{
+			// two threads may read the same node, the first one cached is used
+			BTreeNode<K, V> node = readCache.get( nodeId );
+			if ( node == null )
+			{
+				node = readCache.putIfAbsent( nodeId, readBTreeNode( nodeId ) );
+			}
+			return node;
+		}
+		synchronized ( this )
+		{
+			BTreeNode<K, V> node = nodeCaches.get( nodeId );
+			if ( node != null )
+			{
+				node.lock( );
+				return node;
+			}
+			node = readBTreeNode( nodeId );
 			node.lock( );
+			nodeCaches.put( Integer.valueOf( nodeId ), node );
 			return node;
 		}
+	}
 
+	private BTreeNode<K, V> readBTreeNode( int nodeId ) throws IOException
+	{
+		NodeFile file = this.file;
 		if ( file == null )
 		{
 			throw new IOException( CoreMessages.getFormattedString(
 					ResourceConstants.CANNOT_LOAD_NODE, new Object[]{nodeId} ) );
 		}
 
+		BTreeNode<K, V> node;
 		NodeInputStream in = new NodeInputStream( file, nodeId );
 		try
 		{
@@ -626,8 +863,6 @@ public class BTree<K, V> implements BTreeConstants
 			node.read( input );
 			node.setUsedBlocks( in.getUsedBlocks( ) );
 			node.setDirty( false );
-			node.lock( );
-			nodeCaches.put( Integer.valueOf( nodeId ), node );
 			return node;
 		}
 		finally
@@ -813,6 +1048,102 @@ public class BTree<K, V> implements BTreeConstants
 		return size + bytes.length;
 	}
 
+	/**
+	 * write the key of a leaf entry. If the prefix compression is enabled, the
+	 * key is written as the length of the prefix shared with the previous key
+	 * in the same node and the remaining bytes.
+	 */
+	int writeKey( DataOutput out, BTreeValue<K> prevKey, BTreeValue<K> key )
+			throws IOException
+	{
+		if ( !prefixCompression )
+		{
+			return writeKey( out, key );
+		}
+		int size = 0;
+		if ( allowNullKey )
+		{
+			if ( key == NULL_KEY )
+			{
+				out.writeBoolean( true );
+				return 1;
+			}
+			out.writeBoolean( false );
+			size = 1;
+		}
+		byte[] bytes = key.getBytes( );
+		int keySize = getKeySize( );
+		if ( keySize != 0 && keySize != bytes.length )
+		{
+			throw new IOException(
+					CoreMessages
+							.getString( ResourceConstants.MISMATCH_KEY_LENGTH ) );
+		}
+		int prefixSize = getPrefixSize( prevKey, bytes );
+		int suffixSize = bytes.length - prefixSize;
+		BTreeUtils.writeVarInt( out, prefixSize );
+		size += BTreeUtils.getVarIntSize( prefixSize );
+		if ( keySize == 0 )
+		{
+			BTreeUtils.writeVarInt( out, suffixSize );
+			size += BTreeUtils.getVarIntSize( suffixSize );
+		}
+		out.write( bytes, prefixSize, suffixSize );
+		return size + suffixSize;
+	}
+
+	BTreeValue<K> readKey( DataInput in, BTreeValue<K> prevKey )
+			throws IOException
+	{
+		if ( !prefixCompression )
+		{
+			return readKey( in );
+		}
+		if ( allowNullKey )
+		{
+			boolean isNull = in.readBoolean( );
+			if ( isNull )
+			{
+				return NULL_KEY;
+			}
+		}
+		int prefixSize = BTreeUtils.readVarInt( in );
+		int keySize = getKeySize( );
+		int suffixSize = keySize == 0
+				? BTreeUtils.readVarInt( in )
+				: keySize - prefixSize;
+		byte[] keyBytes = new byte[prefixSize + suffixSize];
+		if ( prefixSize > 0 )
+		{
+			byte[] prevBytes = prevKey == null ? null : prevKey.getBytes( );
+			if ( prevBytes == null || prevBytes.length < prefixSize )
+			{
+				throw new IOException(
+						CoreMessages
+								.getString( ResourceConstants.MISMATCH_KEY_LENGTH ) );
+			}
+			System.arraycopy( prevBytes, 0, keyBytes, 0, prefixSize );
+		}
+		in.readFully( keyBytes, prefixSize, suffixSize );
+		return new BTreeValue<K>( keyBytes );
+	}
+
+	private int getPrefixSize( BTreeValue<K> prevKey, byte[] bytes )
+	{
+		if ( prevKey == null || prevKey == NULL_KEY )
+		{
+			return 0;
+		}
+		byte[] prevBytes = prevKey.getBytes( );
+		int length = Math.min( prevBytes.length, bytes.length );
+		int size = 0;
+		while ( size < length && prevBytes[size] == bytes[size] )
+		{
+			size++;
+		}
+		return size;
+	}
+
 	BTreeValue<K> readKey( DataInput in ) throws IOException
 	{
 		if ( allowNullKey )
@@ -945,6 +1276,43 @@ public class BTree<K, V> implements BTreeConstants
 		return keySize;
 	}
 
+	/**
+	 * the size of the key of a leaf entry following the previous key.
+	 */
+	int getKeySize( BTreeValue<K> prevKey, BTreeValue<K> key )
+	{
+		if ( !prefixCompression )
+		{
+			return getKeySize( key );
+		}
+		int size = 0;
+		if ( allowNullKey )
+		{
+			if ( key == NULL_KEY )
+			{
+				return 1;
+			}
+			size = 1;
+		}
+		byte[] bytes = key.getBytes( );
+		int prefixSize = getPrefixSize( prevKey, bytes );
+		int suffixSize = bytes.length - prefixSize;
+		size += BTreeUtils.getVarIntSize( prefixSize ) + suffixSize;
+		if ( keySize == 0 )
+		{
+			size += BTreeUtils.getVarIntSize( suffixSize );
+		}
+		return size;
+	}
+
+	/**
+	 * @return true if the keys in the leaf nodes are prefix compressed.
+	 */
+	public boolean isPrefixCompression( )
+	{
+		return prefixCompression;
+	}
+
 	int getValueSize( BTreeValue<V> value )
 	{
 		if ( valueSize == 0 )
@@ -1032,6 +1400,67 @@ public class BTree<K, V> implements BTreeConstants
 		}
 	}
 
+	/**
+	 * the file of the read only tree. The threads loading the nodes read the
+	 * blocks one at a time, as the files are not safe to read concurrently.
+	 */
+	protected static class ReadOnlyNodeFile implements NodeFile
+	{
+
+		private final BTreeFile file;
+
+		ReadOnlyNodeFile( BTreeFile file )
+		{
+			this.file = file;
+		}
+
+		public int getTotalBlock( ) throws IOException
+		{
+			return file.getTotalBlock( );
+		}
+
+		public int allocBlock( ) throws IOException
+		{
+			throw new IOException(
+					CoreMessages.getString( ResourceConstants.READ_ONLY_TREE ) );
+		}
+
+		public void freeBlock( int blockId ) throws IOException
+		{
+			throw new IOException(
+					CoreMessages.getString( ResourceConstants.READ_ONLY_TREE ) );
+		}
+
+		public Object lock( ) throws IOException
+		{
+			return file.lock( );
+		}
+
+		public void readBlock( int blockId, byte[] bytes ) throws IOException
+		{
+			synchronized ( file )
+			{
+				file.readBlock( blockId, bytes );
+			}
+		}
+
+		public void unlock( Object lock ) throws IOException
+		{
+			file.unlock( lock );
+		}
+
+		public void writeBlock( int blockId, byte[] bytes ) throws IOException
+		{
+			throw new IOException(
+					CoreMessages.getString( ResourceConstants.READ_ONLY_TREE ) );
+		}
+
+		public void close( ) throws IOException
+		{
+			file.close( );
+		}
+	}
+
 	protected void readTreeHead( DataInput in ) throws IOException
 	{
 		long tag = in.readLong( );
@@ -1042,13 +1471,14 @@ public class BTree<K, V> implements BTreeConstants
 					new Object[]{Long.toHexString( tag )} ) );
 		}
 		version = in.readInt( );
-		if ( version != BTREE_VERSION_0 )
+		if ( version != BTREE_VERSION_0 && version != BTREE_VERSION_1 )
 		{
 			throw new IOException( CoreMessages.getFormattedString(
 					ResourceConstants.UNSUPPORTED_VERSION,
 					new Object[]{version} ) );
 		}
 		readV0( in );
+		prefixCompression = version == BTREE_VERSION_1;
 	}
 
 	private void readV0( DataInput in ) throws IOException
@@ -1068,7 +1498,7 @@ public class BTree<K, V> implements BTreeConstants
 	protected void writeTreeHead( DataOutput out ) throws IOException
 	{
 		out.writeLong( MAGIC_TAG );
-		out.writeInt( BTREE_VERSION_0 );
+		out.writeInt( version );
 		out.writeBoolean( allowDuplicate );
 		out.writeInt( keySize );
 		out.writeBoolean( hasValue );
@@ -1098,6 +1528,7 @@ public class BTree<K, V> implements BTreeConstants
 		System.out.println( "hasValue:" + hasValue );
 		System.out.println( "allowDuplicate:" + allowDuplicate );
 		System.out.println( "valueSize:" + valueSize );
+		System.out.println( "prefixCompression:" + prefixCompression );
 		System.out.println( "rootNodeId" );
 		System.out.println( "freeNodeId" );
 		System.out.println( "totalLevles:" + totalLevels );
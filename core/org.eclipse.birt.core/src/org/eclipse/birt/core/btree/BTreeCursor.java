@@ -18,16 +18,35 @@ import java.util.Collection;
 import org.eclipse.birt.core.i18n.CoreMessages;
 import org.eclipse.birt.core.i18n.ResourceConstants;
 
+/**
+ * The cursor of the btree. The cursor may be limited to the keys from the
+ * lowest key (inclusive) to the highest key (exclusive), then it moves only
+ * among the keys in the range.
+ * 
+ * A cursor is used by one thread. The cursors of a read only btree can be
+ * used by several threads at the same time.
+ */
 public class BTreeCursor<K, V>
 {
 
 	protected BTree<K, V> btree;
 	protected LeafEntry<K, V> entry;
 	protected boolean beforeFirst;
+	// the range of the keys, null if it is not limited
+	protected BTreeValue<K> lowKey;
+	protected BTreeValue<K> highKey;
 
 	BTreeCursor( BTree<K, V> btree )
+	{
+		this( btree, null, null );
+	}
+
+	BTreeCursor( BTree<K, V> btree, BTreeValue<K> lowKey,
+			BTreeValue<K> highKey )
 	{
 		this.btree = btree;
+		this.lowKey = lowKey;
+		this.highKey = highKey;
 		// before the first entry...
 		this.entry = null;
 		beforeFirst = true;
@@ -103,7 +122,27 @@ public class BTreeCursor<K, V>
 	 */
 	public boolean first( ) throws IOException
 	{
-		LeafEntry<K, V> tgtEntry = btree.getFirstEntry( );
+		LeafEntry<K, V> tgtEntry;
+		if ( lowKey == null )
+		{
+			tgtEntry = btree.getFirstEntry( );
+		}
+		else
+		{
+			tgtEntry = btree.findEntry( btree.getKey( lowKey ) );
+			if ( tgtEntry == null )
+			{
+				tgtEntry = btree.getFirstEntry( );
+			}
+			else if ( btree.compare( tgtEntry.getKey( ), lowKey ) < 0 )
+			{
+				tgtEntry = getNextEntry( tgtEntry );
+			}
+		}
+		if ( tgtEntry != null && !isBelowHighKey( tgtEntry ) )
+		{
+			tgtEntry = null;
+		}
 		if ( tgtEntry != null )
 		{
 			btree.lockEntry( tgtEntry );
@@ -114,7 +153,11 @@ public class BTreeCursor<K, V>
 			entry = tgtEntry;
 			return true;
 		}
-		// no first entry means the tree is empty, move to the before first
+		// no first entry means the range is empty, move to the before first
+		if ( entry != null )
+		{
+			btree.unlockEntry( entry );
+		}
 		entry = null;
 		beforeFirst = true;
 		return false;
@@ -125,7 +168,23 @@ public class BTreeCursor<K, V>
 	 */
 	public boolean last( ) throws IOException
 	{
-		LeafEntry<K, V> tgtEntry = btree.getLastEntry( );
+		LeafEntry<K, V> tgtEntry;
+		if ( highKey == null )
+		{
+			tgtEntry = btree.getLastEntry( );
+		}
+		else
+		{
+			tgtEntry = btree.findEntry( btree.getKey( highKey ) );
+			if ( tgtEntry != null && !isBelowHighKey( tgtEntry ) )
+			{
+				tgtEntry = getPrevEntry( tgtEntry );
+			}
+		}
+		if ( tgtEntry != null && !isAboveLowKey( tgtEntry ) )
+		{
+			tgtEntry = null;
+		}
 		if ( tgtEntry != null )
 		{
 			btree.lockEntry( tgtEntry );
@@ -140,7 +199,11 @@ public class BTreeCursor<K, V>
 			entry = tgtEntry;
 			return true;
 		}
-		// no last entry means the tree is empty, move to the after last
+		// no last entry means the range is empty, move to the after last
+		if ( entry != null )
+		{
+			btree.unlockEntry( entry );
+		}
 		entry = null;
 		beforeFirst = false;
 		return false;
@@ -159,6 +222,16 @@ public class BTreeCursor<K, V>
 	public boolean moveTo( K key ) throws IOException
 	{
 		LeafEntry<K, V> tgtEntry = btree.findEntry( key );
+		if ( tgtEntry != null && !isBelowHighKey( tgtEntry ) )
+		{
+			// the key is after the range, move to the last in the range
+			last( );
+			return false;
+		}
+		if ( tgtEntry != null && !isAboveLowKey( tgtEntry ) )
+		{
+			tgtEntry = null;
+		}
 		if ( tgtEntry != null )
 		{
 			btree.lockEntry( tgtEntry );
@@ -183,6 +256,17 @@ public class BTreeCursor<K, V>
 		return false;
 	}
 
+	private boolean isAboveLowKey( LeafEntry<K, V> entry ) throws IOException
+	{
+		return lowKey == null || btree.compare( entry.getKey( ), lowKey ) >= 0;
+	}
+
+	private boolean isBelowHighKey( LeafEntry<K, V> entry ) throws IOException
+	{
+		return highKey == null
+				|| btree.compare( entry.getKey( ), highKey ) < 0;
+	}
+
 	private LeafEntry<K, V> getPrevEntry( LeafEntry<K, V> entry )
 			throws IOException
 	{
@@ -250,6 +334,10 @@ public class BTreeCursor<K, V>
 			return false;
 		}
 		LeafEntry<K, V> tgtEntry = getPrevEntry( entry );
+		if ( tgtEntry != null && !isAboveLowKey( tgtEntry ) )
+		{
+			tgtEntry = null;
+		}
 		if ( tgtEntry != null )
 		{
 			btree.lockEntry( tgtEntry );
@@ -282,6 +370,10 @@ public class BTreeCursor<K, V>
 		}
 
 		LeafEntry<K, V> tgtEntry = getNextEntry( entry );
+		if ( tgtEntry != null && !isBelowHighKey( tgtEntry ) )
+		{
+			tgtEntry = null;
+		}
 		if ( tgtEntry != null )
 		{
 			btree.lockEntry( tgtEntry );
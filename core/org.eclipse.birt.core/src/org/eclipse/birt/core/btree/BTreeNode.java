@@ -77,12 +77,19 @@ abstract public class BTreeNode<K, V> implements BTreeConstants
 
 	public void lock( )
 	{
-		lockCount++;
+		// the nodes of the read only tree are shared without locks
+		if ( !btree.readOnly )
+		{
+			lockCount++;
+		}
 	}
 
 	public void unlock( )
 	{
-		lockCount--;
+		if ( !btree.readOnly )
+		{
+			lockCount--;
+		}
 	}
 
 	public boolean isLocked( )
@@ -16,6 +16,11 @@ import java.util.Comparator;
 public class BTreeOption<K, V>
 {
 
+	/**
+	 * the default number of nodes cached by the btree.
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 13;
+
 	boolean readOnly;
 	int keySize;
 	int valueSize;
@@ -30,6 +35,7 @@ public class BTreeOption<K, V>
 
 	int headNodeId;
 	int cacheSize;
+	boolean prefixCompression;
 
 	public BTreeOption( )
 	{
@@ -45,7 +51,8 @@ public class BTreeOption<K, V>
 		valueSerializer = new JavaSerializer<V>( );
 
 		headNodeId = BTreeConstants.HEAD_BLOCK_ID;
-		cacheSize = 13;
+		cacheSize = DEFAULT_CACHE_SIZE;
+		prefixCompression = false;
 
 		file = null;
 	}
@@ -126,8 +133,41 @@ public class BTreeOption<K, V>
 		this.headNodeId = headNodeId;
 	}
 
+	/**
+	 * set the number of nodes kept in memory by the btree. The nodes are
+	 * 4K bytes each, a larger cache saves reading and writing the nodes when
+	 * the keys are not accessed in order.
+	 * 
+	 * @param cacheSize
+	 *            the maximum node count.
+	 */
 	public void setCacheSize( int cacheSize )
 	{
 		this.cacheSize = cacheSize;
 	}
+
+	public int getCacheSize( )
+	{
+		return cacheSize;
+	}
+
+	/**
+	 * set if the keys in the leaf nodes are stored as the length of the prefix
+	 * shared with the previous key and the remaining bytes. It is used only
+	 * when the btree is created, the opened btree uses the setting saved in
+	 * the file. The compressed btree can't be read by the versions which
+	 * don't support it.
+	 * 
+	 * @param prefixCompression
+	 *            true to compress the keys.
+	 */
+	public void setPrefixCompression( boolean prefixCompression )
+	{
+		this.prefixCompression = prefixCompression;
+	}
+
+	public boolean getPrefixCompression( )
+	{
+		return prefixCompression;
+	}
 }
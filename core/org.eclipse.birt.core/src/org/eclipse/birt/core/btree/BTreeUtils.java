@@ -11,6 +11,10 @@
 
 package org.eclipse.birt.core.btree;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 public class BTreeUtils
 {
 
@@ -27,4 +31,43 @@ public class BTreeUtils
 		b[2] = (byte) ( ( v >>> 8 ) & 0xFF );
 		b[3] = (byte) ( ( v >>> 0 ) & 0xFF );
 	}
+
+	/**
+	 * write a non-negative integer in 1 to 5 bytes, 7 bits per byte with the
+	 * high bit set if more bytes follow.
+	 */
+	static public void writeVarInt( DataOutput out, int v ) throws IOException
+	{
+		while ( ( v & ~0x7F ) != 0 )
+		{
+			out.writeByte( ( v & 0x7F ) | 0x80 );
+			v >>>= 7;
+		}
+		out.writeByte( v );
+	}
+
+	static public int readVarInt( DataInput in ) throws IOException
+	{
+		int v = 0;
+		int shift = 0;
+		int b;
+		do
+		{
+			b = in.readUnsignedByte( );
+			v |= ( b & 0x7F ) << shift;
+			shift += 7;
+		} while ( ( b & 0x80 ) != 0 );
+		return v;
+	}
+
+	static public int getVarIntSize( int v )
+	{
+		int size = 1;
+		while ( ( v & ~0x7F ) != 0 )
+		{
+			v >>>= 7;
+			size++;
+		}
+		return size;
+	}
 }
@@ -270,6 +270,30 @@ public class IndexNode<K, V> extends BTreeNode<K, V>
 		return;
 	}
 
+	/**
+	 * append an index entry after the last entry of the node, the key must be
+	 * greater than the keys in the node.
+	 * 
+	 * @param force
+	 *            true to append the entry even if the node is full.
+	 * @return false if the node is full, nothing is appended.
+	 */
+	boolean append( BTreeValue<K> key, int childNodeId, boolean force )
+	{
+		IndexEntry<K, V> newEntry = new IndexEntry<K, V>( this, key,
+				childNodeId );
+		int entrySize = getEntrySize( newEntry );
+		if ( !force && nodeSize + entrySize > MAX_NODE_SIZE
+				&& entries.size( ) >= MIN_ENTRY_COUNT )
+		{
+			return false;
+		}
+		entries.add( newEntry );
+		nodeSize += entrySize;
+		dirty = true;
+		return true;
+	}
+
 	public boolean needSplit( )
 	{
 		return nodeSize > MAX_NODE_SIZE && entries.size( ) > MIN_ENTRY_COUNT;
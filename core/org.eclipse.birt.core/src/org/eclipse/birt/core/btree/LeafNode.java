@@ -41,6 +41,10 @@ import org.eclipse.birt.core.i18n.ResourceConstants;
  * 
  * </pre>
  * 
+ * If the btree uses the prefix compression, each key is saved as the length
+ * of the prefix shared with the previous key in the node and the remaining
+ * bytes, the first key is saved in full.
+ * 
  * 
  * @param <K>
  *            the key type
@@ -210,6 +214,54 @@ class LeafNode<K, V> extends BTreeNode<K, V>
 
 		index = -( index + 1 );
 		// now we should insert the entry before the insert point
+		LeafEntry<K, V> entry = new LeafEntry<K, V>( this, key,
+				createValues( vs ) );
+		insert( index, entry );
+
+		// if the node size is larger than the block size, split into two nodes.
+		if ( btree.hasValue( ) )
+		{
+			btree.increaseTotalValues( vs.length );
+		}
+		btree.increaseTotalKeys( );
+		return entry;
+	}
+
+	/**
+	 * append an entry after the last entry of the node, the key must be greater
+	 * than the keys in the node. It is used to fill the node by the sorted
+	 * keys.
+	 * 
+	 * @return false if the node is full, nothing is appended.
+	 */
+	boolean append( BTreeValue<K> key, BTreeValue<V>[] vs ) throws IOException
+	{
+		assert vs != null;
+		assert vs.length > 0;
+		LeafEntry<K, V> entry = new LeafEntry<K, V>( this, key,
+				createValues( vs ) );
+		LeafEntry<K, V> last = getLastEntry( );
+		int entrySize = getEntrySize( last == null ? null : last.getKey( ),
+				entry );
+		// the node would be split if it were inserted
+		if ( nodeSize + entrySize > MAX_NODE_SIZE
+				&& entries.size( ) >= MIN_ENTRY_COUNT )
+		{
+			return false;
+		}
+		dirty = true;
+		insert( entries.size( ), entry );
+		if ( btree.hasValue( ) )
+		{
+			btree.increaseTotalValues( vs.length );
+		}
+		btree.increaseTotalKeys( );
+		return true;
+	}
+
+	private BTreeValues<V> createValues( BTreeValue<V>[] vs )
+			throws IOException
+	{
 		BTreeValues<V> values = null;
 		if ( btree.hasValue( ) )
 		{
@@ -230,16 +282,7 @@ class LeafNode<K, V> extends BTreeNode<K, V>
 				values = new SingleValueList<K, V>( btree, vs[0] );
 			}
 		}
-		LeafEntry<K, V> entry = new LeafEntry<K, V>( this, key, values );
-		insert( index, entry );
-
-		// if the node size is larger than the block size, split into two nodes.
-		if ( btree.hasValue( ) )
-		{
-			btree.increaseTotalValues( vs.length );
-		}
-		btree.increaseTotalKeys( );
-		return entry;
+		return values;
 	}
 
 	private void insert( int index, LeafEntry<K, V> entry ) throws IOException
@@ -270,7 +313,14 @@ class LeafNode<K, V> extends BTreeNode<K, V>
 			next.setPrev( entry );
 		}
 
-		nodeSize += getEntrySize( entry );
+		BTreeValue<K> prevKey = prev == null ? null : prev.getKey( );
+		nodeSize += getEntrySize( prevKey, entry );
+		if ( next != null && btree.isPrefixCompression( ) )
+		{
+			// the next key follows the new key instead of the previous one
+			nodeSize += getEntrySize( entry.getKey( ), next )
+					- getEntrySize( prevKey, next );
+		}
 	}
 
 	public boolean needSplit( )
@@ -281,9 +331,11 @@ class LeafNode<K, V> extends BTreeNode<K, V>
 	private void resetNodeSize( ) throws IOException
 	{
 		nodeSize = EMPTY_NODE_SIZE;
+		BTreeValue<K> prevKey = null;
 		for ( LeafEntry<K, V> entry : entries )
 		{
-			nodeSize += getEntrySize( entry );
+			nodeSize += getEntrySize( prevKey, entry );
+			prevKey = entry.getKey( );
 		}
 	}
 	
@@ -359,7 +411,9 @@ class LeafNode<K, V> extends BTreeNode<K, V>
 		LeafEntry<K, V> prev = null;
 		for ( int i = 0; i < entryCount; i++ )
 		{
-			LeafEntry<K, V> entry = readEntry( in );
+			LeafEntry<K, V> entry = readEntry( in, prev == null
+					? null
+					: prev.getKey( ) );
 			entry.setPrev( prev );
 			if ( prev != null )
 			{
@@ -376,15 +430,17 @@ class LeafNode<K, V> extends BTreeNode<K, V>
 		out.writeInt( prevNodeId );
 		out.writeInt( nextNodeId );
 		out.writeInt( entries.size( ) );
+		BTreeValue<K> prevKey = null;
 		for ( LeafEntry<K, V> entry : entries )
 		{
-			writeEntry( out, entry );
+			writeEntry( out, prevKey, entry );
+			prevKey = entry.getKey( );
 		}
 	}
 
-	private int getEntrySize( LeafEntry<K, V> entry )
+	private int getEntrySize( BTreeValue<K> prevKey, LeafEntry<K, V> entry )
 	{
-		int keySize = btree.getKeySize( entry.getKey( ) );
+		int keySize = btree.getKeySize( prevKey, entry.getKey( ) );
 		if ( btree.hasValue( ) )
 		{
 			BTreeValues<V> values = entry.getValues( );
@@ -397,9 +453,10 @@ class LeafNode<K, V> extends BTreeNode<K, V>
 		return keySize;
 	}
 
-	protected LeafEntry<K, V> readEntry( DataInput in ) throws IOException
+	protected LeafEntry<K, V> readEntry( DataInput in, BTreeValue<K> prevKey )
+			throws IOException
 	{
-		BTreeValue<K> key = btree.readKey( in );
+		BTreeValue<K> key = btree.readKey( in, prevKey );
 		BTreeValues<V> values = readValues( in );
 		return new LeafEntry<K, V>( this, key, values );
 	}
@@ -437,10 +494,10 @@ class LeafNode<K, V> extends BTreeNode<K, V>
 		return null;
 	}
 
-	private void writeEntry( DataOutput out, LeafEntry<K, V> entry )
-			throws IOException
+	private void writeEntry( DataOutput out, BTreeValue<K> prevKey,
+			LeafEntry<K, V> entry ) throws IOException
 	{
-		btree.writeKey( out, entry.getKey( ) );
+		btree.writeKey( out, prevKey, entry.getKey( ) );
 		if ( btree.hasValue( ) )
 		{
 			BTreeValues<V> values = entry.getValues( );
@@ -0,0 +1,64 @@
+/*
+ *************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *
+ *************************************************************************
+ */
+package org.eclipse.birt.data.aggregation.impl;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The setting of the approximate mode of the median, mode, percentile,
+ * quartile and count distinct aggregations. In this mode, a group keeps its
+ * values exactly until it has more of them than the threshold, and is then
+ * summarized by a sketch whose memory is bounded.
+ */
+public final class ApproximateAggregation
+{
+
+	/**
+	 * JVM system property giving the number of values of a group beyond
+	 * which the group is summarized approximately. Not set or 0, the
+	 * aggregations are always exact.
+	 */
+	public static final String APPROXIMATE_THRESHOLD = "org.eclipse.birt.data.aggregation.approximateThreshold"; //$NON-NLS-1$
+
+	private static Logger logger = Logger.getLogger( ApproximateAggregation.class.getName( ) );
+
+	private ApproximateAggregation( )
+	{
+	}
+
+	/**
+	 * @return the number of values of a group beyond which the group is
+	 *         summarized approximately, 0 if the aggregations are exact
+	 */
+	public static int getThreshold( )
+	{
+		try
+		{
+			String value = System.getProperty( APPROXIMATE_THRESHOLD );
+			if ( value != null && value.trim( ).length( ) > 0 )
+			{
+				return Math.max( 0, Integer.parseInt( value.trim( ) ) );
+			}
+		}
+		catch ( NumberFormatException e )
+		{
+			logger.log( Level.WARNING, "Invalid value of " + APPROXIMATE_THRESHOLD ); //$NON-NLS-1$
+		}
+		catch ( SecurityException e )
+		{
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ *************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *
+ *************************************************************************
+ */
+package org.eclipse.birt.data.aggregation.impl;
+
+import java.util.Date;
+
+/**
+ * A HyperLogLog sketch, which estimates the number of distinct values with a
+ * standard error of about 0.8% using 16 kilobytes whatever the number of
+ * values.
+ */
+public class DistinctCountSketch
+{
+
+	// 2^14 registers
+	private static final int PRECISION = 14;
+	private static final int REGISTER_COUNT = 1 << PRECISION;
+	// the greatest register value, reached with the guard bit
+	private static final int MAX_RANK = 64 - PRECISION + 1;
+
+	private final byte[] registers = new byte[REGISTER_COUNT];
+
+	/**
+	 * @param value
+	 *            not null
+	 */
+	public void add( Object value )
+	{
+		long hash = hash( value );
+		int index = (int) ( hash >>> ( 64 - PRECISION ) );
+		// the guard bit bounds the rank when the remaining bits are all 0
+		long remaining = ( hash << PRECISION ) | ( 1L << ( PRECISION - 1 ) );
+		byte rank = (byte) ( Long.numberOfLeadingZeros( remaining ) + 1 );
+		if ( rank > registers[index] )
+			registers[index] = rank;
+	}
+
+	/**
+	 * Returns the estimate of Ertl's improved estimator, which unlike the
+	 * original one of HyperLogLog is not biased when the number of values is
+	 * a few times the number of registers.
+	 *
+	 * @return the estimated number of distinct values
+	 */
+	public long getEstimate( )
+	{
+		// the histogram of the register values, from 0 to MAX_RANK
+		int[] histogram = new int[MAX_RANK + 1];
+		for ( int i = 0; i < REGISTER_COUNT; i++ )
+		{
+			histogram[registers[i]]++;
+		}
+		double z = REGISTER_COUNT
+				* tau( 1 - (double) histogram[MAX_RANK] / REGISTER_COUNT );
+		for ( int k = MAX_RANK - 1; k >= 1; k-- )
+		{
+			z = 0.5 * ( z + histogram[k] );
+		}
+		z += REGISTER_COUNT * sigma( (double) histogram[0] / REGISTER_COUNT );
+		double estimate = REGISTER_COUNT / ( 2 * Math.log( 2 ) ) * REGISTER_COUNT
+				/ z;
+		return Math.round( estimate );
+	}
+
+	private static double sigma( double x )
+	{
+		if ( x == 1 )
+			return Double.POSITIVE_INFINITY;
+		double y = 1;
+		double z = x;
+		double previous;
+		do
+		{
+			x *= x;
+			previous = z;
+			z += x * y;
+			y += y;
+		} while ( z != previous );
+		return z;
+	}
+
+	private static double tau( double x )
+	{
+		if ( x == 0 || x == 1 )
+			return 0;
+		double y = 1;
+		double z = 1 - x;
+		double previous;
+		do
+		{
+			x = Math.sqrt( x );
+			previous = z;
+			y *= 0.5;
+			z -= ( 1 - x ) * ( 1 - x ) * y;
+		} while ( z != previous );
+		return z / 3;
+	}
+
+	/**
+	 * Hashes the value on 64 bits. The values equal as by equals have the
+	 * same hash.
+	 */
+	private static long hash( Object value )
+	{
+		long hash;
+		if ( value instanceof String )
+		{
+			// FNV-1a
+			String str = (String) value;
+			hash = 0xcbf29ce484222325L;
+			for ( int i = 0; i < str.length( ); i++ )
+			{
+				hash ^= str.charAt( i );
+				hash *= 0x100000001b3L;
+			}
+		}
+		else if ( value instanceof Integer || value instanceof Long
+				|| value instanceof Short || value instanceof Byte )
+		{
+			hash = ( (Number) value ).longValue( );
+		}
+		else if ( value instanceof Double || value instanceof Float )
+		{
+			hash = Double.doubleToLongBits( ( (Number) value ).doubleValue( ) );
+		}
+		else if ( value instanceof Date )
+		{
+			hash = ( (Date) value ).getTime( );
+		}
+		else
+		{
+			hash = value.hashCode( );
+		}
+		// values of different classes are never equal
+		hash ^= (long) value.getClass( ).getName( ).hashCode( ) << 32;
+		return mix( hash );
+	}
+
+	/**
+	 * The finalizer of MurmurHash3, which spreads every input bit over all
+	 * the output bits.
+	 */
+	private static long mix( long hash )
+	{
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ *************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *
+ *************************************************************************
+ */
+package org.eclipse.birt.data.aggregation.impl;
+
+import java.util.Arrays;
+
+/**
+ * A list of double values which finds the value of a given rank by
+ * selection, without sorting the list. The values are ordered as by
+ * Double.compare, NaN being the greatest.
+ */
+public class DoubleList
+{
+
+	private double[] values;
+	private int size;
+
+	public DoubleList( )
+	{
+		values = new double[16];
+	}
+
+	/**
+	 * @param value
+	 */
+	public void add( double value )
+	{
+		if ( size == values.length )
+		{
+			values = Arrays.copyOf( values, size * 2 );
+		}
+		values[size++] = value;
+	}
+
+	/**
+	 * @return
+	 */
+	public int size( )
+	{
+		return size;
+	}
+
+	/**
+	 * @param index
+	 * @return the value in the current order of the list
+	 */
+	public double get( int index )
+	{
+		return values[index];
+	}
+
+	/**
+	 * Returns the value of a rank. The list is reordered so that the values
+	 * before the rank are not greater than it and the values after it are not
+	 * less than it.
+	 *
+	 * @param rank
+	 *            from 0
+	 * @return the value which would be at the rank in the sorted list
+	 */
+	public double select( int rank )
+	{
+		assert rank >= 0 && rank < size;
+		int left = 0;
+		int right = size - 1;
+		while ( right > left )
+		{
+			// median of three, so that sorted data takes linear time
+			int middle = ( left + right ) >>> 1;
+			if ( Double.compare( values[middle], values[left] ) < 0 )
+				swap( middle, left );
+			if ( Double.compare( values[right], values[left] ) < 0 )
+				swap( right, left );
+			if ( Double.compare( values[right], values[middle] ) < 0 )
+				swap( right, middle );
+			double pivot = values[middle];
+
+			int i = left;
+			int j = right;
+			while ( i <= j )
+			{
+				while ( Double.compare( values[i], pivot ) < 0 )
+					i++;
+				while ( Double.compare( values[j], pivot ) > 0 )
+					j--;
+				if ( i <= j )
+				{
+					swap( i, j );
+					i++;
+					j--;
+				}
+			}
+			if ( rank <= j )
+				right = j;
+			else if ( rank >= i )
+				left = i;
+			else
+				break;
+		}
+		return values[rank];
+	}
+
+	/**
+	 * Returns the value of the rank following the one just selected.
+	 *
+	 * @param rank
+	 *            the rank passed to select
+	 * @return the least value after the rank
+	 */
+	public double selectNext( int rank )
+	{
+		assert rank + 1 < size;
+		double next = values[rank + 1];
+		for ( int i = rank + 2; i < size; i++ )
+		{
+			if ( Double.compare( values[i], next ) < 0 )
+				next = values[i];
+		}
+		return next;
+	}
+
+	private void swap( int i, int j )
+	{
+		double value = values[i];
+		values[i] = values[j];
+		values[j] = value;
+	}
+}
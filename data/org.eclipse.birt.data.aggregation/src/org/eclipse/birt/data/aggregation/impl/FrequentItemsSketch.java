@@ -0,0 +1,126 @@
+/*
+ *************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *
+ *************************************************************************
+ */
+package org.eclipse.birt.data.aggregation.impl;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts the values approximately with a bounded number of counters. When
+ * the counters are all taken, the median count is subtracted from all of
+ * them and the counters down to 0 are freed, so that the frequent values
+ * keep theirs. The count of a value is thus under-estimated by at most the
+ * total subtracted, which is at most twice the number of values divided by
+ * the number of counters.
+ */
+public class FrequentItemsSketch
+{
+
+	private final int capacity;
+
+	// in the order of the first occurrences
+	private final LinkedHashMap<Object, long[]> counters = new LinkedHashMap<Object, long[]>( );
+
+	private long offset;
+
+	/**
+	 * @param capacity
+	 *            the number of counters
+	 */
+	public FrequentItemsSketch( int capacity )
+	{
+		this.capacity = Math.max( 2, capacity );
+	}
+
+	/**
+	 * @param value
+	 * @param count
+	 *            the number of occurrences to add
+	 */
+	public void add( Object value, long count )
+	{
+		long[] counter = counters.get( value );
+		if ( counter != null )
+		{
+			counter[0] += count;
+			return;
+		}
+		counters.put( value, new long[]{
+			count
+		} );
+		if ( counters.size( ) > capacity )
+			purge( );
+	}
+
+	/**
+	 * @return the value counted the most, the first counted on a tie, or null
+	 *         if no value is counted
+	 */
+	public Object getMostFrequent( )
+	{
+		Object result = null;
+		long maxCount = 0;
+		for ( Iterator<Map.Entry<Object, long[]>> i = counters.entrySet( )
+				.iterator( ); i.hasNext( ); )
+		{
+			Map.Entry<Object, long[]> entry = i.next( );
+			if ( entry.getValue( )[0] > maxCount )
+			{
+				maxCount = entry.getValue( )[0];
+				result = entry.getKey( );
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param value
+	 * @return the lower bound of the count of the value
+	 */
+	public long getCount( Object value )
+	{
+		long[] counter = counters.get( value );
+		return counter == null ? 0 : counter[0];
+	}
+
+	/**
+	 * @return the maximum error of the counts
+	 */
+	public long getMaximumError( )
+	{
+		return offset;
+	}
+
+	private void purge( )
+	{
+		long[] counts = new long[counters.size( )];
+		int pos = 0;
+		for ( Iterator<long[]> i = counters.values( ).iterator( ); i.hasNext( ); )
+		{
+			counts[pos++] = i.next( )[0];
+		}
+		Arrays.sort( counts );
+		long median = counts[counts.length / 2];
+		for ( Iterator<long[]> i = counters.values( ).iterator( ); i.hasNext( ); )
+		{
+			long[] counter = i.next( );
+			counter[0] -= median;
+			if ( counter[0] <= 0 )
+				i.remove( );
+		}
+		offset += median;
+	}
+}
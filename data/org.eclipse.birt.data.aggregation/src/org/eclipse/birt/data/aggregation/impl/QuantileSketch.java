@@ -0,0 +1,215 @@
+/*
+ *************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *
+ *************************************************************************
+ */
+package org.eclipse.birt.data.aggregation.impl;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A KLL sketch of double values, which answers quantile queries with a rank
+ * error of about 1.7% using a few kilobytes whatever the number of values.
+ * <p>
+ * The values are kept in levels, a value of level h standing for 2^h values.
+ * When a level is full, it is sorted and every other value is promoted to
+ * the level above. The capacity of the levels decreases geometrically from
+ * the top, so that the lower levels, which hold the less significant
+ * values, take little memory.
+ */
+public class QuantileSketch
+{
+
+	private static final int DEFAULT_K = 200;
+
+	// the ratio of the capacities of two successive levels
+	private static final double CAPACITY_RATIO = 2.0 / 3.0;
+
+	private final int k;
+
+	private double[][] levels;
+	private int[] levelSizes;
+	private int levelCount;
+	private int retainedSize;
+
+	private long count;
+	private long nanCount;
+
+	// with a fixed seed the same data gives the same result
+	private final Random random = new Random( 0x2545F491L );
+
+	public QuantileSketch( )
+	{
+		this( DEFAULT_K );
+	}
+
+	/**
+	 * @param k
+	 *            the capacity of the top level, which decides the accuracy
+	 */
+	public QuantileSketch( int k )
+	{
+		this.k = k;
+		levels = new double[4][];
+		levelSizes = new int[4];
+		levels[0] = new double[k];
+		levelCount = 1;
+	}
+
+	/**
+	 * @param value
+	 */
+	public void add( double value )
+	{
+		count++;
+		if ( Double.isNaN( value ) )
+		{
+			nanCount++;
+			return;
+		}
+		append( 0, value );
+		retainedSize++;
+		if ( retainedSize >= getTotalCapacity( ) )
+			compress( );
+	}
+
+	/**
+	 * @return the number of values added
+	 */
+	public long getCount( )
+	{
+		return count;
+	}
+
+	/**
+	 * Returns the approximate value of a fraction of the values.
+	 *
+	 * @param fraction
+	 *            from 0 to 1, 0.5 for the median
+	 * @return NaN if the sketch is empty
+	 */
+	public double getQuantile( double fraction )
+	{
+		if ( count == 0 )
+			return Double.NaN;
+		// the rank in all the values, the NaN values being the greatest
+		double rank = fraction * ( count - 1 );
+		if ( rank >= count - nanCount )
+			return Double.NaN;
+
+		// merge the sorted levels
+		double[] items = new double[0];
+		long[] weights = new long[0];
+		for ( int h = 0; h < levelCount; h++ )
+		{
+			int size = levelSizes[h];
+			Arrays.sort( levels[h], 0, size );
+			double[] mergedItems = new double[items.length + size];
+			long[] mergedWeights = new long[items.length + size];
+			int i = 0, j = 0, pos = 0;
+			while ( i < items.length || j < size )
+			{
+				if ( j == size
+						|| ( i < items.length && items[i] <= levels[h][j] ) )
+				{
+					mergedItems[pos] = items[i];
+					mergedWeights[pos++] = weights[i++];
+				}
+				else
+				{
+					mergedItems[pos] = levels[h][j++];
+					mergedWeights[pos++] = 1L << h;
+				}
+			}
+			items = mergedItems;
+			weights = mergedWeights;
+		}
+
+		// the weights of the retained values add up to count - nanCount
+		long cumulative = 0;
+		for ( int i = 0; i < items.length; i++ )
+		{
+			cumulative += weights[i];
+			if ( cumulative > rank )
+				return items[i];
+		}
+		return items[items.length - 1];
+	}
+
+	private void append( int h, double value )
+	{
+		double[] level = levels[h];
+		if ( levelSizes[h] == level.length )
+		{
+			level = Arrays.copyOf( level, level.length * 2 );
+			levels[h] = level;
+		}
+		level[levelSizes[h]++] = value;
+	}
+
+	private int getCapacity( int h )
+	{
+		int depth = levelCount - h - 1;
+		return Math.max( 2,
+				(int) Math.ceil( k * Math.pow( CAPACITY_RATIO, depth ) ) );
+	}
+
+	private int getTotalCapacity( )
+	{
+		int total = 0;
+		for ( int h = 0; h < levelCount; h++ )
+		{
+			total += getCapacity( h );
+		}
+		return total;
+	}
+
+	/**
+	 * Compacts the lowest full level into the level above.
+	 */
+	private void compress( )
+	{
+		for ( int h = 0; h < levelCount; h++ )
+		{
+			if ( levelSizes[h] < getCapacity( h ) )
+				continue;
+			if ( h + 1 == levelCount )
+				addLevel( );
+
+			double[] level = levels[h];
+			int size = levelSizes[h];
+			Arrays.sort( level, 0, size );
+			// an odd value out stays at its level
+			int kept = size % 2;
+			int offset = random.nextBoolean( ) ? 1 : 0;
+			for ( int i = kept + offset; i < size; i += 2 )
+			{
+				append( h + 1, level[i] );
+			}
+			levelSizes[h] = kept;
+			retainedSize -= ( size - kept ) / 2;
+			return;
+		}
+	}
+
+	private void addLevel( )
+	{
+		if ( levelCount == levels.length )
+		{
+			levels = Arrays.copyOf( levels, levelCount * 2 );
+			levelSizes = Arrays.copyOf( levelSizes, levelCount * 2 );
+		}
+		levels[levelCount] = new double[Math.max( 2, k / 2 )];
+		levelSizes[levelCount] = 0;
+		levelCount++;
+	}
+}
@@ -15,6 +15,7 @@
 package org.eclipse.birt.data.aggregation.impl;
 
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Set;
 
 import org.eclipse.birt.core.data.DataType;
@@ -75,12 +76,17 @@ public class TotalCountDistinct extends AggrFunction
 	private static class MyAccumulator extends SummaryAccumulator
     {
         private Set set;
+        // the values once there are more than the threshold
+        private DistinctCountSketch sketch;
+        private int threshold;
         private boolean hasNullValue = false;
         
         public void start()
         {
             super.start();
             set = new HashSet();
+            sketch = null;
+            threshold = ApproximateAggregation.getThreshold( );
             this.hasNullValue = false;
         }
         
@@ -89,7 +95,20 @@ public class TotalCountDistinct extends AggrFunction
         	assert(args.length>0);
         	if(args[0] instanceof Comparable)
         	{
-        		set.add(args[0]);
+        		if ( sketch != null )
+        		{
+        			sketch.add( args[0] );
+        		}
+        		else if ( set.add( args[0] ) && threshold > 0
+        				&& set.size( ) > threshold )
+        		{
+        			sketch = new DistinctCountSketch( );
+        			for ( Iterator i = set.iterator( ); i.hasNext( ); )
+        			{
+        				sketch.add( i.next( ) );
+        			}
+        			set = null;
+        		}
         	}
         	else
         	{
@@ -111,7 +130,9 @@ public class TotalCountDistinct extends AggrFunction
          */
         public Object getSummaryValue()
         {
-            return Integer.valueOf( set.size( ) + ( this.hasNullValue ? 1 : 0 ) );
+            long count = sketch != null ? sketch.getEstimate( ) : set.size( );
+            return Integer.valueOf( (int) Math.min( Integer.MAX_VALUE, count
+            		+ ( this.hasNullValue ? 1 : 0 ) ) );
         }
     }
 
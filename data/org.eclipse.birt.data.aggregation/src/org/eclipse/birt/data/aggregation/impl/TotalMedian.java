@@ -13,10 +13,6 @@
  */
 package org.eclipse.birt.data.aggregation.impl;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-
 import org.eclipse.birt.core.data.DataType;
 import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
 import org.eclipse.birt.data.aggregation.calculator.CalculatorFactory;
@@ -91,7 +87,13 @@ public class TotalMedian extends AggrFunction
 
     private static class MyAccumulator extends SummaryAccumulator
     {
-        private List list;
+        // the values are typed as doubles by the calculator
+        private DoubleList list;
+
+        // the values once there are more than the threshold
+        private QuantileSketch sketch;
+
+        private int threshold;
 
         private Object ret = null;
 
@@ -103,7 +105,9 @@ public class TotalMedian extends AggrFunction
         public void start()
         {
             super.start();
-            list = new ArrayList();
+            list = new DoubleList();
+            sketch = null;
+            threshold = ApproximateAggregation.getThreshold( );
             ret = null;
         }
 
@@ -117,29 +121,47 @@ public class TotalMedian extends AggrFunction
 			assert ( args.length > 0 );
 			if ( args[0] != null )
 			{
-				list.add( calculator.getTypedObject( args[0] ) );
+				double value = ( (Double) calculator.getTypedObject( args[0] ) ).doubleValue( );
+				if ( sketch != null )
+				{
+					sketch.add( value );
+					return;
+				}
+				list.add( value );
+				if ( threshold > 0 && list.size( ) > threshold )
+				{
+					sketch = new QuantileSketch( );
+					for ( int i = 0; i < list.size( ); i++ )
+					{
+						sketch.add( list.get( i ) );
+					}
+					list = null;
+				}
 			}
 		}
 
         public void finish( ) throws DataException
 		{
-			int size = list.size( );
-			if ( size > 0 )
+			if ( sketch != null )
 			{
-				Object[] values = list.toArray( );
-				Arrays.sort( values );
-
-				if ( size % 2 == 0 )
-				{
-					Object d1 = values[size / 2 - 1];
-					Object d2 = values[size / 2];
-					ret = calculator.divide(
-							calculator.add( calculator.getTypedObject( d1 ), calculator.getTypedObject( d2 ) ),
-							calculator.getTypedObject( 2 ) );
-				}
-				else
+				ret = Double.valueOf( sketch.getQuantile( 0.5 ) );
+			}
+			else
+			{
+				int size = list.size( );
+				if ( size > 0 )
 				{
-					ret = calculator.getTypedObject( values[size / 2] );
+					if ( size % 2 == 0 )
+					{
+						Double d1 = Double.valueOf( list.select( size / 2 - 1 ) );
+						Double d2 = Double.valueOf( list.selectNext( size / 2 - 1 ) );
+						ret = calculator.divide( calculator.add( d1, d2 ),
+								calculator.getTypedObject( 2 ) );
+					}
+					else
+					{
+						ret = Double.valueOf( list.select( size / 2 ) );
+					}
 				}
 			}
 			super.finish( );
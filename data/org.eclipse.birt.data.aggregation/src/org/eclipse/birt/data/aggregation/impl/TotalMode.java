@@ -15,6 +15,7 @@ package org.eclipse.birt.data.aggregation.impl;
 
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.eclipse.birt.core.data.DataType;
 import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
@@ -93,6 +94,9 @@ public class TotalMode extends AggrFunction
         private Object mode;
 		private int maxCount;
 		private boolean multiMaxValue;
+		// the counts once there are more distinct values than the threshold
+		private FrequentItemsSketch sketch;
+		private int threshold;
 
         public void start()
         {
@@ -101,6 +105,8 @@ public class TotalMode extends AggrFunction
             mode = null;
             cacheMap = new LinkedHashMap();
             multiMaxValue = false;
+            sketch = null;
+            threshold = ApproximateAggregation.getThreshold( );
         }
 
         /*
@@ -114,6 +120,11 @@ public class TotalMode extends AggrFunction
             if (args[0] != null)
             {
             	Object value = args[0];
+            	if ( sketch != null )
+            	{
+            		sketch.add( value, 1 );
+            		return;
+            	}
             	Object obj =  cacheMap.get( value );
             	int count = 1;
             	if( obj != null )
@@ -133,6 +144,18 @@ public class TotalMode extends AggrFunction
 				{
 					multiMaxValue = true;
 				}
+
+				if ( threshold > 0 && cacheMap.size( ) > threshold )
+				{
+					sketch = new FrequentItemsSketch( threshold );
+					for ( Iterator i = cacheMap.entrySet( ).iterator( ); i.hasNext( ); )
+					{
+						Map.Entry entry = (Map.Entry) i.next( );
+						sketch.add( entry.getKey( ),
+								( (Integer) entry.getValue( ) ).intValue( ) );
+					}
+					cacheMap = null;
+				}
             }
         }
 
@@ -148,6 +171,14 @@ public class TotalMode extends AggrFunction
          */
         public Object getSummaryValue()
         {
+        	if ( sketch != null )
+        	{
+        		Object frequent = sketch.getMostFrequent( );
+        		// no value is known to occur more than once
+        		if ( frequent == null || sketch.getCount( frequent ) <= 1 )
+        			return null;
+        		return frequent;
+        	}
         	if ( maxCount == 1 )// all of the objects are unique values
 			{
 				// no modes; ROM scripting spec says we should return null
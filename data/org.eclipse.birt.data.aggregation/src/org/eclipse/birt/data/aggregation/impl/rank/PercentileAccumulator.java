@@ -18,6 +18,9 @@ import org.eclipse.birt.data.aggregation.calculator.CalculatorFactory;
 import org.eclipse.birt.data.aggregation.calculator.ICalculator;
 import org.eclipse.birt.data.aggregation.i18n.ResourceConstants;
 import org.eclipse.birt.data.aggregation.impl.AggrException;
+import org.eclipse.birt.data.aggregation.impl.ApproximateAggregation;
+import org.eclipse.birt.data.aggregation.impl.DoubleList;
+import org.eclipse.birt.data.aggregation.impl.QuantileSketch;
 import org.eclipse.birt.data.aggregation.impl.SummaryAccumulator;
 import org.eclipse.birt.data.engine.core.DataException;
 
@@ -34,6 +37,10 @@ import org.eclipse.birt.data.engine.core.DataException;
  * 			ad = a[k]+(f*(a[k+1]-a[k])) //Then we can calculate out the adjustment:
  * 			result = a[k] + ad;
  * 
+ * The double values are kept in a primitive list, and the two values around
+ * the percentile are found by selection rather than by sorting the list. In
+ * approximate mode, a group with more values than the threshold is
+ * summarized by a quantile sketch.
  */
 abstract class PercentileAccumulator extends SummaryAccumulator
 {
@@ -41,6 +48,9 @@ abstract class PercentileAccumulator extends SummaryAccumulator
 	//
 	private Double pct;
 	private List cachedValues;
+	private DoubleList cachedDoubles;
+	private QuantileSketch sketch;
+	private int threshold;
 
 	public PercentileAccumulator( ICalculator calc )
 	{
@@ -56,6 +66,9 @@ abstract class PercentileAccumulator extends SummaryAccumulator
 
 		pct = -1D;
 		cachedValues = new ArrayList( );
+		cachedDoubles = new DoubleList( );
+		sketch = null;
+		threshold = ApproximateAggregation.getThreshold( );
 	}
 
 	/*
@@ -70,7 +83,7 @@ abstract class PercentileAccumulator extends SummaryAccumulator
 		{
 			Number d = calculator.add( calculator.getTypedObject( 0 ), calculator.getTypedObject( args[0] ) );
 			if ( d != null )
-				cachedValues.add( d );
+				addValue( d );
 		}
 		if ( pct == -1 )
 		{
@@ -79,6 +92,38 @@ abstract class PercentileAccumulator extends SummaryAccumulator
 		}
 	}
 
+	private void addValue( Number d )
+	{
+		if ( sketch != null )
+		{
+			sketch.add( d.doubleValue( ) );
+			return;
+		}
+		if ( d instanceof Double && !( (Double) d ).isNaN( ) )
+		{
+			cachedDoubles.add( d.doubleValue( ) );
+		}
+		else
+		{
+			cachedValues.add( d );
+		}
+		if ( threshold > 0
+				&& cachedDoubles.size( ) + cachedValues.size( ) > threshold )
+		{
+			sketch = new QuantileSketch( );
+			for ( int i = 0; i < cachedDoubles.size( ); i++ )
+			{
+				sketch.add( cachedDoubles.get( i ) );
+			}
+			for ( int i = 0; i < cachedValues.size( ); i++ )
+			{
+				sketch.add( ( (Number) cachedValues.get( i ) ).doubleValue( ) );
+			}
+			cachedDoubles = new DoubleList( );
+			cachedValues = new ArrayList( );
+		}
+	}
+
 	protected abstract double getPctValue( Double d ) throws DataException;
 
 	/*
@@ -88,11 +133,39 @@ abstract class PercentileAccumulator extends SummaryAccumulator
 	 */
 	public Object getSummaryValue( ) throws DataException
 	{
-		Object[] sortedObjs = this.cachedValues.toArray( );
-		if ( sortedObjs.length == 0 )
+		if ( sketch != null )
 		{
-			return null;
+			return Double.valueOf( sketch.getQuantile( pct ) );
+		}
+		if ( cachedValues.isEmpty( ) )
+		{
+			// all the values are doubles
+			int size = cachedDoubles.size( );
+			if ( size == 0 )
+			{
+				return null;
+			}
+			double n = pct * ( size - 1 ) + 1;
+			int k = (int) Math.floor( n );
+			double fraction = n - k;
+
+			Double lower = Double.valueOf( cachedDoubles.select( k - 1 ) );
+			Number adjustment = 0;
+			if ( fraction != 0 )
+			{
+				Double upper = Double.valueOf( cachedDoubles.selectNext( k - 1 ) );
+				adjustment = calculator.multiply( calculator.getTypedObject( fraction ),
+						calculator.subtract( upper, lower ) );
+			}
+			return calculator.add( lower, calculator.getTypedObject( adjustment ) );
 		}
+
+		for ( int i = 0; i < cachedDoubles.size( ); i++ )
+		{
+			cachedValues.add( Double.valueOf( cachedDoubles.get( i ) ) );
+		}
+		cachedDoubles = new DoubleList( );
+		Object[] sortedObjs = this.cachedValues.toArray( );
 		RankAggregationUtil.sortArray( sortedObjs );
 		double n = pct * ( sortedObjs.length - 1 ) + 1;
 		int k = (int) Math.floor( n );
@@ -3,12 +3,17 @@ package org.eclipse.birt.data.engine.aggregation;
 
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
 
 
 import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
+import org.eclipse.birt.data.aggregation.impl.ApproximateAggregation;
 import org.eclipse.birt.data.aggregation.impl.BuildInAggregationFactory;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
 import org.eclipse.birt.data.engine.api.aggregation.IAggrFunction;
@@ -2287,4 +2292,116 @@ public class TotalTest {
         assertEquals( new Integer( 8 ), ac.getValue( ) );
     }
 
+    @Test
+    public void testTotalMedianSelection( ) throws Exception
+    {
+        IAggrFunction ag = buildInAggrFactory.getAggregation( "median" );
+        Accumulator ac = ag.newAccumulator( );
+        IAggrFunction percentile = buildInAggrFactory.getAggregation( "percentile" );
+        Accumulator pac = percentile.newAccumulator( );
+
+        // duplicates and sorted runs, with an odd and an even number of values
+        Random random = new Random( 1 );
+        for ( int size = 1000; size <= 1001; size++ )
+        {
+            double[] values = new double[size];
+            for ( int i = 0; i < size; i++ )
+            {
+                values[i] = i < size / 3 ? i : random.nextInt( 200 ) - 100;
+            }
+            ac.start( );
+            pac.start( );
+            for ( int i = 0; i < size; i++ )
+            {
+                ac.onRow( new Object[]{
+                    new Double( values[i] )
+                } );
+                pac.onRow( new Object[]{
+                    new Double( values[i] ), new Double( 0.3 )
+                } );
+            }
+            ac.finish( );
+            pac.finish( );
+
+            double[] sorted = values.clone( );
+            Arrays.sort( sorted );
+            double median = size % 2 == 0
+                    ? ( sorted[size / 2 - 1] + sorted[size / 2] ) / 2
+                    : sorted[size / 2];
+            assertEquals( new Double( median ), ac.getValue( ) );
+            double n = 0.3 * ( size - 1 ) + 1;
+            int k = (int) Math.floor( n );
+            double expected = sorted[k - 1] + ( n - k )
+                    * ( sorted[k] - sorted[k - 1] );
+            assertEquals( expected,
+                    ( (Double) pac.getValue( ) ).doubleValue( ),
+                    1E-9 );
+        }
+    }
+
+    @Test
+    public void testApproximateAggregations( ) throws Exception
+    {
+        System.setProperty( ApproximateAggregation.APPROXIMATE_THRESHOLD,
+                "1000" );
+        try
+        {
+            Accumulator median = buildInAggrFactory.getAggregation( "median" )
+                    .newAccumulator( );
+            Accumulator percentile = buildInAggrFactory.getAggregation( "percentile" )
+                    .newAccumulator( );
+            Accumulator countDistinct = buildInAggrFactory.getAggregation( "countdistinct" )
+                    .newAccumulator( );
+            Accumulator mode = buildInAggrFactory.getAggregation( "mode" )
+                    .newAccumulator( );
+            median.start( );
+            percentile.start( );
+            countDistinct.start( );
+            mode.start( );
+            // 0 is the mode
+            Random random = new Random( 2 );
+            double[] values = new double[100000];
+            Set distinctValues = new HashSet( );
+            for ( int i = 0; i < values.length; i++ )
+            {
+                Double value = new Double( i % 10 == 0 ? 0 : random.nextInt( 50000 ) );
+                values[i] = value.doubleValue( );
+                distinctValues.add( value );
+                median.onRow( new Object[]{
+                    value
+                } );
+                percentile.onRow( new Object[]{
+                    value, new Double( 0.9 )
+                } );
+                countDistinct.onRow( new Object[]{
+                    value
+                } );
+                mode.onRow( new Object[]{
+                    value
+                } );
+            }
+            median.finish( );
+            percentile.finish( );
+            countDistinct.finish( );
+            mode.finish( );
+
+            // within 2% of the rank, or of the count
+            Arrays.sort( values );
+            assertEquals( values[values.length / 2],
+                    ( (Double) median.getValue( ) ).doubleValue( ),
+                    1000 );
+            assertEquals( values[values.length * 9 / 10],
+                    ( (Double) percentile.getValue( ) ).doubleValue( ),
+                    1000 );
+            assertEquals( distinctValues.size( ),
+                    ( (Integer) countDistinct.getValue( ) ).intValue( ),
+                    distinctValues.size( ) / 50 );
+            assertEquals( new Double( 0 ), mode.getValue( ) );
+        }
+        finally
+        {
+            System.clearProperty( ApproximateAggregation.APPROXIMATE_THRESHOLD );
+        }
+    }
+
 }
@@ -0,0 +1,255 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.birt.data.engine.api.querydefn.OdaDataSetDesign;
+import org.eclipse.birt.data.engine.api.querydefn.OdaDataSourceDesign;
+import org.eclipse.birt.data.engine.core.DataException;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the budget, eviction and loading coordination of the JVM level data
+ * set cache.
+ */
+public class JVMLevelCacheMapTest
+{
+
+	private Map<DataSourceAndDataSet, Integer> lockedEntries;
+	private OdaDataSourceDesign dataSource;
+
+	@Before
+	public void jvmLevelCacheMapSetUp( )
+	{
+		lockedEntries = Collections.synchronizedMap( new HashMap<DataSourceAndDataSet, Integer>( ) );
+		dataSource = new OdaDataSourceDesign( "dataSource" );
+	}
+
+	/**
+	 * @throws DataException
+	 */
+	@Test
+	public void testMemoryBudget( ) throws DataException
+	{
+		long rowsSize = JVMLevelCacheMap.measureMemorySize( createCacheObject( 100 ) );
+		assertTrue( rowsSize > 0 );
+
+		// room for two data sets
+		JVMLevelCacheMap map = new JVMLevelCacheMap( lockedEntries,
+				rowsSize * 2,
+				0,
+				0,
+				false );
+		DataSourceAndDataSet key1 = createKey( "dataSet1" );
+		DataSourceAndDataSet key2 = createKey( "dataSet2" );
+		DataSourceAndDataSet key3 = createKey( "dataSet3" );
+		map.put( key1, createCacheObject( 100 ) );
+		map.put( key2, createCacheObject( 100 ) );
+		assertEquals( rowsSize * 2, map.getMemoryUsage( ) );
+
+		// key2 becomes the least recently used entry
+		assertNotNull( map.get( key1 ) );
+		map.put( key3, createCacheObject( 100 ) );
+
+		assertEquals( 2, map.size( ) );
+		assertNotNull( map.get( key1 ) );
+		assertNull( map.get( key2 ) );
+		assertNotNull( map.get( key3 ) );
+		assertEquals( 1, map.getEvictionCount( ) );
+		assertEquals( rowsSize * 2, map.getMemoryUsage( ) );
+
+		map.remove( key1 );
+		map.remove( key3 );
+		assertEquals( 0, map.getMemoryUsage( ) );
+	}
+
+	/**
+	 * @throws DataException
+	 */
+	@Test
+	public void testLeastFrequentlyUsed( ) throws DataException
+	{
+		long rowsSize = JVMLevelCacheMap.measureMemorySize( createCacheObject( 10 ) );
+		JVMLevelCacheMap map = new JVMLevelCacheMap( lockedEntries,
+				rowsSize * 2,
+				0,
+				0,
+				true );
+		DataSourceAndDataSet key1 = createKey( "dataSet1" );
+		DataSourceAndDataSet key2 = createKey( "dataSet2" );
+		map.put( key1, createCacheObject( 10 ) );
+		map.put( key2, createCacheObject( 10 ) );
+		map.get( key1 );
+		map.get( key1 );
+		map.get( key2 );
+		map.put( createKey( "dataSet3" ), createCacheObject( 10 ) );
+
+		assertNotNull( map.get( key1 ) );
+		assertNull( map.get( key2 ) );
+	}
+
+	/**
+	 * @throws DataException
+	 */
+	@Test
+	public void testLockedEntryIsNotEvicted( ) throws DataException
+	{
+		long rowsSize = JVMLevelCacheMap.measureMemorySize( createCacheObject( 10 ) );
+		JVMLevelCacheMap map = new JVMLevelCacheMap( lockedEntries,
+				rowsSize,
+				0,
+				0,
+				false );
+		DataSourceAndDataSet key1 = createKey( "dataSet1" );
+		DataSourceAndDataSet key2 = createKey( "dataSet2" );
+		map.put( key1, createCacheObject( 10 ) );
+		lockedEntries.put( key1, Integer.valueOf( 1 ) );
+		map.put( key2, createCacheObject( 10 ) );
+
+		assertNotNull( map.get( key1 ) );
+		assertNull( map.get( key2 ) );
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testTimeToLive( ) throws Exception
+	{
+		JVMLevelCacheMap map = new JVMLevelCacheMap( lockedEntries,
+				0,
+				0,
+				1,
+				false );
+		DataSourceAndDataSet key = createKey( "dataSet1" );
+		map.put( key, createCacheObject( 10 ) );
+		Thread.sleep( 20 );
+		assertNull( map.lookup( key ) );
+		assertEquals( 0, map.size( ) );
+		assertEquals( 1, map.getMissCount( ) );
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testSingleLoader( ) throws Exception
+	{
+		final JVMLevelCacheMap map = new JVMLevelCacheMap( lockedEntries,
+				0,
+				0,
+				0,
+				false );
+		final DataSourceAndDataSet key = createKey( "dataSet1" );
+		final AtomicInteger loads = new AtomicInteger( );
+		final AtomicInteger hits = new AtomicInteger( );
+		final CountDownLatch start = new CountDownLatch( 1 );
+		final List<Throwable> errors = new ArrayList<Throwable>( );
+		List<Thread> threads = new ArrayList<Thread>( );
+		for ( int i = 0; i < 20; i++ )
+		{
+			Thread thread = new Thread( ) {
+
+				public void run( )
+				{
+					try
+					{
+						start.await( );
+						while ( map.lookup( key ) == null )
+						{
+							if ( map.startLoading( key, this, 60000 ) )
+							{
+								loads.incrementAndGet( );
+								try
+								{
+									Thread.sleep( 50 );
+									map.put( key, createCacheObject( 10 ) );
+								}
+								finally
+								{
+									map.finishLoading( key, this );
+								}
+								return;
+							}
+						}
+						hits.incrementAndGet( );
+					}
+					catch ( Throwable ex )
+					{
+						synchronized ( errors )
+						{
+							errors.add( ex );
+						}
+					}
+				}
+			};
+			thread.start( );
+			threads.add( thread );
+		}
+		start.countDown( );
+		for ( int i = 0; i < threads.size( ); i++ )
+		{
+			threads.get( i ).join( );
+		}
+		assertTrue( errors.toString( ), errors.isEmpty( ) );
+		assertEquals( 1, loads.get( ) );
+		assertEquals( 19, hits.get( ) );
+	}
+
+	private DataSourceAndDataSet createKey( String dataSetName )
+	{
+		return DataSourceAndDataSet.newInstance( dataSource,
+				new OdaDataSetDesign( dataSetName, dataSource.getName( ) ),
+				null,
+				null,
+				false );
+	}
+
+	private MemoryDataSetCacheObject createCacheObject( int rowCount )
+			throws DataException
+	{
+		List<ResultFieldMetadata> columnList = new ArrayList<ResultFieldMetadata>( );
+		columnList.add( new ResultFieldMetadata( 1,
+				"id",
+				"id",
+				Integer.class,
+				Integer.class.getName( ),
+				false ) );
+		columnList.add( new ResultFieldMetadata( 2,
+				"name",
+				"name",
+				String.class,
+				String.class.getName( ),
+				false ) );
+		ResultClass resultClass = new ResultClass( columnList );
+		MemoryDataSetCacheObject cacheObject = new MemoryDataSetCacheObject( Integer.MAX_VALUE );
+		cacheObject.setResultClass( resultClass );
+		for ( int i = 0; i < rowCount; i++ )
+		{
+			cacheObject.populateResult( new ResultObject( resultClass,
+					new Object[]{
+							Integer.valueOf( i ), "name" + i
+					} ) );
+		}
+		return cacheObject;
+	}
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+import org.eclipse.birt.data.engine.impl.MemoryUsageSetting;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the memory budget shared by the caches of all the queries.
+ */
+public class CacheMemoryAccountTest
+{
+
+	private long budget;
+
+	@Before
+	public void cacheMemoryAccountSetUp( )
+	{
+		budget = MemoryUsageSetting.getMemoryBudget( );
+		MemoryUsageSetting.setMemoryBudget( MemoryUsageSetting.getReservedMemory( )
+				+ 1024 * 1024 );
+	}
+
+	@After
+	public void cacheMemoryAccountTearDown( )
+	{
+		MemoryUsageSetting.setMemoryBudget( budget );
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testQueryLimit( )
+	{
+		CacheMemoryAccount account = new CacheMemoryAccount( 1000 );
+		assertTrue( account.isLimited( ) );
+		account.add( 600 );
+		assertTrue( account.hasRoom( ) );
+		account.add( 600 );
+		assertFalse( account.hasRoom( ) );
+		account.release( );
+	}
+
+	/**
+	 *
+	 */
+	@Test
+	public void testSharedBudget( )
+	{
+		long reserved = MemoryUsageSetting.getReservedMemory( );
+		CacheMemoryAccount account1 = new CacheMemoryAccount( 0 );
+		CacheMemoryAccount account2 = new CacheMemoryAccount( 0 );
+		account1.add( 900 * 1024 );
+		assertTrue( account1.hasRoom( ) );
+
+		// the second query finds the budget used up
+		account2.add( 200 * 1024 );
+		assertFalse( account2.hasRoom( ) );
+		account2.release( );
+
+		account1.release( );
+		account1.release( );
+		assertEquals( reserved, MemoryUsageSetting.getReservedMemory( ) );
+
+		CacheMemoryAccount account3 = new CacheMemoryAccount( 0 );
+		account3.add( 200 * 1024 );
+		assertTrue( account3.hasRoom( ) );
+		account3.close( );
+		assertEquals( reserved, MemoryUsageSetting.getReservedMemory( ) );
+	}
+}
@@ -31,6 +31,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.Ignore;
 import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
 
 /**
  * Test the function of SizeOfUtil
@@ -55,78 +56,115 @@ public class SizeOfUtilTest {
 	@Test
     public void testSizeOfUtil( ) throws DataException
 	{
-
-		String x = System.getProperty( "java.version" );
-//		if ( System.getProperty( "java.version" ).startsWith( "1.8" ) )
-//		{
-			runWithJDK18( );
-//		}
-//		else
-//		{
-//			runWithJDK14( );
-//		}
+		// the strings take one byte per character since java 9
+		boolean compactStrings = !System.getProperty( "java.specification.version" )
+				.startsWith( "1." );
+		if ( org.eclipse.birt.data.engine.executor.cache.SizeOfUtil.POINTER_SIZE == 8 )
+		{
+			runWithUncompressedReferences( compactStrings );
+		}
+		else
+		{
+			// the sizes are only known for the 64 bits JVMs
+			assumeTrue( org.eclipse.birt.data.engine.executor.cache.SizeOfUtil.OBJECT_OVERHEAD == 12 );
+			runWithCompressedReferences( compactStrings );
+		}
 	}
 
 	/**
+	 * @param compactStrings
 	 * @throws DataException
 	 */
-	private void runWithJDK14( ) throws DataException
+	private void runWithCompressedReferences( boolean compactStrings )
+			throws DataException
 	{
-		assertEquals( sizeOfUtil.sizeOf( getResultObject( 1, 1 ) ), 304 );
-		assertEquals( sizeOfUtil.sizeOf( getResultObject( 3, 3 ) ), 312 );
-		assertEquals( sizeOfUtil.sizeOf( getResultObject( 3, 7 ) ), 320 );
-		assertEquals( sizeOfUtil.sizeOf( getResultObject( 5, 8 ) ), 320 );
-		assertEquals( sizeOfUtil.sizeOf( getResultObject( 12, 7 ) ), 336 );
-		assertEquals( sizeOfUtil.sizeOf( getResultObject( 7, 12 ) ), 328 );
-		assertEquals( sizeOfUtil.sizeOf( getResultObject( 18, 22 ) ), 360 );
-		assertEquals( sizeOfUtil.sizeOf( getResultObject( 38, 42 ) ), 416 );
-
-		assertEquals( sizeOfUtil.sizeOf( getResultObjectWithNull( 3, 3, new int[]{
+		assertEquals( 380, sizeOfUtil.sizeOf( getResultObject( 1, 1 ) ) );
+		assertEquals( 380, sizeOfUtil.sizeOf( getResultObject( 3, 3 ) ) );
+		assertEquals( 380, sizeOfUtil.sizeOf( getResultObject( 3, 7 ) ) );
+		assertEquals( compactStrings ? 380 : 388,
+				sizeOfUtil.sizeOf( getResultObject( 5, 8 ) ) );
+		assertEquals( compactStrings ? 388 : 396,
+				sizeOfUtil.sizeOf( getResultObject( 12, 7 ) ) );
+		assertEquals( compactStrings ? 388 : 396,
+				sizeOfUtil.sizeOf( getResultObject( 7, 12 ) ) );
+		assertEquals( compactStrings ? 412 : 428,
+				sizeOfUtil.sizeOf( getResultObject( 18, 22 ) ) );
+		assertEquals( compactStrings ? 452 : 492,
+				sizeOfUtil.sizeOf( getResultObject( 38, 42 ) ) );
+
+		assertEquals( 172, sizeOfUtil.sizeOf( getResultObjectWithNull( 3, 3, new int[]{
 				2, 4, 6, 7
-		} ) ), 144 );
-		assertEquals( sizeOfUtil.sizeOf( getResultObjectWithNull( 3, 3, new int[]{
+		} ) ) );
+		assertEquals( 244, sizeOfUtil.sizeOf( getResultObjectWithNull( 3, 3, new int[]{
 				2, 4
-		} ) ), 208 );
-		assertEquals( sizeOfUtil.sizeOf( getResultObjectWithNull( 3, 7, new int[]{
+		} ) ) );
+		assertEquals( 220, sizeOfUtil.sizeOf( getResultObjectWithNull( 3, 7, new int[]{
 				2, 7
-		} ) ), 192 );
-		assertEquals( sizeOfUtil.sizeOf( getResultObjectWithNull( 5, 8, new int[]{
-				3, 6
-		} ) ), 272 );
-		assertEquals( sizeOfUtil.sizeOf( getResultObjectWithNull( 12, 7, new int[]{
-				1, 4, 5
-		} ) ), 272 );
+		} ) ) );
+		assertEquals( compactStrings ? 332 : 340,
+				sizeOfUtil.sizeOf( getResultObjectWithNull( 5, 8, new int[]{
+						3, 6
+				} ) ) );
+		assertEquals( compactStrings ? 308 : 316,
+				sizeOfUtil.sizeOf( getResultObjectWithNull( 12, 7, new int[]{
+						1, 4, 5
+				} ) ) );
 	}
 
 	/**
+	 * @param compactStrings
 	 * @throws DataException
 	 */
-	private void runWithJDK18( ) throws DataException
+	private void runWithUncompressedReferences( boolean compactStrings )
+			throws DataException
 	{
-		assertEquals( 520, sizeOfUtil.sizeOf( getResultObject( 1, 1 ) ) );
-		assertEquals( 528, sizeOfUtil.sizeOf( getResultObject( 3, 3 ) ) );
-		assertEquals( 536, sizeOfUtil.sizeOf( getResultObject( 3, 7 ) ) );
-		assertEquals( 536, sizeOfUtil.sizeOf( getResultObject( 5, 8 ) ) );
-		assertEquals( 552, sizeOfUtil.sizeOf( getResultObject( 12, 7 ) ) );
-		assertEquals( 544, sizeOfUtil.sizeOf( getResultObject( 7, 12 ) ) );
-		assertEquals( 576, sizeOfUtil.sizeOf( getResultObject( 18, 22 ) ) );
-		assertEquals( 632, sizeOfUtil.sizeOf( getResultObject( 38, 42 ) ) );
-
-		assertEquals( 192, sizeOfUtil.sizeOf( getResultObjectWithNull( 3, 3, new int[]{
+		assertEquals( 488, sizeOfUtil.sizeOf( getResultObject( 1, 1 ) ) );
+		assertEquals( 488, sizeOfUtil.sizeOf( getResultObject( 3, 3 ) ) );
+		assertEquals( 496, sizeOfUtil.sizeOf( getResultObject( 3, 7 ) ) );
+		assertEquals( compactStrings ? 504 : 512,
+				sizeOfUtil.sizeOf( getResultObject( 5, 8 ) ) );
+		assertEquals( compactStrings ? 504 : 512,
+				sizeOfUtil.sizeOf( getResultObject( 12, 7 ) ) );
+		assertEquals( compactStrings ? 504 : 512,
+				sizeOfUtil.sizeOf( getResultObject( 7, 12 ) ) );
+		assertEquals( compactStrings ? 528 : 544,
+				sizeOfUtil.sizeOf( getResultObject( 18, 22 ) ) );
+		assertEquals( compactStrings ? 568 : 608,
+				sizeOfUtil.sizeOf( getResultObject( 38, 42 ) ) );
+
+		assertEquals( 248, sizeOfUtil.sizeOf( getResultObjectWithNull( 3, 3, new int[]{
 				2, 4, 6, 7
 		} ) ) );
-		assertEquals( 280, sizeOfUtil.sizeOf( getResultObjectWithNull( 3, 3, new int[]{
+		assertEquals( 328, sizeOfUtil.sizeOf( getResultObjectWithNull( 3, 3, new int[]{
 				2, 4
 		} ) ) );
-		assertEquals( 256, sizeOfUtil.sizeOf( getResultObjectWithNull( 3, 7, new int[]{
+		assertEquals( 312, sizeOfUtil.sizeOf( getResultObjectWithNull( 3, 7, new int[]{
 				2, 7
 		} ) ) );
-		assertEquals( 472, sizeOfUtil.sizeOf( getResultObjectWithNull( 5, 8, new int[]{
-				3, 6
-		} ) ) );
-		assertEquals( 464, sizeOfUtil.sizeOf( getResultObjectWithNull( 12, 7, new int[]{
-				1, 4, 5
-		} ) ) );
+		assertEquals( compactStrings ? 440 : 448,
+				sizeOfUtil.sizeOf( getResultObjectWithNull( 5, 8, new int[]{
+						3, 6
+				} ) ) );
+		assertEquals( compactStrings ? 408 : 416,
+				sizeOfUtil.sizeOf( getResultObjectWithNull( 12, 7, new int[]{
+						1, 4, 5
+				} ) ) );
+	}
+
+	/**
+	 * @throws DataException
+	 */
+	@Test
+	public void testBigDecimalPrecision( ) throws DataException
+	{
+		int small = org.eclipse.birt.data.engine.executor.cache.SizeOfUtil.sizeOf( BigDecimal.class,
+				new BigDecimal( "12345.678" ) );
+		int large = org.eclipse.birt.data.engine.executor.cache.SizeOfUtil.sizeOf( BigDecimal.class,
+				new BigDecimal( "1111111111111111111111111111" ) );
+		int larger = org.eclipse.birt.data.engine.executor.cache.SizeOfUtil.sizeOf( BigDecimal.class,
+				new BigDecimal( "1111111111111111111111111111111111111111111111111111111111" ) );
+		assertTrue( small < large );
+		assertTrue( large < larger );
 	}
 
 	/**
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.executor.cache.ResultObjectUtil;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the columnar block format of the rows spilled to disk.
+ */
+public class ColumnarSpillFormatTest
+{
+
+	private static final Class[] TYPES = new Class[]{
+			Integer.class,
+			Double.class,
+			Boolean.class,
+			Date.class,
+			Timestamp.class,
+			String.class,
+			BigDecimal.class
+	};
+
+	private ResultClass resultClass;
+	private ResultObjectUtil resultObjectUtil;
+	private File file;
+
+	@Before
+	public void columnarSpillFormatSetUp( ) throws Exception
+	{
+		List<ResultFieldMetadata> columnList = new ArrayList<ResultFieldMetadata>( );
+		for ( int i = 0; i < TYPES.length; i++ )
+		{
+			columnList.add( new ResultFieldMetadata( i + 1,
+					"column" + i,
+					"column" + i,
+					TYPES[i],
+					TYPES[i].getName( ),
+					false ) );
+		}
+		resultClass = new ResultClass( columnList );
+		resultObjectUtil = ResultObjectUtil.newInstance( resultClass, null );
+		file = File.createTempFile( "columnarSpill", ".data" );
+	}
+
+	@After
+	public void columnarSpillFormatTearDown( )
+	{
+		file.delete( );
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testRoundTrip( ) throws Exception
+	{
+		// more than two blocks, and the rows are written in uneven batches
+		IResultObject[] rows = createRows( 2500 );
+		DataFileWriter writer = DataFileWriter.newInstance( file,
+				resultObjectUtil );
+		int pos = 0;
+		int batch = 1;
+		while ( pos < rows.length )
+		{
+			int count = Math.min( batch, rows.length - pos );
+			IResultObject[] subArray = new IResultObject[count];
+			System.arraycopy( rows, pos, subArray, 0, count );
+			writer.write( subArray, count );
+			pos += count;
+			batch = batch * 3 + 1;
+		}
+		writer.close( );
+
+		DataFileReader reader = DataFileReader.newInstance( file,
+				resultObjectUtil );
+		IResultObject[] first = reader.read( 1000 );
+		IResultObject[] second = reader.read( 1500 );
+		reader.close( );
+		for ( int i = 0; i < first.length; i++ )
+		{
+			assertRowEquals( rows[i], first[i] );
+		}
+		for ( int i = 0; i < second.length; i++ )
+		{
+			assertRowEquals( rows[first.length + i], second[i] );
+		}
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testDiscard( ) throws Exception
+	{
+		IResultObject[] rows = createRows( 10 );
+		DataFileWriter writer = DataFileWriter.newInstance( file,
+				resultObjectUtil );
+		writer.write( rows, rows.length );
+		writer.discard( );
+		assertEquals( 0, file.length( ) );
+	}
+
+	private IResultObject[] createRows( int count )
+	{
+		IResultObject[] rows = new IResultObject[count];
+		long time = 1500000000000L;
+		for ( int i = 0; i < count; i++ )
+		{
+			Object[] values = new Object[TYPES.length];
+			values[0] = Integer.valueOf( i % 2 == 0 ? i : -i * 1000 );
+			values[1] = Double.valueOf( i / 7.0 );
+			values[2] = Boolean.valueOf( i % 3 == 0 );
+			values[3] = new Date( time + i * 86400000L );
+			values[4] = new Timestamp( time - i * 1000L );
+			values[5] = "value" + ( i % 20 );
+			values[6] = new BigDecimal( i ).movePointLeft( 2 );
+			// a null in every column, but not in all the blocks
+			if ( i % 11 == 5 && i < 1500 )
+			{
+				values[i % TYPES.length] = null;
+			}
+			rows[i] = new ResultObject( resultClass, values );
+		}
+		return rows;
+	}
+
+	private static void assertRowEquals( IResultObject expected,
+			IResultObject actual ) throws Exception
+	{
+		for ( int i = 1; i <= TYPES.length; i++ )
+		{
+			Object value = actual.getFieldValue( i );
+			assertEquals( expected.getFieldValue( i ), value );
+			if ( value != null )
+			{
+				assertEquals( TYPES[i - 1], value.getClass( ) );
+			}
+		}
+	}
+}
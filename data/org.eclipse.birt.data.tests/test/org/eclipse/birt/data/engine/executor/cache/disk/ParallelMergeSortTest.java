@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the concurrent sort of a run and the tournament tree merge of runs.
+ */
+public class ParallelMergeSortTest
+{
+
+	private ResultClass resultClass;
+
+	// compares the first column only, so that the second column tells whether
+	// equal rows have kept their order
+	private Comparator comparator = new IThreadSafeComparator( ) {
+
+		public int compare( Object obj1, Object obj2 )
+		{
+			try
+			{
+				return ( (Integer) ( (IResultObject) obj1 ).getFieldValue( 1 ) ).compareTo( (Integer) ( (IResultObject) obj2 ).getFieldValue( 1 ) );
+			}
+			catch ( DataException e )
+			{
+				throw new IllegalStateException( e );
+			}
+		}
+	};
+
+	@Before
+	public void parallelMergeSortSetUp( ) throws Exception
+	{
+		List<ResultFieldMetadata> columnList = new ArrayList<ResultFieldMetadata>( );
+		columnList.add( new ResultFieldMetadata( 1,
+				"key",
+				"key",
+				Integer.class,
+				Integer.class.getName( ),
+				false ) );
+		columnList.add( new ResultFieldMetadata( 2,
+				"sequence",
+				"sequence",
+				Integer.class,
+				Integer.class.getName( ),
+				false ) );
+		resultClass = new ResultClass( columnList );
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testSort( ) throws Exception
+	{
+		IResultObject[] rows = createRows( 100000, 1000, new Random( 0 ) );
+		ParallelSortUtil.sort( rows, rows.length, comparator );
+		assertSorted( rows );
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testSortSmallRun( ) throws Exception
+	{
+		IResultObject[] rows = createRows( 10, 3, new Random( 1 ) );
+		ParallelSortUtil.sort( rows, rows.length, comparator );
+		assertSorted( rows );
+	}
+
+	/**
+	 * @throws Exception
+	 */
+	@Test
+	public void testMergeRuns( ) throws Exception
+	{
+		Random random = new Random( 2 );
+		IRowIterator[] runs = new IRowIterator[37];
+		int total = 0;
+		for ( int i = 0; i < runs.length; i++ )
+		{
+			// some runs are empty
+			IResultObject[] rows = createRows( i % 5 == 0 ? 0
+					: random.nextInt( 500 ), 50, random );
+			for ( int j = 0; j < rows.length; j++ )
+			{
+				// the sequence tells the order of the runs
+				rows[j] = new ResultObject( resultClass, new Object[]{
+						rows[j].getFieldValue( 1 ), Integer.valueOf( total + j )
+				} );
+			}
+			Arrays.sort( rows, comparator );
+			runs[i] = new ArrayRowIterator( rows );
+			total += rows.length;
+		}
+
+		MergeSortRowFiles merge = new MergeSortRowFiles( runs,
+				MergeSortUtil.getUtil( comparator ) );
+		for ( int pass = 0; pass < 2; pass++ )
+		{
+			List<IResultObject> result = new ArrayList<IResultObject>( );
+			IResultObject row;
+			while ( ( row = merge.fetch( ) ) != null )
+			{
+				result.add( row );
+			}
+			assertEquals( total, result.size( ) );
+			assertSorted( result.toArray( new IResultObject[0] ) );
+			merge.reset( );
+		}
+		merge.close( );
+	}
+
+	private IResultObject[] createRows( int count, int keyRange, Random random )
+	{
+		IResultObject[] rows = new IResultObject[count];
+		for ( int i = 0; i < count; i++ )
+		{
+			rows[i] = new ResultObject( resultClass, new Object[]{
+					Integer.valueOf( random.nextInt( keyRange ) ),
+					Integer.valueOf( i )
+			} );
+		}
+		return rows;
+	}
+
+	private static void assertSorted( IResultObject[] rows )
+			throws DataException
+	{
+		for ( int i = 1; i < rows.length; i++ )
+		{
+			int key1 = ( (Integer) rows[i - 1].getFieldValue( 1 ) ).intValue( );
+			int key2 = ( (Integer) rows[i].getFieldValue( 1 ) ).intValue( );
+			assertTrue( key1 <= key2 );
+			if ( key1 == key2 )
+			{
+				assertTrue( ( (Integer) rows[i - 1].getFieldValue( 2 ) ).intValue( ) < ( (Integer) rows[i].getFieldValue( 2 ) ).intValue( ) );
+			}
+		}
+	}
+
+	private static class ArrayRowIterator implements IRowIterator
+	{
+
+		private IResultObject[] rows;
+		private int pos = 0;
+
+		ArrayRowIterator( IResultObject[] rows )
+		{
+			this.rows = rows;
+		}
+
+		public void reset( )
+		{
+			pos = 0;
+		}
+
+		public IResultObject fetch( )
+		{
+			return pos < rows.length ? rows[pos++] : null;
+		}
+
+		public void close( )
+		{
+			rows = null;
+		}
+	}
+}
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.expression;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.birt.core.script.JavascriptEvalUtil;
+import org.eclipse.birt.core.script.ScriptContext;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test the expressions evaluated without Rhino against the current row.
+ */
+public class NativeExpressionTest
+{
+
+	private static final String[] NAMES = new String[]{
+			"i", "d", "s", "b", "n", "dec", "date"
+	};
+
+	private static final Class[] TYPES = new Class[]{
+			Integer.class,
+			Double.class,
+			String.class,
+			Boolean.class,
+			Integer.class,
+			BigDecimal.class,
+			Date.class
+	};
+
+	private ExpressionCompiler compiler;
+	private ScriptContext cx;
+	private Scriptable scope;
+	private IResultObject row;
+
+	@Before
+	public void nativeExpressionSetUp( ) throws Exception
+	{
+		compiler = new ExpressionCompiler( );
+		cx = new ScriptContext( );
+		cx.compile( "javascript", null, 0, "1 == 1;" );
+		scope = Context.getCurrentContext( ).initStandardObjects( );
+
+		List<ResultFieldMetadata> columnList = new ArrayList<ResultFieldMetadata>( );
+		for ( int i = 0; i < NAMES.length; i++ )
+		{
+			columnList.add( new ResultFieldMetadata( i + 1,
+					NAMES[i],
+					NAMES[i],
+					TYPES[i],
+					TYPES[i].getName( ),
+					false ) );
+		}
+		row = new ResultObject( new ResultClass( columnList ),
+				new Object[]{
+						Integer.valueOf( 7 ),
+						Double.valueOf( 2.5 ),
+						"abc",
+						Boolean.TRUE,
+						null,
+						new BigDecimal( "1.25" ),
+						new Date( 1500000000000L )
+				} );
+
+		// the row object the scripts see
+		Scriptable rowObject = Context.getCurrentContext( ).newObject( scope );
+		for ( int i = 0; i < NAMES.length; i++ )
+		{
+			Object value = JavascriptEvalUtil.convertToJavascriptValue( row.getFieldValue( i + 1 ),
+					scope );
+			rowObject.put( NAMES[i], rowObject, value );
+			rowObject.put( i + 1, rowObject, value );
+		}
+		ScriptableObject.putProperty( scope, "row", rowObject );
+		Context.getCurrentContext( ).evaluateString( scope,
+				"var BirtMath = { add: function( a, b ) { return a + b; } };",
+				"test",
+				1,
+				null );
+	}
+
+	@After
+	public void nativeExpressionTearDown( )
+	{
+		cx.close( );
+	}
+
+	/**
+	 * The native results are those of the scripts.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testSameResults( ) throws Exception
+	{
+		String[] expressions = new String[]{
+				"row.i + 1",
+				"row[\"i\"] * row.d",
+				"row.i / 2",
+				"row.i % 4",
+				"-row.dec",
+				"row.s + row.i",
+				"row.s + row.d + row.b",
+				"row.i + row.n",
+				"row.s + row.n",
+				"\"5\" * row.i",
+				"row.i > 5",
+				"row.i <= row.d",
+				"row.s == \"abc\"",
+				"row.i == \"7\"",
+				"row.i === \"7\"",
+				"row.n == null",
+				"row.n === null",
+				"row.n != null && row.n > 0",
+				"row.n || row.i",
+				"!row.b",
+				"row.i > 5 ? \"big\" : \"small\"",
+				"row[1] + row[2]",
+				"BirtMath.add( row.i, row.dec )"
+		};
+		for ( int i = 0; i < expressions.length; i++ )
+		{
+			ComplexExpression expr = (ComplexExpression) compiler.compile( expressions[i],
+					null,
+					cx );
+			Object expected = expr.evaluate( cx, scope );
+			Object actual = expr.evaluate( cx, scope, row );
+			assertEquals( expressions[i],
+					expected == null ? null : expected.toString( ),
+					actual == null ? null : actual.toString( ) );
+			assertEquals( expressions[i],
+					expected == null ? null : expected.getClass( ),
+					actual == null ? null : actual.getClass( ) );
+		}
+	}
+
+	/**
+	 * The supported expressions do not need the row object of the scope.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testWithoutScript( ) throws Exception
+	{
+		Scriptable emptyScope = Context.getCurrentContext( )
+				.initStandardObjects( );
+		ComplexExpression expr = (ComplexExpression) compiler.compile( "row.i * 2 + row.dec",
+				null,
+				cx );
+		assertEquals( Double.valueOf( 15.25 ),
+				expr.evaluate( cx, emptyScope, row ) );
+		assertEquals( Boolean.TRUE,
+				ExprEvaluateUtil.evaluateCompiledExpression( compiler.compile( "row.s != \"x\" && row.i >= 7",
+						null,
+						cx ),
+						row,
+						0,
+						emptyScope,
+						cx ) );
+	}
+
+	/**
+	 * The dates and the unsupported expressions are evaluated by the script.
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testFallback( ) throws Exception
+	{
+		String[] expressions = new String[]{
+				"row.date + 1",
+				"row.date.getTime( ) > 0",
+				"row.date || row.i",
+				"var x = row.i; x + 1",
+				"Math.max( row.i, 3 )"
+		};
+		for ( int i = 0; i < expressions.length; i++ )
+		{
+			CompiledExpression expr = compiler.compile( expressions[i],
+					null,
+					cx );
+			assertEquals( expressions[i],
+					expr.evaluate( cx, scope ),
+					ExprEvaluateUtil.evaluateCompiledExpression( expr,
+							row,
+							0,
+							scope,
+							cx ) );
+		}
+	}
+}
@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.document;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.eclipse.birt.core.archive.FileArchiveReader;
+import org.eclipse.birt.core.archive.FileArchiveWriter;
+import org.eclipse.birt.core.archive.IDocArchiveReader;
+import org.eclipse.birt.core.archive.RAOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+
+public class CachedRAReaderTest
+{
+
+	private static final String DOCUMENT_OBJECT_NAME = "cube/facttable";
+
+	private String archiveName;
+	private byte[] data;
+	private IDocArchiveReader[] readers;
+
+	@Before
+	public void cachedRAReaderSetUp( ) throws Exception
+	{
+		archiveName = new File( System.getProperty( "java.io.tmpdir" ),
+				"CachedRAReaderTest.rptdocument" ).getAbsolutePath( );
+		data = new byte[DocumentBlockCache.BLOCK_SIZE * 3 + 100];
+		for ( int i = 0; i < data.length; i++ )
+		{
+			data[i] = (byte) ( i * 31 );
+		}
+		FileArchiveWriter writer = new FileArchiveWriter( archiveName );
+		writer.initialize( );
+		RAOutputStream outputStream = writer.createRandomAccessStream( DOCUMENT_OBJECT_NAME );
+		outputStream.write( data );
+		outputStream.close( );
+		writer.finish( );
+		readers = new IDocArchiveReader[]{
+				new FileArchiveReader( archiveName ),
+				new FileArchiveReader( archiveName )
+		};
+	}
+
+	@After
+	public void cachedRAReaderTearDown( ) throws Exception
+	{
+		for ( int i = 0; i < readers.length; i++ )
+		{
+			readers[i].close( );
+		}
+		new File( archiveName ).delete( );
+	}
+
+	@Test
+	public void testSharedBlocks( ) throws IOException
+	{
+		DocumentBlockCache cache = new DocumentBlockCache( 16 );
+		CachedRAReader reader1 = createReader( 0, cache );
+		byte[] buffer = new byte[data.length];
+		assertEquals( data.length, reader1.read( buffer ) );
+		assertTrue( Arrays.equals( data, buffer ) );
+		assertEquals( -1, reader1.read( ) );
+		assertEquals( 4, cache.size( ) );
+
+		// the second reader only reads the cached blocks
+		CachedRAReader reader2 = createReader( 1, cache );
+		reader2.seek( DocumentBlockCache.BLOCK_SIZE - 10 );
+		buffer = new byte[20];
+		assertEquals( 20, reader2.read( buffer, 0, 20 ) );
+		for ( int i = 0; i < buffer.length; i++ )
+		{
+			assertEquals( data[DocumentBlockCache.BLOCK_SIZE - 10 + i],
+					buffer[i] );
+		}
+		reader2.seek( data.length - 1 );
+		assertEquals( data[data.length - 1] & 0xff, reader2.read( ) );
+		assertEquals( 4, cache.size( ) );
+
+		// reading on doesn't move the other reader
+		assertEquals( data.length, reader1.getFilePointer( ) );
+		reader1.close( );
+		reader2.close( );
+	}
+
+	@Test
+	public void testBoundedCache( ) throws IOException
+	{
+		DocumentBlockCache cache = new DocumentBlockCache( 0 );
+		assertFalse( cache.isEnabled( ) );
+		CachedRAReader reader = createReader( 0, cache );
+		byte[] buffer = new byte[data.length];
+		assertEquals( data.length, reader.read( buffer ) );
+		assertTrue( Arrays.equals( data, buffer ) );
+		assertEquals( 0, cache.size( ) );
+		reader.close( );
+
+		cache = new DocumentBlockCache( 32 );
+		for ( int i = 0; i < 100; i++ )
+		{
+			reader = createReader( 0, cache, i );
+			assertEquals( data.length, reader.read( buffer ) );
+			reader.close( );
+		}
+		// each stripe keeps 2 blocks at most
+		assertTrue( cache.size( ) <= 32 );
+	}
+
+	@Test
+	public void testDocumentManager( ) throws Exception
+	{
+		IDocumentManager manager1 = DocumentManagerFactory.createRADocumentManager( readers[0] );
+		IDocumentManager manager2 = DocumentManagerFactory.createRADocumentManager( readers[1] );
+		IDocumentObject object1 = manager1.openDocumentObject( DOCUMENT_OBJECT_NAME );
+		IDocumentObject object2 = manager2.openDocumentObject( DOCUMENT_OBJECT_NAME );
+		byte[] buffer1 = new byte[data.length];
+		byte[] buffer2 = new byte[data.length];
+		object1.seek( 0 );
+		object2.seek( 0 );
+		for ( int i = 0; i < data.length; i += 1000 )
+		{
+			int len = Math.min( 1000, data.length - i );
+			assertEquals( len, object1.read( buffer1, i, len ) );
+			assertEquals( len, object2.read( buffer2, i, len ) );
+		}
+		assertTrue( Arrays.equals( data, buffer1 ) );
+		assertTrue( Arrays.equals( data, buffer2 ) );
+		object1.close( );
+		object2.close( );
+		manager1.close( );
+		manager2.close( );
+	}
+
+	@Test
+	public void testRegeneratedDocument( ) throws Exception
+	{
+		File file = new File( archiveName );
+		long lastModified = file.lastModified( );
+		assertTrue( Arrays.equals( data, readDocumentObject( readers[0] ) ) );
+		readers[0].close( );
+		readers[1].close( );
+
+		// saved again within the resolution of the modified time
+		data = new byte[DocumentBlockCache.BLOCK_SIZE * 2];
+		Arrays.fill( data, (byte) 7 );
+		FileArchiveWriter writer = new FileArchiveWriter( archiveName );
+		writer.initialize( );
+		RAOutputStream outputStream = writer.createRandomAccessStream( DOCUMENT_OBJECT_NAME );
+		outputStream.write( data );
+		outputStream.close( );
+		writer.finish( );
+		file.setLastModified( lastModified );
+		assertEquals( lastModified, file.lastModified( ) );
+
+		readers = new IDocArchiveReader[]{
+				new FileArchiveReader( archiveName )
+		};
+		assertTrue( Arrays.equals( data, readDocumentObject( readers[0] ) ) );
+	}
+
+	private byte[] readDocumentObject( IDocArchiveReader reader )
+			throws Exception
+	{
+		IDocumentManager manager = DocumentManagerFactory.createRADocumentManager( reader );
+		IDocumentObject object = manager.openDocumentObject( DOCUMENT_OBJECT_NAME );
+		byte[] buffer = new byte[(int) object.length( )];
+		object.seek( 0 );
+		assertEquals( buffer.length, object.read( buffer, 0, buffer.length ) );
+		object.close( );
+		manager.close( );
+		return buffer;
+	}
+
+	private CachedRAReader createReader( int index, DocumentBlockCache cache )
+			throws IOException
+	{
+		return createReader( index, cache, 0 );
+	}
+
+	private CachedRAReader createReader( int index, DocumentBlockCache cache,
+			long version ) throws IOException
+	{
+		return new CachedRAReader( readers[index].getStream( DOCUMENT_OBJECT_NAME ),
+				cache,
+				archiveName,
+				version,
+				data.length,
+				DOCUMENT_OBJECT_NAME );
+	}
+}
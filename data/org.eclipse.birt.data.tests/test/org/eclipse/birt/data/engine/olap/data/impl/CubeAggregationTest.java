@@ -1438,6 +1438,110 @@ public class CubeAggregationTest extends BaseTestCase
 			resultSet[i].close( );
 		}
 	}
+	
+	@Test
+    public void testParallelAggregation( ) throws IOException, BirtException
+	{
+		List<String> serialResult = aggregateCube1( null );
+		// the aggregation threads are shared by the whole process, so they
+		// may exist before this test
+		List<String> parallelResult = aggregateCube1( "4" );
+		assertTrue( existAggregationThread( ) );
+		assertEquals( serialResult, parallelResult );
+		assertEquals( 2 + 4 + 8 + 1, serialResult.size( ) );
+	}
+	
+	/**
+	 * Aggregates cube1 on several levels, one sorted stack per level, with the
+	 * given parallelism.
+	 * 
+	 * @param parallelism
+	 *            the value of the system property, null to aggregate serially
+	 * @return the rows of the result sets
+	 */
+	private List<String> aggregateCube1( String parallelism )
+			throws IOException, BirtException
+	{
+		CubeQueryExecutorHelper cubeQueryExcutorHelper = new CubeQueryExecutorHelper( CubeQueryExecutorHelper.loadCube( "cube1",
+				documentManager,
+				new StopSign( ) ) );
+		ISelection[][] filter = new ISelection[1][1];
+		filter[0][0] = SelectionFactory.createRangeSelection( new Object[]{"1"},
+				new Object[]{"3"},
+				true,
+				false );
+		cubeQueryExcutorHelper.addFilter( new LevelFilter( dimLevel21, filter[0] ) );
+		
+		AggregationFunctionDefinition[] funcitons = new AggregationFunctionDefinition[]{
+				new AggregationFunctionDefinition( "measure1", IBuildInAggregation.TOTAL_SUM_FUNC ),
+				new AggregationFunctionDefinition( "measure1", IBuildInAggregation.TOTAL_COUNT_FUNC ),
+				new AggregationFunctionDefinition( "measure2", IBuildInAggregation.TOTAL_MAX_FUNC ),
+				new AggregationFunctionDefinition( "measure2", IBuildInAggregation.TOTAL_AVE_FUNC )
+		};
+		AggregationDefinition[] aggregations = new AggregationDefinition[4];
+		aggregations[0] = new AggregationDefinition( new DimLevel[]{dimLevel21},
+				new int[]{IDimensionSortDefn.SORT_ASC},
+				funcitons );
+		aggregations[1] = new AggregationDefinition( new DimLevel[]{dimLevel11, dimLevel12},
+				new int[]{IDimensionSortDefn.SORT_ASC, IDimensionSortDefn.SORT_DESC},
+				funcitons );
+		aggregations[2] = new AggregationDefinition( new DimLevel[]{dimLevel31},
+				new int[]{IDimensionSortDefn.SORT_DESC},
+				new AggregationFunctionDefinition[]{
+					new AggregationFunctionDefinition( "measure1", IBuildInAggregation.TOTAL_MIN_FUNC )
+				} );
+		aggregations[3] = new AggregationDefinition( null, null, funcitons );
+		
+		IAggregationResultSet[] resultSet;
+		if ( parallelism != null )
+		{
+			System.setProperty( DataEngine.CUBE_AGGREGATION_PARALLELISM,
+					parallelism );
+		}
+		try
+		{
+			resultSet = cubeQueryExcutorHelper.execute( aggregations,
+					new StopSign( ) );
+		}
+		finally
+		{
+			System.getProperties( ).remove( DataEngine.CUBE_AGGREGATION_PARALLELISM );
+		}
+		
+		List<String> result = new ArrayList<String>( );
+		for ( int i = 0; i < resultSet.length; i++ )
+		{
+			for ( int j = 0; j < resultSet[i].length( ); j++ )
+			{
+				resultSet[i].seek( j );
+				StringBuffer row = new StringBuffer( );
+				row.append( i );
+				for ( int k = 0; k < resultSet[i].getLevelCount( ); k++ )
+				{
+					row.append( ' ' ).append( Arrays.asList( resultSet[i].getLevelKeyValue( k ) ) );
+				}
+				for ( int k = 0; k < resultSet[i].getAggregationCount( ); k++ )
+				{
+					row.append( ' ' ).append( resultSet[i].getAggregationValue( k ) );
+				}
+				result.add( row.toString( ) );
+			}
+			resultSet[i].close( );
+		}
+		return result;
+	}
+	
+	private static boolean existAggregationThread( )
+	{
+		for ( Thread thread : Thread.getAllStackTraces( ).keySet( ) )
+		{
+			if ( thread.getName( ).startsWith( "BIRT cube aggregation" ) )
+			{
+				return true;
+			}
+		}
+		return false;
+	}
 }
 
 /*
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.impl.aggregation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+
+public class ParallelAggregationUtilTest
+{
+
+	@Test
+	public void testTaskFailures( ) throws Exception
+	{
+		DataException dataException = new DataException( ResourceConstants.INVALID_AGGR );
+		try
+		{
+			ParallelAggregationUtil.invokeAll( createTasks( dataException ) );
+			fail( );
+		}
+		catch ( DataException e )
+		{
+			assertSame( dataException, e );
+		}
+
+		IOException ioException = new IOException( );
+		try
+		{
+			ParallelAggregationUtil.invokeAll( createTasks( ioException ) );
+			fail( );
+		}
+		catch ( IOException e )
+		{
+			assertSame( ioException, e );
+		}
+
+		Exception exception = new Exception( );
+		try
+		{
+			ParallelAggregationUtil.invokeAll( createTasks( exception ) );
+			fail( );
+		}
+		catch ( DataException e )
+		{
+			assertEquals( ResourceConstants.CUBE_AGGREGATION_ERROR,
+					e.getErrorCode( ) );
+			assertSame( exception, e.getCause( ) );
+		}
+	}
+
+	@Test
+	public void testInterrupted( ) throws Exception
+	{
+		final CountDownLatch latch = new CountDownLatch( 1 );
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>( );
+		tasks.add( new Callable<Object>( ) {
+
+			public Object call( ) throws Exception
+			{
+				latch.await( );
+				return null;
+			}
+		} );
+		Thread.currentThread( ).interrupt( );
+		try
+		{
+			ParallelAggregationUtil.invokeAll( tasks );
+			fail( );
+		}
+		catch ( DataException e )
+		{
+			assertEquals( ResourceConstants.CUBE_AGGREGATION_INTERRUPTED,
+					e.getErrorCode( ) );
+			// the interrupt is kept for the caller
+			assertTrue( Thread.interrupted( ) );
+		}
+		finally
+		{
+			latch.countDown( );
+		}
+	}
+
+	private static List<Callable<Object>> createTasks( final Exception failure )
+	{
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>( );
+		tasks.add( new Callable<Object>( ) {
+
+			public Object call( ) throws Exception
+			{
+				return null;
+			}
+		} );
+		tasks.add( new Callable<Object>( ) {
+
+			public Object call( ) throws Exception
+			{
+				throw failure;
+			}
+		} );
+		return tasks;
+	}
+}
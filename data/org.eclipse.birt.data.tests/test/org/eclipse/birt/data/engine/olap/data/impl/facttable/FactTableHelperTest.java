@@ -27,6 +27,7 @@ import org.eclipse.birt.data.engine.olap.data.api.cube.IHierarchy;
 import org.eclipse.birt.data.engine.olap.data.api.cube.ILevelDefn;
 import org.eclipse.birt.data.engine.olap.data.document.DocumentManagerFactory;
 import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
 import org.eclipse.birt.data.engine.olap.data.impl.NamingUtil;
 import org.eclipse.birt.data.engine.olap.data.impl.Traversalor;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.Dimension;
@@ -572,6 +573,241 @@ public class FactTableHelperTest {
 		System.out.println( "Finish iterator... time: "  + (System.currentTimeMillis( ) - startTime)/1000);
 	}
 	
+	/**
+	 * 
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	@Test
+    public void testSkipSegmentsByPositionIndex( ) throws IOException, BirtException
+	{
+		IDocumentManager documentManager = DocumentManagerFactory.createFileDocumentManager( );
+		testSkipSegmentsByPositionIndex( documentManager );
+		documentManager.close( );
+	}
+	
+	private void testSkipSegmentsByPositionIndex( IDocumentManager documentManager ) throws IOException, BirtException
+	{
+		Dimension[] dimensions = new Dimension[1];
+		String[] levelNames = new String[]{"dimension1"};
+		DimensionForTest iterator = new DimensionForTest( levelNames );
+		int[] data = new int[SparseFactTableDataset.ROW_COUNT * 2];
+		for ( int i = 0; i < data.length; i++ )
+		{
+			data[i] = i;
+		}
+		iterator.setLevelMember( 0, data );
+		ILevelDefn[] levelDefs = new ILevelDefn[1];
+		levelDefs[0] = new LevelDefinition( "dimension1", new String[]{"dimension1"}, null );
+		dimensions[0] = (Dimension) DimensionFactory.createDimension( "dimension1", documentManager, iterator, levelDefs, false, new StopSign() );
+		
+		String factTableName = NamingUtil.getFactTableName( "sparseFactTable" );
+		FactTableAccessor factTableConstructor = new FactTableAccessor( documentManager );
+		factTableConstructor.saveFactTable( factTableName,
+				CubeUtility.getKeyColNames(dimensions),
+				CubeUtility.getKeyColNames(dimensions),
+				new SparseFactTableDataset( ),
+				dimensions,
+				new String[]{"measure1"},
+				new StopSign( ) );
+		assertTrue( documentManager.exist( NamingUtil.getFTSUIndexName( factTableName ) ) );
+		
+		// the rows are at the even positions, only one of the selected
+		// positions is used by a row
+		int selectedRow = SparseFactTableDataset.ROW_COUNT * 4 / 5;
+		IDiskArray[] dimensionPosition = new IDiskArray[1];
+		dimensionPosition[0] = new BufferedPrimitiveDiskArray( );
+		for ( int i = 1; i < data.length; i += 2 )
+		{
+			if ( i == selectedRow * 2 + 1 )
+			{
+				dimensionPosition[0].add( Integer.valueOf( selectedRow * 2 ) );
+			}
+			dimensionPosition[0].add( Integer.valueOf( i ) );
+		}
+		
+		RecordingDocumentManager recordingManager = new RecordingDocumentManager( documentManager );
+		List<String> selectedRows = readRows( recordingManager, factTableName, dimensionPosition );
+		assertEquals( Arrays.asList( new String[]{
+			selectedRow * 2 + " " + selectedRow
+		} ), selectedRows );
+		assertEquals( 1, recordingManager.getOpenedSegments( factTableName ).size( ) );
+		
+		// the fact tables saved without the index open every segment
+		recordingManager = new RecordingDocumentManager( documentManager );
+		recordingManager.hideIndex = true;
+		assertEquals( selectedRows, readRows( recordingManager, factTableName, dimensionPosition ) );
+		int segmentCount = recordingManager.getOpenedSegments( factTableName ).size( );
+		assertTrue( segmentCount > 1 );
+		
+		// all the positions selected
+		dimensionPosition[0] = new BufferedPrimitiveDiskArray( );
+		for ( int i = 0; i < data.length; i++ )
+		{
+			dimensionPosition[0].add( Integer.valueOf( i ) );
+		}
+		recordingManager = new RecordingDocumentManager( documentManager );
+		assertEquals( SparseFactTableDataset.ROW_COUNT, readRows( recordingManager, factTableName, dimensionPosition ).size( ) );
+		assertEquals( segmentCount, recordingManager.getOpenedSegments( factTableName ).size( ) );
+	}
+	
+	private static List<String> readRows( IDocumentManager documentManager,
+			String factTableName, IDiskArray[] dimensionPosition ) throws IOException, BirtException
+	{
+		FactTable factTable = new FactTableAccessor( documentManager ).load( factTableName,
+				new StopSign( ) );
+		FactTableRowIterator facttableRowIterator = new FactTableRowIterator( factTable,
+				new String[]{"dimension1"},
+				dimensionPosition,
+				new StopSign( ) );
+		List<String> result = new ArrayList<String>( );
+		while ( facttableRowIterator.next( ) )
+		{
+			result.add( facttableRowIterator.getDimensionPosition( 0 ) + " "
+					+ facttableRowIterator.getMeasure( 0 ) );
+		}
+		facttableRowIterator.close( );
+		return result;
+	}
+	
+	/**
+	 * The rows read from the measure columns of the segments are the same as
+	 * the rows read from the segments.
+	 * 
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	@Test
+    public void testMeasureColumns( ) throws IOException, BirtException
+	{
+		IDocumentManager documentManager = DocumentManagerFactory.createFileDocumentManager( );
+		testMeasureColumns( documentManager );
+		documentManager.close( );
+	}
+	
+	private void testMeasureColumns( IDocumentManager documentManager ) throws IOException, BirtException
+	{
+		Dimension[] dimensions = new Dimension[3];
+		for ( int i = 0; i < dimensions.length; i++ )
+		{
+			String name = "dimension" + ( i + 1 );
+			DimensionForTest iterator = new DimensionForTest( new String[]{name} );
+			int[] data = new int[BigLevelsAndFactTableDataset.dimensionPositionLength[i]];
+			for ( int j = 0; j < data.length; j++ )
+			{
+				data[j] = j;
+			}
+			iterator.setLevelMember( 0, data );
+			dimensions[i] = (Dimension) DimensionFactory.createDimension( name,
+					documentManager,
+					iterator,
+					new ILevelDefn[]{
+						new LevelDefinition( name, new String[]{name}, null )
+					},
+					false,
+					new StopSign( ) );
+		}
+		String factTableName = NamingUtil.getFactTableName( "measureColumns" );
+		FactTableAccessor factTableConstructor = new FactTableAccessor( documentManager );
+		factTableConstructor.saveFactTable( factTableName,
+				CubeUtility.getKeyColNames( dimensions ),
+				CubeUtility.getKeyColNames( dimensions ),
+				new BigLevelsAndFactTableDataset( ) {
+
+					public Object getValue( int fieldIndex ) throws BirtException
+					{
+						// some null blocks and some constant blocks
+						if ( fieldIndex == 3 && dimensionPosition[2] == 3 )
+						{
+							return null;
+						}
+						if ( fieldIndex == 4 && dimensionPosition[0] < 20 )
+						{
+							return new Double( 1 );
+						}
+						return super.getValue( fieldIndex );
+					}
+				},
+				dimensions,
+				new String[]{"measure1", "measure2"},
+				new StopSign( ) );
+		
+		IDiskArray[] dimensionPosition = new IDiskArray[1];
+		dimensionPosition[0] = new BufferedPrimitiveDiskArray( );
+		dimensionPosition[0].add( Integer.valueOf( 5 ) );
+		dimensionPosition[0].add( Integer.valueOf( 6 ) );
+		dimensionPosition[0].add( Integer.valueOf( 7 ) );
+		dimensionPosition[0].add( Integer.valueOf( 50 ) );
+		boolean[] usedMeasures = new boolean[]{true, true};
+		
+		RecordingDocumentManager recordingManager = new RecordingDocumentManager( documentManager );
+		List<String> rows = readRows( recordingManager, factTableName, dimensionPosition, null );
+		assertEquals( 4 * 100 * 10, rows.size( ) );
+		assertTrue( rows.contains( "5 0 3 null 1.0" ) );
+		assertTrue( rows.contains( "50 99 9 44550 44550.0" ) );
+		
+		recordingManager = new RecordingDocumentManager( documentManager );
+		assertEquals( rows, readRows( recordingManager, factTableName, dimensionPosition, usedMeasures ) );
+		List<String> segments = recordingManager.getOpenedSegments( factTableName );
+		assertFalse( segments.isEmpty( ) );
+		for ( int i = 0; i < segments.size( ); i++ )
+		{
+			assertTrue( segments.get( i )
+					.endsWith( NamingUtil.getFTSUMeasureColumnsName( "" ) ) );
+		}
+		
+		// the fact tables saved without the columns are read from the rows
+		recordingManager = new RecordingDocumentManager( documentManager );
+		recordingManager.hideColumns = true;
+		assertEquals( rows, readRows( recordingManager, factTableName, dimensionPosition, usedMeasures ) );
+		segments = recordingManager.getOpenedSegments( factTableName );
+		for ( int i = 0; i < segments.size( ); i++ )
+		{
+			assertFalse( segments.get( i )
+					.endsWith( NamingUtil.getFTSUMeasureColumnsName( "" ) ) );
+		}
+		
+		// the unused measures aren't read
+		List<String> measure2Rows = readRows( documentManager,
+				factTableName,
+				dimensionPosition,
+				new boolean[]{false, true} );
+		assertEquals( rows.size( ), measure2Rows.size( ) );
+		for ( int i = 0; i < rows.size( ); i++ )
+		{
+			String[] row = rows.get( i ).split( " " );
+			assertEquals( row[0] + " " + row[1] + " " + row[2] + " null " + row[4],
+					measure2Rows.get( i ) );
+		}
+	}
+	
+	private static List<String> readRows( IDocumentManager documentManager,
+			String factTableName, IDiskArray[] dimensionPosition,
+			boolean[] usedMeasures ) throws IOException, BirtException
+	{
+		FactTable factTable = new FactTableAccessor( documentManager ).load( factTableName,
+				new StopSign( ) );
+		FactTableRowIterator facttableRowIterator = new FactTableRowIterator( factTable,
+				new String[]{"dimension1"},
+				dimensionPosition,
+				new StopSign( ) );
+		if ( usedMeasures != null )
+		{
+			facttableRowIterator.setUsedMeasures( usedMeasures );
+		}
+		List<String> result = new ArrayList<String>( );
+		while ( facttableRowIterator.next( ) )
+		{
+			result.add( facttableRowIterator.getDimensionPosition( 0 ) + " "
+					+ facttableRowIterator.getDimensionPosition( 1 ) + " "
+					+ facttableRowIterator.getDimensionPosition( 2 ) + " "
+					+ facttableRowIterator.getMeasure( 0 ) + " "
+					+ facttableRowIterator.getMeasure( 1 ) );
+		}
+		facttableRowIterator.close( );
+		return result;
+	}
+	
 	private static String[] distinct( String[] sValues )
 	{
 		Arrays.sort( sValues );
@@ -937,3 +1173,155 @@ class BigLevelsAndFactTableDataset implements IDatasetIterator
 		return true;
 	}
 }
+
+/**
+ * The rows are at the even dimension positions.
+ */
+class SparseFactTableDataset implements IDatasetIterator
+{
+	static final int ROW_COUNT = 5000;
+	int ptr = -1;
+	
+	public void close( ) throws BirtException
+	{
+	}
+
+	public Boolean getBoolean( int fieldIndex ) throws BirtException
+	{
+		return null;
+	}
+
+	public Date getDate( int fieldIndex ) throws BirtException
+	{
+		return null;
+	}
+
+	public Double getDouble( int fieldIndex ) throws BirtException
+	{
+		return null;
+	}
+
+	public int getFieldIndex( String name ) throws BirtException
+	{
+		if ( name.equals( "dimension1" ) )
+		{
+			return 0;
+		}
+		else if ( name.equals( "measure1" ) )
+		{
+			return 1;
+		}
+		return -1;
+	}
+
+	public int getFieldType( String name ) throws BirtException
+	{
+		if ( name.equals( "dimension1" ) || name.equals( "measure1" ) )
+		{
+			return DataType.INTEGER_TYPE;
+		}
+		return -1;
+	}
+
+	public Integer getInteger( int fieldIndex ) throws BirtException
+	{
+		return null;
+	}
+
+	public String getString( int fieldIndex ) throws BirtException
+	{
+		return null;
+	}
+
+	public Object getValue( int fieldIndex ) throws BirtException
+	{
+		if ( fieldIndex == 0 )
+		{
+			return Integer.valueOf( ptr * 2 );
+		}
+		else if ( fieldIndex == 1 )
+		{
+			return Integer.valueOf( ptr );
+		}
+		return null;
+	}
+
+	public void first( ) throws BirtException
+	{
+		ptr = -1;
+	}
+
+	public boolean next( ) throws BirtException
+	{
+		ptr++;
+		return ptr < ROW_COUNT;
+	}
+}
+
+/**
+ * Records the document objects opened through it.
+ */
+class RecordingDocumentManager implements IDocumentManager
+{
+	private IDocumentManager documentManager;
+	private List<String> openedObjects = new ArrayList<String>( );
+	boolean hideIndex = false;
+	boolean hideColumns = false;
+	
+	RecordingDocumentManager( IDocumentManager documentManager )
+	{
+		this.documentManager = documentManager;
+	}
+	
+	List<String> getOpenedSegments( String factTableName )
+	{
+		String prefix = NamingUtil.getFactTableName( factTableName );
+		List<String> result = new ArrayList<String>( );
+		for ( int i = 0; i < openedObjects.size( ); i++ )
+		{
+			String name = openedObjects.get( i );
+			if ( name.startsWith( prefix ) && name.length( ) > prefix.length( ) )
+			{
+				result.add( name );
+			}
+		}
+		return result;
+	}
+
+	public IDocumentObject createDocumentObject( String documentObjectName )
+			throws IOException
+	{
+		return documentManager.createDocumentObject( documentObjectName );
+	}
+
+	public boolean exist( String documentObjectName )
+	{
+		if ( hideIndex
+				&& documentObjectName.startsWith( NamingUtil.getFTSUIndexName( "" ) ) )
+		{
+			return false;
+		}
+		if ( hideColumns
+				&& documentObjectName.endsWith( NamingUtil.getFTSUMeasureColumnsName( "" ) ) )
+		{
+			return false;
+		}
+		return documentManager.exist( documentObjectName );
+	}
+
+	public IDocumentObject openDocumentObject( String documentObjectName )
+			throws IOException
+	{
+		openedObjects.add( documentObjectName );
+		return documentManager.openDocumentObject( documentObjectName );
+	}
+
+	public void flush( ) throws IOException
+	{
+		documentManager.flush( );
+	}
+
+	public void close( ) throws IOException
+	{
+	}
+}
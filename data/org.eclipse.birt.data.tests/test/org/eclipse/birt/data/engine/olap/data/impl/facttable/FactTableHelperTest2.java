@@ -57,9 +57,12 @@ import org.eclipse.birt.data.engine.olap.data.impl.dimension.DimensionForTest;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.DimensionResultIterator;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.Level;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.LevelDefinition;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.Member;
 import org.eclipse.birt.data.engine.olap.data.util.BufferedPrimitiveDiskArray;
 import org.eclipse.birt.data.engine.olap.data.util.DataType;
 import org.eclipse.birt.data.engine.olap.data.util.IDiskArray;
+import org.eclipse.birt.data.engine.olap.util.filter.IFacttableRow;
+import org.eclipse.birt.data.engine.olap.util.filter.IJSFacttableFilterEvalHelper;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ScriptableObject;
 
@@ -896,10 +899,18 @@ public class FactTableHelperTest2 extends BaseTestCase
 		documentManager.close( );
 	}
 	
-	private void testMaxAggregation( IDocumentManager documentManager ) throws IOException, BirtException, DataException
+	/**
+	 * Creates the dimensions and saves the fact table of <code>FactTable2</code>.
+	 * 
+	 * @param documentManager
+	 * @param dimensions
+	 * @return the loaded fact table
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	private FactTable createFactTable2( IDocumentManager documentManager,
+			Dimension[] dimensions ) throws IOException, BirtException
 	{
-		Dimension[] dimensions = new Dimension[3];
-		
 		// dimension0
 		String[] levelNames = new String[3];
 		levelNames[0] = "level11";
@@ -969,6 +980,13 @@ public class FactTableHelperTest2 extends BaseTestCase
 		// assertEquals(factTable.getSegmentNumber( ), 1);
 		factTable = factTableConstructor.load( NamingUtil.getFactTableName( "bigThreeDimensions" ),
 				new StopSign( ) );
+		return factTable;
+	}
+	
+	private void testMaxAggregation( IDocumentManager documentManager ) throws IOException, BirtException, DataException
+	{
+		Dimension[] dimensions = new Dimension[3];
+		FactTable factTable = createFactTable2( documentManager, dimensions );
 		String[] dimensionNames = new String[3];
 		dimensionNames[0] = "dimension1";
 		dimensionNames[1] = "dimension2";
@@ -1008,6 +1026,133 @@ public class FactTableHelperTest2 extends BaseTestCase
 		closeResultSets( resultSet );
 	}
 	
+	/**
+	 * The measures read into the primitive buffers are the same as the
+	 * measures read eagerly for a measure filter.
+	 * 
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	@Test
+    public void testPrimitiveMeasures( ) throws IOException, BirtException
+	{
+		IDocumentManager documentManager = DocumentManagerFactory.createFileDocumentManager( );
+		Dimension[] dimensions = new Dimension[3];
+		FactTable factTable = createFactTable2( documentManager, dimensions );
+		String[] dimensionNamesForFilter = new String[]{
+			"dimension1"
+		};
+		IDiskArray[] positionsForFilter = new IDiskArray[]{
+			dimensions[0].findAll( )
+		};
+		FactTableRowIterator primitiveIterator = new FactTableRowIterator( factTable,
+				dimensionNamesForFilter,
+				positionsForFilter,
+				new StopSign( ) );
+		FactTableRowIterator eagerIterator = new FactTableRowIterator( factTable,
+				dimensionNamesForFilter,
+				positionsForFilter,
+				new StopSign( ) );
+		eagerIterator.addMeasureFilter( new IJSFacttableFilterEvalHelper( ) {
+
+			public boolean evaluateFilter( IFacttableRow facttableRow )
+			{
+				return true;
+			}
+		} );
+		int rowCount = 0;
+		while ( primitiveIterator.next( ) )
+		{
+			assertTrue( eagerIterator.next( ) );
+			assertTrue( primitiveIterator.getMeasure( 0 ) instanceof Integer );
+			assertTrue( primitiveIterator.getMeasure( 1 ) instanceof Double );
+			assertEquals( eagerIterator.getMeasure( 0 ),
+					primitiveIterator.getMeasure( 0 ) );
+			assertEquals( eagerIterator.getMeasure( 1 ),
+					primitiveIterator.getMeasure( 1 ) );
+			rowCount++;
+		}
+		assertFalse( eagerIterator.next( ) );
+		assertEquals( FactTable2.L1Col.length, rowCount );
+		primitiveIterator.close( );
+		eagerIterator.close( );
+		documentManager.close( );
+	}
+	
+	/**
+	 * The aggregation only gets the measures used by its functions, and
+	 * the results are the same as the results with every measure used.
+	 * 
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	@Test
+    public void testUnusedMeasures( ) throws IOException, BirtException
+	{
+		IDocumentManager documentManager = DocumentManagerFactory.createFileDocumentManager( );
+		Dimension[] dimensions = new Dimension[3];
+		FactTable factTable = createFactTable2( documentManager, dimensions );
+
+		AggregationFunctionDefinition[] funcitons = new AggregationFunctionDefinition[1];
+		funcitons[0] = new AggregationFunctionDefinition( "max", "measure1", IBuildInAggregation.TOTAL_MAX_FUNC );
+		RecordingDataSet4Aggregation dataSet4Aggregation = createDataSet4Aggregation( factTable,
+				dimensions );
+		IAggregationResultSet[] resultSet = new AggregationExecutor( null,
+				dataSet4Aggregation,
+				new AggregationDefinition[]{
+					new AggregationDefinition( null, null, funcitons )
+				},
+				10 * 1024 * 1024 ).execute( new StopSign( ) );
+		assertTrue( dataSet4Aggregation.usedMeasures[0] );
+		assertFalse( dataSet4Aggregation.usedMeasures[1] );
+		resultSet[0].seek( 0 );
+		Object max = resultSet[0].getAggregationValue( 0 );
+		assertEquals( 11, max );
+		closeResultSets( resultSet );
+
+		// every measure is got when they are all used
+		funcitons = new AggregationFunctionDefinition[2];
+		funcitons[0] = new AggregationFunctionDefinition( "max", "measure1", IBuildInAggregation.TOTAL_MAX_FUNC );
+		funcitons[1] = new AggregationFunctionDefinition( "sum", "measure2", IBuildInAggregation.TOTAL_SUM_FUNC );
+		dataSet4Aggregation = createDataSet4Aggregation( factTable, dimensions );
+		resultSet = new AggregationExecutor( null,
+				dataSet4Aggregation,
+				new AggregationDefinition[]{
+					new AggregationDefinition( null, null, funcitons )
+				},
+				10 * 1024 * 1024 ).execute( new StopSign( ) );
+		assertTrue( dataSet4Aggregation.usedMeasures[0] );
+		assertTrue( dataSet4Aggregation.usedMeasures[1] );
+		resultSet[0].seek( 0 );
+		assertEquals( max, resultSet[0].getAggregationValue( 0 ) );
+		assertEquals( new Double( 66 ), resultSet[0].getAggregationValue( 1 ) );
+		closeResultSets( resultSet );
+		documentManager.close( );
+	}
+	
+	private RecordingDataSet4Aggregation createDataSet4Aggregation(
+			FactTable factTable, Dimension[] dimensions ) throws IOException,
+			DataException
+	{
+		IDiskArray positionArray = dimensions[0].findAll( );
+		DimensionResultIterator[] dimesionResultSets = new DimensionResultIterator[]{
+			new DimensionResultIterator( dimensions[0],
+					positionArray,
+					new StopSign( ) )
+		};
+		FactTableRowIterator facttableRowIterator = new FactTableRowIterator( factTable,
+				new String[]{
+					"dimension1"
+				},
+				new IDiskArray[]{
+					positionArray
+				},
+				new StopSign( ) );
+		return new RecordingDataSet4Aggregation( new DataSetFromOriginalCube( facttableRowIterator,
+				dimesionResultSets,
+				null ) );
+	}
+	
 	/**
 	 * 
 	 * @throws IOException
@@ -1550,3 +1695,62 @@ class FactTable2 implements IDatasetIterator
 		return true;
 	}
 }
+
+/**
+ * Records the measures got by the aggregation.
+ */
+class RecordingDataSet4Aggregation implements IDataSet4Aggregation
+{
+
+	private IDataSet4Aggregation dataSet;
+	boolean[] usedMeasures;
+
+	RecordingDataSet4Aggregation( IDataSet4Aggregation dataSet )
+			throws IOException
+	{
+		this.dataSet = dataSet;
+		this.usedMeasures = new boolean[dataSet.getMetaInfo( )
+				.getMeasureInfos( ).length];
+	}
+
+	public MetaInfo getMetaInfo( )
+	{
+		return dataSet.getMetaInfo( );
+	}
+
+	public boolean next( ) throws DataException, IOException
+	{
+		return dataSet.next( );
+	}
+
+	public void close( ) throws DataException, IOException
+	{
+		dataSet.close( );
+	}
+
+	public Object getMeasureValue( int measureIndex ) throws DataException,
+			IOException
+	{
+		if ( measureIndex < usedMeasures.length )
+		{
+			usedMeasures[measureIndex] = true;
+		}
+		return dataSet.getMeasureValue( measureIndex );
+	}
+
+	public Member getMember( int dimIndex, int levelIndex )
+			throws DataException, IOException
+	{
+		return dataSet.getMember( dimIndex, levelIndex );
+	}
+
+	public boolean isDuplicatedRow( )
+	{
+		return dataSet.isDuplicatedRow( );
+	}
+
+	public int[] getDimensionPosition( )
+	{
+		return dataSet.getDimensionPosition( );
+	}
+}
@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.olap.data.impl.facttable;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.engine.impl.StopSign;
+import org.eclipse.birt.data.engine.olap.cursor.CubeUtility;
+import org.eclipse.birt.data.engine.olap.data.api.CubeQueryExecutorHelper;
+import org.eclipse.birt.data.engine.olap.data.api.DimLevel;
+import org.eclipse.birt.data.engine.olap.data.api.IAggregationResultSet;
+import org.eclipse.birt.data.engine.olap.data.api.cube.ILevelDefn;
+import org.eclipse.birt.data.engine.olap.data.document.DocumentManagerFactory;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
+import org.eclipse.birt.data.engine.olap.data.impl.AggregationDefinition;
+import org.eclipse.birt.data.engine.olap.data.impl.AggregationFunctionDefinition;
+import org.eclipse.birt.data.engine.olap.data.impl.Cube;
+import org.eclipse.birt.data.engine.olap.data.impl.aggregation.MaterializedRollup;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.Dimension;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.DimensionFactory;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.DimensionForTest;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.LevelDefinition;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+
+public class MaterializedRollupTest
+{
+
+	private static final String CUBE_NAME = "rollupCube";
+
+	private IDocumentManager documentManager;
+
+	@Before
+	public void materializedRollupSetUp( ) throws Exception
+	{
+		documentManager = DocumentManagerFactory.createFileDocumentManager( );
+		Dimension[] dimensions = new Dimension[3];
+		dimensions[0] = createDimension( "dimension1",
+				LevelsAndFactTableDataset.dimension1Col );
+		dimensions[1] = createDimension( "dimension2",
+				LevelsAndFactTableDataset.dimension2Col );
+		dimensions[2] = createDimension( "dimension3",
+				LevelsAndFactTableDataset.dimension3Col );
+		Cube cube = new Cube( CUBE_NAME, documentManager );
+		cube.create( CubeUtility.getKeyColNames( dimensions ),
+				dimensions,
+				new LevelsAndFactTableDataset( ),
+				new String[]{
+						"measure1", "measure2"
+				},
+				new StopSign( ) );
+		cube.close( );
+	}
+
+	@After
+	public void materializedRollupTearDown( ) throws Exception
+	{
+		documentManager.close( );
+	}
+
+	@Test
+	public void testRollupAggregation( ) throws IOException, BirtException
+	{
+		AggregationDefinition[] aggregations = createAggregations( );
+		Cube cube = loadCube( );
+		assertEquals( 0, cube.getRollups( ).length );
+		Object[][][] expected = execute( cube, aggregations );
+		cube.close( );
+
+		cube = loadCube( );
+		MaterializedRollup.create( cube,
+				documentManager,
+				new DimLevel[][]{
+						new DimLevel[]{
+								new DimLevel( "dimension1", "dimension1" ),
+								new DimLevel( "dimension2", "dimension2" )
+						}, new DimLevel[]{
+							new DimLevel( "dimension2", "dimension2" )
+						}
+				},
+				new StopSign( ) );
+		cube.close( );
+
+		cube = loadCube( );
+		assertEquals( 2, cube.getRollups( ).length );
+		assertEquals( 7, cube.getRollups( )[0].getRowCount( ) );
+		assertEquals( 7, cube.getRollups( )[1].getRowCount( ) );
+		assertNotNull( MaterializedRollup.find( cube.getRollups( ),
+				aggregations[0] ) );
+		assertNotNull( MaterializedRollup.find( cube.getRollups( ),
+				aggregations[1] ) );
+		// the sum of a double measure isn't saved
+		assertNull( MaterializedRollup.find( cube.getRollups( ),
+				aggregations[2] ) );
+		// dimension3 isn't in any roll-up
+		assertNull( MaterializedRollup.find( cube.getRollups( ),
+				aggregations[3] ) );
+
+		Object[][][] actual = execute( cube, aggregations );
+		cube.close( );
+		for ( int i = 0; i < expected.length; i++ )
+		{
+			assertEquals( expected[i].length, actual[i].length );
+			for ( int j = 0; j < expected[i].length; j++ )
+			{
+				assertTrue( Arrays.equals( expected[i][j], actual[i][j] ) );
+			}
+		}
+		assertEquals( 3, actual[0].length );
+		assertEquals( "1", actual[0][0][0] );
+		assertEquals( new Integer( 5 ), actual[0][0][2] );
+		assertEquals( 1, actual[1].length );
+		assertEquals( new Integer( 14 ), actual[1][0][0] );
+	}
+
+	private AggregationDefinition[] createAggregations( )
+	{
+		AggregationDefinition[] aggregations = new AggregationDefinition[4];
+		aggregations[0] = new AggregationDefinition( new DimLevel[]{
+			new DimLevel( "dimension1", "dimension1" )
+		}, new int[]{
+			0
+		}, new AggregationFunctionDefinition[]{
+				new AggregationFunctionDefinition( "sum1", "measure1", "SUM" ),
+				new AggregationFunctionDefinition( "count1",
+						"measure1",
+						"COUNT" ),
+				new AggregationFunctionDefinition( "min2", "measure2", "MIN" ),
+				new AggregationFunctionDefinition( "max2", "measure2", "MAX" )
+		} );
+		aggregations[1] = new AggregationDefinition( null,
+				null,
+				new AggregationFunctionDefinition[]{
+						new AggregationFunctionDefinition( "count2",
+								"measure2",
+								"COUNT" ),
+						new AggregationFunctionDefinition( "sum1",
+								"measure1",
+								"SUM" )
+				} );
+		aggregations[2] = new AggregationDefinition( new DimLevel[]{
+			new DimLevel( "dimension2", "dimension2" )
+		}, new int[]{
+			0
+		}, new AggregationFunctionDefinition[]{
+			new AggregationFunctionDefinition( "sum2", "measure2", "SUM" )
+		} );
+		aggregations[3] = new AggregationDefinition( new DimLevel[]{
+			new DimLevel( "dimension3", "dimension3" )
+		}, new int[]{
+			0
+		}, new AggregationFunctionDefinition[]{
+			new AggregationFunctionDefinition( "max1", "measure1", "MAX" )
+		} );
+		return aggregations;
+	}
+
+	private Cube loadCube( ) throws IOException, BirtException
+	{
+		Cube cube = new Cube( CUBE_NAME, documentManager );
+		cube.load( new StopSign( ) );
+		return cube;
+	}
+
+	/**
+	 * @return the level keys followed by the aggregation values of each row
+	 */
+	private Object[][][] execute( Cube cube, AggregationDefinition[] aggregations )
+			throws IOException, BirtException
+	{
+		CubeQueryExecutorHelper helper = new CubeQueryExecutorHelper( cube );
+		IAggregationResultSet[] resultSets = helper.execute( aggregations,
+				new StopSign( ) );
+		Object[][][] result = new Object[resultSets.length][][];
+		for ( int i = 0; i < resultSets.length; i++ )
+		{
+			int levelCount = resultSets[i].getLevelCount( );
+			result[i] = new Object[resultSets[i].length( )][];
+			for ( int j = 0; j < result[i].length; j++ )
+			{
+				resultSets[i].seek( j );
+				result[i][j] = new Object[levelCount
+						+ resultSets[i].getAggregationCount( )];
+				for ( int k = 0; k < levelCount; k++ )
+				{
+					result[i][j][k] = resultSets[i].getLevelKeyValue( k )[0];
+				}
+				for ( int k = 0; k < resultSets[i].getAggregationCount( ); k++ )
+				{
+					result[i][j][levelCount + k] = resultSets[i].getAggregationValue( k );
+				}
+			}
+			resultSets[i].close( );
+		}
+		helper.close( );
+		return result;
+	}
+
+	private Dimension createDimension( String name, String[] column )
+			throws IOException, BirtException
+	{
+		DimensionForTest iterator = new DimensionForTest( new String[]{
+			name
+		} );
+		iterator.setLevelMember( 0,
+				new TreeSet<String>( Arrays.asList( column ) ).toArray( new String[0] ) );
+		return (Dimension) DimensionFactory.createDimension( name,
+				documentManager,
+				iterator,
+				new ILevelDefn[]{
+					new LevelDefinition( name, new String[]{
+						name
+					}, null )
+				},
+				false,
+				new StopSign( ) );
+	}
+}
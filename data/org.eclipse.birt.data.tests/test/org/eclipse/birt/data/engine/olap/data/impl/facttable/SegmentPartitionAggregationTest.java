@@ -0,0 +1,256 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.olap.data.impl.facttable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.impl.StopSign;
+import org.eclipse.birt.data.engine.olap.cursor.CubeUtility;
+import org.eclipse.birt.data.engine.olap.data.api.CubeQueryExecutorHelper;
+import org.eclipse.birt.data.engine.olap.data.api.DimLevel;
+import org.eclipse.birt.data.engine.olap.data.api.IAggregationResultSet;
+import org.eclipse.birt.data.engine.olap.data.api.IDimensionSortDefn;
+import org.eclipse.birt.data.engine.olap.data.api.ISelection;
+import org.eclipse.birt.data.engine.olap.data.api.cube.ILevelDefn;
+import org.eclipse.birt.data.engine.olap.data.document.DocumentManagerFactory;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
+import org.eclipse.birt.data.engine.olap.data.impl.AggregationDefinition;
+import org.eclipse.birt.data.engine.olap.data.impl.AggregationFunctionDefinition;
+import org.eclipse.birt.data.engine.olap.data.impl.Cube;
+import org.eclipse.birt.data.engine.olap.data.impl.SelectionFactory;
+import org.eclipse.birt.data.engine.olap.data.impl.aggregation.filter.LevelFilter;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.Dimension;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.DimensionFactory;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.DimensionForTest;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.LevelDefinition;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ */
+
+public class SegmentPartitionAggregationTest
+{
+
+	private static final String CUBE_NAME = "segmentPartitionCube";
+
+	private IDocumentManager documentManager;
+
+	private DimLevel dimLevel1 = new DimLevel( "dimension1", "dimension1" );
+	private DimLevel dimLevel2 = new DimLevel( "dimension2", "dimension2" );
+	private DimLevel dimLevel3 = new DimLevel( "dimension3", "dimension3" );
+
+	@Before
+	public void segmentPartitionAggregationSetUp( ) throws Exception
+	{
+		documentManager = DocumentManagerFactory.createFileDocumentManager( );
+		Dimension[] dimensions = new Dimension[3];
+		for ( int i = 0; i < dimensions.length; i++ )
+		{
+			dimensions[i] = createDimension( "dimension" + ( i + 1 ),
+					BigLevelsAndFactTableDataset.dimensionPositionLength[i] );
+		}
+		Cube cube = new Cube( CUBE_NAME, documentManager );
+		cube.create( CubeUtility.getKeyColNames( dimensions ),
+				dimensions,
+				new BigLevelsAndFactTableDataset( ),
+				new String[]{
+						"measure1", "measure2"
+				},
+				new StopSign( ) );
+		cube.close( );
+	}
+
+	@After
+	public void segmentPartitionAggregationTearDown( ) throws Exception
+	{
+		documentManager.close( );
+	}
+
+	/**
+	 * The partitions of the fact table segments aggregated on their own
+	 * threads give the same rows as the serial scan.
+	 */
+	@Test
+	public void testDecomposableAggregation( ) throws IOException,
+			BirtException
+	{
+		AggregationFunctionDefinition[] functions = new AggregationFunctionDefinition[]{
+				new AggregationFunctionDefinition( "sum1",
+						"measure1",
+						IBuildInAggregation.TOTAL_SUM_FUNC ),
+				new AggregationFunctionDefinition( "count1",
+						"measure1",
+						IBuildInAggregation.TOTAL_COUNT_FUNC ),
+				new AggregationFunctionDefinition( "ave2",
+						"measure2",
+						IBuildInAggregation.TOTAL_AVE_FUNC ),
+				new AggregationFunctionDefinition( "min1",
+						"measure1",
+						IBuildInAggregation.TOTAL_MIN_FUNC ),
+				new AggregationFunctionDefinition( "max2",
+						"measure2",
+						IBuildInAggregation.TOTAL_MAX_FUNC )
+		};
+		AggregationDefinition[] aggregations = new AggregationDefinition[4];
+		aggregations[0] = new AggregationDefinition( new DimLevel[]{
+			dimLevel1
+		}, new int[]{
+			IDimensionSortDefn.SORT_ASC
+		}, functions );
+		aggregations[1] = new AggregationDefinition( new DimLevel[]{
+				dimLevel2, dimLevel3
+		}, new int[]{
+				IDimensionSortDefn.SORT_DESC, IDimensionSortDefn.SORT_ASC
+		}, functions );
+		aggregations[2] = new AggregationDefinition( null, null, functions );
+		aggregations[3] = new AggregationDefinition( new DimLevel[]{
+			dimLevel3
+		}, new int[]{
+			IDimensionSortDefn.SORT_DESC
+		}, null );
+
+		List<String> serialResult = execute( aggregations, null );
+		List<String> parallelResult = execute( aggregations, "4" );
+		assertEquals( serialResult, parallelResult );
+		// dimension1 is filtered to 10 ... 59
+		assertEquals( 50 + 100 * 10 + 1 + 10, serialResult.size( ) );
+		assertEquals( "0 10 2227500.0 1000 2227.5 0 8910.0",
+				serialResult.get( 0 ) );
+		assertEquals( "2 3.8424375E8 50000 7684.875 0 52569.0",
+				serialResult.get( 50 + 100 * 10 ) );
+	}
+
+	/**
+	 * The median isn't merged from the partitions, so the fact table is
+	 * scanned serially.
+	 */
+	@Test
+	public void testHolisticAggregation( ) throws IOException,
+			BirtException
+	{
+		AggregationDefinition[] aggregations = new AggregationDefinition[]{
+			new AggregationDefinition( new DimLevel[]{
+				dimLevel3
+			}, new int[]{
+				IDimensionSortDefn.SORT_ASC
+			}, new AggregationFunctionDefinition[]{
+					new AggregationFunctionDefinition( "median1",
+							"measure1",
+							IBuildInAggregation.TOTAL_MEDIAN_FUNC ),
+					new AggregationFunctionDefinition( "sum1",
+							"measure1",
+							IBuildInAggregation.TOTAL_SUM_FUNC )
+			} )
+		};
+		List<String> serialResult = execute( aggregations, null );
+		assertEquals( serialResult, execute( aggregations, "4" ) );
+		assertEquals( 10, serialResult.size( ) );
+	}
+
+	/**
+	 * Aggregates the cube on dimension1 10 ... 59 with the given parallelism.
+	 *
+	 * @param parallelism
+	 *            the value of the system property, null to aggregate serially
+	 * @return the rows of the result sets
+	 */
+	private List<String> execute( AggregationDefinition[] aggregations,
+			String parallelism ) throws IOException, BirtException
+	{
+		Cube cube = new Cube( CUBE_NAME, documentManager );
+		cube.load( new StopSign( ) );
+		CubeQueryExecutorHelper helper = new CubeQueryExecutorHelper( cube );
+		helper.addFilter( new LevelFilter( dimLevel1,
+				new ISelection[]{
+					SelectionFactory.createRangeSelection( new Object[]{
+						Integer.valueOf( 10 )
+					}, new Object[]{
+						Integer.valueOf( 60 )
+					}, true, false )
+				} ) );
+		IAggregationResultSet[] resultSets;
+		if ( parallelism != null )
+		{
+			System.setProperty( DataEngine.CUBE_AGGREGATION_PARALLELISM,
+					parallelism );
+		}
+		try
+		{
+			resultSets = helper.execute( aggregations, new StopSign( ) );
+		}
+		finally
+		{
+			System.getProperties( )
+					.remove( DataEngine.CUBE_AGGREGATION_PARALLELISM );
+		}
+
+		List<String> result = new ArrayList<String>( );
+		for ( int i = 0; i < resultSets.length; i++ )
+		{
+			for ( int j = 0; j < resultSets[i].length( ); j++ )
+			{
+				resultSets[i].seek( j );
+				StringBuffer row = new StringBuffer( );
+				row.append( i );
+				for ( int k = 0; k < resultSets[i].getLevelCount( ); k++ )
+				{
+					row.append( ' ' )
+							.append( Arrays.asList( resultSets[i].getLevelKeyValue( k ) ).get( 0 ) );
+				}
+				for ( int k = 0; k < resultSets[i].getAggregationCount( ); k++ )
+				{
+					row.append( ' ' )
+							.append( resultSets[i].getAggregationValue( k ) );
+				}
+				result.add( row.toString( ) );
+			}
+			resultSets[i].close( );
+		}
+		helper.close( );
+		cube.close( );
+		return result;
+	}
+
+	private Dimension createDimension( String name, int length )
+			throws IOException, BirtException
+	{
+		DimensionForTest iterator = new DimensionForTest( new String[]{
+			name
+		} );
+		int[] data = new int[length];
+		for ( int i = 0; i < data.length; i++ )
+		{
+			data[i] = i;
+		}
+		iterator.setLevelMember( 0, data );
+		return (Dimension) DimensionFactory.createDimension( name,
+				documentManager,
+				iterator,
+				new ILevelDefn[]{
+					new LevelDefinition( name, new String[]{
+						name
+					}, null )
+				},
+				false,
+				new StopSign( ) );
+	}
+}
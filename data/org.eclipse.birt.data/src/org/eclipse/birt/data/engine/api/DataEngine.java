@@ -155,6 +155,72 @@ abstract public class DataEngine
 	 * of materialized cube exceed the assigned memory size, the disk will automatically be used. 
 	 */
 	public static String IN_MEMORY_CUBE_SIZE = "org.eclipse.birt.data.engine.cube.inmemory.size";
+
+	/**
+	 * JVM system property giving the memory budget, in MB, of the data sets
+	 * cached at JVM level. The least recently used data sets are evicted once
+	 * the budget is exceeded. Defaults to a quarter of the maximum heap size, 0
+	 * means no limit.
+	 */
+	public static String JVM_CACHE_MEMORY_LIMIT = "org.eclipse.birt.data.cache.jvm.memoryLimit";
+
+	/**
+	 * JVM system property giving the disk budget, in MB, of the data sets
+	 * cached at JVM level. Defaults to 0, which means no limit.
+	 */
+	public static String JVM_CACHE_DISK_LIMIT = "org.eclipse.birt.data.cache.jvm.diskLimit";
+
+	/**
+	 * JVM system property giving the time to live, in seconds, of the data sets
+	 * cached at JVM level. Defaults to 0, which means the data sets never
+	 * expire.
+	 */
+	public static String JVM_CACHE_TIME_TO_LIVE = "org.eclipse.birt.data.cache.jvm.timeToLive";
+
+	/**
+	 * JVM system property choosing which data sets cached at JVM level are
+	 * evicted first once a budget is exceeded: "LRU", the least recently used
+	 * ones, which is the default, or "LFU", the least frequently used ones.
+	 */
+	public static String JVM_CACHE_EVICTION_POLICY = "org.eclipse.birt.data.cache.jvm.evictionPolicy";
+
+	/**
+	 * JVM system property giving how many threads sort the rows spilled to
+	 * disk. Defaults to the number of available processors, 1 sorts on the
+	 * calling thread only.
+	 */
+	public static String SORT_PARALLELISM = "org.eclipse.birt.data.sort.parallelism";
+
+	/**
+	 * JVM system property giving the memory budget, in MB, shared by the rows
+	 * that all the queries of the JVM cache in memory. A query spills its rows
+	 * to disk once the budget is used up, even if its own result buffer size
+	 * is not reached. Defaults to half of the maximum heap size, 0 means no
+	 * limit.
+	 */
+	public static String MEMORY_BUDGET = "org.eclipse.birt.data.memoryBudget";
+
+	/**
+	 * JVM system property giving how many threads aggregate the sorted fact
+	 * rows of a cube query. Defaults to 1, which aggregates on the calling
+	 * thread only.
+	 */
+	public static String CUBE_AGGREGATION_PARALLELISM = "org.eclipse.birt.data.cube.aggregation.parallelism";
+
+	/**
+	 * Application context key giving the level combinations of the roll-ups
+	 * saved with the created cubes. The combinations are separated by ";",
+	 * their levels by "," and each level is written as "dimension/level", for
+	 * example "Time/Year,Time/Month;Product/Category".
+	 */
+	public static String CUBE_ROLLUP_LEVELS = "org.eclipse.birt.data.cube.rollupLevels";
+
+	/**
+	 * JVM system property giving the size in megabytes of the block cache
+	 * shared by the cube queries reading the cubes saved in report documents.
+	 * Defaults to 16, 0 disables the cache.
+	 */
+	public static String CUBE_DOCUMENT_CACHE_SIZE = "org.eclipse.birt.data.cube.documentCacheSize";
 	
 	/**
 	 * Creates a new instance of DataEngine, using the specified
@@ -34,10 +34,32 @@ public class DataEngineThreadLocal
 		return pathManager.get( );
 	}
 	
+	/**
+	 * Makes the current thread use the temp path manager of another thread,
+	 * used by the worker threads running the tasks of that thread.
+	 * 
+	 * @param manager
+	 */
+	public void setPathManager( TempPathManager manager )
+	{
+		pathManager.set( manager );
+	}
+	
 	public CloseListenerManager getCloseListener( )
 	{
 		return  closeHolder.get( );
 	}
+
+	/**
+	 * Makes the current thread use the close listeners of another thread, used
+	 * by the worker threads running the tasks of that thread.
+	 * 
+	 * @param manager
+	 */
+	public void setCloseListener( CloseListenerManager manager )
+	{
+		closeHolder.set( manager );
+	}
 	
 	public void removeCloseListener( )
 	{
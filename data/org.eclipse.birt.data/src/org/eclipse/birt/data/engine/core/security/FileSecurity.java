@@ -251,6 +251,42 @@ public class FileSecurity
 		} );
 	}
 
+	/**
+	 * 
+	 * @param file
+	 * @return
+	 */
+	public static long fileLastModified( final File file )
+	{
+		if ( file == null )
+			return 0L;
+		return AccessController.doPrivileged( new PrivilegedAction<Long>( ) {
+
+			public Long run( )
+			{
+				return file.lastModified( );
+			}
+		} );
+	}
+
+	/**
+	 * 
+	 * @param file
+	 * @return
+	 */
+	public static long fileLength( final File file )
+	{
+		if ( file == null )
+			return 0L;
+		return AccessController.doPrivileged( new PrivilegedAction<Long>( ) {
+
+			public Long run( )
+			{
+				return file.length( );
+			}
+		} );
+	}
+
 	/**
 	 * 
 	 * @param file
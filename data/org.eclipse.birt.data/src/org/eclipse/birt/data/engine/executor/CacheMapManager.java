@@ -30,8 +30,14 @@ public class CacheMapManager
 	 * Please notice that we must use static variable here for the sharing of
 	 * cached data set would be cross data set session.
 	 */
-	private static Map JVMLevelCacheMap = Collections.synchronizedMap( new HashMap( ) );
 	private static Map<DataSourceAndDataSet, Integer> lockedDataSetCacheMap = Collections.synchronizedMap( new HashMap( ) );	
+	private static JVMLevelCacheMap JVMLevelCacheMap = new JVMLevelCacheMap( lockedDataSetCacheMap );
+	
+	/**
+	 * The maximum milliseconds to wait for a data set being read or loaded by
+	 * another request.
+	 */
+	private static final long LOCK_TIMEOUT = 60000;
 	
 	private Map<DataSourceAndDataSet, IDataSetCacheObject> cacheMap;
 	// use this field temporarily keep the data set object need to be saved in
@@ -75,22 +81,42 @@ public class CacheMapManager
 	boolean doesSaveToCache( DataSourceAndDataSet dsAndDs,
 			DataSetCacheConfig dscc) throws DataException
 	{		
-		synchronized ( cacheMap )
+		if ( useJVMLevelCache )
 		{
-			IDataSetCacheObject cacheObject = (IDataSetCacheObject)cacheMap.get( dsAndDs );
-			if (cacheObject != null)
+			// the JVM level cache map needs no lock, and the temporary map
+			// belongs to this manager only
+			boolean save = doesSaveToCache( dsAndDs,
+					dscc,
+					JVMLevelCacheMap.get( dsAndDs ) );
+			if ( !save )
 			{
-				return cacheObject.needUpdateCache( dscc.getCacheCapability( ) );
+				JVMLevelCacheMap.finishLoading( dsAndDs, this );
 			}
-			else
+			return save;
+		}
+		synchronized ( cacheMap )
+		{
+			return doesSaveToCache( dsAndDs,
+					dscc,
+					(IDataSetCacheObject) cacheMap.get( dsAndDs ) );
+		}
+	}
+	
+	private boolean doesSaveToCache( DataSourceAndDataSet dsAndDs,
+			DataSetCacheConfig dscc, IDataSetCacheObject cacheObject )
+	{
+		if ( cacheObject != null )
+		{
+			return cacheObject.needUpdateCache( dscc.getCacheCapability( ) );
+		}
+		else
+		{
+			if ( !tempDataSetCacheMap.containsKey( dsAndDs ) )
 			{
-				if( !tempDataSetCacheMap.containsKey( dsAndDs ) )
-				{
-					IDataSetCacheObject dsco = dscc.createDataSetCacheObject( );
-					tempDataSetCacheMap.put( dsAndDs, dsco );					
-				}
-				return true;
+				IDataSetCacheObject dsco = dscc.createDataSetCacheObject( );
+				tempDataSetCacheMap.put( dsAndDs, dsco );
 			}
+			return true;
 		}
 	}
 	
@@ -100,6 +126,10 @@ public class CacheMapManager
 	 */
 	boolean doesLoadFromCache( DataSourceAndDataSet dsAndDs, int requiredCapability )
 	{
+		if ( useJVMLevelCache )
+		{
+			return doesLoadFromJVMLevelCache( dsAndDs, requiredCapability );
+		}
 		synchronized ( cacheMap )
 		{
 			IDataSetCacheObject cacheObject = (IDataSetCacheObject)cacheMap.get( dsAndDs );
@@ -108,42 +138,84 @@ public class CacheMapManager
 				boolean reusable = cacheObject.isCachedDataReusable( requiredCapability );
 				if ( !reusable )
 				{
-					if ( useJVMLevelCache )
-					{
-						synchronized ( lockedDataSetCacheMap )
-						{
-							if ( lockedDataSetCacheMap.containsKey( dsAndDs ) )
-							{
-								try
-								{
-									// waiting for 60s
-									lockedDataSetCacheMap.wait( 60000 );
-								}
-								catch ( InterruptedException e )
-								{
-								}
-								lockedDataSetCacheMap.remove( dsAndDs );
-							}
-						}
-					}
 					cacheObject.release( );
 					tempDataSetCacheMap.remove( dsAndDs );
 					cacheMap.remove( dsAndDs );
 				}
-				else
-				if ( this.useJVMLevelCache )
+				return reusable;
+			}
+			else
+			{
+				return false;
+			}
+		}
+	}
+	
+	/**
+	 * Looks up the JVM level cache. If the data set is not cached and another
+	 * request is already loading it, waits for that request instead of running
+	 * the same query again.
+	 * 
+	 * @param dsAndDs
+	 * @param requiredCapability
+	 * @return
+	 */
+	private boolean doesLoadFromJVMLevelCache( DataSourceAndDataSet dsAndDs,
+			int requiredCapability )
+	{
+		while ( true )
+		{
+			IDataSetCacheObject cacheObject = JVMLevelCacheMap.lookup( dsAndDs );
+			if ( cacheObject == null )
+			{
+				if ( JVMLevelCacheMap.startLoading( dsAndDs, this, LOCK_TIMEOUT ) )
+				{
+					return false;
+				}
+				// loaded by another request in the meantime
+				continue;
+			}
+			
+			if ( !cacheObject.isCachedDataReusable( requiredCapability ) )
+			{
+				synchronized ( lockedDataSetCacheMap )
 				{
-					if ( !lockedDataSetCacheMap.containsKey( dsAndDs ) )
+					if ( lockedDataSetCacheMap.containsKey( dsAndDs ) )
 					{
-						lockedDataSetCacheMap.put( dsAndDs, 0 );
+						try
+						{
+							// waiting for 60s
+							lockedDataSetCacheMap.wait( LOCK_TIMEOUT );
+						}
+						catch ( InterruptedException e )
+						{
+						}
+						lockedDataSetCacheMap.remove( dsAndDs );
 					}
 				}
-				return reusable;
+				if ( JVMLevelCacheMap.remove( dsAndDs, cacheObject ) )
+				{
+					cacheObject.release( );
+				}
+				tempDataSetCacheMap.remove( dsAndDs );
+				JVMLevelCacheMap.startLoading( dsAndDs, this, LOCK_TIMEOUT );
+				return false;
 			}
-			else
+			
+			synchronized ( lockedDataSetCacheMap )
 			{
-				return false;
+				// the entry can not be evicted once it is locked, make sure
+				// it has not been evicted before
+				if ( JVMLevelCacheMap.get( dsAndDs ) != cacheObject )
+				{
+					continue;
+				}
+				if ( !lockedDataSetCacheMap.containsKey( dsAndDs ) )
+				{
+					lockedDataSetCacheMap.put( dsAndDs, 0 );
+				}
 			}
+			return true;
 		}
 	}
 	
@@ -152,6 +224,10 @@ public class CacheMapManager
 	 */
 	IDataSetCacheObject getSavedCacheObject( DataSourceAndDataSet dsAndDs )
 	{	
+		if ( useJVMLevelCache )
+		{
+			return tempDataSetCacheMap.get( dsAndDs );
+		}
 		synchronized ( cacheMap )
 		{
 			return tempDataSetCacheMap.get( dsAndDs );
@@ -161,12 +237,30 @@ public class CacheMapManager
 	void saveFinishOnCache( DataSourceAndDataSet dsAndDs,
 			IDataSetCacheObject dsco )
 	{
+		if ( useJVMLevelCache )
+		{
+			JVMLevelCacheMap.put( dsAndDs, dsco );
+			JVMLevelCacheMap.finishLoading( dsAndDs, this );
+			return;
+		}
 		synchronized ( cacheMap )
 		{
 			cacheMap.put( dsAndDs, dsco );
 		}
 	}
 	
+	/**
+	 * Wakes up the requests waiting for the data sets this manager failed to
+	 * save into the JVM level cache.
+	 */
+	void finishLoading( )
+	{
+		if ( useJVMLevelCache )
+		{
+			JVMLevelCacheMap.finishLoading( this );
+		}
+	}
+	
 	/**
 	 */
 	void loadStart( DataSourceAndDataSet dsAndDs ) throws DataException
@@ -230,11 +324,15 @@ public class CacheMapManager
 			Object key = getKey(dsAndDs);
 			while ( key != null )
 			{
-				cacheObjects.add( cacheMap.remove( key ) );
+				Object cacheObject = cacheMap.remove( key );
+				if ( cacheObject != null )
+					cacheObjects.add( cacheObject );
 				tempDataSetCacheMap.remove( key );
 				key = getKey(dsAndDs);
 			}
 		}
+		// the save of the data set might have failed
+		finishLoading( );
 		for ( int i = 0; i < cacheObjects.size( ); i++ )
 		{
 			IDataSetCacheObject cacheObject = (IDataSetCacheObject)cacheObjects.get( i );
@@ -253,6 +351,7 @@ public class CacheMapManager
 			cacheMap.clear( );
 			tempDataSetCacheMap.clear( );
 		}
+		finishLoading( );
 	}
 	
 	/**
@@ -350,7 +449,9 @@ public class CacheMapManager
 		{
 			for ( DataSourceAndDataSet dataSetAndSource : cacheMap.keySet( ).toArray( new DataSourceAndDataSet[0] ) )
  			{
-				cacheObjects.add( cacheMap.remove( dataSetAndSource ) );
+				Object cacheObject = cacheMap.remove( dataSetAndSource );
+				if ( cacheObject != null )
+					cacheObjects.add( cacheObject );
 				tempDataSetCacheMap.remove( dataSetAndSource );
  			}
 		}
@@ -383,7 +484,9 @@ class ShutdownHook implements Runnable
 		for ( DataSourceAndDataSet dataSetAndSource : cacheMap.keySet( )
 				.toArray( new DataSourceAndDataSet[0] ) )
 		{
-			cacheObjects.add( cacheMap.remove( dataSetAndSource ) );
+			IDataSetCacheObject cacheObject = cacheMap.remove( dataSetAndSource );
+			if ( cacheObject != null )
+				cacheObjects.add( cacheObject );
 		}
 		for ( int i = 0; i < cacheObjects.size( ); i++ )
 		{
@@ -90,6 +90,7 @@ public class DataSetCacheManager
 				try
 				{
 					dteLevelCacheMapManager.clearCache( );
+					jvmLevelCacheMapManager.finishLoading( );
 				}
 				catch ( Exception e )
 				{
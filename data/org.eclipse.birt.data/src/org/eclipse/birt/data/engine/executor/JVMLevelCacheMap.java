@@ -0,0 +1,693 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.executor;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.cache.SizeOfUtil;
+
+/**
+ * The data set cache shared by all the data engines of the JVM.
+ * <p>
+ * The map is safe for concurrent use without external locking. It keeps
+ * track of the memory and disk bytes used by the cached data sets and evicts
+ * the least recently (or least frequently) used entries once one of the
+ * budgets is exceeded. Entries older than the time to live are dropped on
+ * access. Entries which are being read, as recorded in the locked entries
+ * map, are never released.
+ * <p>
+ * The map also coordinates the loading of the data sets, so that concurrent
+ * requests for the same data set which is not cached yet run the query once:
+ * the first request loads the data set while the others wait for it.
+ */
+class JVMLevelCacheMap
+		extends
+			AbstractMap<DataSourceAndDataSet, IDataSetCacheObject>
+{
+
+	private static Logger logger = Logger.getLogger( JVMLevelCacheMap.class.getName( ) );
+
+	/**
+	 * The maximum number of rows measured to estimate the memory size of a
+	 * data set cached in memory.
+	 */
+	private static final int MAX_MEASURED_ROWS = 1000;
+
+	private static final String LFU = "LFU"; //$NON-NLS-1$
+
+	private final ConcurrentMap<DataSourceAndDataSet, CacheEntry> entries = new ConcurrentHashMap<DataSourceAndDataSet, CacheEntry>( );
+
+	private final ConcurrentMap<DataSourceAndDataSet, Loading> loadings = new ConcurrentHashMap<DataSourceAndDataSet, Loading>( );
+
+	/**
+	 * The entries being read, also used as the monitor guarding the removal
+	 * of entries.
+	 */
+	private final Map<DataSourceAndDataSet, Integer> lockedEntries;
+
+	private final long memoryLimit;
+	private final long diskLimit;
+	private final long timeToLive;
+	private final boolean evictLeastFrequentlyUsed;
+
+	private final AtomicLong memoryUsage = new AtomicLong( );
+	private final AtomicLong diskUsage = new AtomicLong( );
+	private final AtomicLong accessClock = new AtomicLong( );
+	private final AtomicLong hitCount = new AtomicLong( );
+	private final AtomicLong missCount = new AtomicLong( );
+	private final AtomicLong evictionCount = new AtomicLong( );
+
+	private final Object evictionLock = new Object( );
+
+	/**
+	 * Creates the map configured by the JVM system properties
+	 * {@link DataEngine#JVM_CACHE_MEMORY_LIMIT},
+	 * {@link DataEngine#JVM_CACHE_DISK_LIMIT},
+	 * {@link DataEngine#JVM_CACHE_TIME_TO_LIVE} and
+	 * {@link DataEngine#JVM_CACHE_EVICTION_POLICY}.
+	 *
+	 * @param lockedEntries
+	 */
+	JVMLevelCacheMap( Map<DataSourceAndDataSet, Integer> lockedEntries )
+	{
+		this( lockedEntries,
+				getLongProperty( DataEngine.JVM_CACHE_MEMORY_LIMIT,
+						Runtime.getRuntime( ).maxMemory( ) / 4 / 1024 / 1024 ) * 1024 * 1024,
+				getLongProperty( DataEngine.JVM_CACHE_DISK_LIMIT, 0 ) * 1024 * 1024,
+				getLongProperty( DataEngine.JVM_CACHE_TIME_TO_LIVE, 0 ) * 1000,
+				LFU.equalsIgnoreCase( System.getProperty( DataEngine.JVM_CACHE_EVICTION_POLICY ) ) );
+	}
+
+	/**
+	 * @param lockedEntries
+	 *            the entries being read
+	 * @param memoryLimit
+	 *            the memory budget in bytes, 0 for no limit
+	 * @param diskLimit
+	 *            the disk budget in bytes, 0 for no limit
+	 * @param timeToLive
+	 *            the time to live of the entries in milliseconds, 0 for no
+	 *            limit
+	 * @param evictLeastFrequentlyUsed
+	 *            true to evict the least frequently used entries first
+	 *            instead of the least recently used ones
+	 */
+	JVMLevelCacheMap( Map<DataSourceAndDataSet, Integer> lockedEntries,
+			long memoryLimit, long diskLimit, long timeToLive,
+			boolean evictLeastFrequentlyUsed )
+	{
+		this.lockedEntries = lockedEntries;
+		this.memoryLimit = memoryLimit;
+		this.diskLimit = diskLimit;
+		this.timeToLive = timeToLive;
+		this.evictLeastFrequentlyUsed = evictLeastFrequentlyUsed;
+	}
+
+	/*
+	 * @see java.util.AbstractMap#get(java.lang.Object)
+	 */
+	public IDataSetCacheObject get( Object key )
+	{
+		CacheEntry entry = entries.get( key );
+		if ( entry == null )
+		{
+			return null;
+		}
+		if ( isExpired( entry ) )
+		{
+			List<IDataSetCacheObject> released = new ArrayList<IDataSetCacheObject>( );
+			if ( removeIfNotInUse( (DataSourceAndDataSet) key, entry, released ) )
+			{
+				release( released );
+				return null;
+			}
+		}
+		entry.touch( accessClock.incrementAndGet( ) );
+		return entry.cacheObject;
+	}
+
+	/**
+	 * Looks up a data set to be loaded from the cache and counts the hits and
+	 * misses.
+	 *
+	 * @param key
+	 * @return the cache object, or null if the data set is not cached
+	 */
+	IDataSetCacheObject lookup( DataSourceAndDataSet key )
+	{
+		IDataSetCacheObject cacheObject = get( key );
+		if ( cacheObject != null )
+		{
+			hitCount.incrementAndGet( );
+		}
+		else
+		{
+			missCount.incrementAndGet( );
+		}
+		return cacheObject;
+	}
+
+	/*
+	 * @see java.util.AbstractMap#containsKey(java.lang.Object)
+	 */
+	public boolean containsKey( Object key )
+	{
+		return entries.containsKey( key );
+	}
+
+	/**
+	 * Puts the data set into the cache once it has been completely saved, and
+	 * evicts other entries if the cache is over budget.
+	 *
+	 * @see java.util.AbstractMap#put(java.lang.Object, java.lang.Object)
+	 */
+	public IDataSetCacheObject put( DataSourceAndDataSet key,
+			IDataSetCacheObject value )
+	{
+		CacheEntry entry = new CacheEntry( value, accessClock.incrementAndGet( ) );
+		CacheEntry old = entries.put( key, entry );
+		memoryUsage.addAndGet( entry.memorySize );
+		diskUsage.addAndGet( entry.diskSize );
+
+		List<IDataSetCacheObject> released = new ArrayList<IDataSetCacheObject>( );
+		if ( old != null )
+		{
+			memoryUsage.addAndGet( -old.memorySize );
+			diskUsage.addAndGet( -old.diskSize );
+			if ( old.cacheObject != value )
+			{
+				synchronized ( lockedEntries )
+				{
+					// a replaced entry still being read is left to the
+					// garbage collector
+					if ( !lockedEntries.containsKey( key ) )
+					{
+						released.add( old.cacheObject );
+					}
+				}
+			}
+		}
+		evict( entry, released );
+		release( released );
+		return old == null ? null : old.cacheObject;
+	}
+
+	/*
+	 * @see java.util.AbstractMap#remove(java.lang.Object)
+	 */
+	public IDataSetCacheObject remove( Object key )
+	{
+		CacheEntry entry = entries.remove( key );
+		if ( entry == null )
+		{
+			return null;
+		}
+		memoryUsage.addAndGet( -entry.memorySize );
+		diskUsage.addAndGet( -entry.diskSize );
+		return entry.cacheObject;
+	}
+
+	/**
+	 * Removes the entry only if it still maps to the given cache object.
+	 *
+	 * @param key
+	 * @param cacheObject
+	 * @return true if the entry has been removed
+	 */
+	boolean remove( DataSourceAndDataSet key, IDataSetCacheObject cacheObject )
+	{
+		CacheEntry entry = entries.get( key );
+		if ( entry == null
+				|| entry.cacheObject != cacheObject
+				|| !entries.remove( key, entry ) )
+		{
+			return false;
+		}
+		memoryUsage.addAndGet( -entry.memorySize );
+		diskUsage.addAndGet( -entry.diskSize );
+		return true;
+	}
+
+	/*
+	 * @see java.util.AbstractMap#size()
+	 */
+	public int size( )
+	{
+		return entries.size( );
+	}
+
+	/*
+	 * @see java.util.AbstractMap#clear()
+	 */
+	public void clear( )
+	{
+		Object[] keys = entries.keySet( ).toArray( );
+		for ( int i = 0; i < keys.length; i++ )
+		{
+			remove( keys[i] );
+		}
+	}
+
+	/*
+	 * @see java.util.AbstractMap#keySet()
+	 */
+	public Set<DataSourceAndDataSet> keySet( )
+	{
+		return Collections.unmodifiableSet( entries.keySet( ) );
+	}
+
+	/*
+	 * @see java.util.AbstractMap#entrySet()
+	 */
+	public Set<Map.Entry<DataSourceAndDataSet, IDataSetCacheObject>> entrySet( )
+	{
+		return new AbstractSet<Map.Entry<DataSourceAndDataSet, IDataSetCacheObject>>( ) {
+
+			public Iterator<Map.Entry<DataSourceAndDataSet, IDataSetCacheObject>> iterator( )
+			{
+				final Iterator<Map.Entry<DataSourceAndDataSet, CacheEntry>> it = entries.entrySet( )
+						.iterator( );
+				return new Iterator<Map.Entry<DataSourceAndDataSet, IDataSetCacheObject>>( ) {
+
+					public boolean hasNext( )
+					{
+						return it.hasNext( );
+					}
+
+					public Map.Entry<DataSourceAndDataSet, IDataSetCacheObject> next( )
+					{
+						Map.Entry<DataSourceAndDataSet, CacheEntry> next = it.next( );
+						return new SimpleImmutableEntry<DataSourceAndDataSet, IDataSetCacheObject>( next.getKey( ),
+								next.getValue( ).cacheObject );
+					}
+
+					public void remove( )
+					{
+						throw new UnsupportedOperationException( );
+					}
+				};
+			}
+
+			public int size( )
+			{
+				return entries.size( );
+			}
+		};
+	}
+
+	/**
+	 * Makes the given owner the loader of the data set, unless another owner
+	 * is already loading it. In that case waits until the other owner is done
+	 * or the timeout elapses.
+	 *
+	 * @param key
+	 * @param owner
+	 * @param timeout
+	 *            the maximum milliseconds to wait for another owner
+	 * @return true if the owner has to load the data set, false if another
+	 *         owner has finished loading it and the cache should be looked up
+	 *         again
+	 */
+	boolean startLoading( DataSourceAndDataSet key, Object owner, long timeout )
+	{
+		Loading loading = null;
+		while ( true )
+		{
+			Loading current = loadings.get( key );
+			if ( current == null )
+			{
+				if ( loading == null )
+				{
+					loading = new Loading( owner );
+				}
+				if ( loadings.putIfAbsent( key, loading ) == null )
+				{
+					return true;
+				}
+				continue;
+			}
+			if ( current.owner == owner )
+			{
+				return true;
+			}
+			try
+			{
+				if ( !current.done.await( timeout, TimeUnit.MILLISECONDS ) )
+				{
+					// the loader is stuck, do not wait for it any longer
+					logger.log( Level.FINE,
+							"Timeout waiting for the data set cache to be loaded" ); //$NON-NLS-1$
+					return true;
+				}
+			}
+			catch ( InterruptedException e )
+			{
+				Thread.currentThread( ).interrupt( );
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Wakes up the requests waiting for the data set loaded by the given
+	 * owner.
+	 *
+	 * @param key
+	 * @param owner
+	 */
+	void finishLoading( DataSourceAndDataSet key, Object owner )
+	{
+		Loading loading = loadings.get( key );
+		if ( loading != null
+				&& loading.owner == owner && loadings.remove( key, loading ) )
+		{
+			loading.done.countDown( );
+		}
+	}
+
+	/**
+	 * Wakes up the requests waiting for any data set loaded by the given
+	 * owner.
+	 *
+	 * @param owner
+	 */
+	void finishLoading( Object owner )
+	{
+		Iterator<Map.Entry<DataSourceAndDataSet, Loading>> it = loadings.entrySet( )
+				.iterator( );
+		while ( it.hasNext( ) )
+		{
+			Map.Entry<DataSourceAndDataSet, Loading> entry = it.next( );
+			Loading loading = entry.getValue( );
+			if ( loading.owner == owner
+					&& loadings.remove( entry.getKey( ), loading ) )
+			{
+				loading.done.countDown( );
+			}
+		}
+	}
+
+	/**
+	 * @return the bytes of memory used by the cached data sets
+	 */
+	long getMemoryUsage( )
+	{
+		return memoryUsage.get( );
+	}
+
+	/**
+	 * @return the bytes of disk used by the cached data sets
+	 */
+	long getDiskUsage( )
+	{
+		return diskUsage.get( );
+	}
+
+	/**
+	 * @return the number of data sets loaded from the cache
+	 */
+	long getHitCount( )
+	{
+		return hitCount.get( );
+	}
+
+	/**
+	 * @return the number of data sets not found in the cache
+	 */
+	long getMissCount( )
+	{
+		return missCount.get( );
+	}
+
+	/**
+	 * @return the number of entries evicted because of the budgets or the
+	 *         time to live
+	 */
+	long getEvictionCount( )
+	{
+		return evictionCount.get( );
+	}
+
+	private boolean isExpired( CacheEntry entry )
+	{
+		return timeToLive > 0
+				&& System.currentTimeMillis( ) - entry.createTime > timeToLive;
+	}
+
+	private boolean isOverBudget( )
+	{
+		return ( memoryLimit > 0 && memoryUsage.get( ) > memoryLimit )
+				|| ( diskLimit > 0 && diskUsage.get( ) > diskLimit );
+	}
+
+	/**
+	 * Drops the expired entries, then the least recently or frequently used
+	 * ones until the cache fits in the budgets. The entry just put is only
+	 * evicted if the others do not free enough room, otherwise a new entry
+	 * would never survive the LFU policy.
+	 *
+	 * @param added
+	 *            the entry just put, or null
+	 * @param released
+	 *            collects the cache objects to be released
+	 */
+	private void evict( final CacheEntry added,
+			List<IDataSetCacheObject> released )
+	{
+		if ( timeToLive <= 0 && !isOverBudget( ) )
+		{
+			return;
+		}
+		synchronized ( evictionLock )
+		{
+			List<Map.Entry<DataSourceAndDataSet, CacheEntry>> candidates = new ArrayList<Map.Entry<DataSourceAndDataSet, CacheEntry>>( entries.entrySet( ) );
+			if ( timeToLive > 0 )
+			{
+				for ( int i = 0; i < candidates.size( ); i++ )
+				{
+					Map.Entry<DataSourceAndDataSet, CacheEntry> candidate = candidates.get( i );
+					if ( isExpired( candidate.getValue( ) ) )
+					{
+						removeIfNotInUse( candidate.getKey( ),
+								candidate.getValue( ),
+								released );
+					}
+				}
+			}
+			if ( !isOverBudget( ) )
+			{
+				return;
+			}
+			Collections.sort( candidates,
+					new Comparator<Map.Entry<DataSourceAndDataSet, CacheEntry>>( ) {
+
+						public int compare(
+								Map.Entry<DataSourceAndDataSet, CacheEntry> o1,
+								Map.Entry<DataSourceAndDataSet, CacheEntry> o2 )
+						{
+							CacheEntry e1 = o1.getValue( );
+							CacheEntry e2 = o2.getValue( );
+							if ( e1 == added || e2 == added )
+							{
+								return e1 == e2 ? 0 : ( e1 == added ? 1 : -1 );
+							}
+							if ( evictLeastFrequentlyUsed
+									&& e1.accessCount != e2.accessCount )
+							{
+								return e1.accessCount < e2.accessCount ? -1 : 1;
+							}
+							return e1.lastAccess < e2.lastAccess ? -1
+									: ( e1.lastAccess == e2.lastAccess ? 0 : 1 );
+						}
+					} );
+			for ( int i = 0; i < candidates.size( ) && isOverBudget( ); i++ )
+			{
+				Map.Entry<DataSourceAndDataSet, CacheEntry> candidate = candidates.get( i );
+				removeIfNotInUse( candidate.getKey( ),
+						candidate.getValue( ),
+						released );
+			}
+		}
+	}
+
+	/**
+	 * Removes the entry unless it is being read.
+	 *
+	 * @return true if the entry has been removed
+	 */
+	private boolean removeIfNotInUse( DataSourceAndDataSet key,
+			CacheEntry entry, List<IDataSetCacheObject> released )
+	{
+		// incremental caches are persistent, they are only removed on request
+		if ( entry.cacheObject instanceof IncreDataSetCacheObject )
+		{
+			return false;
+		}
+		synchronized ( lockedEntries )
+		{
+			if ( lockedEntries.containsKey( key )
+					|| !entries.remove( key, entry ) )
+			{
+				return false;
+			}
+		}
+		memoryUsage.addAndGet( -entry.memorySize );
+		diskUsage.addAndGet( -entry.diskSize );
+		evictionCount.incrementAndGet( );
+		released.add( entry.cacheObject );
+		return true;
+	}
+
+	private static void release( List<IDataSetCacheObject> released )
+	{
+		for ( int i = 0; i < released.size( ); i++ )
+		{
+			released.get( i ).release( );
+		}
+	}
+
+	/**
+	 * Measures the memory used by a data set cached in memory, sampling up to
+	 * MAX_MEASURED_ROWS rows.
+	 *
+	 * @param cacheObject
+	 * @return the estimated bytes
+	 */
+	static long measureMemorySize( MemoryDataSetCacheObject cacheObject )
+	{
+		int rowCount = cacheObject.getSize( );
+		if ( rowCount == 0 || cacheObject.getResultClass( ) == null )
+		{
+			return 0;
+		}
+		try
+		{
+			SizeOfUtil sizeOfUtil = new SizeOfUtil( cacheObject.getResultClass( ) );
+			int step = Math.max( 1, rowCount / MAX_MEASURED_ROWS );
+			long measured = 0;
+			int measuredRows = 0;
+			for ( int i = 0; i < rowCount; i += step )
+			{
+				measured += sizeOfUtil.sizeOf( cacheObject.getResultObject( i ) );
+				measuredRows++;
+			}
+			return measured * rowCount / measuredRows;
+		}
+		catch ( DataException e )
+		{
+			logger.log( Level.FINE, e.getMessage( ), e );
+			return 0;
+		}
+		catch ( IndexOutOfBoundsException e )
+		{
+			// the rows have been reclaimed by the garbage collector
+			return 0;
+		}
+	}
+
+	private static long getLongProperty( String name, long defaultValue )
+	{
+		try
+		{
+			String value = System.getProperty( name );
+			if ( value != null && value.trim( ).length( ) > 0 )
+			{
+				return Long.parseLong( value.trim( ) );
+			}
+		}
+		catch ( NumberFormatException e )
+		{
+			logger.log( Level.WARNING, "Invalid value of " + name ); //$NON-NLS-1$
+		}
+		catch ( SecurityException e )
+		{
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * A cached data set with its usage.
+	 */
+	private static class CacheEntry
+	{
+
+		final IDataSetCacheObject cacheObject;
+		final long memorySize;
+		final long diskSize;
+		final long createTime;
+		volatile long lastAccess;
+		volatile long accessCount;
+
+		CacheEntry( IDataSetCacheObject cacheObject, long clock )
+		{
+			this.cacheObject = cacheObject;
+			this.createTime = System.currentTimeMillis( );
+			this.lastAccess = clock;
+			if ( cacheObject instanceof MemoryDataSetCacheObject )
+			{
+				this.memorySize = measureMemorySize( (MemoryDataSetCacheObject) cacheObject );
+				this.diskSize = 0;
+			}
+			else if ( cacheObject instanceof DiskDataSetCacheObject )
+			{
+				DiskDataSetCacheObject diskObject = (DiskDataSetCacheObject) cacheObject;
+				this.memorySize = 0;
+				this.diskSize = diskObject.getDataFile( ).length( )
+						+ diskObject.getMetaFile( ).length( );
+			}
+			else
+			{
+				this.memorySize = 0;
+				this.diskSize = 0;
+			}
+		}
+
+		void touch( long clock )
+		{
+			lastAccess = clock;
+			// a lost update only makes the count approximate
+			accessCount++;
+		}
+	}
+
+	/**
+	 * A data set being loaded into the cache.
+	 */
+	private static class Loading
+	{
+
+		final Object owner;
+		final CountDownLatch done = new CountDownLatch( 1 );
+
+		Loading( Object owner )
+		{
+			this.owner = owner;
+		}
+	}
+}
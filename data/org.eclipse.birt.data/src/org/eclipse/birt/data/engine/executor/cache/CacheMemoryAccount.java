@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+import org.eclipse.birt.data.engine.api.DataEngineThreadLocal;
+import org.eclipse.birt.data.engine.api.ICloseListener;
+import org.eclipse.birt.data.engine.impl.MemoryUsageSetting;
+
+/**
+ * Accounts the memory taken by the rows a cache keeps in memory, against the
+ * result buffer size of the query and against the budget shared by all the
+ * queries of the JVM. The shared budget is reserved by chunks, so that the
+ * queries do not contend for it on every row, and is given back when the
+ * cache is closed or, at the latest, when the data engine is shut down.
+ */
+class CacheMemoryAccount implements ICloseListener
+{
+
+	// the shared budget is reserved by this many bytes at least
+	private static final long CHUNK_SIZE = 256 * 1024;
+
+	// the result buffer size of the query, 0 for no limit
+	private long memoryCacheSize;
+
+	private long usedMemorySize;
+	private long reservedMemorySize;
+	private boolean budgetExceeded;
+	private boolean registered;
+
+	/**
+	 * @param memoryCacheSize
+	 *            the result buffer size of the query in bytes, 0 for no limit
+	 */
+	CacheMemoryAccount( long memoryCacheSize )
+	{
+		this.memoryCacheSize = memoryCacheSize;
+	}
+
+	/**
+	 * @return whether the memory taken by the rows needs to be computed
+	 */
+	boolean isLimited( )
+	{
+		return memoryCacheSize != 0
+				|| MemoryUsageSetting.getMemoryBudget( ) > 0;
+	}
+
+	/**
+	 * @return whether more rows may be kept in memory
+	 */
+	boolean hasRoom( )
+	{
+		if ( budgetExceeded )
+		{
+			return false;
+		}
+		return memoryCacheSize == 0 || usedMemorySize < memoryCacheSize;
+	}
+
+	/**
+	 * Accounts a row kept in memory.
+	 *
+	 * @param size
+	 *            the memory taken by the row in bytes
+	 */
+	synchronized void add( long size )
+	{
+		usedMemorySize += size;
+		if ( usedMemorySize > reservedMemorySize )
+		{
+			long chunk = Math.max( CHUNK_SIZE, usedMemorySize
+					- reservedMemorySize );
+			if ( MemoryUsageSetting.reserveMemory( chunk ) )
+			{
+				if ( !registered )
+				{
+					DataEngineThreadLocal.getInstance( )
+							.getCloseListener( )
+							.add( this );
+					registered = true;
+				}
+				reservedMemorySize += chunk;
+			}
+			else
+			{
+				budgetExceeded = true;
+			}
+		}
+	}
+
+	/**
+	 * @return the memory taken by the rows in bytes
+	 */
+	long getUsedMemorySize( )
+	{
+		return usedMemorySize;
+	}
+
+	/**
+	 * Gives back the memory reserved of the shared budget. The account may be
+	 * released several times.
+	 */
+	synchronized void release( )
+	{
+		if ( reservedMemorySize > 0 )
+		{
+			MemoryUsageSetting.releaseMemory( reservedMemorySize );
+			reservedMemorySize = 0;
+		}
+		usedMemorySize = 0;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.api.ICloseListener#close()
+	 */
+	public void close( )
+	{
+		release( );
+	}
+}
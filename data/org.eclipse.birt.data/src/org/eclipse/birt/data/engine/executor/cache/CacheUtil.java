@@ -66,8 +66,7 @@ public class CacheUtil
 	 */
 	public static long computeMemoryBufferSize( Map appContext )
 	{
-		
-		//here a simple assumption, that 1M memory can accommodate 2000 rows
+		// the rows are measured by SizeOfUtil against this size
 		if ( appContext == null )
 			return 0;
 		if ( appContext.get( TEST_MEM_BUFFER_SIZE )!= null )
@@ -0,0 +1,541 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.core.data.DataTypeUtil;
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.core.util.IOUtil;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.impl.document.stream.VersionManager;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * Serializes the rows spilled to disk by blocks, column by column. In a block,
+ * every column starts with a bitmap of its null values followed by the non
+ * null values in a typed encoding: integers as variable length numbers,
+ * doubles as raw bits, booleans as bits, dates as variable length differences
+ * to the previous date and strings as indexes in a dictionary of the block.
+ * The other types are written value by value as ResultObjectUtil does.
+ * <p>
+ * A block which is read keeps its values in primitive arrays, the values of a
+ * row are only created when the row is asked for.
+ */
+public class ColumnarBlockUtil
+{
+
+	/**
+	 * The maximum count of rows in a block.
+	 */
+	public static final int BLOCK_SIZE = 1024;
+
+	// how the values of a column are encoded
+	private static final int OBJECT_COLUMN = 0;
+	private static final int INTEGER_COLUMN = 1;
+	private static final int DOUBLE_COLUMN = 2;
+	private static final int BOOLEAN_COLUMN = 3;
+	private static final int DATE_COLUMN = 4;
+	private static final int STRING_COLUMN = 5;
+
+	private ResultObjectUtil resultObjectUtil;
+
+	private Class[] typeArray;
+
+	private int[] columnTypes;
+
+	/**
+	 * @param resultObjectUtil
+	 *            gives the data types of the columns
+	 */
+	public ColumnarBlockUtil( ResultObjectUtil resultObjectUtil )
+	{
+		this.resultObjectUtil = resultObjectUtil;
+		this.typeArray = resultObjectUtil.getFieldValueClasses( );
+		this.columnTypes = new int[typeArray.length];
+		for ( int i = 0; i < typeArray.length; i++ )
+		{
+			columnTypes[i] = getColumnType( typeArray[i] );
+		}
+	}
+
+	private static int getColumnType( Class fieldType )
+	{
+		if ( fieldType == null )
+			return OBJECT_COLUMN;
+		if ( fieldType.equals( Integer.class ) )
+			return INTEGER_COLUMN;
+		if ( fieldType.equals( Double.class ) )
+			return DOUBLE_COLUMN;
+		if ( fieldType.equals( Boolean.class ) )
+			return BOOLEAN_COLUMN;
+		if ( Date.class.isAssignableFrom( fieldType ) )
+			return DATE_COLUMN;
+		if ( fieldType.equals( String.class ) )
+			return STRING_COLUMN;
+		return OBJECT_COLUMN;
+	}
+
+	/**
+	 * Writes the rows as one block.
+	 *
+	 * @param dos
+	 * @param resultObjects
+	 * @param count
+	 *            the count of rows to write, at most BLOCK_SIZE
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	public void writeBlock( DataOutputStream dos,
+			IResultObject[] resultObjects, int count ) throws IOException,
+			DataException
+	{
+		writeVarLong( dos, count );
+		Object[] values = new Object[count];
+		for ( int col = 0; col < columnTypes.length; col++ )
+		{
+			boolean hasNull = false;
+			for ( int row = 0; row < count; row++ )
+			{
+				values[row] = getValue( resultObjects[row], col );
+				hasNull = hasNull || values[row] == null;
+			}
+
+			// null bitmap
+			if ( hasNull )
+			{
+				dos.writeByte( 1 );
+				byte[] bits = new byte[( count + 7 ) / 8];
+				for ( int row = 0; row < count; row++ )
+				{
+					if ( values[row] == null )
+					{
+						bits[row >> 3] |= 1 << ( row & 7 );
+					}
+				}
+				dos.write( bits );
+			}
+			else
+			{
+				dos.writeByte( 0 );
+			}
+
+			switch ( columnTypes[col] )
+			{
+				case INTEGER_COLUMN :
+					for ( int row = 0; row < count; row++ )
+					{
+						if ( values[row] != null )
+						{
+							writeVarLong( dos,
+									zigZag( ( (Integer) values[row] ).intValue( ) ) );
+						}
+					}
+					break;
+				case DOUBLE_COLUMN :
+					for ( int row = 0; row < count; row++ )
+					{
+						if ( values[row] != null )
+						{
+							dos.writeDouble( ( (Double) values[row] ).doubleValue( ) );
+						}
+					}
+					break;
+				case BOOLEAN_COLUMN :
+				{
+					byte[] bits = new byte[( count + 7 ) / 8];
+					for ( int row = 0; row < count; row++ )
+					{
+						if ( Boolean.TRUE.equals( values[row] ) )
+						{
+							bits[row >> 3] |= 1 << ( row & 7 );
+						}
+					}
+					dos.write( bits );
+					break;
+				}
+				case DATE_COLUMN :
+				{
+					long previous = 0;
+					for ( int row = 0; row < count; row++ )
+					{
+						if ( values[row] != null )
+						{
+							long time = ( (Date) values[row] ).getTime( );
+							writeVarLong( dos, zigZag( time - previous ) );
+							previous = time;
+						}
+					}
+					break;
+				}
+				case STRING_COLUMN :
+				{
+					Map<String, Integer> dictionary = new HashMap<String, Integer>( );
+					int[] codes = new int[count];
+					for ( int row = 0; row < count; row++ )
+					{
+						if ( values[row] != null )
+						{
+							String value = values[row].toString( );
+							Integer code = dictionary.get( value );
+							if ( code == null )
+							{
+								code = Integer.valueOf( dictionary.size( ) );
+								dictionary.put( value, code );
+							}
+							codes[row] = code.intValue( );
+						}
+					}
+					String[] words = new String[dictionary.size( )];
+					for ( Map.Entry<String, Integer> entry : dictionary.entrySet( ) )
+					{
+						words[entry.getValue( ).intValue( )] = entry.getKey( );
+					}
+					writeVarLong( dos, words.length );
+					for ( int i = 0; i < words.length; i++ )
+					{
+						IOUtil.writeString( dos, words[i] );
+					}
+					for ( int row = 0; row < count; row++ )
+					{
+						if ( values[row] != null )
+						{
+							writeVarLong( dos, codes[row] );
+						}
+					}
+					break;
+				}
+				default :
+					for ( int row = 0; row < count; row++ )
+					{
+						if ( values[row] != null )
+						{
+							ResultObjectUtil.writeObject( dos,
+									values[row],
+									typeArray[col],
+									VersionManager.getLatestVersion( ) );
+						}
+					}
+			}
+		}
+	}
+
+	/**
+	 * Gets the value of a column as it is written, the same conversions as
+	 * ResultObjectUtil.writeObject are applied.
+	 */
+	private Object getValue( IResultObject resultObject, int col )
+			throws DataException
+	{
+		Object value = null;
+		try
+		{
+			value = resultObject.getFieldValue( col + 1 );
+		}
+		catch ( DataException e )
+		{
+			// never get here since the index value is always value
+		}
+		if ( value == null )
+		{
+			return null;
+		}
+		switch ( columnTypes[col] )
+		{
+			case INTEGER_COLUMN :
+				return value instanceof Integer ? value : convert( value,
+						DataType.INTEGER_TYPE );
+			case DOUBLE_COLUMN :
+				return value instanceof Double ? value : convert( value,
+						DataType.DOUBLE_TYPE );
+			case BOOLEAN_COLUMN :
+				return value instanceof Boolean ? value : convert( value,
+						DataType.BOOLEAN_TYPE );
+			case DATE_COLUMN :
+				return value instanceof Date ? value : convert( value,
+						DataType.DATE_TYPE );
+			default :
+				return value;
+		}
+	}
+
+	/**
+	 * Reads the next block.
+	 *
+	 * @param dis
+	 * @return the block
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	public Block readBlock( DataInputStream dis ) throws IOException,
+			DataException
+	{
+		int count = (int) readVarLong( dis );
+		Column[] columns = new Column[columnTypes.length];
+		for ( int col = 0; col < columns.length; col++ )
+		{
+			Column column = new Column( columnTypes[col], typeArray[col] );
+			columns[col] = column;
+			if ( dis.readByte( ) != 0 )
+			{
+				column.nulls = new byte[( count + 7 ) / 8];
+				dis.readFully( column.nulls );
+			}
+
+			switch ( columnTypes[col] )
+			{
+				case INTEGER_COLUMN :
+					column.longs = new long[count];
+					for ( int row = 0; row < count; row++ )
+					{
+						if ( !column.isNull( row ) )
+						{
+							column.longs[row] = unZigZag( readVarLong( dis ) );
+						}
+					}
+					break;
+				case DOUBLE_COLUMN :
+					column.doubles = new double[count];
+					for ( int row = 0; row < count; row++ )
+					{
+						if ( !column.isNull( row ) )
+						{
+							column.doubles[row] = dis.readDouble( );
+						}
+					}
+					break;
+				case BOOLEAN_COLUMN :
+					column.bits = new byte[( count + 7 ) / 8];
+					dis.readFully( column.bits );
+					break;
+				case DATE_COLUMN :
+				{
+					column.longs = new long[count];
+					long previous = 0;
+					for ( int row = 0; row < count; row++ )
+					{
+						if ( !column.isNull( row ) )
+						{
+							previous += unZigZag( readVarLong( dis ) );
+							column.longs[row] = previous;
+						}
+					}
+					break;
+				}
+				case STRING_COLUMN :
+				{
+					column.words = new String[(int) readVarLong( dis )];
+					for ( int i = 0; i < column.words.length; i++ )
+					{
+						column.words[i] = IOUtil.readString( dis );
+					}
+					column.codes = new int[count];
+					for ( int row = 0; row < count; row++ )
+					{
+						if ( !column.isNull( row ) )
+						{
+							column.codes[row] = (int) readVarLong( dis );
+						}
+					}
+					break;
+				}
+				default :
+					column.objects = new Object[count];
+					for ( int row = 0; row < count; row++ )
+					{
+						if ( !column.isNull( row ) )
+						{
+							column.objects[row] = ResultObjectUtil.readObject( dis,
+									typeArray[col],
+									null,
+									VersionManager.getLatestVersion( ) );
+						}
+					}
+			}
+		}
+		return new Block( count, columns );
+	}
+
+	/**
+	 * A block of rows which has been read.
+	 */
+	public class Block
+	{
+
+		private int rowCount;
+
+		private Column[] columns;
+
+		private Block( int rowCount, Column[] columns )
+		{
+			this.rowCount = rowCount;
+			this.columns = columns;
+		}
+
+		/**
+		 * @return the count of rows in the block
+		 */
+		public int getRowCount( )
+		{
+			return rowCount;
+		}
+
+		/**
+		 * Creates the result object of a row.
+		 *
+		 * @param index
+		 *            0-based index of the row in the block
+		 * @return the row
+		 * @throws DataException
+		 */
+		public IResultObject getRow( int index ) throws DataException
+		{
+			Object[] fields = new Object[columns.length];
+			for ( int col = 0; col < columns.length; col++ )
+			{
+				fields[col] = columns[col].getValue( index );
+			}
+			return resultObjectUtil.newResultObject( fields );
+		}
+	}
+
+	/**
+	 * The decoded values of a column in a block.
+	 */
+	private static class Column
+	{
+
+		private int columnType;
+		private Class fieldType;
+
+		private byte[] nulls;
+		private long[] longs;
+		private double[] doubles;
+		private byte[] bits;
+		private String[] words;
+		private int[] codes;
+		private Object[] objects;
+
+		Column( int columnType, Class fieldType )
+		{
+			this.columnType = columnType;
+			this.fieldType = fieldType;
+		}
+
+		boolean isNull( int row )
+		{
+			return nulls != null && ( nulls[row >> 3] & ( 1 << ( row & 7 ) ) ) != 0;
+		}
+
+		Object getValue( int row ) throws DataException
+		{
+			if ( isNull( row ) )
+			{
+				return null;
+			}
+			switch ( columnType )
+			{
+				case INTEGER_COLUMN :
+					return Integer.valueOf( (int) longs[row] );
+				case DOUBLE_COLUMN :
+					return new Double( doubles[row] );
+				case BOOLEAN_COLUMN :
+					return Boolean.valueOf( ( bits[row >> 3] & ( 1 << ( row & 7 ) ) ) != 0 );
+				case DATE_COLUMN :
+					return toDate( longs[row] );
+				case STRING_COLUMN :
+					return words[codes[row]];
+				default :
+					return objects[row];
+			}
+		}
+
+		/**
+		 * Creates the date the same way as ResultObjectUtil.readObject.
+		 */
+		private Object toDate( long time ) throws DataException
+		{
+			if ( fieldType.equals( Time.class ) )
+				return new Time( time );
+			if ( fieldType.equals( Timestamp.class ) )
+				return new Timestamp( time );
+			if ( fieldType.equals( java.sql.Date.class ) )
+			{
+				try
+				{
+					return DataTypeUtil.toSqlDate( new java.sql.Date( time ) );
+				}
+				catch ( BirtException e )
+				{
+					throw DataException.wrap( e );
+				}
+			}
+			return new Date( time );
+		}
+	}
+
+	private static Object convert( Object o, int type ) throws DataException
+	{
+		try
+		{
+			return DataTypeUtil.convert( o, type );
+		}
+		catch ( BirtException e )
+		{
+			throw DataException.wrap( e );
+		}
+	}
+
+	private static long zigZag( long value )
+	{
+		return ( value << 1 ) ^ ( value >> 63 );
+	}
+
+	private static long unZigZag( long value )
+	{
+		return ( value >>> 1 ) ^ -( value & 1 );
+	}
+
+	private static void writeVarLong( DataOutputStream dos, long value )
+			throws IOException
+	{
+		while ( ( value & ~0x7FL ) != 0 )
+		{
+			dos.writeByte( (int) ( ( value & 0x7F ) | 0x80 ) );
+			value >>>= 7;
+		}
+		dos.writeByte( (int) value );
+	}
+
+	private static long readVarLong( DataInputStream dis ) throws IOException
+	{
+		long value = 0;
+		for ( int shift = 0; shift < 64; shift += 7 )
+		{
+			int b = dis.readByte( );
+			value |= (long) ( b & 0x7F ) << shift;
+			if ( ( b & 0x80 ) == 0 )
+			{
+				return value;
+			}
+		}
+		throw new IOException( "Malformed variable length number" ); //$NON-NLS-1$
+	}
+}
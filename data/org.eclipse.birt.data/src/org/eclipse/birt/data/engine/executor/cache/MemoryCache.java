@@ -44,6 +44,9 @@ public class MemoryCache implements ResultSetCache
 	private IResultObject currResultObject;
 	private IResultObject[] resultObjects;
 	
+	// the memory taken by the rows, given back on close
+	private CacheMemoryAccount memoryAccount;
+	
 	/**
 	 * @param resultObjects
 	 * @param comparator
@@ -59,6 +62,16 @@ public class MemoryCache implements ResultSetCache
 			Arrays.sort( this.resultObjects, comparator );
 	}
 
+	/**
+	 * @param memoryAccount
+	 *            the account of the memory taken by the rows, which is
+	 *            released when this cache is closed
+	 */
+	void setMemoryAccount( CacheMemoryAccount memoryAccount )
+	{
+		this.memoryAccount = memoryAccount;
+	}
+
 	/*
 	 * @see org.eclipse.birt.data.engine.executor.cache.ResultSetCache#getCurrentIndex()
 	 */
@@ -165,6 +178,11 @@ public class MemoryCache implements ResultSetCache
 	{
 		reset( );
 		resultObjects = null;
+		if ( memoryAccount != null )
+		{
+			memoryAccount.release( );
+			memoryAccount = null;
+		}
 	}
 	
 	/*
@@ -103,6 +103,14 @@ public class ResultObjectUtil
 	{
 	}
 	
+	/**
+	 * @return the data types of the columns
+	 */
+	public Class[] getFieldValueClasses( )
+	{
+		return (Class[]) typeArray.clone( );
+	}
+	
 	/**
 	 * New a instance of ResultObject according to the parameter of object array
 	 * plus the metadata stored before.
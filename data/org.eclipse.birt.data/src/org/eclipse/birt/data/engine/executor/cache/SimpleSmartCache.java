@@ -37,8 +37,8 @@ public class SimpleSmartCache implements ResultSetCache
 	private boolean isOpen = false;
 	private IEventHandler eventHandler;
 	private int count;
-	private long usedMemorySize;
-	private long memoryCacheSize;
+	private CacheMemoryAccount memoryAccount;
+	private boolean isMemoryLimited;
 	private List<IResultObject> resultObjectsList;
 	private IResultClass rsMeta;
 	private SizeOfUtil sizeOfUtil;
@@ -57,8 +57,8 @@ public class SimpleSmartCache implements ResultSetCache
 		this.session = session;
 		this.eventHandler = eventHandler;
 		this.count = 0;
-		this.usedMemorySize = 0;
-		this.memoryCacheSize = CacheUtil.computeMemoryBufferSize( eventHandler.getAppContext( ) );
+		this.memoryAccount = new CacheMemoryAccount( CacheUtil.computeMemoryBufferSize( eventHandler.getAppContext( ) ) );
+		this.isMemoryLimited = memoryAccount.isLimited( );
 		this.resultObjectsList = new ArrayList<IResultObject>( );
 		this.rsMeta = rsMeta;
 		this.sizeOfUtil = new SizeOfUtil( rsMeta );
@@ -67,7 +67,7 @@ public class SimpleSmartCache implements ResultSetCache
 
 	public void add( IResultObject odaObject ) throws DataException
 	{
-		if ( memoryCacheSize == 0 || usedMemorySize < memoryCacheSize )
+		if ( diskCache == null && memoryAccount.hasRoom( ) )
 		{
 			count++;
 			if ( maxRows > 0 && count > maxRows )
@@ -91,6 +91,8 @@ public class SimpleSmartCache implements ResultSetCache
 		resultObjectsList.clear( );
 		if ( diskCache == null )
 		{
+			// the disk cache bounds the rows it keeps in memory itself
+			memoryAccount.release( );
 			diskCache = new SimpleDiskCache( resultObjects,
 					rsMeta,
 					resultObjects.length,
@@ -117,8 +119,8 @@ public class SimpleSmartCache implements ResultSetCache
 			odaObject = new ResultObject( rsMeta, obs );
 		}
 		resultObjectsList.add( odaObject );
-		if ( memoryCacheSize != 0 )
-			usedMemorySize += sizeOfUtil.sizeOf( odaObject );
+		if ( isMemoryLimited && diskCache == null )
+			memoryAccount.add( sizeOfUtil.sizeOf( odaObject ) );
 	}
 
 	/*
@@ -141,7 +143,9 @@ public class SimpleSmartCache implements ResultSetCache
 				logger.fine( "MemoryCache is used" );
 
 				IResultObject[] resultObjects = (IResultObject[]) resultObjectsList.toArray( new IResultObject[0] );
-				resultSetCache = new MemoryCache( resultObjects, rsMeta, null );
+				MemoryCache memoryCache = new MemoryCache( resultObjects, rsMeta, null );
+				memoryCache.setMemoryAccount( memoryAccount );
+				resultSetCache = memoryCache;
 			}
 			else
 			{
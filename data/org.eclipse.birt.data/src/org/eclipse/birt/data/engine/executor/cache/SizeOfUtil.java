@@ -10,11 +10,16 @@
  *******************************************************************************/
 package org.eclipse.birt.data.engine.executor.cache;
 
+import java.lang.management.ManagementFactory;
 import java.math.BigDecimal;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.Date;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
 import org.eclipse.birt.core.data.DataType;
 import org.eclipse.birt.core.data.DataTypeUtil;
 import org.eclipse.birt.core.exception.BirtException;
@@ -24,24 +29,32 @@ import org.eclipse.birt.data.engine.odi.IResultObject;
 
 /**
  * This class provide the function of compute the size of memory occupied by
- * object
+ * object. The sizes are computed from the object layout of the running JVM,
+ * that is the size of the object headers and of the references, which depends
+ * on whether the JVM is 64 bits and uses compressed references, and the
+ * actual length of the strings, byte arrays and big decimals.
  */
 public class SizeOfUtil
 {
-	private static int INTEGER_SIZE = 16;
-	private static int DOUBLE_SIZE = 16;
-	private static int BIGDECIMAL_SIZE = 200;
-	private static int DATE_SIZE = 24;
-	private static int TIME_SIZE = 24;
-	private static int SQL_DATE_SIZE = 24;
-	private static int TIMESTAMP_SIZE = 24;
-	private static int STRING_OVERHEAD = 40;
-	private static int STRING_SIZE = 40 + ( ( 20 + 1 ) / 4 ) * 8; //We can assume String values to average 20 characters each.;
+	private static boolean COMPACT_STRINGS = false;
 	
 	public static int POINTER_SIZE = 4;
 	public static int PRIMITIVE_ARRAY_OVERHEAD = 12;
 	public static int OBJECT_OVERHEAD = 8;
 	public static int OBJECT_ARRAY_OVERHEAD = 12;
+
+	private static int INTEGER_SIZE;
+	private static int DOUBLE_SIZE;
+	private static int BIGDECIMAL_SIZE;
+	private static int BIGINTEGER_SIZE;
+	private static int DATE_SIZE;
+	private static int TIME_SIZE;
+	private static int SQL_DATE_SIZE;
+	private static int TIMESTAMP_SIZE;
+	private static int STRING_OVERHEAD;
+	// a string of which the value is not known is assumed to have 20 characters
+	private static int STRING_SIZE;
+	private static int RESULT_OBJECT_SIZE;
 	
 	// field count of result object
 	private int fieldCount = 0;
@@ -50,39 +63,105 @@ public class SizeOfUtil
 	
 	static
 	{
-		if(System.getProperty( "java.version" ).startsWith( "1.5" ))
-		{
-			BIGDECIMAL_SIZE = 200;
-			TIMESTAMP_SIZE = 32;
-		}
-		
-		Object JVMBit = System.getProperty("sun.arch.data.model");
-		if( JVMBit != null )
+		Object JVMBit = System.getProperty( "sun.arch.data.model" ); //$NON-NLS-1$
+		boolean is64Bit = false;
+		if ( JVMBit != null )
 		{
 			try
 			{
-				if( DataTypeUtil.toInteger( JVMBit ) == 64 )
-				{
-					INTEGER_SIZE = 24;
-					DOUBLE_SIZE = 24;
-					BIGDECIMAL_SIZE = 216;
-					DATE_SIZE = 32;
-					TIME_SIZE = 32;
-					SQL_DATE_SIZE = 32;
-					TIMESTAMP_SIZE = 32;
-					STRING_OVERHEAD = 56;
-					STRING_SIZE = 56 + ( ( 20 + 1 ) / 4 ) * 8; //We can assume String values to average 20 characters each.;
-					POINTER_SIZE = 8;
-					PRIMITIVE_ARRAY_OVERHEAD = 2*8+4;
-					OBJECT_ARRAY_OVERHEAD = 2*8+8;
-				}
+				is64Bit = DataTypeUtil.toInteger( JVMBit ) == 64;
 			}
-			catch (BirtException e)
+			catch ( BirtException e )
 			{
-				
 			}
 		}
-		
+		if ( is64Bit )
+		{
+			boolean compressedOops = isCompressedOops( );
+			POINTER_SIZE = compressedOops ? 4 : 8;
+			OBJECT_OVERHEAD = compressedOops ? 12 : 16;
+		}
+		PRIMITIVE_ARRAY_OVERHEAD = OBJECT_OVERHEAD + 4;
+		OBJECT_ARRAY_OVERHEAD = PRIMITIVE_ARRAY_OVERHEAD;
+
+		// the strings are stored as latin1 bytes when possible since java 9
+		String specVersion = System.getProperty( "java.specification.version" ); //$NON-NLS-1$
+		COMPACT_STRINGS = specVersion != null && !specVersion.startsWith( "1." ); //$NON-NLS-1$
+
+		INTEGER_SIZE = align( OBJECT_OVERHEAD + 4 );
+		DOUBLE_SIZE = align( OBJECT_OVERHEAD + 8 );
+		// intVal, scale, precision, intCompact and stringCache
+		BIGDECIMAL_SIZE = align( OBJECT_OVERHEAD + POINTER_SIZE * 2 + 4 + 4 + 8 );
+		// signum, mag and four cached values
+		BIGINTEGER_SIZE = align( OBJECT_OVERHEAD + 4 + POINTER_SIZE + 4 * 4 );
+		// fastTime and cdate
+		DATE_SIZE = align( OBJECT_OVERHEAD + 8 + POINTER_SIZE );
+		TIME_SIZE = DATE_SIZE;
+		SQL_DATE_SIZE = DATE_SIZE;
+		// and nanos
+		TIMESTAMP_SIZE = align( OBJECT_OVERHEAD + 8 + POINTER_SIZE + 4 );
+		// value, hash and since java 9 coder and hashIsZero
+		STRING_OVERHEAD = align( OBJECT_OVERHEAD
+				+ POINTER_SIZE + 4 + ( COMPACT_STRINGS ? 2 : 0 ) );
+		STRING_SIZE = STRING_OVERHEAD
+				+ getPrimitiveArraySize( 20, COMPACT_STRINGS ? 1 : 2 );
+		// resultClass and fields
+		RESULT_OBJECT_SIZE = align( OBJECT_OVERHEAD + POINTER_SIZE * 2 );
+	}
+
+	/**
+	 * Asks the JVM whether it uses compressed references. When it cannot be
+	 * told, they are assumed to be used if the heap is less than 32G, as the
+	 * JVM does by default.
+	 * 
+	 * @return
+	 */
+	private static boolean isCompressedOops( )
+	{
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer( );
+			Object option = server.invoke( new ObjectName( "com.sun.management:type=HotSpotDiagnostic" ), //$NON-NLS-1$
+					"getVMOption", //$NON-NLS-1$
+					new Object[]{
+						"UseCompressedOops" //$NON-NLS-1$
+					},
+					new String[]{
+						String.class.getName( )
+					} );
+			if ( option instanceof CompositeData )
+			{
+				return Boolean.valueOf( String.valueOf( ( (CompositeData) option ).get( "value" ) ) ).booleanValue( ); //$NON-NLS-1$
+			}
+		}
+		catch ( Throwable e )
+		{
+			// not a HotSpot JVM or not allowed
+		}
+		return Runtime.getRuntime( ).maxMemory( ) < 32L * 1024 * 1024 * 1024;
+	}
+
+	/**
+	 * Rounds a size up to the 8 bytes the objects are aligned on.
+	 * 
+	 * @param size
+	 * @return
+	 */
+	private static int align( int size )
+	{
+		return ( size + 7 ) & ~7;
+	}
+
+	/**
+	 * Return the size of memory occupied by an array of primitives.
+	 * 
+	 * @param length
+	 * @param elementSize
+	 * @return
+	 */
+	static int getPrimitiveArraySize( int length, int elementSize )
+	{
+		return align( PRIMITIVE_ARRAY_OVERHEAD + length * elementSize );
 	}
 
 	/**
@@ -120,7 +199,6 @@ public class SizeOfUtil
 	{
 		return objectClass.equals( Integer.class )
 				|| objectClass.equals( Double.class )
-				|| objectClass.equals( BigDecimal.class )
 				|| objectClass.equals( Date.class )
 				|| objectClass.equals( java.sql.Date.class )
 				|| objectClass.equals( Time.class )
@@ -197,8 +275,10 @@ public class SizeOfUtil
 				}
 			}
 		}
-		int fieldsSize = POINTER_SIZE * 2 + 8 + ( 4 + fieldCount * 4 - 1 ) / 8 * 8;
-		returnValue += POINTER_SIZE * 2 + 8 + ( 4 + fieldsSize - 1 ) / 8 * 8;
+		// the row, its field array and its slot in the cache
+		returnValue += RESULT_OBJECT_SIZE
+				+ align( OBJECT_ARRAY_OVERHEAD + fieldCount * POINTER_SIZE )
+				+ POINTER_SIZE;
 		return returnValue;
 	}
 	
@@ -240,7 +320,7 @@ public class SizeOfUtil
 	{
 		if( length == 0 )
 			return 0;
-		return POINTER_SIZE * 2 + 8 + ( POINTER_SIZE + length * 4 - 1 ) / 8 * 8;
+		return align( OBJECT_ARRAY_OVERHEAD + length * POINTER_SIZE );
 	}
 	
 	public static int getObjectSize( int[] dataType) {
@@ -269,13 +349,27 @@ public class SizeOfUtil
 		}
 		else if ( objectClass.equals( String.class ) )
 		{
-			int strLen = ( (String) object ).length( );
-			return STRING_OVERHEAD + ( ( strLen + 1 ) / 4 ) * 8;
+			String value = (String) object;
+			return STRING_OVERHEAD
+					+ getPrimitiveArraySize( value.length( ),
+							isLatin1( value ) ? 1 : 2 );
 		}
 		else if ( objectClass.equals( byte[].class ) )
 		{
-			int byteLen = ( (byte[]) object ).length;
-			return POINTER_SIZE * 2 + 8 + ( 4 + byteLen - 1 ) / 8 * 8;
+			return getPrimitiveArraySize( ( (byte[]) object ).length, 1 );
+		}
+		else if ( objectClass.equals( BigDecimal.class ) )
+		{
+			// the unscaled value is kept in a long unless it has more digits
+			BigDecimal value = (BigDecimal) object;
+			if ( value.precision( ) <= 18 )
+			{
+				return BIGDECIMAL_SIZE;
+			}
+			return BIGDECIMAL_SIZE
+					+ BIGINTEGER_SIZE
+					+ getPrimitiveArraySize( ( value.unscaledValue( ).bitLength( ) + 31 ) / 32,
+							4 );
 		}
 		else
 		{
@@ -283,4 +377,26 @@ public class SizeOfUtil
 		}
 	}
 
+	/**
+	 * Return whether a string is stored with one byte per character.
+	 * 
+	 * @param value
+	 * @return
+	 */
+	private static boolean isLatin1( String value )
+	{
+		if ( !COMPACT_STRINGS )
+		{
+			return false;
+		}
+		for ( int i = 0; i < value.length( ); i++ )
+		{
+			if ( value.charAt( i ) > 0xFF )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
 }
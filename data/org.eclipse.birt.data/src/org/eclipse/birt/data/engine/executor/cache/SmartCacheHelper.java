@@ -19,9 +19,11 @@ import java.util.logging.Logger;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.executor.ResultObject;
 import org.eclipse.birt.data.engine.executor.cache.disk.DiskCache;
+import org.eclipse.birt.data.engine.executor.cache.disk.IThreadSafeComparator;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
 import org.eclipse.birt.data.engine.expression.CompareHints;
 import org.eclipse.birt.data.engine.impl.DataEngineSession;
+import org.eclipse.birt.data.engine.impl.DataSetRuntime;
 import org.eclipse.birt.data.engine.odaconsumer.ResultSet;
 import org.eclipse.birt.data.engine.odi.IEventHandler;
 import org.eclipse.birt.data.engine.odi.IResultClass;
@@ -304,6 +306,8 @@ class SmartCacheHelper
 		long memoryCacheSize = cacheSize > 0
 				? cacheSize
 				: CacheUtil.computeMemoryBufferSize( eventHandler.getAppContext( ) );
+		CacheMemoryAccount memoryAccount = new CacheMemoryAccount( memoryCacheSize );
+		boolean isMemoryLimited = memoryAccount.isLimited( );
 		int maxRows = CacheUtil.getMaxRows( eventHandler == null ? null
 				: eventHandler.getAppContext( ) );
 		
@@ -312,12 +316,11 @@ class SmartCacheHelper
 		List resultObjectsList = new ArrayList( );
 
 		int dataCount = 0;
-		long usedMemorySize = 0;
 
 		while ( !session.getStopSign( ).isStopped( )
 				&& ( odaObject = rowResultSet.next( ) ) != null )
 		{
-			if ( memoryCacheSize == 0 || usedMemorySize < memoryCacheSize )
+			if ( memoryAccount.hasRoom( ) )
 			{
 				dataCount++;
 				if( maxRows > 0 && dataCount > maxRows )
@@ -337,20 +340,22 @@ class SmartCacheHelper
 					}
 					ResultObject temp = new ResultObject( rsMeta, obs );
 					resultObjectsList.add( temp );
-					if( memoryCacheSize != 0 )
-						usedMemorySize += sizeOfUtil.sizeOf( temp );
+					if( isMemoryLimited )
+						memoryAccount.add( sizeOfUtil.sizeOf( temp ) );
 				}
 				else
 				{
 					resultObjectsList.add( odaObject );
-					if( memoryCacheSize != 0 )
-						usedMemorySize += sizeOfUtil.sizeOf( odaObject );
+					if( isMemoryLimited )
+						memoryAccount.add( sizeOfUtil.sizeOf( odaObject ) );
 				}
 				
 			}
 			else
 			{
 				logger.fine( "DiskCache is used" );
+				// the disk cache bounds the rows it keeps in memory itself
+				memoryAccount.release( );
 
 				resultObjects = (IResultObject[]) resultObjectsList.toArray( new IResultObject[0] );
 				// the order is: resultObjects, odaObject, rowResultSet
@@ -372,9 +377,11 @@ class SmartCacheHelper
 
 			resultObjects = (IResultObject[]) resultObjectsList.toArray( new IResultObject[0] );
 
-			resultSetCache = new MemoryCache( resultObjects,
+			MemoryCache memoryCache = new MemoryCache( resultObjects,
 					rsMeta,
 					getComparator( sortSpec, eventHandler ) );
+			memoryCache.setMemoryAccount( memoryAccount );
+			resultSetCache = memoryCache;
 		}
 
 		odaObject = null;
@@ -405,7 +412,7 @@ class SmartCacheHelper
 
 		final int[] sortAscending = sortSpec.getSortAscending();
 		final CompareHints[] comparators = sortSpec.getComparator( );
-		Comparator comparator = new Comparator( ) {
+		final Comparator comparator = new Comparator( ) {
 
 			/**
 			 * compares two row indexes, actually compares two rows pointed by
@@ -463,6 +470,46 @@ class SmartCacheHelper
 			}
 		};
 
+		if ( isThreadSafe( comparators, eventHandler ) )
+		{
+			return new IThreadSafeComparator( ) {
+
+				public int compare( Object obj1, Object obj2 )
+				{
+					return comparator.compare( obj1, obj2 );
+				}
+			};
+		}
 		return comparator;
 	}
+
+	/**
+	 * The rows can only be compared from several threads when no collator is
+	 * used and the sort key values are read from the rows directly. Until the
+	 * data set has been processed, the event handler does not evaluate any
+	 * script to get them.
+	 * 
+	 * @param comparators
+	 * @param eventHandler
+	 * @return true if the rows can be compared concurrently
+	 */
+	private static boolean isThreadSafe( CompareHints[] comparators,
+			IEventHandler eventHandler )
+	{
+		for ( int i = 0; comparators != null && i < comparators.length; i++ )
+		{
+			if ( comparators[i] != null
+					&& comparators[i].getComparator( ) != null )
+			{
+				return false;
+			}
+		}
+		if ( eventHandler == null )
+		{
+			return true;
+		}
+		DataSetRuntime dataSet = eventHandler.getDataSetRuntime( );
+		return dataSet != null
+				&& dataSet.getMode( ) == DataSetRuntime.Mode.DataSet;
+	}
 }
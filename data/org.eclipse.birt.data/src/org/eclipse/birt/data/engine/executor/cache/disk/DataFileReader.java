@@ -12,18 +12,20 @@
 package org.eclipse.birt.data.engine.executor.cache.disk;
 
 import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.core.security.FileSecurity;
+import org.eclipse.birt.data.engine.executor.cache.ColumnarBlockUtil;
 import org.eclipse.birt.data.engine.executor.cache.ResultObjectUtil;
 import org.eclipse.birt.data.engine.odi.IResultObject;
 
 /**
  * A utility file reader handler, which keeps the file stream and input stream
- * for reading data.
+ * for reading data. The rows are read by blocks written by DataFileWriter.
  */
 class DataFileReader
 {
@@ -31,9 +33,13 @@ class DataFileReader
 	private boolean isOpen;
 
 	private FileInputStream fis;
-	private BufferedInputStream bis;
+	private DataInputStream dis;
 
-	private ResultObjectUtil resultObjectUtil;
+	private ColumnarBlockUtil blockUtil;
+	
+	// the block being read and the position of the next row in it
+	private ColumnarBlockUtil.Block block;
+	private int blockPos;
 	
 	/**
 	 * A util method to new instance of DataFileReader
@@ -54,7 +60,7 @@ class DataFileReader
 	 */
 	private DataFileReader( File file, ResultObjectUtil resultObjectUtil )
 	{
-		this.resultObjectUtil = resultObjectUtil;
+		this.blockUtil = new ColumnarBlockUtil( resultObjectUtil );
 		setReadFile( file );
 	}
 
@@ -97,11 +103,21 @@ class DataFileReader
 				// normally this exception will never be thrown
 				// since file will always exist
 			}
-			bis = new BufferedInputStream( fis );
+			dis = new DataInputStream( new BufferedInputStream( fis ) );
 			isOpen = true;
 		}
 
-		return resultObjectUtil.readData( bis, null, length );
+		IResultObject[] resultObjects = new IResultObject[length];
+		for ( int i = 0; i < length; i++ )
+		{
+			if ( block == null || blockPos == block.getRowCount( ) )
+			{
+				block = blockUtil.readBlock( dis );
+				blockPos = 0;
+			}
+			resultObjects[i] = block.getRow( blockPos++ );
+		}
+		return resultObjects;
 	}
 
 	/**
@@ -111,11 +127,12 @@ class DataFileReader
 	 */
 	void close( )
 	{
+		block = null;
 		if ( isOpen )
 		{
 			try
 			{
-				bis.close( );
+				dis.close( );
 				fis.close( );
 				isOpen = false;
 			}
@@ -12,18 +12,22 @@
 package org.eclipse.birt.data.engine.executor.cache.disk;
 
 import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.core.security.FileSecurity;
+import org.eclipse.birt.data.engine.executor.cache.ColumnarBlockUtil;
 import org.eclipse.birt.data.engine.executor.cache.ResultObjectUtil;
 import org.eclipse.birt.data.engine.odi.IResultObject;
 
 /**
  * A utility file writer handler, which keeps the file stream and output stream
- * for reading data.
+ * for reading data. The rows are written by blocks in the columnar format of
+ * ColumnarBlockUtil, so the last block is only written when the file is
+ * closed.
  */
 class DataFileWriter
 {
@@ -31,9 +35,13 @@ class DataFileWriter
 	private boolean isOpen;
 
 	private FileOutputStream fos;
-	private BufferedOutputStream bos;
+	private DataOutputStream dos;
 
-	private ResultObjectUtil resultObjectUtil;
+	private ColumnarBlockUtil blockUtil;
+	
+	// the rows of the block being filled
+	private IResultObject[] blockRows;
+	private int blockRowCount;
 	
 	/**
 	 * A util method to new instance of DataFileWriter
@@ -54,8 +62,10 @@ class DataFileWriter
 	 */
 	private DataFileWriter( File file, ResultObjectUtil resultObjectUtil )
 	{
-		this.resultObjectUtil = resultObjectUtil;
-		setWriteFile( file );
+		this.blockUtil = new ColumnarBlockUtil( resultObjectUtil );
+		this.blockRows = new IResultObject[ColumnarBlockUtil.BLOCK_SIZE];
+		this.file = file;
+		this.isOpen = false;
 	}
 	
 	/**
@@ -63,11 +73,12 @@ class DataFileWriter
 	 * instance.
 	 * 
 	 * @param file
+	 * @throws IOException
+	 * @throws DataException 
 	 */
-	void setWriteFile( File file )
+	void setWriteFile( File file ) throws IOException, DataException
 	{
-		if ( isOpen )
-			close( );
+		close( );
 
 		this.file = file;
 		this.isOpen = false;
@@ -86,6 +97,24 @@ class DataFileWriter
 	 * @throws DataException 
 	 */
 	void write( IResultObject[] resultObjects, int count ) throws IOException, DataException
+	{
+		for ( int i = 0; i < count; i++ )
+		{
+			blockRows[blockRowCount++] = resultObjects[i];
+			if ( blockRowCount == blockRows.length )
+			{
+				writeBlock( );
+			}
+		}
+	}
+
+	/**
+	 * Write the rows of current block to file
+	 * 
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void writeBlock( ) throws IOException, DataException
 	{
 		if ( isOpen == false )
 		{
@@ -98,25 +127,49 @@ class DataFileWriter
 				// normally this exception will never be thrown
 				// since file will always exist
 			}
-			bos = new BufferedOutputStream( fos );
+			dos = new DataOutputStream( new BufferedOutputStream( fos ) );
 			isOpen = true;
 		}
 
-		resultObjectUtil.writeData( bos, resultObjects, count );
+		blockUtil.writeBlock( dos, blockRows, blockRowCount );
+		for ( int i = 0; i < blockRowCount; i++ )
+		{
+			blockRows[i] = null;
+		}
+		blockRowCount = 0;
 	}
 
 	/**
-	 * Close current output file 
+	 * Write the last block and close current output file 
 	 * 
 	 * @throws IOException, file close exception
+	 * @throws DataException 
 	 */
-	void close( )
+	void close( ) throws IOException, DataException
 	{
+		if ( blockRowCount > 0 )
+		{
+			writeBlock( );
+		}
+		discard( );
+	}
+
+	/**
+	 * Close current output file without writing the rows of the last block,
+	 * which is used when the file is to be deleted.
+	 */
+	void discard( )
+	{
+		for ( int i = 0; i < blockRowCount; i++ )
+		{
+			blockRows[i] = null;
+		}
+		blockRowCount = 0;
 		if ( isOpen )
 		{
 			try
 			{
-				bos.close( );
+				dos.close( );
 				fos.close( );
 				isOpen = false;
 			}
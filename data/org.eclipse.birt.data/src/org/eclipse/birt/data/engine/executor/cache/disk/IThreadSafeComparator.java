@@ -0,0 +1,23 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.util.Comparator;
+
+/**
+ * A row comparator which can be called from several threads at the same time.
+ * The rows spilled to disk are only sorted concurrently when they are compared
+ * by such a comparator.
+ */
+public interface IThreadSafeComparator extends Comparator
+{
+}
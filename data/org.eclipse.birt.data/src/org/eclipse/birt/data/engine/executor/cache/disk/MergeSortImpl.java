@@ -13,6 +13,7 @@ package org.eclipse.birt.data.engine.executor.cache.disk;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.impl.DataEngineSession;
@@ -105,6 +106,12 @@ class MergeSortImpl
 	 */
 	private void levelMergeSort( int granularity ) throws IOException, DataException
 	{		
+		if ( mergeSortUtil.isParallel( ) )
+		{
+			parallelLevelMergeSort( granularity );
+			return;
+		}
+		
 		int mergeCount = 0;
 		List newTempList = new ArrayList( );
 		
@@ -125,6 +132,43 @@ class MergeSortImpl
 		tempRowFiles = newTempList;
 	}
 
+	/**
+	 * The same as levelMergeSort, except that the groups of temp files, which
+	 * are independent, are merged on several threads.
+	 * 
+	 * @param granularity
+	 * @throws DataException
+	 */
+	private void parallelLevelMergeSort( int granularity ) throws DataException
+	{
+		List newTempList = new ArrayList( );
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>( );
+		for ( int start = 0; start < tempRowFiles.size( ); start += granularity )
+		{
+			// the temp files are created on this thread, which closes them
+			final RowFile targetFile = tempFileUtil.newTempFile( 0 );
+			final RowFile[] sourceFiles = getSubList( tempRowFiles,
+					start,
+					start + granularity - 1 );
+			newTempList.add( targetFile );
+			tasks.add( new Callable<Object>( ) {
+
+				public Object call( ) throws Exception
+				{
+					if ( !session.getStopSign( ).isStopped( ) )
+					{
+						mergeRowFiles( sourceFiles, targetFile );
+					}
+					return null;
+				}
+			} );
+		}
+		ParallelSortUtil.invokeAll( tasks );
+		
+		tempRowFiles.clear( );
+		tempRowFiles = newTempList;
+	}
+
 	/**
 	 * Get all the temperary row files.
 	 * 
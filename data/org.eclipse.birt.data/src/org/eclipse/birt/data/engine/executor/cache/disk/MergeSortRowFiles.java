@@ -12,7 +12,6 @@
 package org.eclipse.birt.data.engine.executor.cache.disk;
 
 import java.io.IOException;
-import java.util.Arrays;
 import java.util.Comparator;
 
 import org.eclipse.birt.data.engine.core.DataException;
@@ -22,14 +21,22 @@ import org.eclipse.birt.data.engine.odi.IResultObject;
  * Provide the service of sorting objects existed in several files. The objects
  * in every file are sorted. It makes the reading objects transparent to
  * DiskMergeSort.
+ * <p>
+ * The files are merged with a tournament tree of losers, so that each fetched
+ * object costs log(n) comparisons whatever the number n of files is. Objects
+ * which are equal are returned in the order of the files.
  */
 class MergeSortRowFiles implements IRowIterator
 {
 	private IRowIterator[] subRowIterators = null;
-	private MergeSortUtil mergeSortUtil = null;
-	private ValueIndex[] rowBuffer = null;
-	private ValueIndex mValueIndex = null;
-	private int rowBufferSize = 0;
+	private Comparator comparator = null;
+	
+	// the current object of every file, null once the file is exhausted
+	private IResultObject[] heads = null;
+	
+	// tree[0] is the file of the smallest current object, the other nodes
+	// hold the file which lost the match played there
+	private int[] tree = null;
 	
 	/**
 	 * @param rowFiles
@@ -41,8 +48,7 @@ class MergeSortRowFiles implements IRowIterator
 		assert subRowIterators != null;
 		
 		this.subRowIterators = subRowIterators;
-		this.mergeSortUtil = mergeSortUtil;
-		this.mValueIndex = new ValueIndex( null, 0, mergeSortUtil.getComparator( ) );
+		this.comparator = mergeSortUtil.getComparator( );
 	}
 	
 	/*
@@ -57,7 +63,7 @@ class MergeSortRowFiles implements IRowIterator
 			subRowIterators[i].reset( );
 		}
 		
-		rowBuffer = null;
+		tree = null;
 	}
 
 	/*
@@ -65,52 +71,23 @@ class MergeSortRowFiles implements IRowIterator
 	 */
 	public IResultObject fetch( ) throws IOException, DataException
 	{	
-		if ( rowBuffer == null )
+		if ( tree == null )
 		{
 			prepareFirstFetch( );
 		}
-		if ( rowBufferSize == 0 )
+		if ( subRowIterators.length == 0 )
 		{
 			return null;
 		}
 		
-		ValueIndex reObj = rowBuffer[0];
-		IResultObject value = reObj.value;
-		
-		IResultObject readValue = subRowIterators[reObj.index].fetch( );
-		if( readValue == null )
-		{
-			rowBufferSize--;
-			if( rowBufferSize > 0 )
-			{
-				ValueIndex[] tBuffer = new ValueIndex[rowBufferSize];
-				System.arraycopy( rowBuffer, 1, tBuffer, 0, rowBufferSize );
-				rowBuffer = tBuffer;
-			}
-		}
-		else
+		int winner = tree[0];
+		IResultObject value = heads[winner];
+		if ( value == null )
 		{
-			int pos = 0;
-			mValueIndex.value = readValue;
-			mValueIndex.index = reObj.index;
-			if( rowBufferSize > 1 )
-			{
-				pos = Arrays.binarySearch( rowBuffer, mValueIndex );
-				
-				if( pos < 0 )
-					pos = ( pos + 1 ) * -1;
-				pos--;
-				if( pos == -1 )
-					pos = 0;
-
-				if( pos > 0 )
-				{
-					System.arraycopy( rowBuffer, 1 , rowBuffer, 0, pos );
-				}
-			}
-			rowBuffer[pos] = mValueIndex;
-			mValueIndex = reObj;
+			return null;
 		}
+		heads[winner] = subRowIterators[winner].fetch( );
+		adjust( winner );
 		return value;
 	}
 	
@@ -120,25 +97,73 @@ class MergeSortRowFiles implements IRowIterator
 	 */
 	private void prepareFirstFetch( ) throws IOException, DataException
 	{
-		rowBuffer = new ValueIndex[subRowIterators.length];
-		
-		for ( int i = 0; i < rowBuffer.length; i++ )
+		int count = subRowIterators.length;
+		heads = new IResultObject[count];
+		tree = new int[count];
+		for ( int i = 0; i < count; i++ )
 		{
-			IResultObject value = subRowIterators[i].fetch( );
-			if( value != null )
-				rowBuffer[i] = new ValueIndex( value, i, this.mergeSortUtil.getComparator( ) );;
+			heads[i] = subRowIterators[i].fetch( );
+			// -1 stands for a file smaller than all others, which loses its
+			// place as soon as a real file meets it
+			tree[i] = -1;
 		}
-		rowBufferSize = 0;
-		for ( int i = 0; i < rowBuffer.length; i++ )
+		for ( int i = count - 1; i >= 0; i-- )
 		{
-			if( rowBuffer[i] != null )
+			adjust( i );
+		}
+	}
+	
+	/**
+	 * Replays the matches from the leaf of the file up to the root, after the
+	 * current object of the file has changed.
+	 * 
+	 * @param file
+	 */
+	private void adjust( int file )
+	{
+		int winner = file;
+		for ( int node = ( file + tree.length ) / 2; node > 0; node /= 2 )
+		{
+			if ( isAfter( winner, tree[node] ) )
 			{
-				rowBuffer[rowBufferSize] = rowBuffer[i];
-				rowBufferSize++;
+				int loser = winner;
+				winner = tree[node];
+				tree[node] = loser;
 			}
 		}
-		Arrays.sort( rowBuffer, 0, rowBufferSize );
-		
+		tree[0] = winner;
+	}
+	
+	/**
+	 * @return true if the current object of file1 comes after the current
+	 *         object of file2
+	 */
+	private boolean isAfter( int file1, int file2 )
+	{
+		if ( file2 == -1 )
+		{
+			return true;
+		}
+		if ( file1 == -1 )
+		{
+			return false;
+		}
+		IResultObject value1 = heads[file1];
+		IResultObject value2 = heads[file2];
+		if ( value1 == null || value2 == null )
+		{
+			if ( value1 == null && value2 == null )
+			{
+				return file1 > file2;
+			}
+			return value1 == null;
+		}
+		int result = comparator.compare( value1, value2 );
+		if ( result == 0 )
+		{
+			return file1 > file2;
+		}
+		return result > 0;
 	}
 	
 	/*
@@ -154,38 +179,7 @@ class MergeSortRowFiles implements IRowIterator
 		}
 		
 		subRowIterators = null;
-	}
-
-	static class ValueIndex implements Comparable
-	{
-		IResultObject value;
-		int index;
-		private Comparator comparator;
-		
-		ValueIndex( IResultObject value, int index, Comparator comparator )
-		{
-			this.value = value;
-			this.index = index;
-			this.comparator = comparator;
-		}
-
-		public int compareTo(Object o)
-		{
-			ValueIndex other = ( ( ValueIndex ) o );
-			int result = comparator.compare( value, other.value  );
-			if( result == 0 )
-			{
-				if( index > other.index )
-					return 1;
-				else if( index == other.index )
-					return 0;
-				else 
-					return -1;
-					
-			}
-			return result;
-		}
+		heads = null;
 	}
 	
 }
-
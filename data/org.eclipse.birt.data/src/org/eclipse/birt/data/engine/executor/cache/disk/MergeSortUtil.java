@@ -14,6 +14,7 @@ package org.eclipse.birt.data.engine.executor.cache.disk;
 import java.util.Arrays;
 import java.util.Comparator;
 
+import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.impl.DataEngineSession;
 import org.eclipse.birt.data.engine.odi.IResultObject;
 
@@ -35,9 +36,13 @@ class MergeSortUtil
 	// Comparator
 	private Comparator comparator;
 	
+	// whether the rows are sorted and merged on several threads
+	private boolean parallel;
+	
 	/**
 	 * One key of MergeSortUtil is the comparator, which provides a service to
-	 * compare the data of two rows.
+	 * compare the data of two rows. The sort is done on several threads when
+	 * the comparator is a IThreadSafeComparator.
 	 * 
 	 * @param comparator
 	 */
@@ -47,17 +52,34 @@ class MergeSortUtil
 		
 		MergeSortUtil instance = new MergeSortUtil( );
 		instance.comparator = comparator;
+		instance.parallel = comparator instanceof IThreadSafeComparator
+				&& ParallelSortUtil.getParallelism( ) > 1;
 		return instance;
 	}
 
+	/**
+	 * @return true if the rows are sorted and merged on several threads
+	 */
+	boolean isParallel( )
+	{
+		return parallel;
+	}
+
 	/**
 	 * Sort an array of ResultObjects using stored comparator.
 	 * 
 	 * @param self,
 	 *            which needs to be sorted
+	 * @throws DataException
 	 */
-	void sortSelf( IResultObject[] self )
+	void sortSelf( IResultObject[] self ) throws DataException
 	{
+		if ( parallel )
+		{
+			ParallelSortUtil.sort( self, self.length, this.comparator );
+			return;
+		}
+		
 		Comparator comparator = new Comparator( ) {
 
 			public int compare( Object obj1, Object obj2 )
@@ -0,0 +1,268 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.cache.disk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * Runs the work of the external merge sort on a pool of threads shared by all
+ * the sessions. A sorted run is produced by sorting slices of the row buffer
+ * concurrently and then merging the slices pairwise, also concurrently, so
+ * that the comparisons of one run are spread over all the processors.
+ */
+class ParallelSortUtil
+{
+
+	// slices smaller than this are not worth a task
+	private static final int MIN_SLICE_SIZE = 4096;
+
+	private static final int parallelism = computeParallelism( );
+
+	private static volatile ExecutorService executor;
+
+	/**
+	 * No instance
+	 */
+	private ParallelSortUtil( )
+	{
+	}
+
+	/**
+	 * @return how many threads sort the rows
+	 */
+	static int getParallelism( )
+	{
+		return parallelism;
+	}
+
+	/**
+	 * Sorts the rows, concurrently if there are enough of them. The sort is
+	 * stable, as Arrays.sort is.
+	 *
+	 * @param rows
+	 * @param count
+	 *            the rows from 0 to count are sorted
+	 * @param comparator
+	 *            a comparator which can be called from several threads at the
+	 *            same time
+	 * @throws DataException
+	 */
+	static void sort( IResultObject[] rows, int count,
+			final Comparator comparator ) throws DataException
+	{
+		int sliceCount = Math.min( parallelism, count / MIN_SLICE_SIZE );
+		if ( sliceCount < 2 )
+		{
+			Arrays.sort( rows, 0, count, comparator );
+			return;
+		}
+
+		int[] bounds = new int[sliceCount + 1];
+		for ( int i = 0; i <= sliceCount; i++ )
+		{
+			bounds[i] = (int) ( (long) count * i / sliceCount );
+		}
+
+		final IResultObject[] source = rows;
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>( );
+		for ( int i = 0; i < sliceCount; i++ )
+		{
+			final int from = bounds[i];
+			final int to = bounds[i + 1];
+			tasks.add( new Callable<Object>( ) {
+
+				public Object call( )
+				{
+					Arrays.sort( source, from, to, comparator );
+					return null;
+				}
+			} );
+		}
+		invokeAll( tasks );
+
+		// merge the adjacent slices until a single one is left
+		IResultObject[] src = rows;
+		IResultObject[] dest = new IResultObject[count];
+		while ( bounds.length > 2 )
+		{
+			int sliceLeft = bounds.length - 1;
+			int[] merged = new int[( sliceLeft + 1 ) / 2 + 1];
+			tasks.clear( );
+			for ( int i = 0; i < bounds.length - 1; i += 2 )
+			{
+				final IResultObject[] from = src;
+				final IResultObject[] to = dest;
+				final int start = bounds[i];
+				final int middle = bounds[i + 1];
+				final int end = i + 2 < bounds.length ? bounds[i + 2] : middle;
+				merged[i / 2] = start;
+				tasks.add( new Callable<Object>( ) {
+
+					public Object call( )
+					{
+						merge( from, start, middle, end, to, comparator );
+						return null;
+					}
+				} );
+			}
+			merged[merged.length - 1] = count;
+			invokeAll( tasks );
+
+			IResultObject[] temp = src;
+			src = dest;
+			dest = temp;
+			bounds = merged;
+		}
+		if ( src != rows )
+		{
+			System.arraycopy( src, 0, rows, 0, count );
+		}
+	}
+
+	/**
+	 * Merges two adjacent sorted ranges of the source into the same positions
+	 * of the target. Equal rows are taken from the first range first.
+	 */
+	private static void merge( IResultObject[] source, int start, int middle,
+			int end, IResultObject[] target, Comparator comparator )
+	{
+		int left = start;
+		int right = middle;
+		int pos = start;
+		while ( left < middle && right < end )
+		{
+			if ( comparator.compare( source[left], source[right] ) <= 0 )
+			{
+				target[pos++] = source[left++];
+			}
+			else
+			{
+				target[pos++] = source[right++];
+			}
+		}
+		if ( left < middle )
+		{
+			System.arraycopy( source, left, target, pos, middle - left );
+		}
+		else if ( right < end )
+		{
+			System.arraycopy( source, right, target, pos, end - right );
+		}
+	}
+
+	/**
+	 * Runs the tasks on the shared pool and waits for all of them.
+	 *
+	 * @param tasks
+	 * @throws DataException
+	 *             the first failure of the tasks
+	 */
+	static void invokeAll( List<Callable<Object>> tasks ) throws DataException
+	{
+		List<Future<Object>> futures;
+		try
+		{
+			futures = getExecutor( ).invokeAll( tasks );
+			for ( int i = 0; i < futures.size( ); i++ )
+			{
+				futures.get( i ).get( );
+			}
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+			throw new DataException( ResourceConstants.WRITE_TEMPFILE_ERROR, e );
+		}
+		catch ( ExecutionException e )
+		{
+			Throwable cause = e.getCause( );
+			if ( cause instanceof DataException )
+			{
+				throw (DataException) cause;
+			}
+			if ( cause instanceof RuntimeException )
+			{
+				throw (RuntimeException) cause;
+			}
+			if ( cause instanceof Error )
+			{
+				throw (Error) cause;
+			}
+			throw new DataException( ResourceConstants.WRITE_TEMPFILE_ERROR,
+					cause );
+		}
+	}
+
+	private static ExecutorService getExecutor( )
+	{
+		if ( executor == null )
+		{
+			synchronized ( ParallelSortUtil.class )
+			{
+				if ( executor == null )
+				{
+					executor = Executors.newFixedThreadPool( parallelism,
+							new ThreadFactory( ) {
+
+								private final AtomicInteger count = new AtomicInteger( );
+
+								public Thread newThread( Runnable r )
+								{
+									Thread thread = new Thread( r,
+											"BIRT data sort " //$NON-NLS-1$
+													+ count.incrementAndGet( ) );
+									thread.setDaemon( true );
+									return thread;
+								}
+							} );
+				}
+			}
+		}
+		return executor;
+	}
+
+	private static int computeParallelism( )
+	{
+		String value = System.getProperty( DataEngine.SORT_PARALLELISM );
+		if ( value != null )
+		{
+			try
+			{
+				int result = Integer.parseInt( value.trim( ) );
+				if ( result > 0 )
+				{
+					return result;
+				}
+			}
+			catch ( NumberFormatException e )
+			{
+				// use the default
+			}
+		}
+		return Runtime.getRuntime( ).availableProcessors( );
+	}
+}
@@ -39,6 +39,12 @@ class RowFile implements IRowIterator, ICloseListener
 	private DataFileReader dfr = null;
 	private DataFileWriter dfw = null;
 	
+	// the rows read ahead from the file, so that a merge of many row files
+	// does not read them from disk one at a time
+	private static final int READ_AHEAD_SIZE = 256;
+	private IResultObject[] readAheadBuffer = null;
+	private int readAheadPos = 0;
+	
 	/**
 	 * 
 	 * @param file
@@ -169,20 +175,28 @@ class RowFile implements IRowIterator, ICloseListener
 
 	/**
 	 * End write operation. This mothed must be called before fetching row object.
+	 * 
+	 * @throws IOException
+	 * @throws DataException 
 	 */
-	void endWrite( )
+	void endWrite( ) throws IOException, DataException
 	{
-		closeWriter();
+		if ( dfw != null )
+		{
+			DataFileWriter writer = dfw;
+			dfw = null;
+			writer.close( );
+		}
 	}
 	
 	/**
-	 * Close current writer object
+	 * Close current writer object, the rows not written yet are dropped
 	 */
 	private void closeWriter( )
 	{
 		if ( dfw != null )
 		{
-			dfw.close( );
+			dfw.discard( );
 			dfw = null;
 		}
 	}
@@ -194,6 +208,7 @@ class RowFile implements IRowIterator, ICloseListener
 	public void reset( )
 	{
 		readPos = 0;
+		readAheadBuffer = null;
 		createReader( );
 	}
 	
@@ -239,12 +254,20 @@ class RowFile implements IRowIterator, ICloseListener
 		{
 			return null;
 		}
-		if ( dfr == null )
+		if ( readAheadBuffer == null || readAheadPos >= readAheadBuffer.length )
 		{
-			createReader( );
+			if ( dfr == null )
+			{
+				createReader( );
+			}
+			readAheadBuffer = dfr.read( Math.min( READ_AHEAD_SIZE, rowCount
+					- readPos ) );
+			readAheadPos = 0;
 		}
 		readPos++;
-		return ( dfr.read( 1 ) )[0];
+		IResultObject resultObject = readAheadBuffer[readAheadPos];
+		readAheadBuffer[readAheadPos++] = null;
+		return resultObject;
 	}
 	
 	/**
@@ -271,6 +294,7 @@ class RowFile implements IRowIterator, ICloseListener
 		if ( tempFile != null )
 			FileSecurity.fileDelete( tempFile );
 		memoryRowCache = null;
+		readAheadBuffer = null;
 	}
 	
 	/**
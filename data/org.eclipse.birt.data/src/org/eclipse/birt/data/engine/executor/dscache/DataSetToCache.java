@@ -271,9 +271,11 @@ public class DataSetToCache
 	{
 		if ( saveUtil != null )
 		{
-			getDataSetCacheManager( ).saveFinished( dataSetCachedObject );
+			// the cache object is complete, and can be measured, once the save
+			// util is closed
 			saveUtil.close( );
 			saveUtil = null;
+			getDataSetCacheManager( ).saveFinished( dataSetCachedObject );
 		}
 	}
 
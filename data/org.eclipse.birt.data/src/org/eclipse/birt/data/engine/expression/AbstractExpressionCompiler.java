@@ -216,11 +216,25 @@ abstract class AbstractExpressionCompiler
 			// to identify the interesting subexpressions
 			expr = compileComplexExpr( context, tree, false );
 		}
+		if ( expr instanceof ComplexExpression )
+			( (ComplexExpression) expr ).setNativeExpression( compileNativeExpr( tree ) );
 		if ( expr instanceof BytecodeExpression )
 			compileForBytecodeExpr( context, tree, expr );
 		return expr;
 	}
 
+	/**
+	 * Compiles the tree of a complex expression to be evaluated without
+	 * Rhino against the current row.
+	 * 
+	 * @param tree
+	 * @return null if the expression is only evaluated by its script
+	 */
+	protected NativeExpression compileNativeExpr( ScriptNode tree )
+	{
+		return null;
+	}
+
 	/**
 	 * parse the expression to script tree
 	 * 
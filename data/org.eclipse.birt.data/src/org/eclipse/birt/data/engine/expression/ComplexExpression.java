@@ -15,6 +15,11 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 
+import org.eclipse.birt.core.script.ScriptContext;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+import org.mozilla.javascript.Scriptable;
+
 /**
  * A Javascript expression that cannot be reduced to other simpler types of 
  * CompiledExpression. An expression of this type has been compiled to Rhino
@@ -25,6 +30,7 @@ public final class ComplexExpression extends BytecodeExpression
     private ArrayList m_subExpressions;
     private ArrayList m_tokenList;
     private ArrayList m_constantExpressions;
+    private NativeExpression m_nativeExpression;
 
     ComplexExpression()
 	{
@@ -183,6 +189,40 @@ public final class ComplexExpression extends BytecodeExpression
 		return m_subExpressions;
 	}
 
+	/**
+	 * Sets the tree which evaluates this expression without Rhino.
+	 * 
+	 * @param nativeExpression
+	 *            null if the expression is only evaluated by its script
+	 */
+	void setNativeExpression( NativeExpression nativeExpression )
+	{
+		m_nativeExpression = nativeExpression;
+	}
+
+	/**
+	 * Evaluates the expression against the current row, natively if it can
+	 * be, otherwise by running its script.
+	 * 
+	 * @param context
+	 * @param scope
+	 * @param row
+	 *            the current row, which the scope refers to
+	 * @return
+	 * @throws DataException
+	 */
+	Object evaluate( ScriptContext context, Scriptable scope, IResultObject row )
+			throws DataException
+	{
+		if ( m_nativeExpression != null && row != null )
+		{
+			Object result = m_nativeExpression.evaluate( row, scope );
+			if ( result != NativeExpression.NOT_EVALUATED )
+				return result;
+		}
+		return evaluate( context, scope );
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.engine.expression.BytecodeExpression#getGroupLevel()
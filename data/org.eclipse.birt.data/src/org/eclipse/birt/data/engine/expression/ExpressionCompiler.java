@@ -21,6 +21,7 @@ import org.mozilla.javascript.Context;
 import org.mozilla.javascript.Node;
 import org.mozilla.javascript.Token;
 import org.mozilla.javascript.ast.AstRoot;
+import org.mozilla.javascript.ast.ScriptNode;
 
 /**
  * 
@@ -86,6 +87,14 @@ public class ExpressionCompiler extends AbstractExpressionCompiler
 		}
 	}
 	
+	/*
+	 * @see org.eclipse.birt.data.engine.expression.AbstractExpressionCompiler#compileNativeExpr(org.mozilla.javascript.ast.ScriptNode)
+	 */
+	protected NativeExpression compileNativeExpr( ScriptNode tree )
+	{
+		return NativeExpression.compile( tree, rowIndicator );
+	}
+
 	/**
 	 * @param context
 	 * @param aggregateExpression
@@ -120,6 +129,8 @@ public class ExpressionCompiler extends AbstractExpressionCompiler
 			Node exprNode = new Node( Token.EXPR_RESULT);
 			exprNode.addChildToFront( arg );
 			tree.addChildrenToFront( exprNode );
+			if ( expr instanceof ComplexExpression )
+				( (ComplexExpression) expr ).setNativeExpression( compileNativeExpr( tree ) );
 			compileForBytecodeExpr( context, tree, expr );
 			aggregateExpression.addArgument( expr );
 			
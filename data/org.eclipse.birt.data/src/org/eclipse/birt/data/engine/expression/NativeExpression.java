@@ -0,0 +1,528 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.expression;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.birt.core.script.JavascriptEvalUtil;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+import org.eclipse.birt.data.engine.script.JSRowObject;
+import org.eclipse.birt.data.engine.script.ScriptConstants;
+import org.mozilla.javascript.Callable;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Node;
+import org.mozilla.javascript.RhinoException;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Token;
+import org.mozilla.javascript.ast.ScriptNode;
+
+/**
+ * The tree of a simple expression which is evaluated in Java against the
+ * current row, without interpreting its Rhino script. The supported
+ * expressions are made of constants, direct column references, arithmetic,
+ * comparison and logical operators, and calls of the BIRT script functions
+ * such as BirtMath.round( ).
+ * <p>
+ * The operators are applied by the Rhino runtime functions the script would
+ * call, so the results are the same. The operands are restricted to numbers,
+ * strings, booleans and null: any other value, a date for example, makes the
+ * expression fall back on its script for the row.
+ */
+final class NativeExpression
+{
+
+	/**
+	 * Returned by evaluate when the script is to be run instead.
+	 */
+	static final Object NOT_EVALUATED = new Object( );
+
+	// an expression which keeps falling back on its script is not evaluated
+	// natively any more
+	private static final int FALLBACK_LIMIT = 32;
+
+	// the prefix of the categories of the BIRT script functions
+	private static final String FUNCTION_CATEGORY_PREFIX = "Birt"; //$NON-NLS-1$
+
+	// the properties of the row object which are not columns
+	private static final String[] RESERVED_NAMES = new String[]{
+			ScriptConstants.OUTER_RESULT_KEYWORD,
+			ScriptConstants.ROW_NUM_KEYWORD,
+			JSRowObject.ROW_POSITION,
+			"dataSet", //$NON-NLS-1$
+			"columnDefns", //$NON-NLS-1$
+			"0" //$NON-NLS-1$
+	};
+
+	private static final FallbackException FALLBACK = new FallbackException( );
+
+	private final Operand root;
+
+	private volatile boolean disabled;
+	private int fallbackCount;
+
+	private NativeExpression( Operand root )
+	{
+		this.root = root;
+	}
+
+	/**
+	 * Compiles the tree of a script made of a single expression.
+	 *
+	 * @param tree
+	 * @param rowIndicator
+	 *            the name of the row object whose columns are read from the
+	 *            current row
+	 * @return null if the expression is not supported
+	 */
+	static NativeExpression compile( ScriptNode tree, String rowIndicator )
+	{
+		Node exprNode = tree.getFirstChild( );
+		if ( exprNode == null
+				|| exprNode != tree.getLastChild( )
+				|| ( exprNode.getType( ) != Token.EXPR_RESULT && exprNode.getType( ) != Token.EXPR_VOID ) )
+			return null;
+		Node child = exprNode.getFirstChild( );
+		if ( child == null || child.getNext( ) != null )
+			return null;
+		Operand root = compileNode( child, rowIndicator );
+		return root == null ? null : new NativeExpression( root );
+	}
+
+	/**
+	 * Evaluates the expression against a row.
+	 *
+	 * @param row
+	 *            the current row
+	 * @param scope
+	 * @return the value, or NOT_EVALUATED if the script is to be run instead
+	 * @throws DataException
+	 */
+	Object evaluate( IResultObject row, Scriptable scope ) throws DataException
+	{
+		if ( disabled )
+			return NOT_EVALUATED;
+		try
+		{
+			Object result = root.evaluate( row, scope );
+			// the script returns the concatenated strings flattened
+			if ( result instanceof CharSequence && !( result instanceof String ) )
+				return result.toString( );
+			return JavascriptEvalUtil.convertJavascriptValue( result );
+		}
+		catch ( FallbackException e )
+		{
+			if ( ++fallbackCount >= FALLBACK_LIMIT )
+				disabled = true;
+			return NOT_EVALUATED;
+		}
+		catch ( RhinoException e )
+		{
+			throw DataException.wrap( JavascriptEvalUtil.wrapRhinoException( e,
+					"<compiled script>", //$NON-NLS-1$
+					null,
+					0 ) );
+		}
+	}
+
+	private static Operand compileNode( Node node, String rowIndicator )
+	{
+		switch ( node.getType( ) )
+		{
+			case Token.NUMBER :
+				return new ConstantOperand( ScriptRuntime.wrapNumber( node.getDouble( ) ) );
+			case Token.STRING :
+				return new ConstantOperand( node.getString( ) );
+			case Token.NULL :
+				return new ConstantOperand( null );
+			case Token.TRUE :
+				return new ConstantOperand( Boolean.TRUE );
+			case Token.FALSE :
+				return new ConstantOperand( Boolean.FALSE );
+			case Token.GETPROP :
+			case Token.GETELEM :
+				return compileColumnReference( node, rowIndicator );
+			case Token.CALL :
+				return compileCall( node, rowIndicator );
+			case Token.NOT :
+			case Token.NEG :
+			case Token.POS :
+			{
+				Operand operand = compileNode( node.getFirstChild( ),
+						rowIndicator );
+				return operand == null ? null : new UnaryOperand( node.getType( ),
+						operand );
+			}
+			case Token.ADD :
+			case Token.SUB :
+			case Token.MUL :
+			case Token.DIV :
+			case Token.MOD :
+			case Token.EQ :
+			case Token.NE :
+			case Token.SHEQ :
+			case Token.SHNE :
+			case Token.LT :
+			case Token.LE :
+			case Token.GT :
+			case Token.GE :
+			case Token.AND :
+			case Token.OR :
+			{
+				Node leftNode = node.getFirstChild( );
+				Node rightNode = leftNode.getNext( );
+				if ( rightNode == null || rightNode.getNext( ) != null )
+					return null;
+				Operand left = compileNode( leftNode, rowIndicator );
+				Operand right = compileNode( rightNode, rowIndicator );
+				if ( left == null || right == null )
+					return null;
+				return new BinaryOperand( node.getType( ), left, right );
+			}
+			case Token.HOOK :
+			{
+				Node conditionNode = node.getFirstChild( );
+				Node trueNode = conditionNode.getNext( );
+				Node falseNode = trueNode.getNext( );
+				Operand condition = compileNode( conditionNode, rowIndicator );
+				Operand trueOperand = compileNode( trueNode, rowIndicator );
+				Operand falseOperand = compileNode( falseNode, rowIndicator );
+				if ( condition == null
+						|| trueOperand == null || falseOperand == null )
+					return null;
+				return new ConditionalOperand( condition,
+						trueOperand,
+						falseOperand );
+			}
+			default :
+				return null;
+		}
+	}
+
+	/**
+	 * row.name, row["name"] or row[index]
+	 */
+	private static Operand compileColumnReference( Node refNode,
+			String rowIndicator )
+	{
+		Node rowName = refNode.getFirstChild( );
+		if ( rowName.getType( ) != Token.NAME
+				|| !rowName.getString( ).equals( rowIndicator ) )
+			return null;
+		Node rowColumn = rowName.getNext( );
+		if ( rowColumn.getType( ) == Token.STRING )
+		{
+			String name = rowColumn.getString( );
+			for ( int i = 0; i < RESERVED_NAMES.length; i++ )
+			{
+				if ( RESERVED_NAMES[i].equals( name ) )
+					return null;
+			}
+			return new ColumnOperand( name, -1 );
+		}
+		if ( refNode.getType( ) == Token.GETELEM
+				&& rowColumn.getType( ) == Token.NUMBER )
+		{
+			// row[0] is the row id
+			double index = rowColumn.getDouble( );
+			if ( index < 1 || index != (int) index )
+				return null;
+			return new ColumnOperand( null, (int) index );
+		}
+		return null;
+	}
+
+	/**
+	 * BirtMath.round( ... ), BirtDateTime.year( ... ) and the like
+	 */
+	private static Operand compileCall( Node callNode, String rowIndicator )
+	{
+		Node functionNode = callNode.getFirstChild( );
+		if ( functionNode.getType( ) != Token.GETPROP )
+			return null;
+		Node categoryNode = functionNode.getFirstChild( );
+		Node nameNode = categoryNode.getNext( );
+		if ( categoryNode.getType( ) != Token.NAME
+				|| !categoryNode.getString( )
+						.startsWith( FUNCTION_CATEGORY_PREFIX )
+				|| nameNode.getType( ) != Token.STRING )
+			return null;
+		List arguments = new ArrayList( );
+		for ( Node arg = functionNode.getNext( ); arg != null; arg = arg.getNext( ) )
+		{
+			Operand argument = compileNode( arg, rowIndicator );
+			if ( argument == null )
+				return null;
+			arguments.add( argument );
+		}
+		return new CallOperand( categoryNode.getString( ),
+				nameNode.getString( ),
+				(Operand[]) arguments.toArray( new Operand[arguments.size( )] ) );
+	}
+
+	/**
+	 * @param value
+	 * @return the value if the operators may be applied to it natively
+	 * @throws FallbackException
+	 */
+	private static Object primitive( Object value ) throws FallbackException
+	{
+		if ( value == null
+				|| value instanceof Number || value instanceof CharSequence
+				|| value instanceof Boolean )
+			return value;
+		throw FALLBACK;
+	}
+
+	/**
+	 * Thrown when an expression meets a value it cannot handle. It is
+	 * preallocated, and so has no stack trace.
+	 */
+	private static final class FallbackException extends Exception
+	{
+
+		private static final long serialVersionUID = 1L;
+
+		public synchronized Throwable fillInStackTrace( )
+		{
+			return this;
+		}
+	}
+
+	private static abstract class Operand
+	{
+
+		abstract Object evaluate( IResultObject row, Scriptable scope )
+				throws FallbackException;
+	}
+
+	private static final class ConstantOperand extends Operand
+	{
+
+		private final Object value;
+
+		ConstantOperand( Object value )
+		{
+			this.value = value;
+		}
+
+		Object evaluate( IResultObject row, Scriptable scope )
+		{
+			return value;
+		}
+	}
+
+	private static final class ColumnOperand extends Operand
+	{
+
+		private final String name;
+		private final int index;
+
+		ColumnOperand( String name, int index )
+		{
+			this.name = name;
+			this.index = index;
+		}
+
+		Object evaluate( IResultObject row, Scriptable scope )
+				throws FallbackException
+		{
+			try
+			{
+				// converted as the row object does, a date becomes a script
+				// object which only the functions are given natively
+				return JavascriptEvalUtil.convertToJavascriptValue( name != null
+						? row.getFieldValue( name ) : row.getFieldValue( index ),
+						scope );
+			}
+			catch ( DataException e )
+			{
+				// the script reports the error, if any
+				throw FALLBACK;
+			}
+		}
+	}
+
+	private static final class UnaryOperand extends Operand
+	{
+
+		private final int type;
+		private final Operand operand;
+
+		UnaryOperand( int type, Operand operand )
+		{
+			this.type = type;
+			this.operand = operand;
+		}
+
+		Object evaluate( IResultObject row, Scriptable scope )
+				throws FallbackException
+		{
+			Object value = primitive( operand.evaluate( row, scope ) );
+			switch ( type )
+			{
+				case Token.NOT :
+					return Boolean.valueOf( !ScriptRuntime.toBoolean( value ) );
+				case Token.NEG :
+					return ScriptRuntime.wrapNumber( -ScriptRuntime.toNumber( value ) );
+				default :
+					return ScriptRuntime.wrapNumber( ScriptRuntime.toNumber( value ) );
+			}
+		}
+	}
+
+	private static final class BinaryOperand extends Operand
+	{
+
+		private final int type;
+		private final Operand left;
+		private final Operand right;
+
+		BinaryOperand( int type, Operand left, Operand right )
+		{
+			this.type = type;
+			this.left = left;
+			this.right = right;
+		}
+
+		Object evaluate( IResultObject row, Scriptable scope )
+				throws FallbackException
+		{
+			Object leftValue = primitive( left.evaluate( row, scope ) );
+			switch ( type )
+			{
+				case Token.AND :
+					return ScriptRuntime.toBoolean( leftValue )
+							? right.evaluate( row, scope ) : leftValue;
+				case Token.OR :
+					return ScriptRuntime.toBoolean( leftValue ) ? leftValue
+							: right.evaluate( row, scope );
+			}
+			Object rightValue = primitive( right.evaluate( row, scope ) );
+			switch ( type )
+			{
+				case Token.ADD :
+					return ScriptRuntime.add( leftValue,
+							rightValue,
+							Context.getCurrentContext( ) );
+				case Token.SUB :
+					return ScriptRuntime.wrapNumber( ScriptRuntime.toNumber( leftValue )
+							- ScriptRuntime.toNumber( rightValue ) );
+				case Token.MUL :
+					return ScriptRuntime.wrapNumber( ScriptRuntime.toNumber( leftValue )
+							* ScriptRuntime.toNumber( rightValue ) );
+				case Token.DIV :
+					return ScriptRuntime.wrapNumber( ScriptRuntime.toNumber( leftValue )
+							/ ScriptRuntime.toNumber( rightValue ) );
+				case Token.MOD :
+					return ScriptRuntime.wrapNumber( ScriptRuntime.toNumber( leftValue )
+							% ScriptRuntime.toNumber( rightValue ) );
+				case Token.EQ :
+					return Boolean.valueOf( ScriptRuntime.eq( leftValue,
+							rightValue ) );
+				case Token.NE :
+					return Boolean.valueOf( !ScriptRuntime.eq( leftValue,
+							rightValue ) );
+				case Token.SHEQ :
+					return Boolean.valueOf( ScriptRuntime.shallowEq( leftValue,
+							rightValue ) );
+				case Token.SHNE :
+					return Boolean.valueOf( !ScriptRuntime.shallowEq( leftValue,
+							rightValue ) );
+				case Token.LT :
+					return Boolean.valueOf( ScriptRuntime.cmp_LT( leftValue,
+							rightValue ) );
+				case Token.LE :
+					return Boolean.valueOf( ScriptRuntime.cmp_LE( leftValue,
+							rightValue ) );
+				case Token.GT :
+					return Boolean.valueOf( ScriptRuntime.cmp_LT( rightValue,
+							leftValue ) );
+				default :
+					return Boolean.valueOf( ScriptRuntime.cmp_LE( rightValue,
+							leftValue ) );
+			}
+		}
+	}
+
+	private static final class ConditionalOperand extends Operand
+	{
+
+		private final Operand condition;
+		private final Operand trueOperand;
+		private final Operand falseOperand;
+
+		ConditionalOperand( Operand condition, Operand trueOperand,
+				Operand falseOperand )
+		{
+			this.condition = condition;
+			this.trueOperand = trueOperand;
+			this.falseOperand = falseOperand;
+		}
+
+		Object evaluate( IResultObject row, Scriptable scope )
+				throws FallbackException
+		{
+			return ScriptRuntime.toBoolean( primitive( condition.evaluate( row,
+					scope ) ) ) ? trueOperand.evaluate( row, scope )
+					: falseOperand.evaluate( row, scope );
+		}
+	}
+
+	/**
+	 * Calls the function object of the scope, as the script does, so that the
+	 * function finds the locale and time zone of the scope.
+	 */
+	private static final class CallOperand extends Operand
+	{
+
+		private final String category;
+		private final String name;
+		private final Operand[] arguments;
+
+		CallOperand( String category, String name, Operand[] arguments )
+		{
+			this.category = category;
+			this.name = name;
+			this.arguments = arguments;
+		}
+
+		Object evaluate( IResultObject row, Scriptable scope )
+				throws FallbackException
+		{
+			Object[] args = new Object[arguments.length];
+			for ( int i = 0; i < arguments.length; i++ )
+			{
+				args[i] = arguments[i].evaluate( row, scope );
+			}
+			Object categoryObject = Scriptable.NOT_FOUND;
+			for ( Scriptable s = scope; s != null
+					&& categoryObject == Scriptable.NOT_FOUND; s = s.getParentScope( ) )
+			{
+				categoryObject = ScriptableObject.getProperty( s, category );
+			}
+			if ( !( categoryObject instanceof Scriptable ) )
+				throw FALLBACK;
+			Object function = ScriptableObject.getProperty( (Scriptable) categoryObject,
+					name );
+			if ( !( function instanceof Callable ) )
+				throw FALLBACK;
+			return ( (Callable) function ).call( Context.getCurrentContext( ),
+					scope,
+					(Scriptable) categoryObject,
+					args );
+		}
+	}
+}
@@ -416,6 +416,8 @@ public class ResourceConstants
 	public final static String RESULT_LENGTH_EXCEED_LIMIT="data.olap.ExceedIntegerLimit";
 	public final static String RESULT_LENGTH_EXCEED_COLUMN_LIMIT="data.olap.ExceedColumnLimit";
 	public final static String RESULT_LENGTH_EXCEED_ROW_LIMIT="data.olap.ExceedRowLimit";
+	public final static String CUBE_AGGREGATION_INTERRUPTED="data.olap.AggregationInterrupted";
+	public final static String CUBE_AGGREGATION_ERROR="data.olap.AggregationError";
 	
 	//derived dataSet
 	public final static String COLUMN_NOT_EXIST = "data.derivedDataSet.columnNotExist";
@@ -1,10 +1,22 @@
 package org.eclipse.birt.data.engine.impl;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 import org.eclipse.birt.data.engine.api.DataEngine;
 import org.eclipse.birt.data.engine.cache.Constants;
 
 public class MemoryUsageSetting
 {
+	private static Logger logger = Logger.getLogger( MemoryUsageSetting.class.getName( ) );
+
+	// the memory, in bytes, which the rows cached by all the queries of the
+	// JVM may take, 0 for no limit
+	private static volatile long memoryBudget = computeMemoryBudget( );
+
+	private static final AtomicLong reservedMemory = new AtomicLong( );
+
 	public static void setMemoryUsage( String memoryUsage )
 	{
 		if( memoryUsage == null || memoryUsage.equals( DataEngine.MEMORY_USAGE_NORMAL ) )
@@ -20,4 +32,104 @@ public class MemoryUsageSetting
 			Constants.setConservativeMemoryUsage( );
 		}
 	}
+
+	/**
+	 * Reserves memory of the budget shared by all the queries of the JVM. The
+	 * reservation always succeeds when there is no budget or when the memory
+	 * usage is aggressive.
+	 *
+	 * @param size
+	 *            the memory in bytes
+	 * @return false if the budget would be exceeded, in which case nothing is
+	 *         reserved
+	 */
+	public static boolean reserveMemory( long size )
+	{
+		long budget = memoryBudget;
+		if ( budget <= 0 || Constants.isAggressiveMemoryUsage( ) )
+		{
+			reservedMemory.addAndGet( size );
+			return true;
+		}
+		while ( true )
+		{
+			long reserved = reservedMemory.get( );
+			if ( reserved + size > budget )
+			{
+				return false;
+			}
+			if ( reservedMemory.compareAndSet( reserved, reserved + size ) )
+			{
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Gives back memory reserved by reserveMemory.
+	 *
+	 * @param size
+	 *            the memory in bytes
+	 */
+	public static void releaseMemory( long size )
+	{
+		reservedMemory.addAndGet( -size );
+	}
+
+	/**
+	 * @return the memory in bytes reserved by all the queries of the JVM
+	 */
+	public static long getReservedMemory( )
+	{
+		return reservedMemory.get( );
+	}
+
+	/**
+	 * @return the memory budget in bytes shared by all the queries of the
+	 *         JVM, 0 for no limit
+	 */
+	public static long getMemoryBudget( )
+	{
+		return memoryBudget;
+	}
+
+	/**
+	 * Changes the memory budget shared by all the queries of the JVM. The
+	 * memory already reserved is kept.
+	 *
+	 * @param budget
+	 *            the memory in bytes, 0 for no limit
+	 */
+	public static void setMemoryBudget( long budget )
+	{
+		memoryBudget = budget;
+	}
+
+	/**
+	 * Reads the budget from the JVM system property
+	 * DataEngine.MEMORY_BUDGET, which is in MB.
+	 *
+	 * @return
+	 */
+	private static long computeMemoryBudget( )
+	{
+		long defaultBudget = Runtime.getRuntime( ).maxMemory( ) == Long.MAX_VALUE
+				? 0 : Runtime.getRuntime( ).maxMemory( ) / 2;
+		try
+		{
+			String value = System.getProperty( DataEngine.MEMORY_BUDGET );
+			if ( value != null && value.trim( ).length( ) > 0 )
+			{
+				return Long.parseLong( value.trim( ) ) * 1024 * 1024;
+			}
+		}
+		catch ( NumberFormatException e )
+		{
+			logger.log( Level.WARNING, "Invalid value of " + DataEngine.MEMORY_BUDGET ); //$NON-NLS-1$
+		}
+		catch ( SecurityException e )
+		{
+		}
+		return defaultBudget;
+	}
 }
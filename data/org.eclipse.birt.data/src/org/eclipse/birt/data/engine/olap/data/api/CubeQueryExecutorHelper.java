@@ -55,6 +55,7 @@ import org.eclipse.birt.data.engine.olap.data.impl.aggregation.AggregationResult
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.CubeDimensionReader;
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.DataSetFromOriginalCube;
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.IDataSet4Aggregation;
+import org.eclipse.birt.data.engine.olap.data.impl.aggregation.MaterializedRollup;
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.filter.AggrMeasureFilterHelper;
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.filter.AggregationFilterHelper;
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.filter.LevelFilter;
@@ -934,6 +935,96 @@ public class CubeQueryExecutorHelper implements ICubeQueryExcutorHelper
 	protected IAggregationResultSet[] onePassExecute(
 			AggregationDefinition[] aggregations, StopSign stopSign )
 			throws DataException, IOException, BirtException
+	{
+		MaterializedRollup[] rollups = findRollups( aggregations );
+		if ( rollups == null )
+		{
+			return aggregateFactTable( aggregations, stopSign );
+		}
+
+		IAggregationResultSet[] result = new IAggregationResultSet[aggregations.length];
+		List<AggregationDefinition> otherAggregations = new ArrayList<AggregationDefinition>( );
+		for ( int i = 0; i < aggregations.length; i++ )
+		{
+			if ( rollups[i] != null )
+			{
+				result[i] = rollups[i].aggregate( aggregations[i], stopSign );
+			}
+			else
+			{
+				otherAggregations.add( aggregations[i] );
+			}
+		}
+		if ( !otherAggregations.isEmpty( ) )
+		{
+			IAggregationResultSet[] otherResult = aggregateFactTable( otherAggregations.toArray( new AggregationDefinition[otherAggregations.size( )] ),
+					stopSign );
+			int pos = 0;
+			for ( int i = 0; i < aggregations.length; i++ )
+			{
+				if ( rollups[i] == null )
+				{
+					result[i] = otherResult[pos++];
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the roll-ups of the cube which can compute the aggregations. The
+	 * roll-ups are computed on all the fact table rows, so they are not used
+	 * when any filter or computed measure applies to the query.
+	 * 
+	 * @param aggregations
+	 * @return the roll-up of each aggregation, null for the aggregations
+	 *         computed from the fact table; null if no roll-up is used
+	 */
+	private MaterializedRollup[] findRollups(
+			AggregationDefinition[] aggregations )
+	{
+		MaterializedRollup[] rollups = cube.getRollups( );
+		if ( rollups == null
+				|| rollups.length == 0
+				|| computedMeasureHelper != null
+				|| !levelFilters.isEmpty( )
+				|| !simpleLevelFilters.isEmpty( )
+				|| !measureFilters.isEmpty( )
+				|| ( cubePosFilters != null && !cubePosFilters.isEmpty( ) ) )
+		{
+			return null;
+		}
+		for ( Iterator itr = dimJSFilterMap.values( ).iterator( ); itr.hasNext( ); )
+		{
+			if ( !( (List) itr.next( ) ).isEmpty( ) )
+			{
+				return null;
+			}
+		}
+
+		MaterializedRollup[] result = new MaterializedRollup[aggregations.length];
+		boolean found = false;
+		for ( int i = 0; i < aggregations.length; i++ )
+		{
+			result[i] = MaterializedRollup.find( rollups, aggregations[i] );
+			found = found || result[i] != null;
+		}
+		return found ? result : null;
+	}
+
+	/**
+	 * Computes the aggregations by scanning the fact table.
+	 * 
+	 * @param aggregations
+	 * @param stopSign
+	 * @return
+	 * @throws DataException
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	private IAggregationResultSet[] aggregateFactTable(
+			AggregationDefinition[] aggregations, StopSign stopSign )
+			throws DataException, IOException, BirtException
 	{
 		IDiskArray[] dimPosition = getFilterResult( );
 
@@ -959,6 +1050,33 @@ public class CubeQueryExecutorHelper implements ICubeQueryExcutorHelper
 		
 		aggregationCalculatorExecutor.setMaxDataObjectRows( maxDataObjectRows );
 		
+		// the measure filters and the computed measures are scripted, so they
+		// are evaluated on one thread
+		if ( measureFilters.isEmpty( ) && computedMeasureHelper == null )
+		{
+			int partitionCount = aggregationCalculatorExecutor.getSegmentPartitionCount( cube.getFactTable( )
+					.getSegmentCount( ) );
+			if ( partitionCount > 1 )
+			{
+				IDataSet4Aggregation[] segmentPartitions = new IDataSet4Aggregation[partitionCount];
+				for ( int i = 0; i < partitionCount; i++ )
+				{
+					DimensionResultIterator[] partitionDimensionIterators = new DimensionResultIterator[dimensionResultIterators.length];
+					for ( int j = 0; j < dimensionResultIterators.length; j++ )
+					{
+						partitionDimensionIterators[j] = dimensionResultIterators[j].copy( );
+					}
+					segmentPartitions[i] = new DataSetFromOriginalCube( populateFactTableIterator( stopSign,
+							dimPosition,
+							i,
+							partitionCount ),
+							partitionDimensionIterators,
+							null );
+				}
+				aggregationCalculatorExecutor.setSegmentPartitions( segmentPartitions );
+			}
+		}
+		
 		return aggregationCalculatorExecutor.execute( stopSign );
 	}
 
@@ -972,6 +1090,22 @@ public class CubeQueryExecutorHelper implements ICubeQueryExcutorHelper
 	 */
 	public FactTableRowIterator populateFactTableIterator( StopSign stopSign, IDiskArray[] dimPosition )
 			throws IOException
+	{
+		return populateFactTableIterator( stopSign, dimPosition, 0, 1 );
+	}
+	
+	/**
+	 * 
+	 * @param stopSign
+	 * @param dimPosition
+	 * @param partitionIndex
+	 * @param partitionCount
+	 * @return the iterator on the fact table segments of the partition
+	 * @throws IOException
+	 */
+	private FactTableRowIterator populateFactTableIterator( StopSign stopSign,
+			IDiskArray[] dimPosition, int partitionIndex, int partitionCount )
+			throws IOException
 	{
 		int count = 0;
 		for ( int i = 0; i < dimPosition.length; i++ )
@@ -1000,6 +1134,8 @@ public class CubeQueryExecutorHelper implements ICubeQueryExcutorHelper
 				validDimPosition,
 				cube.getDimesions( ),
 				null,
+				partitionIndex,
+				partitionCount,
 				stopSign );
 		if ( cubePosFilters != null && !cubePosFilters.isEmpty( ) )
 		{// add fact table filter if it's necessary
@@ -13,6 +13,8 @@ package org.eclipse.birt.data.engine.olap.data.api.cube;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.birt.core.archive.IDocArchiveWriter;
@@ -24,12 +26,14 @@ import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
 import org.eclipse.birt.data.engine.impl.DataEngineImpl;
 import org.eclipse.birt.data.engine.impl.StopSign;
+import org.eclipse.birt.data.engine.olap.data.api.DimLevel;
 import org.eclipse.birt.data.engine.olap.data.api.ILevel;
 import org.eclipse.birt.data.engine.olap.data.document.DocumentManagerFactory;
 import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
 import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
 import org.eclipse.birt.data.engine.olap.data.impl.Cube;
 import org.eclipse.birt.data.engine.olap.data.impl.NamingUtil;
+import org.eclipse.birt.data.engine.olap.data.impl.aggregation.MaterializedRollup;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.Dimension;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.Hierarchy;
 
@@ -240,6 +244,78 @@ public class CubeMaterializer
 		documentManager.flush( );
 	}
 	
+	/**
+	 * Computes the roll-ups of a created cube, which answer the cube queries
+	 * aggregating on a leading part of their levels without scanning the fact
+	 * table. The level combinations referring to an unknown level are
+	 * ignored.
+	 * 
+	 * @param cubeName
+	 * @param rollupLevels
+	 *            the levels of each roll-up
+	 * @param stopSign
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	public void createRollups( String cubeName, DimLevel[][] rollupLevels,
+			StopSign stopSign ) throws IOException, BirtException
+	{
+		Cube cube = new Cube( cubeName, documentManager );
+		cube.load( stopSign );
+		List<DimLevel[]> validLevels = new ArrayList<DimLevel[]>( );
+		for ( int i = 0; i < rollupLevels.length; i++ )
+		{
+			if ( rollupLevels[i].length > 0
+					&& containsLevels( cube, rollupLevels[i] ) )
+			{
+				validLevels.add( rollupLevels[i] );
+			}
+		}
+		if ( !validLevels.isEmpty( ) )
+		{
+			MaterializedRollup.create( cube,
+					documentManager,
+					validLevels.toArray( new DimLevel[validLevels.size( )][] ),
+					stopSign );
+		}
+		cube.close( );
+		documentManager.flush( );
+	}
+	
+	/**
+	 * 
+	 * @param cube
+	 * @param levels
+	 * @return
+	 */
+	private static boolean containsLevels( Cube cube, DimLevel[] levels )
+	{
+		IDimension[] dimensions = cube.getDimesions( );
+		for ( int i = 0; i < levels.length; i++ )
+		{
+			boolean found = false;
+			for ( int j = 0; j < dimensions.length && !found; j++ )
+			{
+				if ( !dimensions[j].getName( )
+						.equals( levels[i].getDimensionName( ) ) )
+				{
+					continue;
+				}
+				ILevel[] dimLevels = dimensions[j].getHierarchy( ).getLevels( );
+				for ( int k = 0; k < dimLevels.length && !found; k++ )
+				{
+					found = dimLevels[k].getName( )
+							.equals( levels[i].getLevelName( ) );
+				}
+			}
+			if ( !found )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
 	/**
 	 * 
 	 * @param cubeName
@@ -257,6 +333,10 @@ public class CubeMaterializer
 		String factTableName = cube.getFactTable( ).getName( );
 		saveDocObjToReportDocument( NamingUtil.getFactTableName( factTableName ), writer, stopSign );
 		saveDocObjToReportDocument( NamingUtil.getFTSUListName( factTableName ), writer, stopSign );
+		if ( documentManager.exist( NamingUtil.getFTSUIndexName( factTableName ) ) )
+		{
+			saveDocObjToReportDocument( NamingUtil.getFTSUIndexName( factTableName ), writer, stopSign );
+		}
 		//save FTSU
 		IDocumentObject documentObject = documentManager.openDocumentObject( NamingUtil.getFTSUListName( factTableName ) );
 		try
@@ -265,6 +345,11 @@ public class CubeMaterializer
 			while ( FTSUName != null )
 			{
 				saveDocObjToReportDocument( FTSUName, writer, stopSign );
+				String columnsName = NamingUtil.getFTSUMeasureColumnsName( FTSUName );
+				if ( documentManager.exist( columnsName ) )
+				{
+					saveDocObjToReportDocument( columnsName, writer, stopSign );
+				}
 				FTSUName = documentObject.readString( );
 			}
 		}
@@ -294,6 +379,13 @@ public class CubeMaterializer
 				
 			}
 		}
+		//save roll-ups
+		String[] rollupNames = MaterializedRollup.getDocumentObjectNames( cubeName,
+				documentManager );
+		for ( int i = 0; i < rollupNames.length; i++ )
+		{
+			saveDocObjToReportDocument( rollupNames[i], writer, stopSign );
+		}
 		
 		writer.flush( );
 	}
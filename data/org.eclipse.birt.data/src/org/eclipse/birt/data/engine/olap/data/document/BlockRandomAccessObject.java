@@ -95,27 +95,29 @@ public class BlockRandomAccessObject implements IRandomAccessObject
 		}
 		int remainSizeOfCurrentBlock = FileDocumentManager.BLOCK_SIZE
 				- (int) ( position % FileDocumentManager.BLOCK_SIZE );
-		dataFileSeek( );
-		if( remainSizeOfCurrentBlock >= len || position + remainSizeOfCurrentBlock >= length )
+		// the data file is shared by all the document objects, which may be
+		// read on different threads
+		synchronized ( dataFile )
 		{
-			int readSize = (int) Math.min( length - position, len );
-			position += readSize;
-			return dataFile.read( b, off, readSize );
+			dataFileSeek( );
+			if( remainSizeOfCurrentBlock >= len || position + remainSizeOfCurrentBlock >= length )
+			{
+				int readSize = (int) Math.min( length - position, len );
+				position += readSize;
+				return dataFile.read( b, off, readSize );
+			}
+			dataFile.read( b, off, remainSizeOfCurrentBlock );
+		}
+		position += remainSizeOfCurrentBlock;
+		int readSize = read( b, off + remainSizeOfCurrentBlock, len
+				- remainSizeOfCurrentBlock );
+		if( readSize == -1 )
+		{
+			return remainSizeOfCurrentBlock;
 		}
 		else
 		{
-			dataFile.read( b, off, remainSizeOfCurrentBlock );
-			position += remainSizeOfCurrentBlock;
-			int readSize = read( b, off + remainSizeOfCurrentBlock, len
-					- remainSizeOfCurrentBlock );
-			if( readSize == -1 )
-			{
-				return remainSizeOfCurrentBlock;
-			}
-			else
-			{
-				return remainSizeOfCurrentBlock + readSize;
-			}
+			return remainSizeOfCurrentBlock + readSize;
 		}
 	}
 
@@ -188,20 +190,21 @@ public class BlockRandomAccessObject implements IRandomAccessObject
 		}
 		int remainSizeOfCurrentBlock = FileDocumentManager.BLOCK_SIZE
 				- (int) ( position % FileDocumentManager.BLOCK_SIZE );
-		dataFileSeek( );
-		if( remainSizeOfCurrentBlock >= len || position + remainSizeOfCurrentBlock >= length )
-		{
-			len = (int) Math.min( length - position, len );
-			position += len;
-			dataFile.write( b, off, len );
-		}
-		else
+		synchronized ( dataFile )
 		{
+			dataFileSeek( );
+			if( remainSizeOfCurrentBlock >= len || position + remainSizeOfCurrentBlock >= length )
+			{
+				len = (int) Math.min( length - position, len );
+				position += len;
+				dataFile.write( b, off, len );
+				return;
+			}
 			dataFile.write( b, off, remainSizeOfCurrentBlock );
-			position += remainSizeOfCurrentBlock;
-			write( b, off + remainSizeOfCurrentBlock, len
-					- remainSizeOfCurrentBlock );
 		}
+		position += remainSizeOfCurrentBlock;
+		write( b, off + remainSizeOfCurrentBlock, len
+				- remainSizeOfCurrentBlock );
 	}
 
 	/*
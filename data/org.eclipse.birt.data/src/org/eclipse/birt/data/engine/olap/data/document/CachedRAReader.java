@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.document;
+
+import java.io.IOException;
+
+import org.eclipse.birt.core.archive.RAInputStream;
+
+/**
+ * A reader of a document object saved in a report document, which reads
+ * through the blocks shared in <code>DocumentBlockCache</code>. Each reader
+ * keeps its own position, so the readers of the same document object can be
+ * used by different threads, and only the missing blocks are read from the
+ * stream.
+ */
+
+class CachedRAReader implements IRandomAccessObject
+{
+
+	private RAInputStream inputStream;
+	private DocumentBlockCache cache;
+	private String documentName;
+	private long documentVersion;
+	private long documentLength;
+	private String documentObjectName;
+	private long length;
+	private long position;
+
+	/**
+	 *
+	 * @param inputStream
+	 * @param cache
+	 * @param documentName
+	 * @param documentVersion
+	 *            the last modified time of the report document
+	 * @param documentLength
+	 *            the length of the report document
+	 * @param documentObjectName
+	 * @throws IOException
+	 */
+	CachedRAReader( RAInputStream inputStream, DocumentBlockCache cache,
+			String documentName, long documentVersion, long documentLength,
+			String documentObjectName ) throws IOException
+	{
+		this.inputStream = inputStream;
+		this.cache = cache;
+		this.documentName = documentName;
+		this.documentVersion = documentVersion;
+		this.documentLength = documentLength;
+		this.documentObjectName = documentObjectName;
+		this.length = inputStream.length( );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#close()
+	 */
+	public void close( ) throws IOException
+	{
+		if ( inputStream != null )
+		{
+			inputStream.close( );
+			inputStream = null;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#getFilePointer()
+	 */
+	public long getFilePointer( ) throws IOException
+	{
+		return position;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#length()
+	 */
+	public long length( ) throws IOException
+	{
+		return length;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#read(byte[], int, int)
+	 */
+	public int read( byte[] b, int off, int len ) throws IOException
+	{
+		if ( len == 0 )
+		{
+			return 0;
+		}
+		if ( position >= length )
+		{
+			return -1;
+		}
+		int readLen = 0;
+		while ( readLen < len && position < length )
+		{
+			byte[] block = getBlock( (int) ( position / DocumentBlockCache.BLOCK_SIZE ) );
+			int offInBlock = (int) ( position % DocumentBlockCache.BLOCK_SIZE );
+			int count = Math.min( len - readLen, block.length - offInBlock );
+			System.arraycopy( block, offInBlock, b, off + readLen, count );
+			readLen += count;
+			position += count;
+		}
+		return readLen;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#read(byte[])
+	 */
+	public int read( byte[] b ) throws IOException
+	{
+		return read( b, 0, b.length );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#read()
+	 */
+	public int read( ) throws IOException
+	{
+		if ( position >= length )
+		{
+			return -1;
+		}
+		byte[] block = getBlock( (int) ( position / DocumentBlockCache.BLOCK_SIZE ) );
+		return block[(int) ( position++ % DocumentBlockCache.BLOCK_SIZE )] & 0xff;
+	}
+
+	/**
+	 *
+	 */
+	public void seek( long pos ) throws IOException
+	{
+		this.position = pos;
+	}
+
+	/**
+	 *
+	 */
+	public void setLength( long newLength ) throws IOException
+	{
+		throw new UnsupportedOperationException( );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#write(byte[], int, int)
+	 */
+	public void write( byte[] b, int off, int len ) throws IOException
+	{
+		throw new UnsupportedOperationException( "This is a read only object!" );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#flush()
+	 */
+	public void flush( ) throws IOException
+	{
+	}
+
+	/**
+	 *
+	 * @param blockIndex
+	 * @return
+	 * @throws IOException
+	 */
+	private byte[] getBlock( int blockIndex ) throws IOException
+	{
+		DocumentBlockCache.BlockKey key = new DocumentBlockCache.BlockKey( documentName,
+				documentVersion,
+				documentLength,
+				documentObjectName,
+				length,
+				blockIndex );
+		byte[] block = cache.get( key );
+		if ( block != null )
+		{
+			return block;
+		}
+		long start = (long) blockIndex * DocumentBlockCache.BLOCK_SIZE;
+		block = new byte[(int) Math.min( DocumentBlockCache.BLOCK_SIZE, length
+				- start )];
+		inputStream.seek( start );
+		inputStream.readFully( block, 0, block.length );
+		return cache.putIfAbsent( key, block );
+	}
+}
@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.document;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.birt.data.engine.api.DataEngine;
+
+/**
+ * The blocks of the cube document objects read from the report documents,
+ * shared by all the cube queries of the JVM. A document object of a report
+ * document never changes once saved, so the queries on the same cube reuse
+ * the blocks read by each other. The cache is divided into stripes, each with
+ * its own lock and least recently used order, so that the queries reading
+ * different blocks never wait for each other.
+ */
+
+class DocumentBlockCache
+{
+
+	static final int BLOCK_SIZE = 8192;
+
+	private static final int STRIPE_COUNT = 16;
+	private static final int DEFAULT_CACHE_SIZE = 16;
+
+	private static final DocumentBlockCache instance = new DocumentBlockCache( computeMaxBlockCount( ) );
+
+	private final Stripe[] stripes;
+	private final int maxBlockCount;
+
+	/**
+	 *
+	 * @param maxBlockCount
+	 *            the maximum count of cached blocks, 0 to disable the cache
+	 */
+	DocumentBlockCache( int maxBlockCount )
+	{
+		this.maxBlockCount = maxBlockCount;
+		this.stripes = new Stripe[STRIPE_COUNT];
+		int stripeSize = ( maxBlockCount + STRIPE_COUNT - 1 ) / STRIPE_COUNT;
+		for ( int i = 0; i < STRIPE_COUNT; i++ )
+		{
+			stripes[i] = new Stripe( stripeSize );
+		}
+	}
+
+	/**
+	 *
+	 * @return the cache shared by the JVM
+	 */
+	static DocumentBlockCache getInstance( )
+	{
+		return instance;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	boolean isEnabled( )
+	{
+		return maxBlockCount > 0;
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return the cached block, null if it is not cached
+	 */
+	byte[] get( BlockKey key )
+	{
+		Stripe stripe = getStripe( key );
+		synchronized ( stripe )
+		{
+			return stripe.get( key );
+		}
+	}
+
+	/**
+	 * Adds a block unless another query has added it first.
+	 *
+	 * @param key
+	 * @param block
+	 *            the block just read
+	 * @return the cached block, which is the one to use
+	 */
+	byte[] putIfAbsent( BlockKey key, byte[] block )
+	{
+		if ( !isEnabled( ) )
+		{
+			return block;
+		}
+		Stripe stripe = getStripe( key );
+		synchronized ( stripe )
+		{
+			byte[] cached = stripe.get( key );
+			if ( cached != null )
+			{
+				return cached;
+			}
+			stripe.put( key, block );
+			return block;
+		}
+	}
+
+	/**
+	 *
+	 * @return the count of cached blocks
+	 */
+	int size( )
+	{
+		int size = 0;
+		for ( int i = 0; i < stripes.length; i++ )
+		{
+			synchronized ( stripes[i] )
+			{
+				size += stripes[i].size( );
+			}
+		}
+		return size;
+	}
+
+	/**
+	 *
+	 */
+	void clear( )
+	{
+		for ( int i = 0; i < stripes.length; i++ )
+		{
+			synchronized ( stripes[i] )
+			{
+				stripes[i].clear( );
+			}
+		}
+	}
+
+	private Stripe getStripe( BlockKey key )
+	{
+		// the adjacent blocks are read together, spread them over the stripes
+		int hash = key.hashCode( ) * 0x9E3779B9;
+		return stripes[( hash >>> 28 ) & ( STRIPE_COUNT - 1 )];
+	}
+
+	private static int computeMaxBlockCount( )
+	{
+		int size = DEFAULT_CACHE_SIZE;
+		String value = System.getProperty( DataEngine.CUBE_DOCUMENT_CACHE_SIZE );
+		if ( value != null )
+		{
+			try
+			{
+				size = Math.max( 0, Integer.parseInt( value.trim( ) ) );
+			}
+			catch ( NumberFormatException e )
+			{
+				// use the default
+			}
+		}
+		return (int) Math.min( Integer.MAX_VALUE, (long) size
+				* 1024 * 1024 / BLOCK_SIZE );
+	}
+
+	/**
+	 * Identifies a block of a document object in a version of a report
+	 * document. The version is told by the last modified time and the length
+	 * of the document and the length of the document object, as the modified
+	 * time alone doesn't change if the document is saved again within its
+	 * resolution.
+	 */
+	static class BlockKey
+	{
+
+		private final String documentName;
+		private final long documentVersion;
+		private final long documentLength;
+		private final String documentObjectName;
+		private final long objectLength;
+		private final int blockIndex;
+		private final int hash;
+
+		BlockKey( String documentName, long documentVersion,
+				long documentLength, String documentObjectName,
+				long objectLength, int blockIndex )
+		{
+			this.documentName = documentName;
+			this.documentVersion = documentVersion;
+			this.documentLength = documentLength;
+			this.documentObjectName = documentObjectName;
+			this.objectLength = objectLength;
+			this.blockIndex = blockIndex;
+			long version = documentVersion * 31 + documentLength * 17
+					+ objectLength;
+			this.hash = ( ( documentName.hashCode( ) * 31 + (int) ( version ^ ( version >>> 32 ) ) )
+					* 31 + documentObjectName.hashCode( ) )
+					* 31 + blockIndex;
+		}
+
+		public int hashCode( )
+		{
+			return hash;
+		}
+
+		public boolean equals( Object o )
+		{
+			if ( this == o )
+			{
+				return true;
+			}
+			if ( !( o instanceof BlockKey ) )
+			{
+				return false;
+			}
+			BlockKey key = (BlockKey) o;
+			return blockIndex == key.blockIndex
+					&& documentVersion == key.documentVersion
+					&& documentLength == key.documentLength
+					&& objectLength == key.objectLength
+					&& documentObjectName.equals( key.documentObjectName )
+					&& documentName.equals( key.documentName );
+		}
+	}
+
+	private static class Stripe extends LinkedHashMap<BlockKey, byte[]>
+	{
+
+		private static final long serialVersionUID = 1L;
+
+		private final int maxSize;
+
+		Stripe( int maxSize )
+		{
+			super( 16, 0.75f, true );
+			this.maxSize = maxSize;
+		}
+
+		protected boolean removeEldestEntry( Map.Entry<BlockKey, byte[]> eldest )
+		{
+			return size( ) > maxSize;
+		}
+	}
+}
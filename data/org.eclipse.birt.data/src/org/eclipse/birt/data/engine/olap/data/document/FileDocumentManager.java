@@ -23,7 +23,8 @@ import org.eclipse.birt.data.engine.i18n.ResourceConstants;
 
 /**
  * An implementation of the <tt>IDocumentManager</tt> interface. This class 
- * use three files to save any number of document objects.
+ * use three files to save any number of document objects. The document
+ * objects can be read on different threads, each one by a thread.
  */
 
 public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
@@ -215,7 +216,7 @@ public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.olap.data.document.IDocumentManager#createDocumentObject(java.lang.String)
 	 */
-	public IDocumentObject createDocumentObject( String documentObjectName ) throws IOException
+	public synchronized IDocumentObject createDocumentObject( String documentObjectName ) throws IOException
 	{
 		ObjectStructure objectStructure = new ObjectStructure( );
 		objectStructure.name = documentObjectName;
@@ -276,7 +277,7 @@ public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.olap.data.document.IDocumentManager#openDocumentObject(java.lang.String)
 	 */
-	public IDocumentObject openDocumentObject( String documentObjectName )
+	public synchronized IDocumentObject openDocumentObject( String documentObjectName )
 			throws IOException
 	{
 		ObjectStructure objectStructure = (ObjectStructure) this.documentObjectMap.get( documentObjectName );
@@ -296,7 +297,7 @@ public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.olap.data.document.IDocumentManager#exist(java.lang.String)
 	 */
-	public boolean exist( String documentObjectName )
+	public synchronized boolean exist( String documentObjectName )
 	{
 		return this.documentObjectMap.get( documentObjectName ) != null;
 	}
@@ -305,7 +306,7 @@ public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.olap.data.document.IObjectAllocTable#getNextBlock(int)
 	 */
-	public int getNextBlock( int blockNo ) throws IOException
+	public synchronized int getNextBlock( int blockNo ) throws IOException
 	{
 		oatAccessFile.seek( blockNo * 4L );
 		return oatAccessFile.readInt( );
@@ -315,7 +316,7 @@ public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.olap.data.document.IObjectAllocTable#allocateBlock(int)
 	 */
-	public int allocateBlock( int blockNo ) throws IOException
+	public synchronized int allocateBlock( int blockNo ) throws IOException
 	{
 		int newBlock = findFreeBlock( );
 		oatAccessFile.seek( blockNo * 4L );
@@ -327,7 +328,7 @@ public class FileDocumentManager implements IDocumentManager, IObjectAllocTable
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.olap.data.document.IObjectAllocTable#setObjectLength(java.lang.String, long)
 	 */
-	public void setObjectLength( String documentObjectName, long length ) throws IOException
+	public synchronized void setObjectLength( String documentObjectName, long length ) throws IOException
 	{
 		ObjectStructure objectStructure = (ObjectStructure) documentObjectMap.get( documentObjectName );
 		if ( objectStructure == null )
@@ -11,10 +11,12 @@
  *******************************************************************************/
 package org.eclipse.birt.data.engine.olap.data.document;
 
+import java.io.File;
 import java.io.IOException;
 
 import org.eclipse.birt.core.archive.IDocArchiveReader;
 import org.eclipse.birt.core.archive.RAInputStream;
+import org.eclipse.birt.data.engine.core.security.FileSecurity;
 
 /**
  * 
@@ -23,6 +25,11 @@ import org.eclipse.birt.core.archive.RAInputStream;
 public class RADocumentManager implements IDocumentManager
 {
 	private IDocArchiveReader archiveReader;
+	// the report document file, its last modified time and length, null if
+	// the document objects aren't shared in the block cache
+	private String documentName;
+	private long documentVersion;
+	private long documentLength;
 	
 	/**
 	 * 
@@ -32,6 +39,20 @@ public class RADocumentManager implements IDocumentManager
 	RADocumentManager( IDocArchiveReader reader ) throws IOException
 	{
 		this.archiveReader = reader;
+		if ( reader != null && reader.getName( ) != null )
+		{
+			// only the compound report documents are saved at once, a
+			// folder archive may be changed stream by stream
+			File file = new File( reader.getName( ) );
+			if ( FileSecurity.fileIsFile( file ) )
+			{
+				this.documentName = file.getAbsolutePath( );
+				this.documentVersion = FileSecurity.fileLastModified( file );
+				// the modified time may not change when the document is
+				// saved again within a second
+				this.documentLength = FileSecurity.fileLength( file );
+			}
+		}
 	}
 	
 	/*
@@ -74,6 +95,17 @@ public class RADocumentManager implements IDocumentManager
 		RAInputStream inputStream = archiveReader.getStream( documentObjectName );
 		if ( inputStream == null )
 			return null;
+		DocumentBlockCache cache = DocumentBlockCache.getInstance( );
+		if ( documentName != null && cache.isEnabled( ) )
+		{
+			return new DocumentObject( new BufferedRandomDataAccessObject( new CachedRAReader( inputStream,
+					cache,
+					documentName,
+					documentVersion,
+					documentLength,
+					documentObjectName ),
+					8192 ) );
+		}
 		return new DocumentObject( new BufferedRandomDataAccessObject( new RAReader( inputStream ), 8192 ) );
 	}
 
@@ -24,6 +24,7 @@ import org.eclipse.birt.data.engine.olap.data.api.cube.IDatasetIterator;
 import org.eclipse.birt.data.engine.olap.data.api.cube.IDimension;
 import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
 import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
+import org.eclipse.birt.data.engine.olap.data.impl.aggregation.MaterializedRollup;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.Dimension;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.DimensionFactory;
 import org.eclipse.birt.data.engine.olap.data.impl.facttable.FactTable;
@@ -39,6 +40,7 @@ public class Cube implements ICube
 	protected IDocumentManager documentManager;
 	protected IDimension[] dimension;
 	private FactTable factTable;
+	private MaterializedRollup[] rollups;
 
 	private static Logger logger = Logger.getLogger( Cube.class.getName( ) );
 
@@ -192,6 +194,7 @@ public class Cube implements ICube
 		FactTableAccessor factTableConstructor = new FactTableAccessor( documentManager );
 		factTable = factTableConstructor.load( name,
 				stopSign );
+		rollups = loadRollups( );
 		documentObject.close( );
 	}
 
@@ -202,6 +205,16 @@ public class Cube implements ICube
 				documentManager );
 	}
 
+	/**
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	protected MaterializedRollup[] loadRollups( ) throws IOException
+	{
+		return MaterializedRollup.load( name, documentManager );
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.engine.olap.data.api.ICube#getDimesions()
@@ -220,6 +233,24 @@ public class Cube implements ICube
 		return factTable;
 	}
 
+	/**
+	 * 
+	 * @return
+	 */
+	public String getName( )
+	{
+		return name;
+	}
+
+	/**
+	 * 
+	 * @return the roll-ups of the fact table, an empty array if there is none
+	 */
+	public MaterializedRollup[] getRollups( )
+	{
+		return rollups;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.engine.olap.data.api.ICube#close()
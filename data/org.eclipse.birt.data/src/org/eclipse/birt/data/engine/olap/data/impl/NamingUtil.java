@@ -25,7 +25,11 @@ public class NamingUtil
 	private static final String HIERARCHY_OFFSET = OLAP_PREFIX + "hierarchy_offset_";
 	private static final String FACT_TABLE = OLAP_PREFIX + "fact_table_";
 	private static final String FTSU_LIST = OLAP_PREFIX + "ftsu_list_";
+	private static final String FTSU_INDEX = OLAP_PREFIX + "ftsu_index_";
+	private static final String FTSU_MEASURE_COLUMNS = "_measure_columns";
 	private static final String AGGREGATION_RS_DOC = OLAP_PREFIX + "rs_doc_";
+	private static final String ROLLUP_LIST = OLAP_PREFIX + "rollup_list_";
+	private static final String ROLLUP_DOC = OLAP_PREFIX + "rollup_";
 
 	public static final String DERIVED_MEASURE_PREFIX = "_${DERIVED_MEASURE}$_";
 
@@ -139,6 +143,27 @@ public class NamingUtil
 		return FTSU_LIST + factTableName;
 	}
 	
+	/**
+	 * 
+	 * @param factTableName
+	 * @return
+	 */
+	public static String getFTSUIndexName( String factTableName )
+	{
+		return FTSU_INDEX + factTableName;
+	}
+	
+	/**
+	 * 
+	 * @param segmentName
+	 *            the name of the document object of a fact table segment
+	 * @return
+	 */
+	public static String getFTSUMeasureColumnsName( String segmentName )
+	{
+		return segmentName + FTSU_MEASURE_COLUMNS;
+	}
+	
 	/**
 	 * 
 	 * @param ID
@@ -148,4 +173,25 @@ public class NamingUtil
 	{
 		return AGGREGATION_RS_DOC + ID;
 	}
+	
+	/**
+	 * 
+	 * @param cubeName
+	 * @return
+	 */
+	public static String getRollupListName( String cubeName )
+	{
+		return ROLLUP_LIST + cubeName;
+	}
+	
+	/**
+	 * 
+	 * @param cubeName
+	 * @param index
+	 * @return
+	 */
+	public static String getRollupDocName( String cubeName, int index )
+	{
+		return ROLLUP_DOC + cubeName + "_" + index; //$NON-NLS-1$
+	}
 }
@@ -18,6 +18,7 @@ import java.util.Set;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.olap.data.api.cube.IDimension;
 import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
+import org.eclipse.birt.data.engine.olap.data.impl.aggregation.MaterializedRollup;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.DimensionFactory;
 
 /**
@@ -43,5 +44,14 @@ public class SecuredCube extends Cube
 		return DimensionFactory.loadDimension( name,
 				documentManager );
 	}
+	
+	protected MaterializedRollup[] loadRollups( ) throws IOException
+	{
+		// the roll-ups include the members hidden from this cube
+		if ( !this.notAccessibleDimLvls.isEmpty( ) )
+			return new MaterializedRollup[0];
+		
+		return super.loadRollups( );
+	}
 
 }
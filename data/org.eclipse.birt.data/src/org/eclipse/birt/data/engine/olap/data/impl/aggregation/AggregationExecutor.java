@@ -13,15 +13,20 @@ package org.eclipse.birt.data.engine.olap.data.impl.aggregation;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.data.engine.aggregation.AggregationUtil;
+import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
 import org.eclipse.birt.data.engine.api.aggregation.AggregationManager;
+import org.eclipse.birt.data.engine.cache.Constants;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.executor.ComparatorUtil;
 import org.eclipse.birt.data.engine.executor.cache.SizeOfUtil;
@@ -74,6 +79,18 @@ public class AggregationExecutor
 	public Row4Aggregation[] aggregationRow;
 	private AggregationFunctionDefinition simpleFunc;
 	private boolean existReferenceDate = false;
+	private boolean[] usedMeasures = null;
+	// the data sets reading the partitions of the fact table segments, null
+	// if the fact table is read by dataSet4Aggregation
+	private IDataSet4Aggregation[] segmentPartitions = null;
+	// shared by the executors of the partitions
+	private AtomicInteger factRowCount = new AtomicInteger( );
+	// the executors of the partitions run on the aggregation threads already
+	private boolean onAggregationThread = false;
+	
+	private static final String SUM_FUNC = "SUM"; //$NON-NLS-1$
+	private static final String COUNT_FUNC = "COUNT"; //$NON-NLS-1$
+	private static final String AVE_FUNC = "AVE"; //$NON-NLS-1$
 	
 	private static String[] simpleFuncNames = new String[]{
 		"SUM",
@@ -83,6 +100,29 @@ public class AggregationExecutor
 		"LAST"
 	};
 	
+	// the functions whose accumulators only use their own state, so that the
+	// calculators using them can run on different threads
+	private static String[] threadConfinedFuncNames = new String[]{
+		"SUM",
+		"COUNT",
+		"COUNTDISTINCT",
+		"AVE",
+		"MAX",
+		"MIN",
+		"FIRST",
+		"LAST"
+	};
+	
+	// the functions whose values on the partitions of the fact table can be
+	// merged, the average is merged from the sums and the counts
+	private static String[] decomposableFuncNames = new String[]{
+		"SUM",
+		"COUNT",
+		"AVE",
+		"MAX",
+		"MIN"
+	};
+	
 	/**
 	 * 
 	 * @param dimensionResultIterators
@@ -107,6 +147,11 @@ public class AggregationExecutor
 		getParameterColIndex( aggregations );
 		existReferenceDate = memoryCacheSize > 0? true:existReferenceDate( aggregations );
 		simpleFunc = getSimpleFunction( aggregations );
+		usedMeasures = getUsedMeasures( aggregations );
+		if ( dataSet4Aggregation instanceof DataSetFromOriginalCube )
+		{
+			( (DataSetFromOriginalCube) dataSet4Aggregation ).setUsedMeasures( usedMeasures );
+		}
 		this.aggregationCalculators = new AggregationCalculator[aggregations.length];
 		int detailAggregationIndex = -1;
 		int detailLevelNum = 0;
@@ -157,6 +202,42 @@ public class AggregationExecutor
 				"AggregationExecutor" );
 	}
 	
+	/**
+	 * Only the measures used by the aggregation functions are got from the
+	 * data set and copied into the sorted fact rows, the others stay null.
+	 * 
+	 * @param aggregations
+	 * @return
+	 * @throws IOException
+	 */
+	private boolean[] getUsedMeasures( AggregationDefinition[] aggregations ) throws IOException
+	{
+		IDataSet4Aggregation.MetaInfo metaInfo = dataSet4Aggregation.getMetaInfo( );
+		boolean[] result = new boolean[metaInfo.getMeasureInfos( ).length];
+		for( int i = 0; i < aggregations.length; i++ )
+		{
+			AggregationFunctionDefinition[] aggrFunc = aggregations[i].getAggregationFunctions();
+			if( aggrFunc == null )
+				continue;
+			for( int j = 0; j < aggrFunc.length; j++ )
+			{
+				if( aggrFunc[j].getFilterEvalHelper( ) != null )
+				{
+					// the filter may refer to any measure
+					Arrays.fill( result, true );
+					return result;
+				}
+				if( aggrFunc[j].getMeasureName( ) != null )
+				{
+					int index = metaInfo.getMeasureIndex( aggrFunc[j].getMeasureName( ) );
+					if( index >= 0 )
+						result[index] = true;
+				}
+			}
+		}
+		return result;
+	}
+	
 	private static boolean existReferenceDate( AggregationDefinition[] aggregations ) throws DataException
 	{
 		for( int i = 0; i < aggregations.length; i++ )
@@ -282,43 +363,16 @@ public class AggregationExecutor
 	public IAggregationResultSet[] execute( StopSign stopSign )
 			throws IOException, DataException
 	{
-		populateSortedFactRows( stopSign );
-		for ( int i = 0; i < allSortedFactRows.size( ); i++ )
-		{
-			DiskSortedStackWrapper diskSortedStackWrapper = (DiskSortedStackWrapper) allSortedFactRows.get( i );
-			int[] calculatorIndexs = new int[sortedFactRows.length];
-			int pos = 0;
-			for ( int j = 0; j < calculatorIndexs.length; j++ )
-			{
-				if ( sortedFactRows[j] == diskSortedStackWrapper )
-				{
-					calculatorIndexs[pos] = j;
-					pos++;
-				}
-			}
-			while ( diskSortedStackWrapper.pop( ) != null
-					&& !stopSign.isStopped( ) )
-			{
-				Row4Aggregation row = (Row4Aggregation) diskSortedStackWrapper.getCurrentObject( );
-				for ( int j = 0; j < pos; j++ )
-				{
-//					aggregationCalculators[calculatorIndexs[j]].onRow( cut( row,
-//							levelIndex[calculatorIndexs[j]].length / 2 ) );
-					if( timeFunctionCalculator[calculatorIndexs[j]].existTimeFunction() )
-					{
-						timeFunctionCalculator[calculatorIndexs[j]].onRow( row );
-					}
-					aggregationCalculators[calculatorIndexs[j]].onRow( row );
-				}
-			}
-		}
+		IDiskArray[] results = segmentPartitions == null
+				? aggregateFactRows( stopSign )
+				: aggregateSegmentPartitions( stopSign );
 		IAggregationResultSet[] resultSets = 
 			new IAggregationResultSet[aggregationCalculators.length];
 		boolean needPopulateMissingAggrResultSetRow = false;
 		for ( int i = 0; i < aggregationCalculators.length; i++ )
 		{
 			resultSets[i] = new AggregationResultSet( aggregationCalculators[i].aggregation,
-					aggregationCalculators[i].getResult( ),
+					results[i],
 					getKeyNames( i ),
 					getAttributeNames( i ) );
 			if( timeFunctionCalculator[i].existTimeFunction() )
@@ -343,6 +397,516 @@ public class AggregationExecutor
 		return resultSets;
 	}
 	
+	/**
+	 * Reads the fact rows into the sorted stacks and aggregates them.
+	 * 
+	 * @param stopSign
+	 * @return the result rows of each aggregation
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private IDiskArray[] aggregateFactRows( StopSign stopSign )
+			throws IOException, DataException
+	{
+		populateSortedFactRows( stopSign );
+		if ( !aggregateInParallel( stopSign ) )
+		{
+			for ( int i = 0; i < allSortedFactRows.size( ); i++ )
+			{
+				aggregate( (DiskSortedStackWrapper) allSortedFactRows.get( i ),
+						stopSign );
+			}
+		}
+		IDiskArray[] results = new IDiskArray[aggregationCalculators.length];
+		for ( int i = 0; i < aggregationCalculators.length; i++ )
+		{
+			results[i] = aggregationCalculators[i].getResult( );
+		}
+		return results;
+	}
+	
+	/**
+	 * Feeds the sorted fact rows of the stack to the calculators using it.
+	 * 
+	 * @param diskSortedStackWrapper
+	 * @param stopSign
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private void aggregate( DiskSortedStackWrapper diskSortedStackWrapper,
+			StopSign stopSign ) throws IOException, DataException
+	{
+		int[] calculatorIndexs = new int[sortedFactRows.length];
+		int pos = 0;
+		for ( int j = 0; j < calculatorIndexs.length; j++ )
+		{
+			if ( sortedFactRows[j] == diskSortedStackWrapper )
+			{
+				calculatorIndexs[pos] = j;
+				pos++;
+			}
+		}
+		while ( diskSortedStackWrapper.pop( ) != null
+				&& !stopSign.isStopped( ) )
+		{
+			Row4Aggregation row = (Row4Aggregation) diskSortedStackWrapper.getCurrentObject( );
+			for ( int j = 0; j < pos; j++ )
+			{
+//				aggregationCalculators[calculatorIndexs[j]].onRow( cut( row,
+//						levelIndex[calculatorIndexs[j]].length / 2 ) );
+				if( timeFunctionCalculator[calculatorIndexs[j]].existTimeFunction() )
+				{
+					timeFunctionCalculator[calculatorIndexs[j]].onRow( row );
+				}
+				aggregationCalculators[calculatorIndexs[j]].onRow( row );
+			}
+		}
+	}
+	
+	/**
+	 * The sorted stacks are merged and aggregated on their own threads, as
+	 * every stack has its own rows and calculators. It is done only if no
+	 * calculator shares state with the others, which the aggregation filters
+	 * evaluated by script and the time functions reading the dimensions do.
+	 * 
+	 * @param stopSign
+	 * @return false if the stacks need to be aggregated on the calling thread.
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private boolean aggregateInParallel( final StopSign stopSign )
+			throws IOException, DataException
+	{
+		if ( onAggregationThread
+				|| allSortedFactRows.size( ) < 2
+				|| ParallelAggregationUtil.getParallelism( ) < 2 )
+		{
+			return false;
+		}
+		for ( int i = 0; i < aggregationCalculators.length; i++ )
+		{
+			if ( timeFunctionCalculator[i].existTimeFunction( )
+					|| !isThreadConfined( aggregationCalculators[i].aggregation ) )
+			{
+				return false;
+			}
+		}
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>( );
+		for ( int i = 0; i < allSortedFactRows.size( ); i++ )
+		{
+			final DiskSortedStackWrapper diskSortedStackWrapper = (DiskSortedStackWrapper) allSortedFactRows.get( i );
+			tasks.add( new Callable<Object>( ) {
+
+				public Object call( ) throws Exception
+				{
+					aggregate( diskSortedStackWrapper, stopSign );
+					return null;
+				}
+			} );
+		}
+		ParallelAggregationUtil.invokeAll( tasks );
+		return true;
+	}
+	
+	/**
+	 * Returns how many partitions of the fact table segments are scanned on
+	 * their own threads. The segments are partitioned only if the parallel
+	 * aggregation is on and the values of all the aggregations on the
+	 * partitions can be merged: the sum, the count, the average, the max and
+	 * the min, without filters, parameters or time functions. The other
+	 * aggregations are computed on a scan of the whole fact table.
+	 * 
+	 * @param segmentCount
+	 *            the number of segments of the fact table
+	 * @return 1 if the segments are not partitioned
+	 */
+	public int getSegmentPartitionCount( int segmentCount )
+	{
+		int parallelism = ParallelAggregationUtil.getParallelism( );
+		if ( parallelism < 2 || segmentCount < 2 )
+		{
+			return 1;
+		}
+		for ( int i = 0; i < aggregationCalculators.length; i++ )
+		{
+			if ( !isDecomposable( aggregationCalculators[i].aggregation ) )
+			{
+				return 1;
+			}
+		}
+		return Math.min( parallelism, segmentCount );
+	}
+	
+	/**
+	 * Sets the data sets on the partitions of the fact table segments, one
+	 * for each of the partitions given by <code>getSegmentPartitionCount</code>.
+	 * The data sets are closed once aggregated.
+	 * 
+	 * @param segmentPartitions
+	 */
+	public void setSegmentPartitions( IDataSet4Aggregation[] segmentPartitions )
+	{
+		this.segmentPartitions = segmentPartitions;
+	}
+	
+	/**
+	 * Every partition of the fact table segments is scanned and aggregated
+	 * on its own thread by an executor of its own, which has its own iterators
+	 * and accumulators. The partitions compute the sums and the counts
+	 * instead of the averages, and their sorted results are merged on the
+	 * calling thread.
+	 * 
+	 * @param stopSign
+	 * @return the result rows of each aggregation
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private IDiskArray[] aggregateSegmentPartitions( final StopSign stopSign )
+			throws IOException, DataException
+	{
+		AggregationDefinition[] partialAggregations = new AggregationDefinition[aggregationCalculators.length];
+		for ( int i = 0; i < partialAggregations.length; i++ )
+		{
+			partialAggregations[i] = getPartialAggregation( aggregationCalculators[i].aggregation );
+		}
+		// the sign tells the executors of the partitions the same way to
+		// merge the rows
+		long partitionCacheSize = memoryCacheSize / segmentPartitions.length;
+		if ( !existReferenceDate )
+		{
+			partitionCacheSize = -partitionCacheSize;
+		}
+		final AggregationExecutor[] executors = new AggregationExecutor[segmentPartitions.length];
+		final IDiskArray[][] partialResults = new IDiskArray[segmentPartitions.length][];
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>( );
+		for ( int i = 0; i < segmentPartitions.length; i++ )
+		{
+			executors[i] = new AggregationExecutor( cubeDimensionReader,
+					segmentPartitions[i],
+					partialAggregations,
+					partitionCacheSize );
+			executors[i].maxDataObjectRows = maxDataObjectRows;
+			executors[i].factRowCount = factRowCount;
+			executors[i].onAggregationThread = true;
+			final int index = i;
+			tasks.add( new Callable<Object>( ) {
+
+				public Object call( ) throws Exception
+				{
+					try
+					{
+						partialResults[index] = executors[index].aggregateFactRows( stopSign );
+					}
+					finally
+					{
+						executors[index].dataSet4Aggregation.close( );
+					}
+					return null;
+				}
+			} );
+		}
+		ParallelAggregationUtil.invokeAll( tasks );
+
+		IDiskArray[] results = new IDiskArray[aggregationCalculators.length];
+		for ( int i = 0; i < results.length; i++ )
+		{
+			IDiskArray[] partialResult = new IDiskArray[partialResults.length];
+			for ( int j = 0; j < partialResult.length; j++ )
+			{
+				partialResult[j] = partialResults[j][i];
+			}
+			results[i] = mergePartialResults( aggregationCalculators[i].aggregation,
+					partialResult,
+					executors[0].sortedFactRows[i].sortTypes );
+		}
+		return results;
+	}
+	
+	/**
+	 * 
+	 * @param aggregation
+	 * @return the aggregation computed on a partition of the segments, where
+	 *         every average is replaced by a sum and a count
+	 */
+	private static AggregationDefinition getPartialAggregation(
+			AggregationDefinition aggregation )
+	{
+		AggregationFunctionDefinition[] aggrFunc = aggregation.getAggregationFunctions( );
+		if ( aggrFunc == null )
+		{
+			return aggregation;
+		}
+		List<AggregationFunctionDefinition> partialFunc = new ArrayList<AggregationFunctionDefinition>( );
+		for ( int i = 0; i < aggrFunc.length; i++ )
+		{
+			if ( AVE_FUNC.equals( aggrFunc[i].getFunctionName( ) ) )
+			{
+				partialFunc.add( new AggregationFunctionDefinition( aggrFunc[i].getName( ),
+						aggrFunc[i].getMeasureName( ),
+						SUM_FUNC ) );
+				partialFunc.add( new AggregationFunctionDefinition( aggrFunc[i].getName( ),
+						aggrFunc[i].getMeasureName( ),
+						COUNT_FUNC ) );
+			}
+			else
+			{
+				partialFunc.add( aggrFunc[i] );
+			}
+		}
+		return new AggregationDefinition( aggregation.getLevels( ),
+				aggregation.getSortTypes( ),
+				partialFunc.toArray( new AggregationFunctionDefinition[partialFunc.size( )] ) );
+	}
+	
+	/**
+	 * Merges the rows of the partial results having the same level members.
+	 * The partial results are sorted in the same order, the one of the sorted
+	 * stack of the aggregation, so the merged rows keep the order.
+	 * 
+	 * @param aggregation
+	 * @param partialResults
+	 *            the results of the partial aggregation on each partition,
+	 *            closed once merged
+	 * @param sortTypes
+	 *            the sort types of the sorted stack
+	 * @return
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private static IDiskArray mergePartialResults(
+			AggregationDefinition aggregation, IDiskArray[] partialResults,
+			int[] sortTypes ) throws IOException, DataException
+	{
+		int levelCount = aggregation.getLevels( ) == null ? 0
+				: aggregation.getLevels( ).length;
+		AggregationFunctionDefinition[] aggrFunc = aggregation.getAggregationFunctions( );
+		Accumulator[] accumulators = null;
+		if ( aggrFunc != null )
+		{
+			accumulators = new Accumulator[aggrFunc.length];
+			for ( int i = 0; i < aggrFunc.length; i++ )
+			{
+				String functionName = aggrFunc[i].getFunctionName( );
+				if ( AVE_FUNC.equals( functionName ) )
+				{
+					functionName = SUM_FUNC;
+				}
+				if ( !COUNT_FUNC.equals( functionName ) )
+				{
+					accumulators[i] = AggregationManager.getInstance( )
+							.getAggregation( functionName )
+							.newAccumulator( );
+				}
+			}
+		}
+		IDiskArray result = new BufferedStructureArray( AggregationResultRow.getCreator( ),
+				Constants.LIST_BUFFER_SIZE );
+		int[] positions = new int[partialResults.length];
+		List<IAggregationResultRow> rows = new ArrayList<IAggregationResultRow>( );
+		while ( true )
+		{
+			IAggregationResultRow first = null;
+			for ( int i = 0; i < partialResults.length; i++ )
+			{
+				if ( positions[i] < partialResults[i].size( ) )
+				{
+					IAggregationResultRow row = (IAggregationResultRow) partialResults[i].get( positions[i] );
+					if ( first == null
+							|| compare( row.getLevelMembers( ),
+									first.getLevelMembers( ),
+									levelCount,
+									sortTypes ) < 0 )
+					{
+						first = row;
+					}
+				}
+			}
+			if ( first == null )
+			{
+				break;
+			}
+			rows.clear( );
+			for ( int i = 0; i < partialResults.length; i++ )
+			{
+				if ( positions[i] < partialResults[i].size( ) )
+				{
+					IAggregationResultRow row = (IAggregationResultRow) partialResults[i].get( positions[i] );
+					if ( compare( row.getLevelMembers( ),
+							first.getLevelMembers( ),
+							levelCount,
+							sortTypes ) == 0 )
+					{
+						rows.add( row );
+						positions[i]++;
+					}
+				}
+			}
+			result.add( new AggregationResultRow( first.getLevelMembers( ),
+					mergeValues( aggrFunc, accumulators, rows ) ) );
+		}
+		for ( int i = 0; i < partialResults.length; i++ )
+		{
+			partialResults[i].close( );
+		}
+		return result;
+	}
+	
+	/**
+	 * 
+	 * @param aggrFunc
+	 * @param accumulators
+	 *            the accumulators merging the values of each function, null
+	 *            for the counts
+	 * @param rows
+	 *            the rows of the partial results on the same level members
+	 * @return the values of the functions
+	 * @throws DataException
+	 */
+	private static Object[] mergeValues( AggregationFunctionDefinition[] aggrFunc,
+			Accumulator[] accumulators, List<IAggregationResultRow> rows )
+			throws DataException
+	{
+		if ( aggrFunc == null )
+		{
+			return null;
+		}
+		Object[] values = new Object[aggrFunc.length];
+		// the index of the value of the function in the partial results
+		int partialIndex = 0;
+		for ( int i = 0; i < aggrFunc.length; i++ )
+		{
+			boolean isAverage = AVE_FUNC.equals( aggrFunc[i].getFunctionName( ) );
+			int count = 0;
+			if ( accumulators[i] != null )
+			{
+				accumulators[i].start( );
+			}
+			for ( int j = 0; j < rows.size( ); j++ )
+			{
+				Object[] partialValues = rows.get( j ).getAggregationValues( );
+				if ( accumulators[i] == null )
+				{
+					count += ( (Number) partialValues[partialIndex] ).intValue( );
+					continue;
+				}
+				accumulators[i].onRow( new Object[]{
+					partialValues[partialIndex]
+				} );
+				if ( isAverage )
+				{
+					count += ( (Number) partialValues[partialIndex + 1] ).intValue( );
+				}
+			}
+			if ( accumulators[i] == null )
+			{
+				values[i] = Integer.valueOf( count );
+			}
+			else
+			{
+				accumulators[i].finish( );
+				values[i] = accumulators[i].getValue( );
+				if ( isAverage )
+				{
+					values[i] = count > 0 && values[i] != null
+							? Double.valueOf( ( (Number) values[i] ).doubleValue( )
+									/ count ) : null;
+				}
+			}
+			partialIndex += isAverage ? 2 : 1;
+		}
+		return values;
+	}
+	
+	/**
+	 * Compares the level members in the order of the sorted stacks, see
+	 * <code>Row4AggregationComparator</code>.
+	 * 
+	 * @param members1
+	 * @param members2
+	 * @param levelCount
+	 * @param sortTypes
+	 * @return
+	 */
+	private static int compare( Member[] members1, Member[] members2,
+			int levelCount, int[] sortTypes )
+	{
+		for ( int i = 0; i < levelCount; i++ )
+		{
+			int result = members1[i].compareTo( members2[i] );
+			if ( result == 0 )
+			{
+				continue;
+			}
+			if ( sortTypes == null
+					|| sortTypes.length <= i
+					|| sortTypes[i] == IDimensionSortDefn.SORT_UNDEFINED
+					|| sortTypes[i] == IDimensionSortDefn.SORT_ASC )
+			{
+				return result;
+			}
+			return -result;
+		}
+		return 0;
+	}
+	
+	private static boolean isDecomposable( AggregationDefinition aggregation )
+	{
+		AggregationFunctionDefinition[] aggrFunc = aggregation.getAggregationFunctions( );
+		if ( aggrFunc == null )
+		{
+			return true;
+		}
+		for ( int i = 0; i < aggrFunc.length; i++ )
+		{
+			if ( aggrFunc[i].getFilterEvalHelper( ) != null
+					|| aggrFunc[i].getTimeFunction( ) != null
+					|| aggrFunc[i].getTimeFunctionFilter( ) != null
+					|| aggrFunc[i].getParaCol( ) != null
+					|| aggrFunc[i].getParaValue( ) != null )
+			{
+				return false;
+			}
+			if ( !Arrays.asList( decomposableFuncNames )
+					.contains( aggrFunc[i].getFunctionName( ) ) )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static boolean isThreadConfined( AggregationDefinition aggregation )
+	{
+		AggregationFunctionDefinition[] aggrFunc = aggregation.getAggregationFunctions( );
+		if ( aggrFunc == null )
+		{
+			return true;
+		}
+		for ( int i = 0; i < aggrFunc.length; i++ )
+		{
+			if ( aggrFunc[i].getFilterEvalHelper( ) != null
+					|| aggrFunc[i].getTimeFunction( ) != null
+					|| aggrFunc[i].getTimeFunctionFilter( ) != null )
+			{
+				return false;
+			}
+			boolean found = false;
+			for ( int j = 0; j < threadConfinedFuncNames.length; j++ )
+			{
+				if ( threadConfinedFuncNames[j].equals( aggrFunc[i].getFunctionName( ) ) )
+				{
+					found = true;
+					break;
+				}
+			}
+			if ( !found )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
 	private void populateEdgeMember( List<Member[]> edgeMember, IAggregationResultSet rs ) throws IOException
 	{
 		for ( int i = 0; i < rs.length( ); i++ )
@@ -686,7 +1250,6 @@ public class AggregationExecutor
 
 		prepareSortedStacks( );
 		int measureCount = dataSet4Aggregation.getMetaInfo( ).getMeasureInfos( ).length;
-		int factRowCount = 0;
 		if( this.aggregationRow == null )
 		{
 			this.aggregationRow = new Row4Aggregation[allSortedFactRows.size( )];
@@ -728,7 +1291,8 @@ public class AggregationExecutor
 						aggregationRow[i].setMeasures( new Object[measureCount] );
 						for ( int j = 0; j < measureCount; j++ )
 						{
-							aggregationRow[i].getMeasures( )[j] = dataSet4Aggregation.getMeasureValue( j );
+							if( usedMeasures[j] )
+								aggregationRow[i].getMeasures( )[j] = dataSet4Aggregation.getMeasureValue( j );
 						}
 						aggregationRow[i].setParameterValues( getParameterValues( ) );
 
@@ -738,14 +1302,14 @@ public class AggregationExecutor
 						Object[] measures = new Object[measureCount];
 						for ( int j = 0; j < measureCount; j++ )
 						{
-							measures[j] = dataSet4Aggregation.getMeasureValue( j );
+							if( usedMeasures[j] )
+								measures[j] = dataSet4Aggregation.getMeasureValue( j );
 						}
 						aggregationRow[i].addMeasure( measures );
 						addPosition( aggregationRow[i] );
 					}
 				}
-				factRowCount++;
-				if( maxDataObjectRows >0 && factRowCount > maxDataObjectRows )
+				if( maxDataObjectRows >0 && factRowCount.incrementAndGet( ) > maxDataObjectRows )
 					throw new DataException( ResourceConstants.EXCEED_MAX_DATA_OBJECT_ROWS );
 			}
 			for ( int i = 0; i < allSortedFactRows.size( ); i++ )
@@ -900,7 +1464,8 @@ public class AggregationExecutor
 			}
 				
 			DiskSortedStackWrapper diskSortedStackReader = new DiskSortedStackWrapper( diskSortedStack,
-					levelIndex[aggregationIndex] );
+					levelIndex[aggregationIndex],
+					levelSortType );
 			this.allSortedFactRows.add( diskSortedStackReader );
 
 			for ( int i = 0; i < aggregationCalculators.length; i++ )
@@ -1185,16 +1750,20 @@ class DiskSortedStackWrapper
 	DiskSortedStack diskSortedStack = null;
 	Object currentObj = null;
 	int[] levelIndex = null;
+	int[] sortTypes = null;
 	
 	/**
 	 * 
 	 * @param diskSortedStack
 	 * @param levelIndex
+	 * @param sortTypes
 	 */
-	DiskSortedStackWrapper( DiskSortedStack diskSortedStack, int[] levelIndex )
+	DiskSortedStackWrapper( DiskSortedStack diskSortedStack, int[] levelIndex,
+			int[] sortTypes )
 	{
 		this.diskSortedStack = diskSortedStack;
 		this.levelIndex = levelIndex;
+		this.sortTypes = sortTypes;
 	}
 
 	DiskSortedStack getDiskSortedStack( )
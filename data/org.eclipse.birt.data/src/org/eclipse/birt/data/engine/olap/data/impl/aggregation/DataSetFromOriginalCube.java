@@ -28,6 +28,7 @@ import org.eclipse.birt.data.engine.olap.data.api.MeasureInfo;
 import org.eclipse.birt.data.engine.olap.data.api.cube.TimeDimensionUtil;
 import org.eclipse.birt.data.engine.olap.data.impl.DimColumn;
 import org.eclipse.birt.data.engine.olap.data.impl.dimension.Member;
+import org.eclipse.birt.data.engine.olap.data.impl.facttable.FactTableRowIterator;
 import org.eclipse.birt.data.engine.olap.data.impl.facttable.IFactTableRowIterator;
 import org.eclipse.birt.data.engine.olap.util.filter.IFacttableRow;
 
@@ -58,6 +59,20 @@ public class DataSetFromOriginalCube implements IDataSet4Aggregation
 
 	}
 
+	/**
+	 * Only the used measures are got from the data set.
+	 * 
+	 * @param usedMeasures
+	 * @see FactTableRowIterator#setUsedMeasures(boolean[])
+	 */
+	public void setUsedMeasures( boolean[] usedMeasures )
+	{
+		if ( factTableRowIterator instanceof FactTableRowIterator )
+		{
+			( (FactTableRowIterator) factTableRowIterator ).setUsedMeasures( usedMeasures );
+		}
+	}
+
 	public MetaInfo getMetaInfo( )
 	{
 		return new IDataSet4Aggregation.MetaInfo( ) {
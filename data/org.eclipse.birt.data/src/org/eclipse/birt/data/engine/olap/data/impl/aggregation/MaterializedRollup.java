@@ -0,0 +1,691 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.impl.aggregation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
+import org.eclipse.birt.data.engine.api.aggregation.AggregationManager;
+import org.eclipse.birt.data.engine.api.aggregation.IAggrFunction;
+import org.eclipse.birt.data.engine.cache.Constants;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.i18n.DataResourceHandle;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.impl.StopSign;
+import org.eclipse.birt.data.engine.olap.data.api.CubeQueryExecutorHelper;
+import org.eclipse.birt.data.engine.olap.data.api.DimLevel;
+import org.eclipse.birt.data.engine.olap.data.api.IAggregationResultSet;
+import org.eclipse.birt.data.engine.olap.data.api.IDimensionSortDefn;
+import org.eclipse.birt.data.engine.olap.data.api.MeasureInfo;
+import org.eclipse.birt.data.engine.olap.data.api.cube.ICube;
+import org.eclipse.birt.data.engine.olap.data.document.DocumentObjectUtil;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
+import org.eclipse.birt.data.engine.olap.data.impl.AggregationDefinition;
+import org.eclipse.birt.data.engine.olap.data.impl.AggregationFunctionDefinition;
+import org.eclipse.birt.data.engine.olap.data.impl.Cube;
+import org.eclipse.birt.data.engine.olap.data.impl.NamingUtil;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.Member;
+import org.eclipse.birt.data.engine.olap.data.util.BufferedStructureArray;
+import org.eclipse.birt.data.engine.olap.data.util.DataType;
+import org.eclipse.birt.data.engine.olap.data.util.IDiskArray;
+
+/**
+ * A roll-up of the fact table of a cube on a combination of levels, saved in
+ * the document manager of the cube. It keeps the count, the min, the max and,
+ * when it can be merged without precision lost, the sum of every measure for
+ * each distinct combination of the level members, sorted in the level order.
+ * An aggregation on a leading part of these levels can then be computed by
+ * merging the adjacent roll-up rows instead of scanning the fact table.
+ */
+
+public class MaterializedRollup
+{
+
+	private static final String COUNT_FUNC = "COUNT"; //$NON-NLS-1$
+	private static final String SUM_FUNC = "SUM"; //$NON-NLS-1$
+	private static final String MIN_FUNC = "MIN"; //$NON-NLS-1$
+	private static final String MAX_FUNC = "MAX"; //$NON-NLS-1$
+
+	private IDocumentManager documentManager;
+	private String documentObjectName;
+	private DimLevel[] levels;
+	private String[][] keyNames;
+	private String[][] attributeNames;
+	private String[] measureNames;
+	private String[] functionNames;
+	private int rowCount;
+	private long rowOffset;
+
+	private MaterializedRollup( IDocumentManager documentManager,
+			String documentObjectName )
+	{
+		this.documentManager = documentManager;
+		this.documentObjectName = documentObjectName;
+	}
+
+	/**
+	 * Computes and saves the roll-ups of a cube. The previous roll-ups of the
+	 * cube are replaced.
+	 *
+	 * @param cube
+	 * @param documentManager
+	 * @param rollupLevels
+	 *            the levels of each roll-up
+	 * @param stopSign
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	public static void create( Cube cube, IDocumentManager documentManager,
+			DimLevel[][] rollupLevels, StopSign stopSign ) throws IOException,
+			BirtException
+	{
+		IDocumentObject listObject = documentManager.createDocumentObject( NamingUtil.getRollupListName( cube.getName( ) ) );
+		listObject.writeInt( rollupLevels.length );
+		for ( int i = 0; i < rollupLevels.length; i++ )
+		{
+			String name = NamingUtil.getRollupDocName( cube.getName( ), i );
+			createRollup( cube, documentManager, name, rollupLevels[i], stopSign );
+			listObject.writeString( name );
+		}
+		listObject.close( );
+	}
+
+	/**
+	 * Loads the roll-ups of a cube.
+	 *
+	 * @param cubeName
+	 * @param documentManager
+	 * @return an empty array if the cube has no roll-up
+	 * @throws IOException
+	 */
+	public static MaterializedRollup[] load( String cubeName,
+			IDocumentManager documentManager ) throws IOException
+	{
+		String listName = NamingUtil.getRollupListName( cubeName );
+		if ( !documentManager.exist( listName ) )
+		{
+			return new MaterializedRollup[0];
+		}
+		IDocumentObject listObject = documentManager.openDocumentObject( listName );
+		try
+		{
+			MaterializedRollup[] result = new MaterializedRollup[listObject.readInt( )];
+			for ( int i = 0; i < result.length; i++ )
+			{
+				result[i] = new MaterializedRollup( documentManager,
+						listObject.readString( ) );
+				result[i].loadMetaInfo( );
+			}
+			return result;
+		}
+		finally
+		{
+			listObject.close( );
+		}
+	}
+
+	/**
+	 * Returns the names of the document objects of the roll-ups of a cube.
+	 *
+	 * @param cubeName
+	 * @param documentManager
+	 * @return
+	 * @throws IOException
+	 */
+	public static String[] getDocumentObjectNames( String cubeName,
+			IDocumentManager documentManager ) throws IOException
+	{
+		String listName = NamingUtil.getRollupListName( cubeName );
+		if ( !documentManager.exist( listName ) )
+		{
+			return new String[0];
+		}
+		IDocumentObject listObject = documentManager.openDocumentObject( listName );
+		try
+		{
+			String[] result = new String[listObject.readInt( ) + 1];
+			result[0] = listName;
+			for ( int i = 1; i < result.length; i++ )
+			{
+				result[i] = listObject.readString( );
+			}
+			return result;
+		}
+		finally
+		{
+			listObject.close( );
+		}
+	}
+
+	/**
+	 * Returns the roll-up with the fewest rows which can compute the
+	 * aggregation.
+	 *
+	 * @param rollups
+	 * @param aggregation
+	 * @return null if no roll-up can compute it
+	 */
+	public static MaterializedRollup find( MaterializedRollup[] rollups,
+			AggregationDefinition aggregation )
+	{
+		MaterializedRollup result = null;
+		for ( int i = 0; i < rollups.length; i++ )
+		{
+			if ( rollups[i].canAggregate( aggregation )
+					&& ( result == null || rollups[i].rowCount < result.rowCount ) )
+			{
+				result = rollups[i];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public DimLevel[] getLevels( )
+	{
+		return levels;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	public int getRowCount( )
+	{
+		return rowCount;
+	}
+
+	/**
+	 * The aggregation must be on a leading part of the roll-up levels in the
+	 * same order, and only use count, sum, min or max functions on measures
+	 * saved in the roll-up, without filters, parameters or time functions.
+	 *
+	 * @param aggregation
+	 * @return
+	 */
+	boolean canAggregate( AggregationDefinition aggregation )
+	{
+		if ( aggregation.getDrilledInfo( ) != null )
+		{
+			return false;
+		}
+		DimLevel[] aggrLevels = aggregation.getLevels( );
+		if ( aggrLevels != null )
+		{
+			if ( aggrLevels.length > levels.length )
+			{
+				return false;
+			}
+			for ( int i = 0; i < aggrLevels.length; i++ )
+			{
+				if ( aggrLevels[i].getAttrName( ) != null
+						|| !aggrLevels[i].equals( levels[i] ) )
+				{
+					return false;
+				}
+			}
+			int[] sortTypes = aggregation.getSortTypes( );
+			for ( int i = 0; sortTypes != null && i < sortTypes.length; i++ )
+			{
+				if ( sortTypes[i] != IDimensionSortDefn.SORT_UNDEFINED
+						&& sortTypes[i] != IDimensionSortDefn.SORT_ASC )
+				{
+					return false;
+				}
+			}
+		}
+		AggregationFunctionDefinition[] functions = aggregation.getAggregationFunctions( );
+		for ( int i = 0; functions != null && i < functions.length; i++ )
+		{
+			if ( functions[i].getTimeFunction( ) != null
+					|| functions[i].getTimeFunctionFilter( ) != null
+					|| functions[i].getFilterEvalHelper( ) != null
+					|| functions[i].getParaCol( ) != null
+					|| functions[i].getParaValue( ) != null
+					|| getColumnIndex( functions[i] ) < 0 )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Computes the aggregation by merging the roll-up rows having the same
+	 * members on the aggregation levels.
+	 *
+	 * @param aggregation
+	 *            an aggregation accepted by <code>canAggregate</code>
+	 * @param stopSign
+	 * @return
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	public IAggregationResultSet aggregate( AggregationDefinition aggregation,
+			StopSign stopSign ) throws IOException, DataException
+	{
+		int levelCount = aggregation.getLevels( ) == null ? 0
+				: aggregation.getLevels( ).length;
+		AggregationFunctionDefinition[] functions = aggregation.getAggregationFunctions( );
+		int[] columnIndex = null;
+		Accumulator[] accumulators = null;
+		int[] counts = null;
+		if ( functions != null )
+		{
+			columnIndex = new int[functions.length];
+			accumulators = new Accumulator[functions.length];
+			counts = new int[functions.length];
+			for ( int i = 0; i < functions.length; i++ )
+			{
+				columnIndex[i] = getColumnIndex( functions[i] );
+				if ( !COUNT_FUNC.equalsIgnoreCase( functions[i].getFunctionName( ) ) )
+				{
+					accumulators[i] = newAccumulator( functionNames[columnIndex[i]] );
+				}
+			}
+		}
+
+		IDiskArray result = new BufferedStructureArray( AggregationResultRow.getCreator( ),
+				Constants.LIST_BUFFER_SIZE );
+		AggregationResultRow currentRow = null;
+		IDocumentObject documentObject = documentManager.openDocumentObject( documentObjectName );
+		try
+		{
+			documentObject.seek( rowOffset );
+			for ( int i = 0; i < rowCount && !stopSign.isStopped( ); i++ )
+			{
+				AggregationResultRow row = readRow( documentObject );
+				if ( currentRow == null
+						|| !isSameGroup( row.getLevelMembers( ),
+								currentRow.getLevelMembers( ),
+								levelCount ) )
+				{
+					if ( currentRow != null )
+					{
+						finishRow( currentRow, accumulators, counts );
+						result.add( currentRow );
+					}
+					currentRow = new AggregationResultRow( );
+					if ( levelCount > 0 )
+					{
+						currentRow.setLevelMembers( new Member[levelCount] );
+						System.arraycopy( row.getLevelMembers( ),
+								0,
+								currentRow.getLevelMembers( ),
+								0,
+								levelCount );
+					}
+					startRow( accumulators, counts );
+				}
+				for ( int j = 0; columnIndex != null && j < columnIndex.length; j++ )
+				{
+					Object value = row.getAggregationValues( )[columnIndex[j]];
+					if ( accumulators[j] == null )
+					{
+						counts[j] += ( (Integer) value ).intValue( );
+					}
+					else
+					{
+						accumulators[j].onRow( new Object[]{
+							value
+						} );
+					}
+				}
+			}
+			if ( currentRow != null )
+			{
+				finishRow( currentRow, accumulators, counts );
+				result.add( currentRow );
+			}
+		}
+		finally
+		{
+			documentObject.close( );
+		}
+
+		String[][] aggrKeyNames = new String[levelCount][];
+		String[][] aggrAttributeNames = new String[levelCount][];
+		System.arraycopy( keyNames, 0, aggrKeyNames, 0, levelCount );
+		System.arraycopy( attributeNames, 0, aggrAttributeNames, 0, levelCount );
+		return new AggregationResultSet( aggregation,
+				result,
+				aggrKeyNames,
+				aggrAttributeNames );
+	}
+
+	/**
+	 *
+	 * @param cube
+	 * @param documentManager
+	 * @param name
+	 * @param rollupLevels
+	 * @param stopSign
+	 * @throws IOException
+	 * @throws BirtException
+	 */
+	private static void createRollup( ICube cube,
+			IDocumentManager documentManager, String name,
+			DimLevel[] rollupLevels, StopSign stopSign ) throws IOException,
+			BirtException
+	{
+		MeasureInfo[] measureInfos = ( (Cube) cube ).getFactTable( )
+				.getMeasureInfo( );
+		List<AggregationFunctionDefinition> functions = new ArrayList<AggregationFunctionDefinition>( );
+		for ( int i = 0; i < measureInfos.length; i++ )
+		{
+			String measureName = measureInfos[i].getMeasureName( );
+			functions.add( new AggregationFunctionDefinition( measureName,
+					COUNT_FUNC ) );
+			functions.add( new AggregationFunctionDefinition( measureName,
+					MIN_FUNC ) );
+			functions.add( new AggregationFunctionDefinition( measureName,
+					MAX_FUNC ) );
+			// like the merged rows of AggregationExecutor, the sums of double
+			// are not merged, as a different order of the additions changes
+			// the precision lost
+			if ( measureInfos[i].getDataType( ) != DataType.DOUBLE_TYPE )
+			{
+				functions.add( new AggregationFunctionDefinition( measureName,
+						SUM_FUNC ) );
+			}
+		}
+		AggregationDefinition aggregation = new AggregationDefinition( rollupLevels,
+				null,
+				functions.toArray( new AggregationFunctionDefinition[functions.size( )] ) );
+		CubeQueryExecutorHelper helper = new CubeQueryExecutorHelper( cube );
+		IAggregationResultSet resultSet = helper.execute( new AggregationDefinition[]{
+			aggregation
+		}, stopSign )[0];
+		IDocumentObject documentObject = documentManager.createDocumentObject( name );
+		try
+		{
+			documentObject.writeInt( rollupLevels.length );
+			for ( int i = 0; i < rollupLevels.length; i++ )
+			{
+				documentObject.writeString( rollupLevels[i].getDimensionName( ) );
+				documentObject.writeString( rollupLevels[i].getLevelName( ) );
+				writeStrings( documentObject, resultSet.getKeyNames( )[i] );
+				writeStrings( documentObject,
+						resultSet.getAttributeNames( )[i] );
+			}
+			documentObject.writeInt( functions.size( ) );
+			for ( int i = 0; i < functions.size( ); i++ )
+			{
+				documentObject.writeString( functions.get( i ).getMeasureName( ) );
+				documentObject.writeString( functions.get( i )
+						.getFunctionName( ) );
+			}
+			documentObject.writeInt( resultSet.length( ) );
+			for ( int i = 0; i < resultSet.length( ); i++ )
+			{
+				resultSet.seek( i );
+				writeFields( documentObject, resultSet.getCurrentRow( )
+						.getFieldValues( ) );
+			}
+		}
+		finally
+		{
+			documentObject.close( );
+			resultSet.close( );
+			helper.close( );
+		}
+	}
+
+	/**
+	 *
+	 * @throws IOException
+	 */
+	private void loadMetaInfo( ) throws IOException
+	{
+		IDocumentObject documentObject = documentManager.openDocumentObject( documentObjectName );
+		try
+		{
+			levels = new DimLevel[documentObject.readInt( )];
+			keyNames = new String[levels.length][];
+			attributeNames = new String[levels.length][];
+			for ( int i = 0; i < levels.length; i++ )
+			{
+				levels[i] = new DimLevel( documentObject.readString( ),
+						documentObject.readString( ) );
+				keyNames[i] = readStrings( documentObject );
+				attributeNames[i] = readStrings( documentObject );
+			}
+			measureNames = new String[documentObject.readInt( )];
+			functionNames = new String[measureNames.length];
+			for ( int i = 0; i < measureNames.length; i++ )
+			{
+				measureNames[i] = documentObject.readString( );
+				functionNames[i] = documentObject.readString( );
+			}
+			rowCount = documentObject.readInt( );
+			rowOffset = documentObject.getFilePointer( );
+		}
+		finally
+		{
+			documentObject.close( );
+		}
+	}
+
+	/**
+	 *
+	 * @param function
+	 * @return the index of the saved aggregation value for the function, -1
+	 *         if it is not saved
+	 */
+	private int getColumnIndex( AggregationFunctionDefinition function )
+	{
+		for ( int i = 0; i < measureNames.length; i++ )
+		{
+			if ( measureNames[i].equals( function.getMeasureName( ) )
+					&& functionNames[i].equalsIgnoreCase( function.getFunctionName( ) ) )
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 *
+	 * @param functionName
+	 * @return
+	 * @throws DataException
+	 */
+	private static Accumulator newAccumulator( String functionName )
+			throws DataException
+	{
+		IAggrFunction function = AggregationManager.getInstance( )
+				.getAggregation( functionName );
+		if ( function == null )
+		{
+			throw new DataException( DataResourceHandle.getInstance( )
+					.getMessage( ResourceConstants.UNSUPPORTED_FUNCTION )
+					+ functionName );
+		}
+		return function.newAccumulator( );
+	}
+
+	/**
+	 *
+	 * @param accumulators
+	 * @param counts
+	 * @throws DataException
+	 */
+	private static void startRow( Accumulator[] accumulators, int[] counts )
+			throws DataException
+	{
+		for ( int i = 0; accumulators != null && i < accumulators.length; i++ )
+		{
+			if ( accumulators[i] == null )
+			{
+				counts[i] = 0;
+			}
+			else
+			{
+				accumulators[i].start( );
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param row
+	 * @param accumulators
+	 * @param counts
+	 * @throws DataException
+	 */
+	private static void finishRow( AggregationResultRow row,
+			Accumulator[] accumulators, int[] counts ) throws DataException
+	{
+		if ( accumulators == null )
+		{
+			return;
+		}
+		row.setAggregationValues( new Object[accumulators.length] );
+		for ( int i = 0; i < accumulators.length; i++ )
+		{
+			if ( accumulators[i] == null )
+			{
+				row.getAggregationValues( )[i] = Integer.valueOf( counts[i] );
+			}
+			else
+			{
+				accumulators[i].finish( );
+				row.getAggregationValues( )[i] = accumulators[i].getValue( );
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param members1
+	 * @param members2
+	 * @param levelCount
+	 * @return
+	 */
+	private static boolean isSameGroup( Member[] members1, Member[] members2,
+			int levelCount )
+	{
+		for ( int i = 0; i < levelCount; i++ )
+		{
+			if ( members1[i].compareTo( members2[i] ) != 0 )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 *
+	 * @param documentObject
+	 * @return
+	 * @throws IOException
+	 */
+	private static AggregationResultRow readRow( IDocumentObject documentObject )
+			throws IOException
+	{
+		Object[] fields = new Object[documentObject.readInt( )];
+		for ( int i = 0; i < fields.length; i++ )
+		{
+			int dataType = documentObject.readInt( );
+			if ( dataType != DataType.UNKNOWN_TYPE )
+			{
+				fields[i] = DocumentObjectUtil.readValue( documentObject,
+						dataType );
+			}
+		}
+		return (AggregationResultRow) AggregationResultRow.getCreator( )
+				.createInstance( fields );
+	}
+
+	/**
+	 *
+	 * @param documentObject
+	 * @param fields
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private static void writeFields( IDocumentObject documentObject,
+			Object[] fields ) throws IOException, DataException
+	{
+		documentObject.writeInt( fields.length );
+		for ( int i = 0; i < fields.length; i++ )
+		{
+			if ( fields[i] == null )
+			{
+				documentObject.writeInt( DataType.UNKNOWN_TYPE );
+				continue;
+			}
+			int dataType = DataType.getDataType( fields[i].getClass( ) );
+			// the classes without their own data type, like timestamps, are
+			// serialized to be read back unchanged
+			if ( dataType == DataType.UNKNOWN_TYPE
+					|| fields[i] instanceof java.sql.Timestamp )
+			{
+				dataType = DataType.JAVA_OBJECT_TYPE;
+			}
+			documentObject.writeInt( dataType );
+			DocumentObjectUtil.writeValue( documentObject, dataType, fields[i] );
+		}
+	}
+
+	/**
+	 *
+	 * @param documentObject
+	 * @param values
+	 * @throws IOException
+	 */
+	private static void writeStrings( IDocumentObject documentObject,
+			String[] values ) throws IOException
+	{
+		if ( values == null )
+		{
+			documentObject.writeInt( -1 );
+			return;
+		}
+		documentObject.writeInt( values.length );
+		for ( int i = 0; i < values.length; i++ )
+		{
+			documentObject.writeString( values[i] );
+		}
+	}
+
+	/**
+	 *
+	 * @param documentObject
+	 * @return
+	 * @throws IOException
+	 */
+	private static String[] readStrings( IDocumentObject documentObject )
+			throws IOException
+	{
+		int length = documentObject.readInt( );
+		if ( length < 0 )
+		{
+			return null;
+		}
+		String[] values = new String[length];
+		for ( int i = 0; i < length; i++ )
+		{
+			values[i] = documentObject.readString( );
+		}
+		return values;
+	}
+}
@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.impl.aggregation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.birt.data.engine.api.CloseListenerManager;
+import org.eclipse.birt.data.engine.api.DataEngine;
+import org.eclipse.birt.data.engine.api.DataEngineThreadLocal;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.core.security.TempPathManager;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+
+/**
+ * Runs the aggregation tasks of the cube queries on a pool of threads shared
+ * by all the sessions. The tasks use the temp path and the close listeners of
+ * the thread submitting them, so the temporary files they create are placed
+ * and released as if the tasks ran on that thread.
+ */
+class ParallelAggregationUtil
+{
+
+	private static volatile ThreadPoolExecutor executor;
+
+	/**
+	 * No instance
+	 */
+	private ParallelAggregationUtil( )
+	{
+	}
+
+	/**
+	 * The parallel aggregation is off unless the system property gives more
+	 * than one thread. The property is read for each query, so it can be
+	 * changed at runtime.
+	 * 
+	 * @return how many threads aggregate the fact rows
+	 */
+	static int getParallelism( )
+	{
+		String value = System.getProperty( DataEngine.CUBE_AGGREGATION_PARALLELISM );
+		if ( value != null )
+		{
+			try
+			{
+				int result = Integer.parseInt( value.trim( ) );
+				if ( result > 0 )
+				{
+					return result;
+				}
+			}
+			catch ( NumberFormatException e )
+			{
+				// use the default
+			}
+		}
+		return 1;
+	}
+
+	/**
+	 * Runs the tasks on the shared pool and waits for all of them.
+	 *
+	 * @param tasks
+	 * @throws IOException
+	 * @throws DataException
+	 *             the first failure of the tasks
+	 */
+	static void invokeAll( List<Callable<Object>> tasks ) throws IOException,
+			DataException
+	{
+		final TempPathManager pathManager = DataEngineThreadLocal.getInstance( )
+				.getPathManager( );
+		final CloseListenerManager closeListener = DataEngineThreadLocal.getInstance( )
+				.getCloseListener( );
+		List<Callable<Object>> wrappers = new ArrayList<Callable<Object>>( );
+		for ( final Callable<Object> task : tasks )
+		{
+			wrappers.add( new Callable<Object>( ) {
+
+				public Object call( ) throws Exception
+				{
+					DataEngineThreadLocal local = DataEngineThreadLocal.getInstance( );
+					local.setPathManager( pathManager );
+					local.setCloseListener( closeListener );
+					try
+					{
+						return task.call( );
+					}
+					finally
+					{
+						local.removeTempPathManger( );
+						local.removeCloseListener( );
+					}
+				}
+			} );
+		}
+
+		List<Future<Object>> futures;
+		try
+		{
+			futures = getExecutor( getParallelism( ) ).invokeAll( wrappers );
+			for ( int i = 0; i < futures.size( ); i++ )
+			{
+				futures.get( i ).get( );
+			}
+		}
+		catch ( InterruptedException e )
+		{
+			Thread.currentThread( ).interrupt( );
+			throw new DataException( ResourceConstants.CUBE_AGGREGATION_INTERRUPTED,
+					e );
+		}
+		catch ( ExecutionException e )
+		{
+			Throwable cause = e.getCause( );
+			if ( cause instanceof DataException )
+			{
+				throw (DataException) cause;
+			}
+			if ( cause instanceof IOException )
+			{
+				throw (IOException) cause;
+			}
+			if ( cause instanceof RuntimeException )
+			{
+				throw (RuntimeException) cause;
+			}
+			if ( cause instanceof Error )
+			{
+				throw (Error) cause;
+			}
+			throw new DataException( ResourceConstants.CUBE_AGGREGATION_ERROR,
+					cause );
+		}
+	}
+
+	private static ExecutorService getExecutor( int parallelism )
+	{
+		if ( executor == null )
+		{
+			synchronized ( ParallelAggregationUtil.class )
+			{
+				if ( executor == null )
+				{
+					executor = new ThreadPoolExecutor( parallelism,
+							parallelism,
+							0L,
+							TimeUnit.MILLISECONDS,
+							new LinkedBlockingQueue<Runnable>( ),
+							new ThreadFactory( ) {
+
+								private final AtomicInteger count = new AtomicInteger( );
+
+								public Thread newThread( Runnable r )
+								{
+									Thread thread = new Thread( r,
+											"BIRT cube aggregation " //$NON-NLS-1$
+													+ count.incrementAndGet( ) );
+									thread.setDaemon( true );
+									return thread;
+								}
+							} );
+				}
+			}
+		}
+		synchronized ( ParallelAggregationUtil.class )
+		{
+			// follow the changes of the system property
+			if ( parallelism > executor.getMaximumPoolSize( ) )
+			{
+				executor.setMaximumPoolSize( parallelism );
+				executor.setCorePoolSize( parallelism );
+			}
+			else if ( parallelism < executor.getMaximumPoolSize( ) )
+			{
+				executor.setCorePoolSize( parallelism );
+				executor.setMaximumPoolSize( parallelism );
+			}
+		}
+		return executor;
+	}
+}
@@ -42,6 +42,8 @@ public class DimensionResultIterator implements IDimensionResultIterator
 	private ILevel[] levels;
 	private static Logger logger = Logger.getLogger( DimensionResultIterator.class.getName( ) );
 	private int[] memoryDimensionPosition;
+	//the rows are owned by the iterator this one is copied from
+	private boolean isCopy;
 	
 	public DimensionResultIterator( Dimension dimension,
 			IDiskArray dimensionPosition, StopSign stopSign )
@@ -61,6 +63,36 @@ public class DimensionResultIterator implements IDimensionResultIterator
 				"DimensionResultIterator" );
 	}
 	
+	/**
+	 * 
+	 * @param iterator
+	 */
+	private DimensionResultIterator( DimensionResultIterator iterator )
+	{
+		this.dimension = iterator.dimension;
+		this.dimensionPosition = iterator.dimensionPosition;
+		this.dimensionRows = iterator.dimensionRows;
+		this.levels = iterator.levels;
+		this.memoryDimensionPosition = iterator.memoryDimensionPosition;
+		this.currentPosition = 0;
+		this.isCopy = true;
+	}
+	
+	/**
+	 * Returns an iterator on the same rows with its own current position. The
+	 * rows are read into memory before, and are only read by the copies, so
+	 * the copies can be used on different threads. Closing a copy releases
+	 * nothing, the rows are released by closing this iterator.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public DimensionResultIterator copy( ) throws IOException
+	{
+		initDimensionRows( );
+		return new DimensionResultIterator( this );
+	}
+	
 	private void initDimensionRows( ) throws IOException
 	{
 		if( dimensionRows == null )
@@ -87,6 +119,8 @@ public class DimensionResultIterator implements IDimensionResultIterator
 	 */
 	public void close( ) throws BirtException, IOException
 	{
+		if( isCopy )
+			return;
 		if( dimensionPosition != null )
 			dimensionPosition.close( );
 		if( dimensionRows != null )
@@ -121,7 +155,7 @@ public class DimensionResultIterator implements IDimensionResultIterator
 			throws BirtException, IOException
 	{
 		initDimensionRows( );
-		return ((Integer)(dimensionPosition.get( currentPosition ))).intValue();
+		return memoryDimensionPosition[currentPosition];
 	}
 
 	/*
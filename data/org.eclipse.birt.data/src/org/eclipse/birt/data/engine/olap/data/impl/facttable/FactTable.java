@@ -11,6 +11,7 @@
  *******************************************************************************/
 package org.eclipse.birt.data.engine.olap.data.impl.facttable;
 
+import java.io.IOException;
 import java.util.logging.Logger;
 
 import org.eclipse.birt.data.engine.olap.data.api.MeasureInfo;
@@ -32,6 +33,8 @@ public class FactTable
 	
 	private IDocumentManager documentManager;
 	private CombinedPositionContructor combinedPositionCalculator;
+	private FactTablePositionIndex positionIndex;
+	private boolean positionIndexLoaded = false;
 	private static Logger logger = Logger.getLogger( FactTable.class.getName( ) );
 	
 	/**
@@ -202,5 +205,23 @@ public class FactTable
 	{
 		return name;
 	}
+	
+	/**
+	 * 
+	 * @return the index of the dimension positions of the segments, null if
+	 *         the fact table was saved without it
+	 * @throws IOException
+	 */
+	synchronized FactTablePositionIndex getPositionIndex( ) throws IOException
+	{
+		if ( !positionIndexLoaded )
+		{
+			positionIndex = FactTablePositionIndex.load( documentManager,
+					name,
+					dimensionDivision );
+			positionIndexLoaded = true;
+		}
+		return positionIndex;
+	}
 
 }
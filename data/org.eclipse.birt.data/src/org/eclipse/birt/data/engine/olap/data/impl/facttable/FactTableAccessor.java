@@ -133,6 +133,7 @@ public class FactTableAccessor
 		CombinedPositionContructor combinedPositionCalculator = new CombinedPositionContructor( subDimensions );
 		
 		FTSUNameSaveHelper saveHelper = new FTSUNameSaveHelper( documentManager, factTableName );
+		FactTablePositionIndex positionIndex = new FactTablePositionIndex( subDimensions );
 		FactTableRow currentRow = sortedFactTableRows.pop( );
 		boolean invalidDimensionKey = false;
 		int invalidRowNumber = 0;
@@ -165,7 +166,8 @@ public class FactTableAccessor
 			String FTSUDocName = FTSUDocumentObjectNamingUtil.getDocumentObjectName( 
 					NamingUtil.getFactTableName( factTableName ),
 					subDimensionIndex );
-			saveHelper.add( FTSUDocName );
+			saveHelper.add( FTSUDocName, subDimensionIndex );
+			positionIndex.add( FTSUDocName, subDimensionIndex, dimensionPosition );
 			
 			IDocumentObject documentObject = documentObjectManager.getIDocumentObject( FTSUDocName );
 			documentObject.writeBytes( new Bytes( combinedPositionCalculator.
@@ -179,6 +181,7 @@ public class FactTableAccessor
 			currentRow = sortedFactTableRows.pop( );
 		}
 		saveHelper.save( );
+		positionIndex.save( documentManager, factTableName );
 		if( invalidRowNumber > 0 )
 		{
 			logger.warning("The fact table of cube "
@@ -187,6 +190,16 @@ public class FactTableAccessor
 				+ "invalid rows where the value of dimension key does not exist in dimension.");
 		}
 		documentObjectManager.closeAll( );
+		Iterator segmentIterator = saveHelper.getSegments( ).entrySet( ).iterator( );
+		while ( segmentIterator.hasNext( ) && !stopSign.isStopped( ) )
+		{
+			Entry segment = (Entry) segmentIterator.next( );
+			FactTableMeasureColumns.save( documentManager,
+					(String) segment.getKey( ),
+					(int[]) segment.getValue( ),
+					combinedPositionCalculator,
+					measureInfo );
+		}
 		documentManager.flush( );
 		return new FactTable( factTableName,
 				documentManager,
@@ -839,15 +852,25 @@ class FTSUNameSaveHelper
 	/**
 	 * 
 	 * @param name
+	 * @param subDimensionIndex
 	 */
-	void add( String name )
+	void add( String name, int[] subDimensionIndex )
 	{
 		if ( !map.containsKey( name ) )
 		{
-			map.put( name, null );
+			map.put( name, subDimensionIndex.clone( ) );
 		}
 	}
 	
+	/**
+	 * 
+	 * @return <segment name, sub dimension indexes>
+	 */
+	Map getSegments( )
+	{
+		return map;
+	}
+	
 	/**
 	 * 
 	 * @throws IOException
@@ -0,0 +1,695 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.impl.facttable;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.eclipse.birt.data.engine.olap.data.api.MeasureInfo;
+import org.eclipse.birt.data.engine.olap.data.document.DocumentObjectUtil;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
+import org.eclipse.birt.data.engine.olap.data.impl.NamingUtil;
+import org.eclipse.birt.data.engine.olap.data.impl.facttable.DimensionDivider.CombinedPositionContructor;
+import org.eclipse.birt.data.engine.olap.data.util.Bytes;
+import org.eclipse.birt.data.engine.olap.data.util.DataType;
+
+/**
+ * The columns of a segment of a fact table: the dimension positions of its
+ * rows, and one primitive column for each double or integer measure. The
+ * rows are divided into blocks, and the min and max of every column are kept
+ * for each block, so a reader skips the blocks without any row at its
+ * selected positions, and the blocks of a measure which are null or constant
+ * keep no values.
+ *
+ * The columns are saved in their own document object next to the one of the
+ * segment. The fact tables created before them have no columns and are read
+ * from the rows of the segments, and the older readers don't open the
+ * object.
+ */
+class FactTableMeasureColumns
+{
+
+	static final int BLOCK_SIZE = 256;
+
+	// the ways a block of a measure column is saved
+	private static final byte NULL_BLOCK = 0;
+	private static final byte CONSTANT_BLOCK = 1;
+	private static final byte FULL_BLOCK = 2;
+	private static final byte SPARSE_BLOCK = 3;
+
+	private int rowCount;
+
+	// [dimension][row]
+	private int[][] positions;
+
+	// [dimension][block]
+	private int[][] minPositions;
+	private int[][] maxPositions;
+
+	// [measure][row], null if the measure isn't read
+	private double[][] doubleValues;
+	private int[][] intValues;
+	private BitSet[] nullValues;
+
+	private FactTableMeasureColumns( int rowCount, int dimensionCount,
+			int measureCount )
+	{
+		this.rowCount = rowCount;
+		this.positions = new int[dimensionCount][];
+		this.minPositions = new int[dimensionCount][];
+		this.maxPositions = new int[dimensionCount][];
+		this.doubleValues = new double[measureCount][];
+		this.intValues = new int[measureCount][];
+		this.nullValues = new BitSet[measureCount];
+	}
+
+	/**
+	 *
+	 * @param measureInfo
+	 * @return the size of the values of a measure column, 0 if the measure
+	 *         has no column
+	 */
+	static int getColumnSize( MeasureInfo measureInfo )
+	{
+		if ( measureInfo.getDataType( ) == DataType.DOUBLE_TYPE )
+		{
+			return 8;
+		}
+		if ( measureInfo.getDataType( ) == DataType.INTEGER_TYPE )
+		{
+			return 4;
+		}
+		return 0;
+	}
+
+	/**
+	 * Reads the rows of a saved segment and saves its columns.
+	 *
+	 * @param documentManager
+	 * @param segmentName
+	 * @param subDimensionIndex
+	 * @param combinedPositionCalculator
+	 * @param measureInfo
+	 * @throws IOException
+	 */
+	static void save( IDocumentManager documentManager, String segmentName,
+			int[] subDimensionIndex,
+			CombinedPositionContructor combinedPositionCalculator,
+			MeasureInfo[] measureInfo ) throws IOException
+	{
+		int[] columnSize = new int[measureInfo.length];
+		for ( int i = 0; i < measureInfo.length; i++ )
+		{
+			columnSize[i] = getColumnSize( measureInfo[i] );
+		}
+		FactTableMeasureColumns columns = new FactTableMeasureColumns( 0,
+				subDimensionIndex.length,
+				measureInfo.length );
+		int capacity = BLOCK_SIZE;
+		for ( int i = 0; i < columns.positions.length; i++ )
+		{
+			columns.positions[i] = new int[capacity];
+		}
+		for ( int i = 0; i < measureInfo.length; i++ )
+		{
+			if ( columnSize[i] == 8 )
+			{
+				columns.doubleValues[i] = new double[capacity];
+			}
+			else if ( columnSize[i] == 4 )
+			{
+				columns.intValues[i] = new int[capacity];
+			}
+			columns.nullValues[i] = new BitSet( );
+		}
+
+		IDocumentObject segment = documentManager.openDocumentObject( segmentName );
+		try
+		{
+			long length = segment.length( );
+			while ( segment.getFilePointer( ) < length )
+			{
+				int row = columns.rowCount++;
+				if ( row == capacity )
+				{
+					capacity *= 2;
+					columns.grow( capacity );
+				}
+				Bytes combinedPosition = segment.readBytes( );
+				int[] position = combinedPositionCalculator.calculateDimensionPosition( subDimensionIndex,
+						combinedPosition.bytesValue( ) );
+				for ( int i = 0; i < position.length; i++ )
+				{
+					columns.positions[i][row] = position[i];
+				}
+				for ( int i = 0; i < measureInfo.length; i++ )
+				{
+					if ( columnSize[i] == 0 )
+					{
+						DocumentObjectUtil.readValue( segment,
+								measureInfo[i].getDataType( ) );
+					}
+					else if ( segment.readByte( ) == 0 )
+					{
+						columns.nullValues[i].set( row );
+					}
+					else if ( columnSize[i] == 8 )
+					{
+						columns.doubleValues[i][row] = segment.readDouble( );
+					}
+					else
+					{
+						columns.intValues[i][row] = segment.readInt( );
+					}
+				}
+			}
+		}
+		finally
+		{
+			segment.close( );
+		}
+
+		IDocumentObject documentObject = documentManager.createDocumentObject( NamingUtil.getFTSUMeasureColumnsName( segmentName ) );
+		try
+		{
+			columns.save( documentObject, columnSize );
+		}
+		finally
+		{
+			documentObject.close( );
+		}
+	}
+
+	/**
+	 * Loads the dimension positions and the columns of the given measures.
+	 *
+	 * @param documentManager
+	 * @param segmentName
+	 * @param dimensionCount
+	 * @param measures
+	 *            the measures to read
+	 * @return null if the segment has no columns, or if one of the given
+	 *         measures has no column
+	 * @throws IOException
+	 */
+	static FactTableMeasureColumns load( IDocumentManager documentManager,
+			String segmentName, int dimensionCount, boolean[] measures )
+			throws IOException
+	{
+		String name = NamingUtil.getFTSUMeasureColumnsName( segmentName );
+		if ( !documentManager.exist( name ) )
+		{
+			return null;
+		}
+		IDocumentObject documentObject = documentManager.openDocumentObject( name );
+		try
+		{
+			int rowCount = documentObject.readInt( );
+			if ( documentObject.readInt( ) != dimensionCount )
+			{
+				return null;
+			}
+			int blockCount = getBlockCount( rowCount );
+			FactTableMeasureColumns columns = new FactTableMeasureColumns( rowCount,
+					dimensionCount,
+					measures.length );
+			for ( int i = 0; i < dimensionCount; i++ )
+			{
+				columns.minPositions[i] = new int[blockCount];
+				columns.maxPositions[i] = new int[blockCount];
+				for ( int j = 0; j < blockCount; j++ )
+				{
+					columns.minPositions[i][j] = documentObject.readInt( );
+					columns.maxPositions[i][j] = documentObject.readInt( );
+				}
+				columns.positions[i] = new int[rowCount];
+				for ( int j = 0; j < rowCount; j++ )
+				{
+					columns.positions[i][j] = documentObject.readInt( );
+				}
+			}
+			int measureCount = documentObject.readInt( );
+			int[] columnSize = new int[measureCount];
+			int[] columnLength = new int[measureCount];
+			for ( int i = 0; i < measureCount; i++ )
+			{
+				columnSize[i] = documentObject.readByte( );
+				columnLength[i] = documentObject.readInt( );
+			}
+			long offset = documentObject.getFilePointer( );
+			for ( int i = 0; i < measures.length; i++ )
+			{
+				if ( !measures[i] )
+				{
+					continue;
+				}
+				if ( i >= measureCount || columnSize[i] == 0 )
+				{
+					return null;
+				}
+				long columnOffset = offset;
+				for ( int j = 0; j < i; j++ )
+				{
+					columnOffset += columnLength[j];
+				}
+				documentObject.seek( columnOffset );
+				columns.readColumn( documentObject, i, columnSize[i] );
+			}
+			return columns;
+		}
+		finally
+		{
+			documentObject.close( );
+		}
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	int getRowCount( )
+	{
+		return rowCount;
+	}
+
+	/**
+	 *
+	 * @param dimensionIndex
+	 * @param row
+	 * @return
+	 */
+	int getPosition( int dimensionIndex, int row )
+	{
+		return positions[dimensionIndex][row];
+	}
+
+	/**
+	 *
+	 * @param dimensionIndex
+	 * @param block
+	 * @return the min position of the rows of the block
+	 */
+	int getMinPosition( int dimensionIndex, int block )
+	{
+		return minPositions[dimensionIndex][block];
+	}
+
+	/**
+	 *
+	 * @param dimensionIndex
+	 * @param block
+	 * @return the max position of the rows of the block
+	 */
+	int getMaxPosition( int dimensionIndex, int block )
+	{
+		return maxPositions[dimensionIndex][block];
+	}
+
+	/**
+	 *
+	 * @param row
+	 * @return whether the row is at the same positions as the row before it
+	 */
+	boolean isDuplicatedRow( int row )
+	{
+		if ( row == 0 )
+		{
+			return false;
+		}
+		for ( int i = 0; i < positions.length; i++ )
+		{
+			if ( positions[i][row] != positions[i][row - 1] )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 *
+	 * @param measureIndex
+	 * @param row
+	 * @return
+	 */
+	boolean isNull( int measureIndex, int row )
+	{
+		return nullValues[measureIndex].get( row );
+	}
+
+	/**
+	 *
+	 * @param measureIndex
+	 * @param row
+	 * @return
+	 */
+	double getDouble( int measureIndex, int row )
+	{
+		return doubleValues[measureIndex][row];
+	}
+
+	/**
+	 *
+	 * @param measureIndex
+	 * @param row
+	 * @return
+	 */
+	int getInt( int measureIndex, int row )
+	{
+		return intValues[measureIndex][row];
+	}
+
+	/**
+	 *
+	 * @param rowCount
+	 * @return
+	 */
+	private static int getBlockCount( int rowCount )
+	{
+		return ( rowCount + BLOCK_SIZE - 1 ) / BLOCK_SIZE;
+	}
+
+	/**
+	 *
+	 * @param capacity
+	 */
+	private void grow( int capacity )
+	{
+		for ( int i = 0; i < positions.length; i++ )
+		{
+			positions[i] = Arrays.copyOf( positions[i], capacity );
+		}
+		for ( int i = 0; i < nullValues.length; i++ )
+		{
+			if ( doubleValues[i] != null )
+			{
+				doubleValues[i] = Arrays.copyOf( doubleValues[i], capacity );
+			}
+			if ( intValues[i] != null )
+			{
+				intValues[i] = Arrays.copyOf( intValues[i], capacity );
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param documentObject
+	 * @param columnSize
+	 * @throws IOException
+	 */
+	private void save( IDocumentObject documentObject, int[] columnSize )
+			throws IOException
+	{
+		int blockCount = getBlockCount( rowCount );
+		documentObject.writeInt( rowCount );
+		documentObject.writeInt( positions.length );
+		for ( int i = 0; i < positions.length; i++ )
+		{
+			for ( int j = 0; j < blockCount; j++ )
+			{
+				int min = Integer.MAX_VALUE;
+				int max = Integer.MIN_VALUE;
+				for ( int k = j * BLOCK_SIZE; k < getBlockEnd( j ); k++ )
+				{
+					min = Math.min( min, positions[i][k] );
+					max = Math.max( max, positions[i][k] );
+				}
+				documentObject.writeInt( min );
+				documentObject.writeInt( max );
+			}
+			for ( int j = 0; j < rowCount; j++ )
+			{
+				documentObject.writeInt( positions[i][j] );
+			}
+		}
+
+		byte[][] blockTypes = new byte[columnSize.length][blockCount];
+		documentObject.writeInt( columnSize.length );
+		for ( int i = 0; i < columnSize.length; i++ )
+		{
+			int length = 0;
+			if ( columnSize[i] > 0 )
+			{
+				for ( int j = 0; j < blockCount; j++ )
+				{
+					blockTypes[i][j] = getBlockType( i, j );
+					length += getBlockLength( i,
+							blockTypes[i][j],
+							columnSize[i],
+							j );
+				}
+			}
+			documentObject.writeByte( columnSize[i] );
+			documentObject.writeInt( length );
+		}
+		for ( int i = 0; i < columnSize.length; i++ )
+		{
+			if ( columnSize[i] == 0 )
+			{
+				continue;
+			}
+			for ( int j = 0; j < blockCount; j++ )
+			{
+				writeBlock( documentObject, i, j, blockTypes[i][j] );
+			}
+		}
+	}
+
+	/**
+	 *
+	 * @param block
+	 * @return the end of the rows of the block, exclusive
+	 */
+	private int getBlockEnd( int block )
+	{
+		return Math.min( ( block + 1 ) * BLOCK_SIZE, rowCount );
+	}
+
+	/**
+	 *
+	 * @param measureIndex
+	 * @param block
+	 * @return
+	 */
+	private byte getBlockType( int measureIndex, int block )
+	{
+		int start = block * BLOCK_SIZE;
+		int end = getBlockEnd( block );
+		BitSet nulls = nullValues[measureIndex];
+		int nextNull = nulls.nextSetBit( start );
+		if ( nextNull >= 0 && nextNull < end )
+		{
+			int nextValue = nulls.nextClearBit( start );
+			return nextValue < end ? SPARSE_BLOCK : NULL_BLOCK;
+		}
+		for ( int i = start + 1; i < end; i++ )
+		{
+			if ( doubleValues[measureIndex] != null
+					? Double.doubleToLongBits( doubleValues[measureIndex][i] ) != Double.doubleToLongBits( doubleValues[measureIndex][start] )
+					: intValues[measureIndex][i] != intValues[measureIndex][start] )
+			{
+				return FULL_BLOCK;
+			}
+		}
+		return CONSTANT_BLOCK;
+	}
+
+	/**
+	 *
+	 * @param measureIndex
+	 * @param blockType
+	 * @param columnSize
+	 * @param block
+	 * @return the length of the block in the document object
+	 */
+	private int getBlockLength( int measureIndex, byte blockType,
+			int columnSize, int block )
+	{
+		int start = block * BLOCK_SIZE;
+		int end = getBlockEnd( block );
+		switch ( blockType )
+		{
+			case NULL_BLOCK :
+				return 1;
+			case CONSTANT_BLOCK :
+				return 1 + 2 * columnSize;
+			case FULL_BLOCK :
+				return 1 + 2 * columnSize + ( end - start ) * columnSize;
+			default :
+				int nullCount = nullValues[measureIndex].get( start, end )
+						.cardinality( );
+				return 1
+						+ 2 * columnSize + ( end - start )
+						+ ( end - start - nullCount ) * columnSize;
+		}
+	}
+
+	/**
+	 * Writes the type of the block, the min and the max of its values, and
+	 * then its values unless it's null or constant.
+	 *
+	 * @param documentObject
+	 * @param measureIndex
+	 * @param block
+	 * @param blockType
+	 * @throws IOException
+	 */
+	private void writeBlock( IDocumentObject documentObject, int measureIndex,
+			int block, byte blockType ) throws IOException
+	{
+		documentObject.writeByte( blockType );
+		if ( blockType == NULL_BLOCK )
+		{
+			return;
+		}
+		int start = block * BLOCK_SIZE;
+		int end = getBlockEnd( block );
+		BitSet nulls = nullValues[measureIndex];
+		double[] doubles = doubleValues[measureIndex];
+		int[] ints = intValues[measureIndex];
+		int first = nulls.nextClearBit( start );
+		if ( doubles != null )
+		{
+			double min = doubles[first];
+			double max = doubles[first];
+			for ( int i = first + 1; i < end; i++ )
+			{
+				if ( !nulls.get( i ) )
+				{
+					min = doubles[i] < min ? doubles[i] : min;
+					max = doubles[i] > max ? doubles[i] : max;
+				}
+			}
+			documentObject.writeDouble( min );
+			documentObject.writeDouble( max );
+		}
+		else
+		{
+			int min = ints[first];
+			int max = ints[first];
+			for ( int i = first + 1; i < end; i++ )
+			{
+				if ( !nulls.get( i ) )
+				{
+					min = Math.min( min, ints[i] );
+					max = Math.max( max, ints[i] );
+				}
+			}
+			documentObject.writeInt( min );
+			documentObject.writeInt( max );
+		}
+		if ( blockType == CONSTANT_BLOCK )
+		{
+			return;
+		}
+		for ( int i = start; i < end; i++ )
+		{
+			if ( blockType == SPARSE_BLOCK )
+			{
+				if ( nulls.get( i ) )
+				{
+					documentObject.writeByte( 0 );
+					continue;
+				}
+				documentObject.writeByte( 1 );
+			}
+			if ( doubles != null )
+			{
+				documentObject.writeDouble( doubles[i] );
+			}
+			else
+			{
+				documentObject.writeInt( ints[i] );
+			}
+		}
+	}
+
+	/**
+	 * Reads the column of a measure, the null and constant blocks are filled
+	 * from their type and their min.
+	 *
+	 * @param documentObject
+	 * @param measureIndex
+	 * @param columnSize
+	 * @throws IOException
+	 */
+	private void readColumn( IDocumentObject documentObject, int measureIndex,
+			int columnSize ) throws IOException
+	{
+		BitSet nulls = new BitSet( rowCount );
+		double[] doubles = null;
+		int[] ints = null;
+		if ( columnSize == 8 )
+		{
+			doubles = new double[rowCount];
+		}
+		else
+		{
+			ints = new int[rowCount];
+		}
+		int blockCount = getBlockCount( rowCount );
+		for ( int i = 0; i < blockCount; i++ )
+		{
+			int start = i * BLOCK_SIZE;
+			int end = getBlockEnd( i );
+			byte blockType = documentObject.readByte( );
+			if ( blockType == NULL_BLOCK )
+			{
+				nulls.set( start, end );
+				continue;
+			}
+			if ( doubles != null )
+			{
+				double min = documentObject.readDouble( );
+				documentObject.readDouble( );
+				if ( blockType == CONSTANT_BLOCK )
+				{
+					Arrays.fill( doubles, start, end, min );
+					continue;
+				}
+			}
+			else
+			{
+				int min = documentObject.readInt( );
+				documentObject.readInt( );
+				if ( blockType == CONSTANT_BLOCK )
+				{
+					Arrays.fill( ints, start, end, min );
+					continue;
+				}
+			}
+			for ( int j = start; j < end; j++ )
+			{
+				if ( blockType == SPARSE_BLOCK
+						&& documentObject.readByte( ) == 0 )
+				{
+					nulls.set( j );
+					continue;
+				}
+				if ( doubles != null )
+				{
+					doubles[j] = documentObject.readDouble( );
+				}
+				else
+				{
+					ints[j] = documentObject.readInt( );
+				}
+			}
+		}
+		nullValues[measureIndex] = nulls;
+		doubleValues[measureIndex] = doubles;
+		intValues[measureIndex] = ints;
+	}
+}
@@ -0,0 +1,255 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.impl.facttable;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
+import org.eclipse.birt.data.engine.olap.data.document.IDocumentObject;
+import org.eclipse.birt.data.engine.olap.data.impl.NamingUtil;
+
+/**
+ * The index of the dimension positions used by the segments of a fact table.
+ * For every segment and dimension it keeps the bitmap of the positions of the
+ * segment rows, indexed by the offset to the start of the sub dimension, so
+ * a query can skip the segments without any row at its selected positions.
+ *
+ * The index is saved in its own document object. The fact tables created
+ * before it have no index and are scanned as before, and the older readers
+ * don't open the object.
+ */
+class FactTablePositionIndex
+{
+
+	private DimensionDivision[] dimensionDivision;
+
+	// <segment name, sub dimension indexes>, in the saved order
+	private Map<String, int[]> subDimensionIndexes;
+
+	// <segment name, positions of each dimension>, only used to save the index
+	private Map<String, BitSet[]> positions;
+
+	// <segment name, offset of the bitmaps in the document object>
+	private Map<String, Long> offsets;
+
+	/**
+	 *
+	 * @param dimensionDivision
+	 */
+	FactTablePositionIndex( DimensionDivision[] dimensionDivision )
+	{
+		this.dimensionDivision = dimensionDivision;
+		this.subDimensionIndexes = new LinkedHashMap<String, int[]>( );
+		this.positions = new HashMap<String, BitSet[]>( );
+	}
+
+	/**
+	 * Adds the position of a row saved in the segment.
+	 *
+	 * @param segmentName
+	 * @param subDimensionIndex
+	 * @param dimensionPosition
+	 */
+	void add( String segmentName, int[] subDimensionIndex,
+			int[] dimensionPosition )
+	{
+		BitSet[] segmentPositions = positions.get( segmentName );
+		if ( segmentPositions == null )
+		{
+			segmentPositions = new BitSet[dimensionDivision.length];
+			for ( int i = 0; i < segmentPositions.length; i++ )
+			{
+				segmentPositions[i] = new BitSet( getRangeSize( i,
+						subDimensionIndex[i] ) );
+			}
+			subDimensionIndexes.put( segmentName,
+					(int[]) subDimensionIndex.clone( ) );
+			positions.put( segmentName, segmentPositions );
+		}
+		for ( int i = 0; i < segmentPositions.length; i++ )
+		{
+			segmentPositions[i].set( dimensionPosition[i]
+					- dimensionDivision[i].getRanges( )[subDimensionIndex[i]].start );
+		}
+	}
+
+	/**
+	 *
+	 * @param documentManager
+	 * @param factTableName
+	 * @throws IOException
+	 */
+	void save( IDocumentManager documentManager, String factTableName )
+			throws IOException
+	{
+		IDocumentObject documentObject = documentManager.createDocumentObject( NamingUtil.getFTSUIndexName( factTableName ) );
+		documentObject.writeInt( subDimensionIndexes.size( ) );
+		Iterator<Entry<String, int[]>> itr = subDimensionIndexes.entrySet( )
+				.iterator( );
+		while ( itr.hasNext( ) )
+		{
+			Entry<String, int[]> entry = itr.next( );
+			documentObject.writeString( entry.getKey( ) );
+			for ( int i = 0; i < entry.getValue( ).length; i++ )
+			{
+				documentObject.writeInt( entry.getValue( )[i] );
+			}
+		}
+		itr = subDimensionIndexes.entrySet( ).iterator( );
+		while ( itr.hasNext( ) )
+		{
+			Entry<String, int[]> entry = itr.next( );
+			BitSet[] segmentPositions = positions.get( entry.getKey( ) );
+			for ( int i = 0; i < segmentPositions.length; i++ )
+			{
+				int[] words = new int[getWordCount( i, entry.getValue( )[i] )];
+				for ( int j = segmentPositions[i].nextSetBit( 0 ); j >= 0; j = segmentPositions[i].nextSetBit( j + 1 ) )
+				{
+					words[j >>> 5] |= 1 << ( j & 31 );
+				}
+				for ( int j = 0; j < words.length; j++ )
+				{
+					documentObject.writeInt( words[j] );
+				}
+			}
+		}
+		documentObject.close( );
+		positions = null;
+	}
+
+	/**
+	 * Loads the segment names of the index, the bitmaps are read when they
+	 * are asked for.
+	 *
+	 * @param documentManager
+	 * @param factTableName
+	 * @param dimensionDivision
+	 * @return null if the fact table has no index
+	 * @throws IOException
+	 */
+	static FactTablePositionIndex load( IDocumentManager documentManager,
+			String factTableName, DimensionDivision[] dimensionDivision )
+			throws IOException
+	{
+		String name = NamingUtil.getFTSUIndexName( factTableName );
+		if ( !documentManager.exist( name ) )
+		{
+			return null;
+		}
+		FactTablePositionIndex index = new FactTablePositionIndex( dimensionDivision );
+		index.offsets = new HashMap<String, Long>( );
+		IDocumentObject documentObject = documentManager.openDocumentObject( name );
+		try
+		{
+			int segmentCount = documentObject.readInt( );
+			String[] segmentNames = new String[segmentCount];
+			for ( int i = 0; i < segmentCount; i++ )
+			{
+				segmentNames[i] = documentObject.readString( );
+				int[] subDimensionIndex = new int[dimensionDivision.length];
+				for ( int j = 0; j < subDimensionIndex.length; j++ )
+				{
+					subDimensionIndex[j] = documentObject.readInt( );
+				}
+				index.subDimensionIndexes.put( segmentNames[i],
+						subDimensionIndex );
+			}
+			long offset = documentObject.getFilePointer( );
+			for ( int i = 0; i < segmentCount; i++ )
+			{
+				index.offsets.put( segmentNames[i], Long.valueOf( offset ) );
+				int[] subDimensionIndex = index.subDimensionIndexes.get( segmentNames[i] );
+				for ( int j = 0; j < subDimensionIndex.length; j++ )
+				{
+					offset += 4L * index.getWordCount( j, subDimensionIndex[j] );
+				}
+			}
+		}
+		finally
+		{
+			documentObject.close( );
+		}
+		index.positions = null;
+		return index;
+	}
+
+	/**
+	 * Opens the document object of the index, each reader of the positions
+	 * uses its own.
+	 *
+	 * @param documentManager
+	 * @param factTableName
+	 * @return
+	 * @throws IOException
+	 */
+	static IDocumentObject open( IDocumentManager documentManager,
+			String factTableName ) throws IOException
+	{
+		return documentManager.openDocumentObject( NamingUtil.getFTSUIndexName( factTableName ) );
+	}
+
+	/**
+	 * Reads the positions of the rows of a segment.
+	 *
+	 * @param documentObject
+	 *            the document object of the index
+	 * @param segmentName
+	 * @return the positions of each dimension, null if the segment isn't
+	 *         indexed
+	 * @throws IOException
+	 */
+	BitSet[] getPositions( IDocumentObject documentObject, String segmentName )
+			throws IOException
+	{
+		Long offset = offsets.get( segmentName );
+		if ( offset == null )
+		{
+			return null;
+		}
+		int[] subDimensionIndex = subDimensionIndexes.get( segmentName );
+		documentObject.seek( offset.longValue( ) );
+		BitSet[] result = new BitSet[subDimensionIndex.length];
+		for ( int i = 0; i < result.length; i++ )
+		{
+			result[i] = new BitSet( getRangeSize( i, subDimensionIndex[i] ) );
+			int wordCount = getWordCount( i, subDimensionIndex[i] );
+			for ( int j = 0; j < wordCount; j++ )
+			{
+				int word = documentObject.readInt( );
+				while ( word != 0 )
+				{
+					int bit = Integer.numberOfTrailingZeros( word );
+					result[i].set( j * 32 + bit );
+					word &= word - 1;
+				}
+			}
+		}
+		return result;
+	}
+
+	private int getRangeSize( int dimIndex, int subDimensionIndex )
+	{
+		DimensionDivision.IntRange range = dimensionDivision[dimIndex].getRanges( )[subDimensionIndex];
+		return range.end - range.start + 1;
+	}
+
+	private int getWordCount( int dimIndex, int subDimensionIndex )
+	{
+		return ( getRangeSize( dimIndex, subDimensionIndex ) + 31 ) / 32;
+	}
+}
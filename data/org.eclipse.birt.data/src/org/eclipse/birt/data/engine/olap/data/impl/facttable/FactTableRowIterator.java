@@ -14,7 +14,7 @@ package org.eclipse.birt.data.engine.olap.data.impl.facttable;
 import java.io.EOFException;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -57,15 +57,33 @@ public class FactTableRowIterator implements IFactTableRowIterator
 	private List[] selectedSubDim = null;
 
 	private IDocumentObject currentSegment;
+	private String currentSegmentName;
+	//the columns of the current segment, read instead of its rows if they
+	//have all the used measures
+	private FactTableMeasureColumns currentColumns;
+	private int currentRow;
+	//the measures got from the rows, null if all of them may be got
+	private boolean[] usedMeasures;
+	private boolean rowRead;
 	private int[] currentPos;
 	private Object[] currentMeasureValues;		//current values for measures
 	private MeasureMap currentMeasureMap;	//<name, value> map for current measures
 	private Object[] currentComputedMeasureValues;	//current values for computed measures
+	//the double and integer measures of the current row are read into these
+	//buffers and only boxed when they are got
+	private double[] doubleMeasureValues;
+	private int[] intMeasureValues;
+	private boolean[] unboxedMeasures;
 
 	private Traversalor traversalor;
 	private StopSign stopSign;
 	
-	private int[][] selectedPosOfCurSegment;
+	//the selected positions of the current segment, null if all are selected
+	private BitSet[] selectedPosOfCurSegment;
+	private int[] startPosOfCurSegment;
+	//the document object of the position index, opened for the first filtered segment
+	private IDocumentObject positionIndexObject;
+	private FactTablePositionIndex positionIndex;
 	
 	private IComputedMeasureHelper computedMeasureHelper;
 
@@ -87,6 +105,11 @@ public class FactTableRowIterator implements IFactTableRowIterator
 	private int[] lastCurrentPos;
 	private boolean lastFilterResult;
 	private boolean isDuplicatedRow;
+	//the segments are dealt to the partitions in turn, and only the ones
+	//of the partition of this iterator are read
+	private int partitionIndex;
+	private int partitionCount;
+	private int segmentOrdinal;
 	
 	/**
 	 * 
@@ -112,6 +135,38 @@ public class FactTableRowIterator implements IFactTableRowIterator
 	 */
 	public FactTableRowIterator( FactTable factTable, String[] dimensionName,
 			IDiskArray[] dimensionPos, IDimension[] allCubeDimensions, IComputedMeasureHelper computedMeasureHelper, StopSign stopSign ) throws IOException
+	{
+		this( factTable,
+				dimensionName,
+				dimensionPos,
+				allCubeDimensions,
+				computedMeasureHelper,
+				0,
+				1,
+				stopSign );
+	}
+	
+	/**
+	 * Creates an iterator on one partition of the segments of the fact table.
+	 * The segments are dealt to the partitions in turn, so that the iterators
+	 * of all the partitions read every row once. The iterators of the
+	 * partitions share no state once created, and can be read on different
+	 * threads.
+	 * 
+	 * @param factTable
+	 * @param dimensionName
+	 * @param dimensionPos
+	 * @param allCubeDimensions
+	 * @param computedMeasureHelper
+	 * @param partitionIndex
+	 * @param partitionCount
+	 * @param stopSign
+	 * @throws IOException
+	 */
+	public FactTableRowIterator( FactTable factTable, String[] dimensionName,
+			IDiskArray[] dimensionPos, IDimension[] allCubeDimensions,
+			IComputedMeasureHelper computedMeasureHelper, int partitionIndex,
+			int partitionCount, StopSign stopSign ) throws IOException
 	{
 		Object[] params = {
 				factTable, dimensionName, dimensionPos, stopSign
@@ -122,7 +177,8 @@ public class FactTableRowIterator implements IFactTableRowIterator
 		this.factTable = factTable;
 		this.selectedPos = dimensionPos;
 		this.selectedSubDim = new List[factTable.getDimensionInfo( ).length];
-		this.selectedPosOfCurSegment = new int[factTable.getDimensionInfo( ).length][];
+		this.selectedPosOfCurSegment = new BitSet[factTable.getDimensionInfo( ).length];
+		this.startPosOfCurSegment = new int[factTable.getDimensionInfo( ).length];
 		this.stopSign = stopSign;
 		this.measureFilters = new ArrayList( );
 		this.cubePosFilters = new ArrayList( );
@@ -130,7 +186,10 @@ public class FactTableRowIterator implements IFactTableRowIterator
 			this.allCubeDimensionResultIterators = new IDimensionResultIterator[allCubeDimensions.length];
 		this.allCubeDimensions = allCubeDimensions;
 		this.computedMeasureHelper = computedMeasureHelper;
+		this.partitionIndex = partitionIndex;
+		this.partitionCount = partitionCount;
 		assert dimensionName.length == dimensionPos.length;
+		assert partitionIndex >= 0 && partitionIndex < partitionCount;
 		
 		for ( int i = 0; i < selectedSubDim.length; i++ )
 		{
@@ -150,8 +209,17 @@ public class FactTableRowIterator implements IFactTableRowIterator
 		caculateMeasuerSize( );
 		
 		filterSubDimension( );
+		if ( partitionCount > 1 )
+		{
+			// the selected positions are shared with the other partitions,
+			// so they are read now instead of on the thread of the partition
+			buildSelectedPositions( );
+		}
 		this.currentPos = new int[factTable.getDimensionInfo( ).length];
 		this.currentMeasureValues = new Object[factTable.getMeasureInfo( ).length];
+		this.doubleMeasureValues = new double[currentMeasureValues.length];
+		this.intMeasureValues = new int[currentMeasureValues.length];
+		this.unboxedMeasures = new boolean[currentMeasureValues.length];
 		this.currentMeasureMap = new MeasureMap( this.factTable.getMeasureInfo( ) );
 		if ( this.computedMeasureHelper != null )
 		{
@@ -221,6 +289,28 @@ public class FactTableRowIterator implements IFactTableRowIterator
 		}
 		traversalor = new Traversalor( selectedSubDimensionCount );
 	}
+	
+	/**
+	 * Builds the bitmaps of the selected positions of all the selected sub
+	 * dimensions.
+	 * 
+	 * @throws IOException
+	 */
+	private void buildSelectedPositions( ) throws IOException
+	{
+		for ( int i = 0; i < selectedSubDim.length; i++ )
+		{
+			if ( dimensionIndex[i] == -1 )
+			{
+				continue;
+			}
+			for ( int j = 0; j < selectedSubDim[i].size( ); j++ )
+			{
+				getSelectedPositions( i,
+						(SelectedSubDimension) selectedSubDim[i].get( j ) );
+			}
+		}
+	}
 
 	/*
 	 * (non-Javadoc)
@@ -228,14 +318,34 @@ public class FactTableRowIterator implements IFactTableRowIterator
 	 */
 	public boolean next( ) throws IOException, DataException
 	{
+		if ( !rowRead )
+		{
+			rowRead = true;
+			if ( currentSegmentName != null )
+			{
+				openSegment( currentSegmentName );
+			}
+		}
 		while ( !stopSign.isStopped( ) )
 		{
 			try
 			{
-				if( currentSegment == null )
+				if( currentSegment == null && currentColumns == null )
 				{
 					return false;
 				}
+				if( currentColumns != null )
+				{
+					if( !nextColumnRow( ) )
+						break;
+					readMeasure = false;
+					if ( !isSelectedRow( ) )
+					{
+						continue;
+					}
+					readMeasure( );
+					return true;
+				}
 				Bytes combinedDimensionPosition = currentSegment.readBytes( );
 				if( this.lastCombinedDimensionPosition == null )
 				{
@@ -292,6 +402,69 @@ public class FactTableRowIterator implements IFactTableRowIterator
 		return next( );
 	}
 	
+	/**
+	 * Moves to the next row of the columns of the current segment. The blocks
+	 * of rows without any selected position are skipped.
+	 * 
+	 * @return false if there is no more row in the segment
+	 */
+	private boolean nextColumnRow( )
+	{
+		currentRow++;
+		while ( currentRow < currentColumns.getRowCount( )
+				&& currentRow % FactTableMeasureColumns.BLOCK_SIZE == 0
+				&& !isSelectedBlock( currentRow / FactTableMeasureColumns.BLOCK_SIZE ) )
+		{
+			currentRow += FactTableMeasureColumns.BLOCK_SIZE;
+			// a row following the block at the same positions isn't
+			// selected either
+			lastFilterResult = false;
+		}
+		if ( currentRow >= currentColumns.getRowCount( ) )
+		{
+			return false;
+		}
+		isDuplicatedRow = currentColumns.isDuplicatedRow( currentRow );
+		if ( !isDuplicatedRow )
+		{
+			currentPos = new int[currentPos.length];
+			for ( int i = 0; i < currentPos.length; i++ )
+			{
+				currentPos[i] = currentColumns.getPosition( i, currentRow );
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Checks the min and max positions of the rows of a block against the
+	 * selected positions of the current segment.
+	 * 
+	 * @param block
+	 * @return false if no row of the block can be selected
+	 */
+	private boolean isSelectedBlock( int block )
+	{
+		for ( int i = 0; i < selectedPosOfCurSegment.length; i++ )
+		{
+			if ( selectedPosOfCurSegment[i] == null )
+			{
+				continue;
+			}
+			int min = currentColumns.getMinPosition( i, block )
+					- startPosOfCurSegment[i];
+			int max = currentColumns.getMaxPosition( i, block )
+					- startPosOfCurSegment[i];
+			int selected = selectedPosOfCurSegment[i].nextSetBit( Math.max( min,
+					0 ) );
+			if ( selected < 0 || selected > max )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * @see org.eclipse.birt.data.engine.olap.data.impl.facttable.IFactTableRowIterator#isDuplicatedRow()
@@ -360,6 +533,11 @@ public class FactTableRowIterator implements IFactTableRowIterator
 		}
 		if ( this.currentSegment!= null )
 			this.currentSegment.close( );
+		if ( this.positionIndexObject != null )
+		{
+			this.positionIndexObject.close( );
+			this.positionIndexObject = null;
+		}
 	}
 	
 	/**
@@ -388,9 +566,10 @@ public class FactTableRowIterator implements IFactTableRowIterator
 		{
 			for ( int i = 0; i < currentPos.length; i++ )
 			{
-				if ( dimensionIndex[i] != -1 )
+				if ( selectedPosOfCurSegment[i] != null )
 				{
-					if( Arrays.binarySearch( selectedPosOfCurSegment[i], currentPos[i] ) < 0 )
+					int offset = currentPos[i] - startPosOfCurSegment[i];
+					if ( offset < 0 || !selectedPosOfCurSegment[i].get( offset ) )
 					{
 						lastFilterResult = false;
 						return false;
@@ -451,10 +630,23 @@ public class FactTableRowIterator implements IFactTableRowIterator
 	 */
 	private void readMeasure() throws IOException, DataException
 	{
-		for ( int i = 0; i < this.currentMeasureValues.length; i++ )
+		if ( currentColumns != null )
 		{
-			currentMeasureValues[i] = DocumentObjectUtil.readValue( currentSegment,
-				factTable.getMeasureInfo()[i].getDataType( ) );
+			readColumnMeasure( );
+		}
+		else if ( existMeasureFilter || computedMeasureHelper != null )
+		{
+			// the measure map needs all the values
+			for ( int i = 0; i < this.currentMeasureValues.length; i++ )
+			{
+				currentMeasureValues[i] = DocumentObjectUtil.readValue( currentSegment,
+					factTable.getMeasureInfo()[i].getDataType( ) );
+				unboxedMeasures[i] = false;
+			}
+		}
+		else
+		{
+			readPrimitiveMeasure( );
 		}
 		currentMeasureMap.setMeasureValue( currentMeasureValues );
 		if ( computedMeasureHelper != null )
@@ -471,6 +663,56 @@ public class FactTableRowIterator implements IFactTableRowIterator
 		readMeasure = true;
 	}
 	
+	/**
+	 * Reads the double and integer measures into the primitive buffers, the
+	 * measures which are not got by the aggregation are never boxed.
+	 * 
+	 * @throws IOException
+	 */
+	private void readPrimitiveMeasure( ) throws IOException
+	{
+		for ( int i = 0; i < this.currentMeasureValues.length; i++ )
+		{
+			currentMeasureValues[i] = null;
+			unboxedMeasures[i] = false;
+			if ( measureSize[i] <= 0 )
+			{
+				currentMeasureValues[i] = DocumentObjectUtil.readValue( currentSegment,
+						factTable.getMeasureInfo( )[i].getDataType( ) );
+			}
+			else if ( currentSegment.readByte( ) != 0 )
+			{
+				if ( measureSize[i] == 8 )
+					doubleMeasureValues[i] = currentSegment.readDouble( );
+				else
+					intMeasureValues[i] = currentSegment.readInt( );
+				unboxedMeasures[i] = true;
+			}
+		}
+	}
+	
+	/**
+	 * Reads the used measures of the current row from the columns of the
+	 * segment.
+	 */
+	private void readColumnMeasure( )
+	{
+		for ( int i = 0; i < this.currentMeasureValues.length; i++ )
+		{
+			currentMeasureValues[i] = null;
+			unboxedMeasures[i] = usedMeasures[i]
+					&& !currentColumns.isNull( i, currentRow );
+			if ( !unboxedMeasures[i] )
+			{
+				continue;
+			}
+			if ( measureSize[i] == 8 )
+				doubleMeasureValues[i] = currentColumns.getDouble( i, currentRow );
+			else
+				intMeasureValues[i] = currentColumns.getInt( i, currentRow );
+		}
+	}
+	
 	private boolean skipMeasure() throws IOException, DataException
 	{
 		for ( int i = 0; i < this.measureSize.length; i++ )
@@ -518,31 +760,187 @@ public class FactTableRowIterator implements IFactTableRowIterator
 			{
 				continue;
 			}
-			
-			if( currentSegment != null )
-				currentSegment.close( );
-			
-			currentSegment = factTable.getDocumentManager( ).openDocumentObject( FTSUDocName );
+			if ( segmentOrdinal++ % partitionCount != partitionIndex )
+			{
+				continue;
+			}
 			
 			for ( int i = 0; i < dimensionIndex.length; i++ )
 			{
 				if ( dimensionIndex[i] != -1 )
 				{
 					SelectedSubDimension selectedSubDimension = ( (SelectedSubDimension) selectedSubDim[i].get( currentSubDim[i] ) );
-					selectedPosOfCurSegment[i] = new int[selectedSubDimension.end
-							- selectedSubDimension.start + 1];
-					for ( int j = 0; j < selectedSubDimension.end
-							- selectedSubDimension.start + 1; j++ )
-					{
-						selectedPosOfCurSegment[i][j] = ( (Integer) selectedPos[dimensionIndex[i]].get( selectedSubDimension.start
-								+ j ) ).intValue( );
-					}
+					selectedPosOfCurSegment[i] = getSelectedPositions( i,
+							selectedSubDimension );
+					startPosOfCurSegment[i] = factTable.getDimensionDivision( )[i].getRanges( )[selectedSubDimension.subDimensionIndex].start;
 				}
 			}
+			if ( !isSelectedSegment( FTSUDocName ) )
+			{
+				continue;
+			}
+			
+			openSegment( FTSUDocName );
 			break;
 		}
 		return true;
 	}
+	
+	/**
+	 * Opens a segment, its columns are read instead of its rows if they have
+	 * all the used measures. The first segment is opened on the first row, when
+	 * the used measures are known.
+	 * 
+	 * @param segmentName
+	 * @throws IOException
+	 */
+	private void openSegment( String segmentName ) throws IOException
+	{
+		if( currentSegment != null )
+		{
+			currentSegment.close( );
+			currentSegment = null;
+		}
+		currentSegmentName = segmentName;
+		// the combined positions are relative to the sub dimensions of the
+		// segment
+		lastCombinedDimensionPosition = null;
+		currentColumns = null;
+		if ( !rowRead )
+		{
+			return;
+		}
+		if ( isMeasureColumnsUsable( ) )
+		{
+			currentColumns = FactTableMeasureColumns.load( factTable.getDocumentManager( ),
+					segmentName,
+					factTable.getDimensionInfo( ).length,
+					usedMeasures );
+			currentRow = -1;
+		}
+		if ( currentColumns == null )
+		{
+			currentSegment = factTable.getDocumentManager( ).openDocumentObject( segmentName );
+		}
+	}
+	
+	/**
+	 * 
+	 * @return whether the measures can be read from the columns
+	 */
+	private boolean isMeasureColumnsUsable( )
+	{
+		// the measure map needs all the values
+		if ( usedMeasures == null
+				|| existMeasureFilter || computedMeasureHelper != null
+				|| usedMeasures.length != measureSize.length )
+		{
+			return false;
+		}
+		for ( int i = 0; i < usedMeasures.length; i++ )
+		{
+			if ( usedMeasures[i] && measureSize[i] <= 0 )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Sets the measures which are got from the rows, the others are never
+	 * got. Then the measures are read from the columns of the segments which
+	 * have them. It's called before the first row is read, and after the
+	 * measure filters are added.
+	 * 
+	 * @param usedMeasures
+	 */
+	public void setUsedMeasures( boolean[] usedMeasures )
+	{
+		this.usedMeasures = usedMeasures;
+	}
+	
+	/**
+	 * Checks the position index of the fact table, the segment is skipped if
+	 * none of its rows is at the selected positions of a filtered dimension.
+	 * 
+	 * @param segmentName
+	 * @return false if no row of the segment can be selected
+	 * @throws IOException
+	 */
+	private boolean isSelectedSegment( String segmentName ) throws IOException
+	{
+		boolean filtered = false;
+		for ( int i = 0; i < selectedPosOfCurSegment.length; i++ )
+		{
+			if ( selectedPosOfCurSegment[i] != null )
+			{
+				filtered = true;
+				break;
+			}
+		}
+		if ( !filtered )
+		{
+			return true;
+		}
+		if ( positionIndexObject == null )
+		{
+			positionIndex = factTable.getPositionIndex( );
+			if ( positionIndex == null )
+			{
+				return true;
+			}
+			positionIndexObject = FactTablePositionIndex.open( factTable.getDocumentManager( ),
+					factTable.getName( ) );
+		}
+		BitSet[] positions = positionIndex.getPositions( positionIndexObject,
+				segmentName );
+		if ( positions == null )
+		{
+			return true;
+		}
+		for ( int i = 0; i < selectedPosOfCurSegment.length; i++ )
+		{
+			if ( selectedPosOfCurSegment[i] != null
+					&& !positions[i].intersects( selectedPosOfCurSegment[i] ) )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the bitmap of the selected positions of a sub dimension, indexed
+	 * by the offset to the start of the sub dimension. The bitmap is built
+	 * once and shared by all the segments of the sub dimension.
+	 * 
+	 * @param dimIndex
+	 * @param selectedSubDimension
+	 * @return null if all the positions of the sub dimension are selected
+	 * @throws IOException
+	 */
+	private BitSet getSelectedPositions( int dimIndex,
+			SelectedSubDimension selectedSubDimension ) throws IOException
+	{
+		if ( !selectedSubDimension.positionsBuilt )
+		{
+			DimensionDivision.IntRange range = factTable.getDimensionDivision( )[dimIndex].getRanges( )[selectedSubDimension.subDimensionIndex];
+			int rangeSize = range.end - range.start + 1;
+			BitSet positions = new BitSet( rangeSize );
+			for ( int j = selectedSubDimension.start; j <= selectedSubDimension.end; j++ )
+			{
+				positions.set( ( (Integer) selectedPos[dimensionIndex[dimIndex]].get( j ) ).intValue( )
+						- range.start );
+			}
+			if ( positions.cardinality( ) < rangeSize )
+			{
+				selectedSubDimension.positions = positions;
+			}
+			selectedSubDimension.positionsBuilt = true;
+		}
+		return selectedSubDimension.positions;
+	}
 
 	/*
 	 * (non-Javadoc)
@@ -625,6 +1023,13 @@ public class FactTableRowIterator implements IFactTableRowIterator
 	{
 		if ( measureIndex < currentMeasureValues.length )
 		{
+			if ( unboxedMeasures[measureIndex] )
+			{
+				currentMeasureValues[measureIndex] = measureSize[measureIndex] == 8
+						? (Object) Double.valueOf( doubleMeasureValues[measureIndex] )
+						: Integer.valueOf( intMeasureValues[measureIndex] );
+				unboxedMeasures[measureIndex] = false;
+			}
 			return currentMeasureValues[measureIndex];
 		}
 		else
@@ -810,6 +1215,8 @@ class SelectedSubDimension
 	int subDimensionIndex;
 	int start;
 	int end;
+	BitSet positions;
+	boolean positionsBuilt;
 }
 
 
@@ -1099,6 +1099,13 @@ public class DataRequestSessionImpl extends DataRequestSession
 					this.toStringArray( measureAggrFunctions ),
 					computeMemoryBufferSize( appContext ),
 					dataEngine.getSession( ).getStopSign( ) );
+			DimLevel[][] rollupLevels = populateRollupLevels( appContext );
+			if ( rollupLevels != null )
+			{
+				cubeMaterializer.createRollups( cubeHandle.getQualifiedName( ),
+						rollupLevels,
+						dataEngine.getSession( ).getStopSign( ) );
+			}
 		}
 		catch ( Exception e )
 		{
@@ -1126,6 +1133,44 @@ public class DataRequestSessionImpl extends DataRequestSession
 		return populateMemBufferSize( appContext.get( DataEngine.MEMORY_BUFFER_SIZE )) * 1024 * 1024;
 	}
 
+	/**
+	 * Parses the level combinations of the cube roll-ups, see
+	 * <code>DataEngine.CUBE_ROLLUP_LEVELS</code>.
+	 * 
+	 * @param appContext
+	 * @return null if no roll-up is required
+	 */
+	private static DimLevel[][] populateRollupLevels( Map appContext )
+	{
+		if ( appContext == null
+				|| appContext.get( DataEngine.CUBE_ROLLUP_LEVELS ) == null )
+			return null;
+
+		List<DimLevel[]> result = new ArrayList<DimLevel[]>( );
+		String[] combinations = appContext.get( DataEngine.CUBE_ROLLUP_LEVELS )
+				.toString( )
+				.split( ";" ); //$NON-NLS-1$
+		for ( int i = 0; i < combinations.length; i++ )
+		{
+			if ( combinations[i].trim( ).length( ) == 0 )
+				continue;
+			String[] levelNames = combinations[i].split( "," ); //$NON-NLS-1$
+			DimLevel[] levels = new DimLevel[levelNames.length];
+			for ( int j = 0; j < levelNames.length && levels != null; j++ )
+			{
+				String[] names = levelNames[j].trim( ).split( "/" ); //$NON-NLS-1$
+				if ( names.length == 2 )
+					levels[j] = new DimLevel( names[0].trim( ), names[1].trim( ) );
+				else
+					levels = null;
+			}
+			if ( levels != null )
+				result.add( levels );
+		}
+		return result.isEmpty( ) ? null
+				: result.toArray( new DimLevel[result.size( )][] );
+	}
+
 	/**
 	 *
 	 * @param propValue
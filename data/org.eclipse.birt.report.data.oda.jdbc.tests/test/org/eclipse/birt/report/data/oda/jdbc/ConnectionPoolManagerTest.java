@@ -0,0 +1,196 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.eclipse.birt.report.data.oda.jdbc.connectionpool.ConnectionPoolConfig;
+import org.eclipse.birt.report.data.oda.jdbc.connectionpool.ConnectionPoolManager;
+import org.eclipse.birt.report.data.oda.jdbc.connectionpool.ConnectionPoolStatistics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * The class implements the unit test for the built-in connection pool
+ */
+public class ConnectionPoolManagerTest
+{
+
+	private static final String DRIVER_CLASS = "org.apache.derby.jdbc.EmbeddedDriver";
+	private static final String URL = "jdbc:derby:memory:connectionPoolTest;create=true";
+
+	private ConnectionPoolManager manager;
+	private Map appContext;
+
+	@Before
+	public void poolSetUp( ) throws Exception
+	{
+		manager = new ConnectionPoolManager( );
+		appContext = new HashMap( );
+		appContext.put( ConnectionPoolConfig.ENABLED, Boolean.TRUE );
+		appContext.put( ConnectionPoolConfig.MAX_ACTIVE, Integer.valueOf( 2 ) );
+		appContext.put( ConnectionPoolConfig.MAX_WAIT, Integer.valueOf( 100 ) );
+		appContext.put( ConnectionPoolConfig.EVICTION_INTERVAL,
+				Integer.valueOf( 0 ) );
+	}
+
+	@After
+	public void poolTearDown( ) throws Exception
+	{
+		manager.close( );
+	}
+
+	private java.sql.Connection borrow( ) throws Exception
+	{
+		return manager.getConnection( DRIVER_CLASS,
+				URL,
+				new Properties( ),
+				null,
+				appContext );
+	}
+
+	private ConnectionPoolStatistics getStatistics( )
+	{
+		assertEquals( 1, manager.getStatistics( ).size( ) );
+		return manager.getStatistics( ).values( ).iterator( ).next( );
+	}
+
+	@Test
+	public void testReuse( ) throws Exception
+	{
+		java.sql.Connection conn = borrow( );
+		conn.setAutoCommit( false );
+		conn.close( );
+		assertTrue( conn.isClosed( ) );
+
+		java.sql.Connection conn2 = borrow( );
+		assertFalse( conn2.isClosed( ) );
+		// the session state of the previous borrower is reset
+		assertTrue( conn2.getAutoCommit( ) );
+		conn2.close( );
+
+		ConnectionPoolStatistics stat = getStatistics( );
+		assertEquals( 1, stat.getCreatedCount( ) );
+		assertEquals( 2, stat.getBorrowedCount( ) );
+		assertEquals( 1, stat.getReusedCount( ) );
+		assertEquals( 1, stat.getIdleCount( ) );
+		assertEquals( 0, stat.getActiveCount( ) );
+	}
+
+	@Test
+	public void testClosedConnectionIsUnusable( ) throws Exception
+	{
+		java.sql.Connection conn = borrow( );
+		conn.close( );
+		try
+		{
+			conn.createStatement( );
+			fail( "A closed pooled connection should not be usable" );
+		}
+		catch ( SQLException e )
+		{
+		}
+	}
+
+	@Test
+	public void testExhausted( ) throws Exception
+	{
+		java.sql.Connection conn1 = borrow( );
+		java.sql.Connection conn2 = borrow( );
+		try
+		{
+			borrow( );
+			fail( "The pool should be exhausted" );
+		}
+		catch ( SQLException e )
+		{
+		}
+		assertEquals( 1, getStatistics( ).getTimeoutCount( ) );
+		conn1.close( );
+		borrow( ).close( );
+		conn2.close( );
+	}
+
+	@Test
+	public void testCloseConnection( ) throws Exception
+	{
+		java.sql.Connection conn = borrow( );
+		conn.close( );
+		manager.closeConnection( conn );
+
+		ConnectionPoolStatistics stat = getStatistics( );
+		assertEquals( 0, stat.getIdleCount( ) );
+		assertEquals( 1, stat.getDestroyedCount( ) );
+	}
+
+	@Test
+	public void testIdleEviction( ) throws Exception
+	{
+		appContext.put( ConnectionPoolConfig.IDLE_TIMEOUT, Integer.valueOf( 1 ) );
+		borrow( ).close( );
+		Thread.sleep( 10 );
+		manager.evictIdleConnections( );
+		assertTrue( manager.getStatistics( ).isEmpty( ) );
+	}
+
+	@Test
+	public void testEvictedPoolIsReplaced( ) throws Exception
+	{
+		appContext.put( ConnectionPoolConfig.IDLE_TIMEOUT, Integer.valueOf( 1 ) );
+		java.sql.Connection conn = borrow( );
+		conn.close( );
+		Thread.sleep( 10 );
+		manager.evictIdleConnections( );
+		assertTrue( manager.getStatistics( ).isEmpty( ) );
+
+		conn = borrow( );
+		assertFalse( conn.isClosed( ) );
+		conn.close( );
+		assertEquals( 1, getStatistics( ).getCreatedCount( ) );
+	}
+
+	@Test
+	public void testMinIdleWithinMaxActive( ) throws Exception
+	{
+		appContext.put( ConnectionPoolConfig.MIN_IDLE, Integer.valueOf( 2 ) );
+		java.sql.Connection conn = borrow( );
+		manager.evictIdleConnections( );
+		// one connection is lent out, so only one more may be opened
+		ConnectionPoolStatistics stat = getStatistics( );
+		assertEquals( 1, stat.getActiveCount( ) );
+		assertEquals( 1, stat.getIdleCount( ) );
+		conn.close( );
+		manager.evictIdleConnections( );
+		assertEquals( 2, getStatistics( ).getIdleCount( ) );
+		assertEquals( 2, getStatistics( ).getCreatedCount( ) );
+	}
+
+	@Test
+	public void testDisabled( ) throws Exception
+	{
+		appContext.put( ConnectionPoolConfig.ENABLED, Boolean.FALSE );
+		assertNull( borrow( ) );
+	}
+
+	@Test
+	public void testDisabledByDefault( ) throws Exception
+	{
+		appContext.remove( ConnectionPoolConfig.ENABLED );
+		assertNull( borrow( ) );
+	}
+}
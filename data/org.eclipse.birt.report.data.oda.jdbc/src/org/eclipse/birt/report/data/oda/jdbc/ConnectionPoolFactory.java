@@ -10,14 +10,16 @@
  *******************************************************************************/
 package org.eclipse.birt.report.data.oda.jdbc;
 
+import org.eclipse.birt.report.data.oda.jdbc.connectionpool.ConnectionPoolManager;
+
 class ConnectionPoolFactory
 {
 
-	private static IConnectionPoolManager mgr_instance;
+	private static volatile ConnectionPoolManager mgr_instance;
 
 	/**
 	 * get the connection manager instance
-	 * 
+	 *
 	 * @return
 	 */
 	static IConnectionPoolManager getInstance( )
@@ -26,31 +28,25 @@ class ConnectionPoolFactory
 		{
 			synchronized ( ConnectionPoolFactory.class )
 			{
-				Class clazz;
-				try
-				{
-					clazz = Class.forName( "org.eclipse.birt.report.data.oda.jdbc.connectionpool.ConnectionPoolManager" );
-				}
-				catch ( ClassNotFoundException e )
+				if ( mgr_instance == null )
 				{
-					return null;
-				}
-				if ( IConnectionPoolManager.class.isAssignableFrom( clazz ) )
-				{
-					try
-					{
-						mgr_instance = (IConnectionPoolManager) ( clazz.newInstance( ) );
-					}
-					catch ( InstantiationException e )
-					{
-					}
-					catch ( IllegalAccessException e )
-					{
-					}
+					mgr_instance = new ConnectionPoolManager( );
 				}
 			}
 		}
 
 		return mgr_instance;
 	}
+
+	/**
+	 * Closes all the pooled connections.
+	 */
+	static void shutdown( )
+	{
+		ConnectionPoolManager mgr = mgr_instance;
+		if ( mgr != null )
+		{
+			mgr.close( );
+		}
+	}
 }
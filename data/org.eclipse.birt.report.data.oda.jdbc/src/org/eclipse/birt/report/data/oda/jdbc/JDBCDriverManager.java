@@ -143,6 +143,8 @@ public class JDBCDriverManager
 	 */
 	public void close()
 	{
+		ConnectionPoolFactory.shutdown( );
+
 		if( this.extraDriverLoader != null )
 		{
 			this.extraDriverLoader.close();
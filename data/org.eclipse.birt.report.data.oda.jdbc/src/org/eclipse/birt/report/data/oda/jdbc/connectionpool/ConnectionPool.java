@@ -0,0 +1,425 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.datatools.connectivity.oda.OdaException;
+
+/**
+ * A pool of physical connections sharing the same driver, URL and connection
+ * properties. Idle connections are kept in LIFO order so that the most
+ * recently used connection, which is the most likely to still be alive, is
+ * handed out first and the oldest ones age out through the evictor.
+ */
+class ConnectionPool
+{
+
+	/**
+	 * Opens the physical connections of a pool.
+	 */
+	interface IPhysicalConnectionFactory
+	{
+
+		Connection createConnection( ) throws SQLException, OdaException;
+	}
+
+	private static Logger logger = Logger.getLogger( ConnectionPool.class.getName( ) );
+
+	private final String name;
+	private final ConnectionPoolConfig config;
+	private final IPhysicalConnectionFactory factory;
+
+	// guarded by this
+	private final LinkedList<PooledConnection> idleConnections = new LinkedList<PooledConnection>( );
+	private int activeCount;
+	// idle connections being opened by the evictor
+	private int openingCount;
+	private boolean closed;
+
+	private final AtomicLong borrowedCount = new AtomicLong( );
+	private final AtomicLong reusedCount = new AtomicLong( );
+	private final AtomicLong createdCount = new AtomicLong( );
+	private final AtomicLong destroyedCount = new AtomicLong( );
+	private final AtomicLong validationFailureCount = new AtomicLong( );
+	private final AtomicLong evictedCount = new AtomicLong( );
+	private final AtomicLong timeoutCount = new AtomicLong( );
+	private final AtomicLong totalWaitTime = new AtomicLong( );
+
+	ConnectionPool( String name, ConnectionPoolConfig config,
+			IPhysicalConnectionFactory factory )
+	{
+		this.name = name;
+		this.config = config;
+		this.factory = factory;
+	}
+
+	ConnectionPoolConfig getConfig( )
+	{
+		return config;
+	}
+
+	/**
+	 * Borrows a connection, opening a new one if no valid idle connection is
+	 * available and the pool is not exhausted.
+	 *
+	 * @return the logical connection, to be given back with close(), or null
+	 *         if the pool is closed
+	 * @throws SQLException
+	 * @throws OdaException
+	 */
+	Connection borrowConnection( ) throws SQLException, OdaException
+	{
+		long start = System.currentTimeMillis( );
+		long deadline = start + config.getMaxWait( );
+		boolean waited = false;
+		while ( true )
+		{
+			PooledConnection candidate = null;
+			synchronized ( this )
+			{
+				if ( closed )
+					return null;
+				while ( idleConnections.isEmpty( )
+						&& activeCount + openingCount >= config.getMaxActive( ) )
+				{
+					long remaining = deadline - System.currentTimeMillis( );
+					if ( remaining <= 0 )
+					{
+						timeoutCount.incrementAndGet( );
+						totalWaitTime.addAndGet( System.currentTimeMillis( )
+								- start );
+						throw new SQLException( "Timeout waiting for a connection from pool " //$NON-NLS-1$
+								+ name );
+					}
+					waited = true;
+					try
+					{
+						wait( remaining );
+					}
+					catch ( InterruptedException e )
+					{
+						Thread.currentThread( ).interrupt( );
+						throw new SQLException( "Interrupted while waiting for a connection" ); //$NON-NLS-1$
+					}
+					if ( closed )
+						return null;
+				}
+				candidate = idleConnections.pollFirst( );
+				activeCount++;
+			}
+			if ( waited )
+			{
+				totalWaitTime.addAndGet( System.currentTimeMillis( ) - start );
+				waited = false;
+			}
+
+			if ( candidate == null )
+			{
+				try
+				{
+					candidate = createPooledConnection( );
+				}
+				catch ( SQLException e )
+				{
+					releaseSlot( );
+					throw e;
+				}
+				catch ( OdaException e )
+				{
+					releaseSlot( );
+					throw e;
+				}
+				catch ( RuntimeException e )
+				{
+					releaseSlot( );
+					throw e;
+				}
+			}
+			else if ( config.isTestOnBorrow( )
+					&& !candidate.validate( config.getValidationTimeout( ) ) )
+			{
+				validationFailureCount.incrementAndGet( );
+				destroy( candidate );
+				releaseSlot( );
+				continue;
+			}
+			else
+			{
+				reusedCount.incrementAndGet( );
+			}
+
+			PooledConnectionHandler handler = new PooledConnectionHandler( this,
+					candidate );
+			synchronized ( this )
+			{
+				candidate.setOwner( handler );
+			}
+			borrowedCount.incrementAndGet( );
+			return handler.getProxy( );
+		}
+	}
+
+	/**
+	 * Gives a lent out connection back to the pool.
+	 *
+	 * @param connection
+	 * @param handler
+	 *            the logical connection which is closed
+	 * @param discard
+	 *            true if the physical connection must be closed
+	 */
+	void release( PooledConnection connection,
+			PooledConnectionHandler handler, boolean discard )
+	{
+		if ( !discard )
+		{
+			try
+			{
+				discard = connection.getPhysicalConnection( ).isClosed( );
+				if ( !discard )
+					connection.reset( );
+			}
+			catch ( SQLException e )
+			{
+				logger.log( Level.FINE,
+						"Fail to reset pooled JDBC connection, discard it", //$NON-NLS-1$
+						e );
+				discard = true;
+			}
+		}
+		synchronized ( this )
+		{
+			if ( connection.getOwner( ) != handler )
+				return;
+			connection.setOwner( null );
+			activeCount--;
+			if ( !discard
+					&& !closed
+					&& idleConnections.size( ) < config.getMaxIdle( ) )
+			{
+				connection.touch( );
+				idleConnections.addFirst( connection );
+				notify( );
+				return;
+			}
+			notify( );
+		}
+		destroy( connection );
+	}
+
+	/**
+	 * Makes sure that the physical connection behind the given handler is
+	 * never reused, whether it is still lent out or already back in the pool.
+	 *
+	 * @param handler
+	 */
+	void invalidate( PooledConnectionHandler handler )
+	{
+		PooledConnection connection = handler.getPooledConnection( );
+		if ( !handler.isClosed( ) )
+		{
+			handler.close( true );
+			return;
+		}
+		boolean removed;
+		synchronized ( this )
+		{
+			// the connection might already be lent out to another borrower
+			removed = connection.getOwner( ) == null
+					&& idleConnections.remove( connection );
+		}
+		if ( removed )
+			destroy( connection );
+	}
+
+	/**
+	 * Closes idle connections unused for longer than the idle timeout or in
+	 * excess of the maximum idle size, then tops the pool up to the minimum
+	 * idle size.
+	 */
+	void evict( )
+	{
+		List<PooledConnection> expired = new ArrayList<PooledConnection>( );
+		synchronized ( this )
+		{
+			if ( closed )
+				return;
+			long now = System.currentTimeMillis( );
+			// the oldest connections are at the tail
+			Iterator<PooledConnection> it = idleConnections.descendingIterator( );
+			while ( it.hasNext( ) )
+			{
+				PooledConnection connection = it.next( );
+				boolean overSize = idleConnections.size( ) > config.getMaxIdle( );
+				boolean timedOut = config.getIdleTimeout( ) > 0
+						&& now - connection.getLastUsedTime( ) > config.getIdleTimeout( )
+						&& idleConnections.size( ) > config.getMinIdle( );
+				if ( !overSize && !timedOut )
+					break;
+				it.remove( );
+				expired.add( connection );
+			}
+		}
+		for ( int i = 0; i < expired.size( ); i++ )
+		{
+			evictedCount.incrementAndGet( );
+			destroy( expired.get( i ) );
+		}
+		while ( true )
+		{
+			synchronized ( this )
+			{
+				// the connection being opened takes a slot of the pool until
+				// it is idle, so borrowers never go over the maximum
+				int idle = idleConnections.size( ) + openingCount;
+				if ( closed
+						|| idle >= config.getMinIdle( )
+						|| activeCount + idle >= config.getMaxActive( ) )
+					return;
+				openingCount++;
+			}
+			PooledConnection connection;
+			try
+			{
+				connection = createPooledConnection( );
+			}
+			catch ( Exception e )
+			{
+				releaseOpeningSlot( );
+				logger.log( Level.FINE,
+						"Fail to open idle connection for pool " + name, //$NON-NLS-1$
+						e );
+				return;
+			}
+			synchronized ( this )
+			{
+				openingCount--;
+				notify( );
+				if ( !closed )
+				{
+					idleConnections.addLast( connection );
+					continue;
+				}
+			}
+			destroy( connection );
+			return;
+		}
+	}
+
+	/**
+	 * Closes the pool if it holds no connection at all. The check and the
+	 * close are atomic, so a borrower either gets a connection from the pool
+	 * before it is retired or is told that it is closed.
+	 *
+	 * @return true if the pool is closed
+	 */
+	synchronized boolean retireIfUnused( )
+	{
+		if ( activeCount == 0 && openingCount == 0
+				&& idleConnections.isEmpty( ) )
+		{
+			closed = true;
+			notifyAll( );
+		}
+		return closed;
+	}
+
+	/**
+	 * Closes all the idle connections. Lent out connections are closed when
+	 * they are given back.
+	 */
+	void close( )
+	{
+		List<PooledConnection> idle;
+		synchronized ( this )
+		{
+			closed = true;
+			idle = new ArrayList<PooledConnection>( idleConnections );
+			idleConnections.clear( );
+			notifyAll( );
+		}
+		for ( int i = 0; i < idle.size( ); i++ )
+		{
+			destroy( idle.get( i ) );
+		}
+	}
+
+	ConnectionPoolStatistics getStatistics( )
+	{
+		int active, idle;
+		synchronized ( this )
+		{
+			active = activeCount;
+			idle = idleConnections.size( );
+		}
+		return new ConnectionPoolStatistics( active,
+				idle,
+				borrowedCount.get( ),
+				reusedCount.get( ),
+				createdCount.get( ),
+				destroyedCount.get( ),
+				validationFailureCount.get( ),
+				evictedCount.get( ),
+				timeoutCount.get( ),
+				totalWaitTime.get( ) );
+	}
+
+	private PooledConnection createPooledConnection( ) throws SQLException,
+			OdaException
+	{
+		Connection physical = factory.createConnection( );
+		if ( physical == null )
+			throw new SQLException( "No connection opened for pool " + name ); //$NON-NLS-1$
+		PooledConnection connection;
+		try
+		{
+			connection = new PooledConnection( physical );
+		}
+		catch ( SQLException e )
+		{
+			physical.close( );
+			throw e;
+		}
+		createdCount.incrementAndGet( );
+		if ( logger.isLoggable( Level.FINER ) )
+			logger.finer( "Open pooled JDBC connection " + physical //$NON-NLS-1$
+					+ " for pool " + name ); //$NON-NLS-1$
+		return connection;
+	}
+
+	private synchronized void releaseSlot( )
+	{
+		activeCount--;
+		notify( );
+	}
+
+	private synchronized void releaseOpeningSlot( )
+	{
+		openingCount--;
+		notify( );
+	}
+
+	private void destroy( PooledConnection connection )
+	{
+		destroyedCount.incrementAndGet( );
+		connection.destroy( );
+	}
+}
@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+import java.util.Map;
+
+/**
+ * Settings of the built-in JDBC connection pool. Every setting is read from
+ * the application context first and from the system properties second, so
+ * that a deployment may tune the pool globally while a single report run may
+ * still override it.
+ */
+public final class ConnectionPoolConfig
+{
+
+	private static final String PREFIX = "org.eclipse.birt.report.data.oda.jdbc.connectionpool."; //$NON-NLS-1$
+
+	/**
+	 * Boolean, set to "true" to pool the connections. Pooling is off by
+	 * default, so a new physical connection is opened for every connection,
+	 * without any limit on the number of connections.
+	 */
+	public static final String ENABLED = PREFIX + "enabled"; //$NON-NLS-1$
+
+	/**
+	 * Maximum number of connections borrowed from one pool at the same time.
+	 */
+	public static final String MAX_ACTIVE = PREFIX + "maxActive"; //$NON-NLS-1$
+
+	/**
+	 * Maximum number of idle connections kept in one pool.
+	 */
+	public static final String MAX_IDLE = PREFIX + "maxIdle"; //$NON-NLS-1$
+
+	/**
+	 * Number of idle connections the evictor keeps open in one pool.
+	 */
+	public static final String MIN_IDLE = PREFIX + "minIdle"; //$NON-NLS-1$
+
+	/**
+	 * Milliseconds a borrower waits for a connection when the pool is
+	 * exhausted.
+	 */
+	public static final String MAX_WAIT = PREFIX + "maxWait"; //$NON-NLS-1$
+
+	/**
+	 * Boolean, whether an idle connection is validated before it is handed
+	 * out.
+	 */
+	public static final String TEST_ON_BORROW = PREFIX + "testOnBorrow"; //$NON-NLS-1$
+
+	/**
+	 * Seconds given to <code>Connection.isValid</code> on validation.
+	 */
+	public static final String VALIDATION_TIMEOUT = PREFIX + "validationTimeout"; //$NON-NLS-1$
+
+	/**
+	 * Milliseconds after which an unused idle connection is evicted.
+	 */
+	public static final String IDLE_TIMEOUT = PREFIX + "idleTimeout"; //$NON-NLS-1$
+
+	/**
+	 * Milliseconds between two runs of the idle connection evictor.
+	 */
+	public static final String EVICTION_INTERVAL = PREFIX + "evictionInterval"; //$NON-NLS-1$
+
+	private boolean enabled = false;
+	private int maxActive = 20;
+	private int maxIdle = 10;
+	private int minIdle = 0;
+	private long maxWait = 30000L;
+	private boolean testOnBorrow = true;
+	private int validationTimeout = 5;
+	private long idleTimeout = 600000L;
+	private long evictionInterval = 60000L;
+
+	private ConnectionPoolConfig( )
+	{
+	}
+
+	/**
+	 * Creates the pool settings for the given application context.
+	 *
+	 * @param appContext
+	 *            the application context, may be null
+	 * @return the pool settings
+	 */
+	public static ConnectionPoolConfig getConfig( Map appContext )
+	{
+		ConnectionPoolConfig config = new ConnectionPoolConfig( );
+		config.enabled = getBoolean( appContext, ENABLED, config.enabled );
+		config.maxActive = (int) getLong( appContext,
+				MAX_ACTIVE,
+				config.maxActive );
+		config.maxIdle = (int) getLong( appContext, MAX_IDLE, config.maxIdle );
+		config.minIdle = (int) getLong( appContext, MIN_IDLE, config.minIdle );
+		config.maxWait = getLong( appContext, MAX_WAIT, config.maxWait );
+		config.testOnBorrow = getBoolean( appContext,
+				TEST_ON_BORROW,
+				config.testOnBorrow );
+		config.validationTimeout = (int) getLong( appContext,
+				VALIDATION_TIMEOUT,
+				config.validationTimeout );
+		config.idleTimeout = getLong( appContext,
+				IDLE_TIMEOUT,
+				config.idleTimeout );
+		config.evictionInterval = getLong( appContext,
+				EVICTION_INTERVAL,
+				config.evictionInterval );
+
+		if ( config.maxActive <= 0 )
+			config.maxActive = Integer.MAX_VALUE;
+		if ( config.maxIdle > config.maxActive )
+			config.maxIdle = config.maxActive;
+		if ( config.minIdle > config.maxIdle )
+			config.minIdle = config.maxIdle;
+		return config;
+	}
+
+	private static Object getValue( Map appContext, String name )
+	{
+		Object value = null;
+		if ( appContext != null )
+			value = appContext.get( name );
+		if ( value == null )
+			value = System.getProperty( name );
+		return value;
+	}
+
+	private static long getLong( Map appContext, String name,
+			long defaultValue )
+	{
+		Object value = getValue( appContext, name );
+		if ( value instanceof Number )
+			return ( (Number) value ).longValue( );
+		if ( value != null )
+		{
+			try
+			{
+				return Long.parseLong( value.toString( ).trim( ) );
+			}
+			catch ( NumberFormatException e )
+			{
+			}
+		}
+		return defaultValue;
+	}
+
+	private static boolean getBoolean( Map appContext, String name,
+			boolean defaultValue )
+	{
+		Object value = getValue( appContext, name );
+		if ( value instanceof Boolean )
+			return ( (Boolean) value ).booleanValue( );
+		if ( value != null )
+			return Boolean.valueOf( value.toString( ).trim( ) ).booleanValue( );
+		return defaultValue;
+	}
+
+	public boolean isEnabled( )
+	{
+		return enabled;
+	}
+
+	public int getMaxActive( )
+	{
+		return maxActive;
+	}
+
+	public int getMaxIdle( )
+	{
+		return maxIdle;
+	}
+
+	public int getMinIdle( )
+	{
+		return minIdle;
+	}
+
+	public long getMaxWait( )
+	{
+		return maxWait;
+	}
+
+	public boolean isTestOnBorrow( )
+	{
+		return testOnBorrow;
+	}
+
+	public int getValidationTimeout( )
+	{
+		return validationTimeout;
+	}
+
+	public long getIdleTimeout( )
+	{
+		return idleTimeout;
+	}
+
+	public long getEvictionInterval( )
+	{
+		return evictionInterval;
+	}
+}
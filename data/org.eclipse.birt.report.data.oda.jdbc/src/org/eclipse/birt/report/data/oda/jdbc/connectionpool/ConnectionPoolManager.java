@@ -0,0 +1,330 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.report.data.oda.jdbc.IConnectionPoolManager;
+import org.eclipse.birt.report.data.oda.jdbc.JDBCDriverManager;
+import org.eclipse.birt.report.data.oda.jdbc.LogUtil;
+import org.eclipse.datatools.connectivity.oda.OdaException;
+
+/**
+ * The built-in implementation of {@link IConnectionPoolManager}. One pool is
+ * kept per driver class, URL, connection properties (user and password
+ * included) and driver class path, so connections are never shared between
+ * different credentials. Physical connections are opened through
+ * {@link JDBCDriverManager}, which keeps driver discovery and connection
+ * factory extensions working as without pooling.
+ * <p>
+ * The pool is configured through the keys defined in
+ * {@link ConnectionPoolConfig}.
+ */
+public class ConnectionPoolManager implements IConnectionPoolManager
+{
+
+	private static Logger logger = Logger.getLogger( ConnectionPoolManager.class.getName( ) );
+
+	private final ConcurrentMap<PoolKey, ConnectionPool> pools = new ConcurrentHashMap<PoolKey, ConnectionPool>( );
+
+	private Timer evictionTimer;
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.IConnectionPoolManager#getConnection(java.lang.String, java.lang.String, java.util.Properties, java.util.Collection, java.util.Map)
+	 */
+	public Connection getConnection( String driverClass, String url,
+			Properties connectionProps,
+			Collection<String> driverClassPath, Map appContext )
+			throws SQLException, OdaException
+	{
+		ConnectionPoolConfig config = ConnectionPoolConfig.getConfig( appContext );
+		if ( !config.isEnabled( ) )
+			return null;
+
+		Properties props = copyProperties( connectionProps );
+		Collection<String> classPath = driverClassPath == null
+				? null
+				: new ArrayList<String>( driverClassPath );
+		PoolKey key = new PoolKey( driverClass, url, props, classPath );
+		while ( true )
+		{
+			ConnectionPool pool = getPool( key,
+					config,
+					driverClass,
+					url,
+					props,
+					classPath );
+			Connection connection = pool.borrowConnection( );
+			if ( connection != null )
+				return connection;
+			// the pool was retired by the evictor after it was looked up,
+			// replace it by a new one
+			pools.remove( key, pool );
+		}
+	}
+
+	private ConnectionPool getPool( PoolKey key, ConnectionPoolConfig config,
+			final String driverClass, final String url, final Properties props,
+			final Collection<String> classPath )
+	{
+		ConnectionPool pool = pools.get( key );
+		if ( pool == null )
+		{
+			ConnectionPool.IPhysicalConnectionFactory factory = new ConnectionPool.IPhysicalConnectionFactory( ) {
+
+				public Connection createConnection( ) throws SQLException,
+						OdaException
+				{
+					return JDBCDriverManager.getInstance( )
+							.getConnection( driverClass,
+									url,
+									null,
+									props,
+									classPath );
+				}
+			};
+			ConnectionPool newPool = new ConnectionPool( driverClass
+					+ ";" + LogUtil.encryptURL( url ), config, factory ); //$NON-NLS-1$
+			pool = pools.putIfAbsent( key, newPool );
+			if ( pool == null )
+			{
+				pool = newPool;
+				scheduleEviction( config );
+			}
+		}
+		return pool;
+	}
+
+	/*
+	 * @see org.eclipse.birt.report.data.oda.jdbc.IConnectionPoolManager#closeConnection(java.sql.Connection)
+	 */
+	public void closeConnection( Connection connection ) throws OdaException,
+			SQLException
+	{
+		PooledConnectionHandler handler = getHandler( connection );
+		if ( handler != null )
+		{
+			handler.getPool( ).invalidate( handler );
+		}
+		else if ( connection != null && !connection.isClosed( ) )
+		{
+			connection.close( );
+		}
+	}
+
+	/**
+	 * Returns the metrics of every pool, keyed by driver class and URL. The
+	 * passwords never appear in the keys.
+	 *
+	 * @return the statistics of the pools
+	 */
+	public Map<String, ConnectionPoolStatistics> getStatistics( )
+	{
+		Map<String, ConnectionPoolStatistics> result = new HashMap<String, ConnectionPoolStatistics>( );
+		for ( Map.Entry<PoolKey, ConnectionPool> entry : pools.entrySet( ) )
+		{
+			String name = entry.getKey( ).getDisplayName( );
+			ConnectionPoolStatistics stat = entry.getValue( ).getStatistics( );
+			// pools of different users share the display name, sum them up
+			ConnectionPoolStatistics old = result.get( name );
+			if ( old != null )
+			{
+				stat = new ConnectionPoolStatistics( old.getActiveCount( )
+						+ stat.getActiveCount( ),
+						old.getIdleCount( ) + stat.getIdleCount( ),
+						old.getBorrowedCount( ) + stat.getBorrowedCount( ),
+						old.getReusedCount( ) + stat.getReusedCount( ),
+						old.getCreatedCount( ) + stat.getCreatedCount( ),
+						old.getDestroyedCount( ) + stat.getDestroyedCount( ),
+						old.getValidationFailureCount( )
+								+ stat.getValidationFailureCount( ),
+						old.getEvictedCount( ) + stat.getEvictedCount( ),
+						old.getTimeoutCount( ) + stat.getTimeoutCount( ),
+						old.getTotalWaitTime( ) + stat.getTotalWaitTime( ) );
+			}
+			result.put( name, stat );
+		}
+		return Collections.unmodifiableMap( result );
+	}
+
+	/**
+	 * Runs one eviction pass over all the pools and drops the pools which no
+	 * longer hold any connection.
+	 */
+	public void evictIdleConnections( )
+	{
+		Iterator<Map.Entry<PoolKey, ConnectionPool>> it = pools.entrySet( )
+				.iterator( );
+		while ( it.hasNext( ) )
+		{
+			Map.Entry<PoolKey, ConnectionPool> entry = it.next( );
+			ConnectionPool pool = entry.getValue( );
+			pool.evict( );
+			if ( pool.getConfig( ).getMinIdle( ) == 0 && pool.retireIfUnused( ) )
+			{
+				pools.remove( entry.getKey( ), pool );
+			}
+		}
+	}
+
+	/**
+	 * Closes all the pooled connections and stops the evictor.
+	 */
+	public void close( )
+	{
+		synchronized ( this )
+		{
+			if ( evictionTimer != null )
+			{
+				evictionTimer.cancel( );
+				evictionTimer = null;
+			}
+		}
+		List<ConnectionPool> closing = new ArrayList<ConnectionPool>( pools.values( ) );
+		pools.clear( );
+		for ( int i = 0; i < closing.size( ); i++ )
+		{
+			closing.get( i ).close( );
+		}
+	}
+
+	private synchronized void scheduleEviction( ConnectionPoolConfig config )
+	{
+		if ( evictionTimer != null || config.getEvictionInterval( ) <= 0 )
+			return;
+		evictionTimer = new Timer( "BIRT JDBC connection pool evictor", true ); //$NON-NLS-1$
+		evictionTimer.schedule( new TimerTask( ) {
+
+			public void run( )
+			{
+				try
+				{
+					evictIdleConnections( );
+				}
+				catch ( RuntimeException e )
+				{
+					logger.log( Level.WARNING,
+							"Fail to evict idle JDBC connections", //$NON-NLS-1$
+							e );
+				}
+			}
+		},
+				config.getEvictionInterval( ),
+				config.getEvictionInterval( ) );
+	}
+
+	private static PooledConnectionHandler getHandler( Connection connection )
+	{
+		if ( connection == null || !Proxy.isProxyClass( connection.getClass( ) ) )
+			return null;
+		Object handler = Proxy.getInvocationHandler( connection );
+		return handler instanceof PooledConnectionHandler
+				? (PooledConnectionHandler) handler
+				: null;
+	}
+
+	private static Properties copyProperties( Properties props )
+	{
+		Properties copy = new Properties( );
+		if ( props != null )
+		{
+			for ( Enumeration<?> e = props.propertyNames( ); e.hasMoreElements( ); )
+			{
+				String name = (String) e.nextElement( );
+				copy.setProperty( name, props.getProperty( name ) );
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Identifies a pool. Two requests share a pool only if every argument
+	 * used to open the physical connection is the same.
+	 */
+	private static final class PoolKey
+	{
+
+		private final String driverClass;
+		private final String url;
+		private final Map<String, String> properties;
+		private final Collection<String> driverClassPath;
+		private final int hashCode;
+
+		PoolKey( String driverClass, String url, Properties props,
+				Collection<String> driverClassPath )
+		{
+			this.driverClass = driverClass;
+			this.url = url;
+			this.properties = new TreeMap<String, String>( );
+			for ( Enumeration<?> e = props.propertyNames( ); e.hasMoreElements( ); )
+			{
+				String name = (String) e.nextElement( );
+				this.properties.put( name, props.getProperty( name ) );
+			}
+			this.driverClassPath = driverClassPath;
+
+			int hash = 17;
+			hash = 31 * hash + ( driverClass == null ? 0 : driverClass.hashCode( ) );
+			hash = 31 * hash + ( url == null ? 0 : url.hashCode( ) );
+			hash = 31 * hash + properties.hashCode( );
+			hash = 31 * hash + ( driverClassPath == null ? 0 : driverClassPath.hashCode( ) );
+			this.hashCode = hash;
+		}
+
+		String getDisplayName( )
+		{
+			return driverClass + ";" + LogUtil.encryptURL( url ); //$NON-NLS-1$
+		}
+
+		public int hashCode( )
+		{
+			return hashCode;
+		}
+
+		public boolean equals( Object obj )
+		{
+			if ( this == obj )
+				return true;
+			if ( !( obj instanceof PoolKey ) )
+				return false;
+			PoolKey other = (PoolKey) obj;
+			return hashCode == other.hashCode
+					&& equals( driverClass, other.driverClass )
+					&& equals( url, other.url )
+					&& properties.equals( other.properties )
+					&& equals( driverClassPath, other.driverClassPath );
+		}
+
+		private static boolean equals( Object o1, Object o2 )
+		{
+			return o1 == null ? o2 == null : o1.equals( o2 );
+		}
+	}
+}
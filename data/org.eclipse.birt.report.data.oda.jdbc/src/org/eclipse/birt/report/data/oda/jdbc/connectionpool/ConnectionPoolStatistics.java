@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+/**
+ * An immutable snapshot of the metrics of one connection pool.
+ */
+public final class ConnectionPoolStatistics
+{
+
+	private final int activeCount;
+	private final int idleCount;
+	private final long borrowedCount;
+	private final long reusedCount;
+	private final long createdCount;
+	private final long destroyedCount;
+	private final long validationFailureCount;
+	private final long evictedCount;
+	private final long timeoutCount;
+	private final long totalWaitTime;
+
+	ConnectionPoolStatistics( int activeCount, int idleCount,
+			long borrowedCount, long reusedCount, long createdCount,
+			long destroyedCount, long validationFailureCount,
+			long evictedCount, long timeoutCount, long totalWaitTime )
+	{
+		this.activeCount = activeCount;
+		this.idleCount = idleCount;
+		this.borrowedCount = borrowedCount;
+		this.reusedCount = reusedCount;
+		this.createdCount = createdCount;
+		this.destroyedCount = destroyedCount;
+		this.validationFailureCount = validationFailureCount;
+		this.evictedCount = evictedCount;
+		this.timeoutCount = timeoutCount;
+		this.totalWaitTime = totalWaitTime;
+	}
+
+	/**
+	 * @return the number of connections currently lent out
+	 */
+	public int getActiveCount( )
+	{
+		return activeCount;
+	}
+
+	/**
+	 * @return the number of connections currently waiting in the pool
+	 */
+	public int getIdleCount( )
+	{
+		return idleCount;
+	}
+
+	/**
+	 * @return the number of successful borrow requests
+	 */
+	public long getBorrowedCount( )
+	{
+		return borrowedCount;
+	}
+
+	/**
+	 * @return the number of borrow requests served by an idle connection
+	 */
+	public long getReusedCount( )
+	{
+		return reusedCount;
+	}
+
+	/**
+	 * @return the number of physical connections opened
+	 */
+	public long getCreatedCount( )
+	{
+		return createdCount;
+	}
+
+	/**
+	 * @return the number of physical connections closed
+	 */
+	public long getDestroyedCount( )
+	{
+		return destroyedCount;
+	}
+
+	/**
+	 * @return the number of idle connections which failed validation
+	 */
+	public long getValidationFailureCount( )
+	{
+		return validationFailureCount;
+	}
+
+	/**
+	 * @return the number of idle connections closed by the evictor
+	 */
+	public long getEvictedCount( )
+	{
+		return evictedCount;
+	}
+
+	/**
+	 * @return the number of borrow requests which timed out
+	 */
+	public long getTimeoutCount( )
+	{
+		return timeoutCount;
+	}
+
+	/**
+	 * @return the total milliseconds borrowers waited on an exhausted pool
+	 */
+	public long getTotalWaitTime( )
+	{
+		return totalWaitTime;
+	}
+
+	public String toString( )
+	{
+		return "active=" + activeCount + ", idle=" + idleCount //$NON-NLS-1$ //$NON-NLS-2$
+				+ ", borrowed=" + borrowedCount + ", reused=" + reusedCount //$NON-NLS-1$ //$NON-NLS-2$
+				+ ", created=" + createdCount + ", destroyed=" //$NON-NLS-1$ //$NON-NLS-2$
+				+ destroyedCount + ", validationFailures=" //$NON-NLS-1$
+				+ validationFailureCount + ", evicted=" + evictedCount //$NON-NLS-1$
+				+ ", timeouts=" + timeoutCount + ", waitTime=" //$NON-NLS-1$ //$NON-NLS-2$
+				+ totalWaitTime;
+	}
+}
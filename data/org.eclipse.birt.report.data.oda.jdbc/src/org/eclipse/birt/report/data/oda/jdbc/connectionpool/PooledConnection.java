@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A physical JDBC connection owned by a {@link ConnectionPool}, together with
+ * the session state it had when it was opened. The state is restored every
+ * time the connection goes back to the pool, so that the settings applied by
+ * one report run never leak into the next one.
+ */
+class PooledConnection
+{
+
+	private static Logger logger = Logger.getLogger( PooledConnection.class.getName( ) );
+
+	private final Connection physicalConnection;
+	private final boolean initialAutoCommit;
+	private final int initialIsolation;
+	private final boolean initialReadOnly;
+
+	private long lastUsedTime;
+
+	// the handler of the logical connection currently lent out, null if idle
+	private PooledConnectionHandler owner;
+
+	PooledConnection( Connection physicalConnection ) throws SQLException
+	{
+		this.physicalConnection = physicalConnection;
+		this.initialAutoCommit = physicalConnection.getAutoCommit( );
+		this.initialIsolation = physicalConnection.getTransactionIsolation( );
+		this.initialReadOnly = physicalConnection.isReadOnly( );
+		this.lastUsedTime = System.currentTimeMillis( );
+	}
+
+	Connection getPhysicalConnection( )
+	{
+		return physicalConnection;
+	}
+
+	long getLastUsedTime( )
+	{
+		return lastUsedTime;
+	}
+
+	void touch( )
+	{
+		lastUsedTime = System.currentTimeMillis( );
+	}
+
+	PooledConnectionHandler getOwner( )
+	{
+		return owner;
+	}
+
+	void setOwner( PooledConnectionHandler owner )
+	{
+		this.owner = owner;
+	}
+
+	/**
+	 * Checks whether the physical connection is still usable.
+	 *
+	 * @param timeout
+	 *            seconds given to the driver for the check
+	 * @return true if the connection can be lent out again
+	 */
+	boolean validate( int timeout )
+	{
+		try
+		{
+			if ( physicalConnection.isClosed( ) )
+				return false;
+			return physicalConnection.isValid( timeout );
+		}
+		catch ( SQLException e )
+		{
+			return false;
+		}
+		catch ( AbstractMethodError e )
+		{
+			// pre JDBC 4 driver, fall back to isClosed() only
+			return true;
+		}
+	}
+
+	/**
+	 * Rolls back any pending work and restores the initial session state.
+	 *
+	 * @throws SQLException
+	 *             if the connection can not be reset, in which case it must
+	 *             not be reused
+	 */
+	void reset( ) throws SQLException
+	{
+		if ( !physicalConnection.getAutoCommit( ) )
+			physicalConnection.rollback( );
+		if ( physicalConnection.getAutoCommit( ) != initialAutoCommit )
+			physicalConnection.setAutoCommit( initialAutoCommit );
+		if ( physicalConnection.getTransactionIsolation( ) != initialIsolation )
+			physicalConnection.setTransactionIsolation( initialIsolation );
+		if ( physicalConnection.isReadOnly( ) != initialReadOnly )
+			physicalConnection.setReadOnly( initialReadOnly );
+		physicalConnection.clearWarnings( );
+	}
+
+	/**
+	 * Closes the physical connection, ignoring any error.
+	 */
+	void destroy( )
+	{
+		try
+		{
+			physicalConnection.close( );
+		}
+		catch ( SQLException e )
+		{
+			logger.log( Level.FINE, "Fail to close pooled JDBC connection", e ); //$NON-NLS-1$
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc.connectionpool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Invocation handler of the logical connection handed out by the pool.
+ * <code>close()</code> returns the physical connection to its pool instead of
+ * closing it; every other call is delegated to the physical connection as
+ * long as the logical connection is open.
+ * <p>
+ * A dynamic proxy is used so that the logical connection implements whatever
+ * version of <code>java.sql.Connection</code> the running JRE defines.
+ */
+class PooledConnectionHandler implements InvocationHandler
+{
+
+	private final ConnectionPool pool;
+	private final PooledConnection pooledConnection;
+	private final Connection proxy;
+	private volatile boolean closed;
+
+	PooledConnectionHandler( ConnectionPool pool,
+			PooledConnection pooledConnection )
+	{
+		this.pool = pool;
+		this.pooledConnection = pooledConnection;
+		this.proxy = (Connection) Proxy.newProxyInstance( PooledConnectionHandler.class.getClassLoader( ),
+				new Class[]{
+					Connection.class
+				},
+				this );
+	}
+
+	Connection getProxy( )
+	{
+		return proxy;
+	}
+
+	ConnectionPool getPool( )
+	{
+		return pool;
+	}
+
+	PooledConnection getPooledConnection( )
+	{
+		return pooledConnection;
+	}
+
+	boolean isClosed( )
+	{
+		return closed;
+	}
+
+	/**
+	 * Closes the logical connection and gives the physical one back.
+	 *
+	 * @param discard
+	 *            true if the physical connection must not be reused
+	 */
+	void close( boolean discard )
+	{
+		synchronized ( this )
+		{
+			if ( closed )
+				return;
+			closed = true;
+		}
+		pool.release( pooledConnection, this, discard );
+	}
+
+	/*
+	 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object, java.lang.reflect.Method, java.lang.Object[])
+	 */
+	public Object invoke( Object proxy, Method method, Object[] args )
+			throws Throwable
+	{
+		String name = method.getName( );
+		if ( "close".equals( name ) && method.getParameterTypes( ).length == 0 ) //$NON-NLS-1$
+		{
+			close( false );
+			return null;
+		}
+		if ( "isClosed".equals( name ) && method.getParameterTypes( ).length == 0 ) //$NON-NLS-1$
+		{
+			return Boolean.valueOf( closed
+					|| pooledConnection.getPhysicalConnection( ).isClosed( ) );
+		}
+		if ( "equals".equals( name ) && method.getParameterTypes( ).length == 1 ) //$NON-NLS-1$
+		{
+			return Boolean.valueOf( proxy == args[0] );
+		}
+		if ( "hashCode".equals( name ) && method.getParameterTypes( ).length == 0 ) //$NON-NLS-1$
+		{
+			return Integer.valueOf( System.identityHashCode( proxy ) );
+		}
+		if ( "toString".equals( name ) && method.getParameterTypes( ).length == 0 ) //$NON-NLS-1$
+		{
+			return "Pooled[" //$NON-NLS-1$
+					+ pooledConnection.getPhysicalConnection( ) + "]"; //$NON-NLS-1$
+		}
+		if ( closed )
+		{
+			throw new SQLException( "Connection is closed" ); //$NON-NLS-1$
+		}
+		try
+		{
+			return method.invoke( pooledConnection.getPhysicalConnection( ),
+					args );
+		}
+		catch ( InvocationTargetException e )
+		{
+			throw e.getTargetException( );
+		}
+	}
+}
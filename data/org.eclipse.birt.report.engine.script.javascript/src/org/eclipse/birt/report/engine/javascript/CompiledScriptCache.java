@@ -0,0 +1,296 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.javascript;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+
+/**
+ * Caches the compiled scripts of all the script engines of the JVM, so that
+ * the expressions of a design are compiled once rather than on every run. A
+ * compiled script does not keep any state of its execution, so it can be run
+ * by several engines at the same time.
+ * <p>
+ * The scripts are keyed on their source text, name and line number, and on
+ * the optimization level and application class loader of the context, as
+ * the compiled code depends on them. The least recently used scripts are
+ * evicted once the cache is full.
+ */
+public class CompiledScriptCache
+{
+
+	/**
+	 * JVM system property giving how many compiled scripts are cached.
+	 * Defaults to 2000, 0 disables the cache.
+	 */
+	public static final String SCRIPT_CACHE_SIZE = "org.eclipse.birt.report.engine.javascript.scriptCacheSize"; //$NON-NLS-1$
+
+	private static final int DEFAULT_SIZE = 2000;
+
+	private static Logger logger = Logger.getLogger( CompiledScriptCache.class.getName( ) );
+
+	private static final CompiledScriptCache instance = new CompiledScriptCache( getSizeProperty( ) );
+
+	private final int maxSize;
+
+	private final Map<ScriptKey, CacheEntry> entries = new ConcurrentHashMap<ScriptKey, CacheEntry>( );
+
+	private final AtomicLong accessClock = new AtomicLong( );
+	private final AtomicLong hitCount = new AtomicLong( );
+	private final AtomicLong missCount = new AtomicLong( );
+	private final AtomicLong evictionCount = new AtomicLong( );
+
+	private final Object evictionLock = new Object( );
+
+	/**
+	 * @param maxSize
+	 *            how many scripts are cached, 0 for none
+	 */
+	CompiledScriptCache( int maxSize )
+	{
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @return the cache shared by the script engines of the JVM
+	 */
+	public static CompiledScriptCache getInstance( )
+	{
+		return instance;
+	}
+
+	/**
+	 * Returns the compiled script, compiling it with the context if it is not
+	 * cached yet. The scripts compiled for a debugger are not cached, since
+	 * the debugger needs to be told of every compilation.
+	 *
+	 * @param context
+	 * @param script
+	 *            the source text
+	 * @param id
+	 *            the source name
+	 * @param lineNumber
+	 * @param securityDomain
+	 *            the security domain, which depends on the source name only
+	 * @return
+	 */
+	public Script compile( Context context, String script, String id,
+			int lineNumber, Object securityDomain )
+	{
+		if ( maxSize <= 0 || context.getDebugger( ) != null )
+		{
+			return context.compileString( script,
+					id,
+					lineNumber,
+					securityDomain );
+		}
+
+		ScriptKey key = new ScriptKey( script,
+				id,
+				lineNumber,
+				context.getOptimizationLevel( ),
+				context.getApplicationClassLoader( ) );
+		CacheEntry entry = entries.get( key );
+		if ( entry != null )
+		{
+			hitCount.incrementAndGet( );
+			entry.lastAccess = accessClock.incrementAndGet( );
+			return entry.script;
+		}
+
+		missCount.incrementAndGet( );
+		// an engine compiling the same script at the same time gets its own
+		// copy, which is harmless
+		Script compiled = context.compileString( script,
+				id,
+				lineNumber,
+				securityDomain );
+		entry = new CacheEntry( compiled, accessClock.incrementAndGet( ) );
+		entries.put( key, entry );
+		if ( entries.size( ) > maxSize )
+		{
+			evict( );
+		}
+		return compiled;
+	}
+
+	/**
+	 * Evicts the least recently used tenth of the scripts.
+	 */
+	private void evict( )
+	{
+		synchronized ( evictionLock )
+		{
+			if ( entries.size( ) <= maxSize )
+			{
+				return;
+			}
+			List<Map.Entry<ScriptKey, CacheEntry>> list = new ArrayList<Map.Entry<ScriptKey, CacheEntry>>( entries.entrySet( ) );
+			Collections.sort( list,
+					new Comparator<Map.Entry<ScriptKey, CacheEntry>>( ) {
+
+						public int compare( Map.Entry<ScriptKey, CacheEntry> o1,
+								Map.Entry<ScriptKey, CacheEntry> o2 )
+						{
+							long access1 = o1.getValue( ).lastAccess;
+							long access2 = o2.getValue( ).lastAccess;
+							return access1 < access2 ? -1
+									: ( access1 == access2 ? 0 : 1 );
+						}
+					} );
+			int count = list.size( ) - maxSize + maxSize / 10;
+			for ( int i = 0; i < count && i < list.size( ); i++ )
+			{
+				if ( entries.remove( list.get( i ).getKey( ) ) != null )
+				{
+					evictionCount.incrementAndGet( );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes all the scripts, for example when the script engine is shut
+	 * down and the class loaders they were compiled with are to be released.
+	 */
+	public void clear( )
+	{
+		entries.clear( );
+	}
+
+	/**
+	 * @return how many scripts are cached
+	 */
+	public int size( )
+	{
+		return entries.size( );
+	}
+
+	/**
+	 * @return how many compilations were saved
+	 */
+	public long getHitCount( )
+	{
+		return hitCount.get( );
+	}
+
+	/**
+	 * @return how many scripts were compiled
+	 */
+	public long getMissCount( )
+	{
+		return missCount.get( );
+	}
+
+	/**
+	 * @return how many scripts were evicted
+	 */
+	public long getEvictionCount( )
+	{
+		return evictionCount.get( );
+	}
+
+	private static int getSizeProperty( )
+	{
+		try
+		{
+			String value = System.getProperty( SCRIPT_CACHE_SIZE );
+			if ( value != null && value.trim( ).length( ) > 0 )
+			{
+				return Integer.parseInt( value.trim( ) );
+			}
+		}
+		catch ( NumberFormatException e )
+		{
+			logger.log( Level.WARNING, "Invalid value of " + SCRIPT_CACHE_SIZE ); //$NON-NLS-1$
+		}
+		catch ( SecurityException e )
+		{
+		}
+		return DEFAULT_SIZE;
+	}
+
+	private static class CacheEntry
+	{
+
+		private final Script script;
+		private volatile long lastAccess;
+
+		CacheEntry( Script script, long lastAccess )
+		{
+			this.script = script;
+			this.lastAccess = lastAccess;
+		}
+	}
+
+	private static class ScriptKey
+	{
+
+		private final String script;
+		private final String id;
+		private final int lineNumber;
+		private final int optimizationLevel;
+		// compared by identity
+		private final ClassLoader classLoader;
+		private final int hashCode;
+
+		ScriptKey( String script, String id, int lineNumber,
+				int optimizationLevel, ClassLoader classLoader )
+		{
+			this.script = script;
+			this.id = id;
+			this.lineNumber = lineNumber;
+			this.optimizationLevel = optimizationLevel;
+			this.classLoader = classLoader;
+			int hash = script.hashCode( );
+			hash = hash * 31 + ( id == null ? 0 : id.hashCode( ) );
+			hash = hash * 31 + lineNumber;
+			hash = hash * 31 + optimizationLevel;
+			hash = hash * 31 + System.identityHashCode( classLoader );
+			this.hashCode = hash;
+		}
+
+		public int hashCode( )
+		{
+			return hashCode;
+		}
+
+		public boolean equals( Object obj )
+		{
+			if ( this == obj )
+			{
+				return true;
+			}
+			if ( !( obj instanceof ScriptKey ) )
+			{
+				return false;
+			}
+			ScriptKey key = (ScriptKey) obj;
+			return hashCode == key.hashCode
+					&& lineNumber == key.lineNumber
+					&& optimizationLevel == key.optimizationLevel
+					&& classLoader == key.classLoader
+					&& script.equals( key.script )
+					&& ( id == null ? key.id == null : id.equals( key.id ) );
+		}
+	}
+}
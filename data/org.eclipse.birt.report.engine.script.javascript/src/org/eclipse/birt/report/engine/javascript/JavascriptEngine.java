@@ -237,8 +237,12 @@ public class JavascriptEngine implements IScriptEngine, IDataScriptEngine
 
 					public Script run( )
 					{
-						return context.compileString( script, id, lineNumber,
-								ScriptUtil.getSecurityDomain( id ) );
+						return CompiledScriptCache.getInstance( )
+								.compile( context,
+										script,
+										id,
+										lineNumber,
+										ScriptUtil.getSecurityDomain( id ) );
 					}
 				} );
 		return new CompiledJavascript( id, lineNumber, script, scriptObject );
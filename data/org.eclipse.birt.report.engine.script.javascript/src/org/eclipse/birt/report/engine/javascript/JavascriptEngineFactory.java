@@ -132,6 +132,7 @@ public class JavascriptEngineFactory implements IScriptEngineFactory
 
 	public static void destroyMyFactory( )
 	{
+		CompiledScriptCache.getInstance( ).clear( );
 		ContextFactory factory = ContextFactory.getGlobal( );
 		if ( factory != null && factory instanceof MyFactory )
 		{
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.javascript;
+
+import junit.framework.TestCase;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * TestCases for CompiledScriptCache class.
+ */
+public class CompiledScriptCacheTest extends TestCase
+{
+
+	private Context context;
+
+	protected void setUp( ) throws Exception
+	{
+		super.setUp( );
+		context = Context.enter( );
+	}
+
+	protected void tearDown( ) throws Exception
+	{
+		Context.exit( );
+		super.tearDown( );
+	}
+
+	/**
+	 * The second compilation of a script is served from the cache, and only
+	 * the same source, name and line number is taken as the same script.
+	 */
+	public void testHit( )
+	{
+		CompiledScriptCache cache = new CompiledScriptCache( 10 );
+		Script script1 = cache.compile( context, "1 + 1", "test", 1, null ); //$NON-NLS-1$ //$NON-NLS-2$
+		Script script2 = cache.compile( context, "1 + 1", "test", 1, null ); //$NON-NLS-1$ //$NON-NLS-2$
+		assertSame( script1, script2 );
+		assertEquals( 1, cache.getHitCount( ) );
+		assertEquals( 1, cache.getMissCount( ) );
+		assertEquals( 1, cache.size( ) );
+
+		assertNotSame( script1,
+				cache.compile( context, "1 + 1", "other", 1, null ) ); //$NON-NLS-1$ //$NON-NLS-2$
+		assertNotSame( script1,
+				cache.compile( context, "1 + 1", "test", 2, null ) ); //$NON-NLS-1$ //$NON-NLS-2$
+		int optimizationLevel = context.getOptimizationLevel( );
+		context.setOptimizationLevel( optimizationLevel == -1 ? 0 : -1 );
+		assertNotSame( script1,
+				cache.compile( context, "1 + 1", "test", 1, null ) ); //$NON-NLS-1$ //$NON-NLS-2$
+		context.setOptimizationLevel( optimizationLevel );
+		assertEquals( 1, cache.getHitCount( ) );
+		assertEquals( 4, cache.getMissCount( ) );
+		assertEquals( 4, cache.size( ) );
+
+		cache.clear( );
+		assertEquals( 0, cache.size( ) );
+	}
+
+	/**
+	 * The least recently used tenth of the scripts is evicted when the cache
+	 * is full.
+	 */
+	public void testEviction( )
+	{
+		CompiledScriptCache cache = new CompiledScriptCache( 10 );
+		Script[] scripts = new Script[10];
+		for ( int i = 0; i < scripts.length; i++ )
+		{
+			scripts[i] = cache.compile( context, "" + i, "test", 1, null ); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		assertEquals( 10, cache.size( ) );
+		assertEquals( 0, cache.getEvictionCount( ) );
+
+		// script 0 is used again, so scripts 1 and 2 are the least recently
+		// used ones
+		assertSame( scripts[0], cache.compile( context, "0", "test", 1, null ) ); //$NON-NLS-1$ //$NON-NLS-2$
+		cache.compile( context, "10", "test", 1, null ); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals( 2, cache.getEvictionCount( ) );
+		assertEquals( 9, cache.size( ) );
+
+		assertSame( scripts[0], cache.compile( context, "0", "test", 1, null ) ); //$NON-NLS-1$ //$NON-NLS-2$
+		assertSame( scripts[3], cache.compile( context, "3", "test", 1, null ) ); //$NON-NLS-1$ //$NON-NLS-2$
+		long missCount = cache.getMissCount( );
+		assertNotSame( scripts[1], cache.compile( context, "1", "test", 1, null ) ); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals( missCount + 1, cache.getMissCount( ) );
+
+		// nothing is cached without a size
+		cache = new CompiledScriptCache( 0 );
+		assertNotSame( cache.compile( context, "0", "test", 1, null ), //$NON-NLS-1$ //$NON-NLS-2$
+				cache.compile( context, "0", "test", 1, null ) ); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals( 0, cache.size( ) );
+	}
+
+	/**
+	 * A cached script keeps no state of its executions, so running it in one
+	 * scope doesn't change the other scopes it runs in.
+	 */
+	public void testScopeIsolation( )
+	{
+		CompiledScriptCache cache = new CompiledScriptCache( 10 );
+		String source = "var count = ( typeof count == 'undefined' ) ? 1 : count + 1; count"; //$NON-NLS-1$
+		Scriptable scope1 = context.initStandardObjects( );
+		Scriptable scope2 = context.initStandardObjects( );
+
+		Script script = cache.compile( context, source, "test", 1, null ); //$NON-NLS-1$
+		assertEquals( 1, toInt( script.exec( context, scope1 ) ) );
+		assertEquals( 2, toInt( script.exec( context, scope1 ) ) );
+
+		Script cached = cache.compile( context, source, "test", 1, null ); //$NON-NLS-1$
+		assertSame( script, cached );
+		assertEquals( 1, toInt( cached.exec( context, scope2 ) ) );
+		assertEquals( 3, toInt( cached.exec( context, scope1 ) ) );
+		assertEquals( 2, toInt( cached.exec( context, scope2 ) ) );
+	}
+
+	private static int toInt( Object value )
+	{
+		return (int) Context.toNumber( value );
+	}
+}
@@ -35,6 +35,7 @@ public class AllTests
 		suite.addTestSuite( DrillThroughActionScriptTest.class );
 		suite.addTestSuite( HTMLEmitterOptimizeTest.class );
 		suite.addTestSuite( StyleTest.class );
+		suite.addTestSuite( SegmentedOutputTest.class );
 		
 		//$JUnit-END$
 		return suite;
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.emitter.html;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.birt.report.engine.api.HTMLRenderOption;
+import org.eclipse.birt.report.engine.api.IRenderOption;
+import org.eclipse.birt.report.engine.api.IRenderTask;
+import org.eclipse.birt.report.engine.api.IReportDocument;
+
+/**
+ * Renders the pages of a report document in parallel and compares the output
+ * with the output rendered by one thread.
+ */
+public class SegmentedOutputTest extends HTMLReportEmitterTestCase
+{
+
+	static final String DESIGN_FILE = "org/eclipse/birt/report/engine/emitter/html/segmentedOutput.xml";
+
+	public String getWorkSpace( )
+	{
+		return "./segmentedOutputTest";
+	}
+
+	public void testParallelRender( ) throws Exception
+	{
+		IReportDocument document = createReportDocument( DESIGN_FILE );
+		try
+		{
+			assertEquals( 40, document.getPageCount( ) );
+			Set<String> threads = Collections
+					.synchronizedSet( new HashSet<String>( ) );
+			String serial = render( document, 1, threads );
+			assertEquals( 1, threads.size( ) );
+
+			threads.clear( );
+			String parallel = render( document, 2, threads );
+			// the pages are split into 2 segments rendered by other threads
+			assertEquals( 2, threads.size( ) );
+			assertFalse( threads.contains( Thread.currentThread( ).getName( ) ) );
+			assertEquals( serial, parallel );
+			assertEquals( 1, count( parallel, "<html" ) );
+			assertEquals( 1, count( parallel, "</html>" ) );
+			assertEquals( 39, count( parallel, "page separator" ) );
+			assertTrue( parallel.indexOf( "Label 40" ) != -1 );
+		}
+		finally
+		{
+			document.close( );
+		}
+	}
+
+	private String render( IReportDocument document, int threadCount,
+			Set<String> threads ) throws Exception
+	{
+		HTMLRenderOption options = new HTMLRenderOption( );
+		options.setOutputFormat( IRenderOption.OUTPUT_FORMAT_HTML );
+		options.setHtmlPagination( true );
+		options.setOption( IRenderOption.RENDER_THREAD_COUNT, Integer
+				.valueOf( threadCount ) );
+		ByteArrayOutputStream output = new ByteArrayOutputStream( );
+		options.setOutputStream( output );
+		HashMap<String, Object> appContext = new HashMap<String, Object>( );
+		appContext.put( "threads", threads );
+		IRenderTask task = engine.createRenderTask( document );
+		try
+		{
+			task.setAppContext( appContext );
+			task.setRenderOption( options );
+			task.render( );
+			assertTrue( task.getErrors( ).toString( ), task.getErrors( )
+					.isEmpty( ) );
+			assertEquals( 40, task.getPageCount( ) );
+		}
+		finally
+		{
+			task.close( );
+		}
+		// the generated bookmarks are unique in each output
+		return new String( output.toByteArray( ), "UTF-8" ).replaceAll(
+				"AUTOGENBOOKMARK_\\d+_[0-9a-f\\-]+", "AUTOGENBOOKMARK" );
+	}
+
+	private int count( String content, String text )
+	{
+		int count = 0;
+		int index = content.indexOf( text );
+		while ( index != -1 )
+		{
+			count++;
+			index = content.indexOf( text, index + text.length( ) );
+		}
+		return count;
+	}
+}
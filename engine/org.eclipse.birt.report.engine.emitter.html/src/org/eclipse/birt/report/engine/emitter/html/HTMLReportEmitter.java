@@ -338,6 +338,12 @@ public class HTMLReportEmitter extends ContentEmitterAdapter
 	private ITableContent cachedStartTable = null;
 	
 	protected TableLayout tableLayout = new TableLayout( this );
+
+	/**
+	 * the segment of the output written by the emitter, null if the emitter
+	 * writes the whole document.
+	 */
+	protected String outputSegment;
 	
 	/**
 	 * the constructor
@@ -388,6 +394,13 @@ public class HTMLReportEmitter extends ContentEmitterAdapter
 		writer = creatWriter( );
 		if ( renderOption != null )
 		{
+			outputSegment = (String) renderOption
+					.getOption( IRenderOption.OUTPUT_SEGMENT );
+			if ( !isFirstSegment( ) )
+			{
+				// the pages before are written by the other segments
+				pageNo = 1;
+			}
 			HTMLRenderOption htmlOption = new HTMLRenderOption( renderOption );
 			isEmbeddable = htmlOption.getEmbeddable( );
 			Map options = renderOption.getOutputSetting( );
@@ -629,8 +642,53 @@ public class HTMLReportEmitter extends ContentEmitterAdapter
 		logger.log( Level.FINEST, "[HTMLReportEmitter] Start emitter." ); //$NON-NLS-1$
 
 		this.report = report;
+		if ( isFirstSegment( ) )
+		{
+			writer.open( out, "UTF-8" ); //$NON-NLS-1$
+			startReport( report );
+			return;
+		}
+		// the document header is written by the first segment, the header is
+		// still built to initialize the emitter, but it is discarded
+		writer.open( new OutputStream( ) {
+
+			public void write( int b )
+			{
+			}
+
+			public void write( byte[] b, int off, int len )
+			{
+			}
+		}, "UTF-8" ); //$NON-NLS-1$
+		startReport( report );
+		writer.writeCode( "" ); //$NON-NLS-1$
+		writer.endWriter( );
 		writer.open( out, "UTF-8" ); //$NON-NLS-1$
-		
+	}
+
+	/**
+	 * @return true if the emitter writes the document header.
+	 */
+	protected boolean isFirstSegment( )
+	{
+		return outputSegment == null
+				|| IRenderOption.OUTPUT_SEGMENT_FIRST.equals( outputSegment );
+	}
+
+	/**
+	 * @return true if the emitter writes the document trailer.
+	 */
+	protected boolean isLastSegment( )
+	{
+		return outputSegment == null
+				|| IRenderOption.OUTPUT_SEGMENT_LAST.equals( outputSegment );
+	}
+
+	/**
+	 * write the document header and initialize the emitter.
+	 */
+	private void startReport( IReportContent report )
+	{
 		ReportDesignHandle designHandle= null;
 		Report reportDesign = null;
 		if ( report != null )
@@ -1182,22 +1240,26 @@ public class HTMLReportEmitter extends ContentEmitterAdapter
 	public void end( IReportContent report )
 	{
 		logger.log( Level.FINEST, "[HTMLReportEmitter] End body." ); //$NON-NLS-1$
-		if ( report != null )
+		// the document trailer is written by the last segment
+		if ( isLastSegment( ) )
 		{
-			List errors = report.getErrors( );
-			if ( errors != null && !errors.isEmpty( ) )
+			if ( report != null )
 			{
-				outputErrors( errors );
+				List errors = report.getErrors( );
+				if ( errors != null && !errors.isEmpty( ) )
+				{
+					outputErrors( errors );
+				}
+			}
+			if ( !isEmbeddable )
+			{
+				writer.closeTag( HTMLTags.TAG_BODY );
+				writer.closeTag( HTMLTags.TAG_HTML );
+			}
+			else
+			{
+				writer.closeTag( HTMLTags.TAG_DIV );
 			}
-		}
-		if ( !isEmbeddable )
-		{
-			writer.closeTag( HTMLTags.TAG_BODY );
-			writer.closeTag( HTMLTags.TAG_HTML );
-		}
-		else
-		{
-			writer.closeTag( HTMLTags.TAG_DIV );
 		}
 
 		writer.endWriter( );
@@ -94,4 +94,26 @@ public class PageSequenceParseTest extends TestCase
 			assert ( false );
 		}
 	}
+
+	public void testSplitPageSequence( ) throws EngineException
+	{
+		List<long[]> pages = PageSequenceParse.parsePageSequence(
+				"1-4,7,9-13", 15 );
+		List<List<long[]>> segments = PageSequenceParse.splitPageSequence(
+				pages, 3 );
+		assertEquals( 3, segments.size( ) );
+		assertEquals( "1-3", PageSequenceParse.toPageRange( segments.get( 0 ) ) );
+		assertEquals( "4,7,9", PageSequenceParse.toPageRange( segments.get( 1 ) ) );
+		assertEquals( "10-13", PageSequenceParse.toPageRange( segments
+				.get( 2 ) ) );
+
+		segments = PageSequenceParse.splitPageSequence( pages, 20 );
+		assertEquals( 10, segments.size( ) );
+		assertEquals( "13", PageSequenceParse.toPageRange( segments.get( 9 ) ) );
+
+		segments = PageSequenceParse.splitPageSequence( pages, 1 );
+		assertEquals( 1, segments.size( ) );
+		assertEquals( "1-4,7,9-13", PageSequenceParse.toPageRange( segments
+				.get( 0 ) ) );
+	}
 }
@@ -0,0 +1,223 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.css.dom;
+
+import junit.framework.TestCase;
+
+import org.eclipse.birt.report.engine.content.ICellContent;
+import org.eclipse.birt.report.engine.content.IContainerContent;
+import org.eclipse.birt.report.engine.content.ILabelContent;
+import org.eclipse.birt.report.engine.content.IRowContent;
+import org.eclipse.birt.report.engine.content.IStyle;
+import org.eclipse.birt.report.engine.content.ITableContent;
+import org.eclipse.birt.report.engine.content.impl.Column;
+import org.eclipse.birt.report.engine.content.impl.ReportContent;
+import org.eclipse.birt.report.engine.css.engine.value.DataFormatValue;
+import org.w3c.dom.css.CSSValue;
+
+public class ComputedStyleTest extends TestCase
+{
+
+	public void testSharedComputedStyle( )
+	{
+		ReportContent report = new ReportContent( );
+		IContainerContent container = report.createContainerContent( );
+		container.getStyle( ).setFontSize( "20pt" );
+
+		ILabelContent label1 = createLabel( report, container, "red" );
+		ILabelContent label2 = createLabel( report, container, "red" );
+		ILabelContent label3 = createLabel( report, container, "blue" );
+		ILabelContent label4 = createLabel( report, container, null );
+		ILabelContent label5 = createLabel( report, container, null );
+
+		IStyle style1 = label1.getComputedStyle( );
+		assertSame( style1, label2.getComputedStyle( ) );
+		assertNotSame( style1, label3.getComputedStyle( ) );
+		assertSame( label4.getComputedStyle( ), label5.getComputedStyle( ) );
+		assertNotSame( style1, label4.getComputedStyle( ) );
+
+		assertEquals( "rgb(255, 0, 0)", style1.getColor( ) );
+		assertEquals( "rgb(0, 0, 255)", label3.getComputedStyle( )
+				.getColor( ) );
+		assertEquals( "20pt", style1.getFontSize( ) );
+		assertEquals( "20pt", label4.getComputedStyle( ).getFontSize( ) );
+
+		// the changed content doesn't use the shared style any more
+		label2.getStyle( ).setColor( "blue" );
+		assertEquals( "rgb(0, 0, 255)", label2.getComputedStyle( )
+				.getColor( ) );
+		assertEquals( "rgb(255, 0, 0)", label1.getComputedStyle( )
+				.getColor( ) );
+	}
+
+	public void testChangeFirstSharingContent( )
+	{
+		ReportContent report = new ReportContent( );
+		IContainerContent container = report.createContainerContent( );
+
+		ILabelContent label1 = createLabel( report, container, "red" );
+		ILabelContent label2 = createLabel( report, container, "red" );
+		assertSame( label1.getComputedStyle( ), label2.getComputedStyle( ) );
+
+		// the shared style doesn't depend on the content creating it
+		label1.getStyle( ).setFontWeight( "bold" );
+		assertEquals( "bold", label1.getComputedStyle( ).getFontWeight( ) );
+		assertNull( label2.getStyle( ).getFontWeight( ) );
+		assertEquals( "normal", label2.getComputedStyle( ).getFontWeight( ) );
+		assertEquals( "rgb(255, 0, 0)", label2.getComputedStyle( )
+				.getColor( ) );
+
+		// the contents created later still share the unchanged style
+		ILabelContent label3 = createLabel( report, container, "red" );
+		assertSame( label2.getComputedStyle( ), label3.getComputedStyle( ) );
+		assertEquals( "normal", label3.getComputedStyle( ).getFontWeight( ) );
+	}
+
+	public void testChangeFirstSharingCell( )
+	{
+		ReportContent report = new ReportContent( );
+		ITableContent table = report.createTableContent( );
+		table.addColumn( new Column( report ) );
+		IRowContent row = report.createRowContent( );
+		row.setParent( table );
+
+		ICellContent cell1 = createCell( report, row );
+		ICellContent cell2 = createCell( report, row );
+		assertSame( cell1.getComputedStyle( ), cell2.getComputedStyle( ) );
+
+		cell1.getStyle( ).setFontWeight( "bold" );
+		assertEquals( "bold", cell1.getComputedStyle( ).getFontWeight( ) );
+		assertEquals( "normal", cell2.getComputedStyle( ).getFontWeight( ) );
+		assertEquals( "rgb(255, 0, 0)", cell2.getComputedStyle( ).getColor( ) );
+	}
+
+	public void testCacheSize( )
+	{
+		ReportContent report = new ReportContent( );
+		IContainerContent container = report.createContainerContent( );
+		ComputedStyle pcs = (ComputedStyle) container.getComputedStyle( );
+		for ( int i = 0; i < ComputedStyle.MAX_CACHED_STYLES * 2; i++ )
+		{
+			ILabelContent label = createLabel( report, container, "#"
+					+ Integer.toHexString( 0x100000 + i ) );
+			label.getComputedStyle( );
+		}
+		assertEquals( ComputedStyle.MAX_CACHED_STYLES, pcs.cachedStyles
+				.size( ) );
+	}
+
+	public void testConcurrentSharedStyle( ) throws Exception
+	{
+		ReportContent report = new ReportContent( );
+		IContainerContent container = report.createContainerContent( );
+		container.getStyle( ).setFontSize( "20pt" );
+		createLabel( report, container, "red" ).getComputedStyle( );
+		final IStyle shared = createLabel( report, container, "red" )
+				.getComputedStyle( );
+
+		// the same style resolved by one thread
+		ReportContent expectedReport = new ReportContent( );
+		IContainerContent expectedContainer = expectedReport
+				.createContainerContent( );
+		expectedContainer.getStyle( ).setFontSize( "20pt" );
+		final IStyle expected = createLabel( expectedReport,
+				expectedContainer, "red" ).getComputedStyle( );
+		final String[] expectedValues = new String[IStyle.NUMBER_OF_STYLE];
+		for ( int i = 0; i < expectedValues.length; i++ )
+		{
+			expectedValues[i] = getCssText( expected.getProperty( i ) );
+		}
+
+		final Throwable[] failure = new Throwable[1];
+		Thread[] threads = new Thread[8];
+		for ( int i = 0; i < threads.length; i++ )
+		{
+			final int start = i;
+			threads[i] = new Thread( ) {
+
+				public void run( )
+				{
+					try
+					{
+						for ( int j = 0; j < IStyle.NUMBER_OF_STYLE; j++ )
+						{
+							int index = ( start * 7 + j )
+									% IStyle.NUMBER_OF_STYLE;
+							assertEquals( expectedValues[index],
+									getCssText( shared.getProperty( index ) ) );
+						}
+					}
+					catch ( Throwable t )
+					{
+						synchronized ( failure )
+						{
+							failure[0] = t;
+						}
+					}
+				}
+			};
+		}
+		for ( int i = 0; i < threads.length; i++ )
+		{
+			threads[i].start( );
+		}
+		for ( int i = 0; i < threads.length; i++ )
+		{
+			threads[i].join( );
+		}
+		synchronized ( failure )
+		{
+			if ( failure[0] != null )
+			{
+				throw new Exception( failure[0] );
+			}
+		}
+	}
+
+	private static String getCssText( CSSValue value )
+	{
+		if ( value instanceof DataFormatValue )
+		{
+			// the data format has no css text
+			DataFormatValue format = (DataFormatValue) value;
+			return format.getStringPattern( ) + ";" + format.getNumberPattern( )
+					+ ";" + format.getDateTimePattern( );
+		}
+		return value == null ? null : value.getCssText( );
+	}
+
+	private ILabelContent createLabel( ReportContent report,
+			IContainerContent parent, String color )
+	{
+		ILabelContent label = report.createLabelContent( );
+		label.setParent( parent );
+		if ( color != null )
+		{
+			StyleDeclaration style = new StyleDeclaration( report
+					.getCSSEngine( ) );
+			style.setColor( color );
+			label.setInlineStyle( style );
+		}
+		return label;
+	}
+
+	private ICellContent createCell( ReportContent report, IRowContent row )
+	{
+		ICellContent cell = report.createCellContent( );
+		cell.setParent( row );
+		cell.setColumn( 0 );
+		StyleDeclaration style = new StyleDeclaration( report.getCSSEngine( ) );
+		style.setColor( "red" );
+		cell.setInlineStyle( style );
+		return cell;
+	}
+}
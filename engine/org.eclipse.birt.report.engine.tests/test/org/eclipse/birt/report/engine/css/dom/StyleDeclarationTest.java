@@ -13,6 +13,7 @@ package org.eclipse.birt.report.engine.css.dom;
 
 import junit.framework.TestCase;
 
+import org.eclipse.birt.report.engine.content.IStyle;
 import org.eclipse.birt.report.engine.css.engine.BIRTCSSEngine;
 import org.eclipse.birt.report.engine.css.engine.CSSEngine;
 
@@ -42,4 +43,38 @@ public class StyleDeclarationTest extends TestCase
 		String output = style.getFontFamily( );
 		assertEquals( golden, output );
 	}
+
+	public void testPackedProperties( )
+	{
+		CSSEngine engine = new BIRTCSSEngine( );
+		StyleDeclaration style = new StyleDeclaration( engine );
+		assertTrue( style.isEmpty( ) );
+		style.setFontWeight( "bold" );
+		style.setColor( "red" );
+		style.setWhiteSpace( "nowrap" );
+		assertEquals( 3, style.getLength( ) );
+		assertEquals( "bold", style.getFontWeight( ) );
+		assertEquals( "red", style.getColor( ) );
+		assertEquals( "nowrap", style.getWhiteSpace( ) );
+		assertNull( style.getFontSize( ) );
+
+		// the copy shares the values until it is changed
+		StyleDeclaration copy = new StyleDeclaration( style );
+		assertEquals( style, copy );
+		assertEquals( style.hashCode( ), copy.hashCode( ) );
+		copy.setColor( "blue" );
+		copy.setProperty( IStyle.STYLE_FONT_WEIGHT, null );
+		assertEquals( 2, copy.getLength( ) );
+		assertNull( copy.getFontWeight( ) );
+		assertEquals( "blue", copy.getColor( ) );
+		assertEquals( "red", style.getColor( ) );
+		assertEquals( "bold", style.getFontWeight( ) );
+		assertFalse( style.equals( copy ) );
+
+		style.setProperty( IStyle.STYLE_COLOR, null );
+		style.setProperty( IStyle.STYLE_FONT_WEIGHT, null );
+		style.setProperty( IStyle.STYLE_WHITE_SPACE, null );
+		assertTrue( style.isEmpty( ) );
+		assertNull( style.getColor( ) );
+	}
 }
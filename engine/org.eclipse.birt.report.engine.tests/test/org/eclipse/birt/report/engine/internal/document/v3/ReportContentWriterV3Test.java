@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.internal.document.v3;
+
+import java.io.File;
+
+import org.eclipse.birt.core.archive.RAInputStream;
+import org.eclipse.birt.core.archive.compound.ArchiveFile;
+import org.eclipse.birt.core.archive.compound.ArchiveReader;
+import org.eclipse.birt.core.archive.compound.ArchiveWriter;
+import org.eclipse.birt.report.engine.EngineCase;
+import org.eclipse.birt.report.engine.api.InstanceID;
+import org.eclipse.birt.report.engine.content.IContent;
+import org.eclipse.birt.report.engine.content.IStyle;
+import org.eclipse.birt.report.engine.content.impl.LabelContent;
+import org.eclipse.birt.report.engine.content.impl.ReportContent;
+import org.eclipse.birt.report.engine.css.dom.StyleDeclaration;
+
+public class ReportContentWriterV3Test extends EngineCase
+{
+
+	static final String ARCHIVE_FILE = "./utest/content.dat";
+	static final String CONTENT_STREAM = "/content/content.dat";
+	static final String UNSTYLED_CONTENT_STREAM = "/content/unstyled.dat";
+	static final int CONTENT_COUNT = 100;
+
+	public void setUp( )
+	{
+		removeFile( ARCHIVE_FILE );
+	}
+
+	public void tearDown( )
+	{
+		removeFile( ARCHIVE_FILE );
+	}
+
+	public void testSharedStyles( ) throws Exception
+	{
+		new File( ARCHIVE_FILE ).getParentFile( ).mkdirs( );
+		ReportContent report = new ReportContent( );
+		long[] offsets = new long[CONTENT_COUNT];
+		ArchiveFile archive = new ArchiveFile( ARCHIVE_FILE, "rw" );
+		try
+		{
+			ReportContentWriterV3 writer = new ReportContentWriterV3(
+					new ArchiveWriter( archive ), CONTENT_STREAM );
+			ReportContentWriterV3 unstyledWriter = new ReportContentWriterV3(
+					new ArchiveWriter( archive ), UNSTYLED_CONTENT_STREAM );
+			try
+			{
+				for ( int i = 0; i < CONTENT_COUNT; i++ )
+				{
+					LabelContent label = createLabel( report, i );
+					offsets[i] = writer.writeContent( label );
+					label.setInlineStyle( null );
+					unstyledWriter.writeContent( label );
+				}
+			}
+			finally
+			{
+				writer.close( );
+				unstyledWriter.close( );
+			}
+
+			ArchiveReader archiveReader = new ArchiveReader( archive );
+			// the 3 distinct styles are saved once, the other contents only
+			// save the field id and the style offset. The first content
+			// always saves its style as the reader expects it at offset 0.
+			RAInputStream unstyled = archiveReader
+					.getStream( UNSTYLED_CONTENT_STREAM );
+			long unstyledLength = unstyled.length( );
+			unstyled.close( );
+			RAInputStream in = archiveReader.getStream( CONTENT_STREAM );
+			assertTrue( in.length( ) <= unstyledLength + CONTENT_COUNT * 10
+					+ 4 * 64 );
+			ReportContentReaderV3 reader = new ReportContentReaderV3(
+					new ReportContent( ), in, getClass( ).getClassLoader( ) );
+			try
+			{
+				IStyle[] styles = new IStyle[3];
+				for ( int i = 0; i < CONTENT_COUNT; i++ )
+				{
+					IContent content = reader.readContent( offsets[i] );
+					assertEquals( "label" + i, content.getName( ) );
+					IStyle style = content.getInlineStyle( );
+					assertEquals( getColor( i ), style.getColor( ) );
+					assertEquals( "bold", style.getFontWeight( ) );
+					if ( styles[i % 3] == null )
+					{
+						styles[i % 3] = style;
+					}
+					assertEquals( styles[i % 3], style );
+				}
+				// changing a shared style doesn't change the others
+				IContent content = reader.readContent( offsets[3] );
+				content.getInlineStyle( ).setColor( "black" );
+				assertEquals( "black", content.getInlineStyle( ).getColor( ) );
+				content = reader.readContent( offsets[0] );
+				assertEquals( getColor( 0 ), content.getInlineStyle( )
+						.getColor( ) );
+			}
+			finally
+			{
+				reader.close( );
+			}
+		}
+		finally
+		{
+			archive.close( );
+		}
+	}
+
+	public void testStyledRootContent( ) throws Exception
+	{
+		new File( ARCHIVE_FILE ).getParentFile( ).mkdirs( );
+		ReportContent report = new ReportContent( );
+		long[] offsets = new long[3];
+		ArchiveFile archive = new ArchiveFile( ARCHIVE_FILE, "rw" );
+		try
+		{
+			ReportContentWriterV3 writer = new ReportContentWriterV3(
+					new ArchiveWriter( archive ), CONTENT_STREAM );
+			try
+			{
+				writer.writeReport( report );
+				for ( int i = 0; i < offsets.length; i++ )
+				{
+					offsets[i] = writer.writeContent( createLabel( report,
+							i * 3 ) );
+				}
+			}
+			finally
+			{
+				writer.close( );
+			}
+
+			// the reader finds the first content right after the report, so
+			// no style record may be saved before it.
+			ArchiveReader archiveReader = new ArchiveReader( archive );
+			ReportContentReaderV3 reader = new ReportContentReaderV3(
+					new ReportContent( ), archiveReader
+							.getStream( CONTENT_STREAM ), getClass( )
+							.getClassLoader( ) );
+			try
+			{
+				assertEquals( offsets[0], reader.getRoot( ) );
+				IContent content = reader.readContent( reader.getRoot( ) );
+				assertEquals( "label0", content.getName( ) );
+				assertEquals( "red", content.getInlineStyle( ).getColor( ) );
+				for ( int i = 1; i < offsets.length; i++ )
+				{
+					content = reader.readContent( offsets[i] );
+					assertEquals( "label" + i * 3, content.getName( ) );
+					assertEquals( "red", content.getInlineStyle( )
+							.getColor( ) );
+					assertEquals( "bold", content.getInlineStyle( )
+							.getFontWeight( ) );
+				}
+			}
+			finally
+			{
+				reader.close( );
+			}
+		}
+		finally
+		{
+			archive.close( );
+		}
+	}
+
+	private LabelContent createLabel( ReportContent report, int index )
+	{
+		LabelContent label = (LabelContent) report.createLabelContent( );
+		label.setName( "label" + index );
+		label.setInstanceID( new InstanceID( null, index, index, null ) );
+		StyleDeclaration style = new StyleDeclaration( report.getCSSEngine( ) );
+		style.setColor( getColor( index ) );
+		style.setFontWeight( "bold" );
+		label.setInlineStyle( style );
+		return label;
+	}
+
+	private String getColor( int index )
+	{
+		switch ( index % 3 )
+		{
+			case 0 :
+				return "red";
+			case 1 :
+				return "green";
+			default :
+				return "blue";
+		}
+	}
+}
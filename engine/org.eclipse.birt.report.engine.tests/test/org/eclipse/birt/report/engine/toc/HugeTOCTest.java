@@ -14,10 +14,16 @@ package org.eclipse.birt.report.engine.toc;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import org.eclipse.birt.core.archive.compound.ArchiveFile;
 import org.eclipse.birt.core.archive.compound.ArchiveReader;
 import org.eclipse.birt.core.archive.compound.ArchiveWriter;
+import org.eclipse.birt.report.engine.api.TOCNode;
+
+import com.ibm.icu.util.TimeZone;
+import com.ibm.icu.util.ULocale;
 
 public class HugeTOCTest extends TOCTestCase
 {
@@ -95,4 +101,81 @@ public class HugeTOCTest extends TOCTestCase
 			archive.close( );
 		}
 	}
+
+	public void testFindTOC( ) throws IOException
+	{
+		int size = 100;
+		new File( TOC_FILE ).delete( );
+		ArchiveFile archive = new ArchiveFile( TOC_FILE, "rw" );
+		try
+		{
+			ITOCWriter writer = new TOCWriter( new ArchiveWriter( archive ) );
+			try
+			{
+				TOCBuilder builder = new TOCBuilder( writer );
+				for ( int i = 0; i < size; i++ )
+				{
+					TOCEntry level1 = startEntry( builder, null, "TOC_" + i );
+					for ( int j = 0; j < size; j++ )
+					{
+						createEntry( builder, level1, "TOC_" + i + "_" + j );
+					}
+					closeEntry( builder, level1 );
+				}
+			}
+			finally
+			{
+				writer.close( );
+			}
+
+			TOCReader reader = new TOCReader( new ArchiveReader( archive ),
+					ClassLoader.getSystemClassLoader( ) );
+			try
+			{
+				TOCView view = new TOCView( reader.readTree( ), null,
+						ULocale.ENGLISH, TimeZone.getTimeZone( "GMT" ),
+						"html" );
+				// the nodes are found in any order, the reader re-loads the
+				// nodes released from its cache.
+				assertEquals( "TOC_99_99", view.findTOC( "__TOC_99_99" )
+						.getDisplayString( ) );
+				assertEquals( "TOC_0_0", view.findTOC( "__TOC_0_0" )
+						.getDisplayString( ) );
+				assertEquals( "TOC_50", view.findTOC( "__TOC_50" )
+						.getDisplayString( ) );
+				assertEquals( "TOC_50_7", view.findTOC( "__TOC_50_7" )
+						.getDisplayString( ) );
+				assertNull( view.findTOC( "__TOC_50_100" ) );
+				assertNull( view.findTOC( "__TOC_100" ) );
+
+				TOCNode node = view.findTOC( "__TOC_3" );
+				assertFalse( node.getChildren( ).isEmpty( ) );
+				Iterator children = node.getChildren( ).iterator( );
+				for ( int i = 0; i < size; i++ )
+				{
+					TOCNode child = (TOCNode) children.next( );
+					assertEquals( "TOC_3_" + i, child.getDisplayString( ) );
+					assertTrue( child.getChildren( ).isEmpty( ) );
+				}
+				assertFalse( children.hasNext( ) );
+				try
+				{
+					children.next( );
+					fail( );
+				}
+				catch ( NoSuchElementException e )
+				{
+				}
+				assertEquals( size, node.getChildren( ).size( ) );
+			}
+			finally
+			{
+				reader.close( );
+			}
+		}
+		finally
+		{
+			archive.close( );
+		}
+	}
 }
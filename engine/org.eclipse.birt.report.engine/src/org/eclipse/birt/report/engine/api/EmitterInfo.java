@@ -33,6 +33,7 @@ public class EmitterInfo
 	private boolean needOutputResultSet;
 	private int overridePriority;
 	private boolean isFormatDeprecated;
+	private boolean supportSegmentedOutput;
 
 	/**
 	 * whether emitter need to output the display:none or process it in layout
@@ -221,4 +222,27 @@ public class EmitterInfo
 	{
 		this.isFormatDeprecated = isFormatDeprecated;
 	}
+
+	/**
+	 * Get if the emitter supports segmented output. The outputs of such
+	 * emitter rendering consecutive page ranges can be concatenated into the
+	 * output of the whole range.
+	 * 
+	 * @return
+	 * @see org.eclipse.birt.report.engine.api.IRenderOption#OUTPUT_SEGMENT
+	 */
+	public boolean isSupportSegmentedOutput( )
+	{
+		return supportSegmentedOutput;
+	}
+
+	/**
+	 * Set if the emitter supports segmented output
+	 * 
+	 * @param supportSegmentedOutput
+	 */
+	public void setSupportSegmentedOutput( boolean supportSegmentedOutput )
+	{
+		this.supportSegmentedOutput = supportSegmentedOutput;
+	}
 }
@@ -73,6 +73,28 @@ public interface IRenderOption extends ITaskOption
 	
 	public static final String REPORTLET_SIZE = "reportletSize";
 
+	/**
+	 * The count of the threads rendering the pages of a finished report
+	 * document in parallel. The value is an Integer object, the default is 1.
+	 * It takes effect only if the emitter supports segmented output and the
+	 * output is a file or a stream.
+	 */
+	public static final String RENDER_THREAD_COUNT = "renderThreadCount"; //$NON-NLS-1$
+
+	/**
+	 * The segment of the output written by the emitter, the value is one of
+	 * {@link #OUTPUT_SEGMENT_FIRST}, {@link #OUTPUT_SEGMENT_MIDDLE} and
+	 * {@link #OUTPUT_SEGMENT_LAST}. The emitter supporting segmented output
+	 * writes the document header only in the first segment and the document
+	 * trailer only in the last one. If the option is not set, the output is
+	 * the whole document.
+	 */
+	public static final String OUTPUT_SEGMENT = "outputSegment"; //$NON-NLS-1$
+
+	public static final String OUTPUT_SEGMENT_FIRST = "first"; //$NON-NLS-1$
+	public static final String OUTPUT_SEGMENT_MIDDLE = "middle"; //$NON-NLS-1$
+	public static final String OUTPUT_SEGMENT_LAST = "last"; //$NON-NLS-1$
+
 	/**
 	 * @return
 	 * @deprecated use getOptions instead
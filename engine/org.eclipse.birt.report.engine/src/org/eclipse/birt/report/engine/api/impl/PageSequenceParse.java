@@ -91,6 +91,87 @@ public class PageSequenceParse
 		return sort( list );
 	}
 
+	/**
+	 * split the page sequence into consecutive segments of about the same page
+	 * count.
+	 * 
+	 * @param pageSequence
+	 *            the sorted page ranges, each one is a long[]{start, end}.
+	 * @param segmentCount
+	 *            the count of the segments
+	 * @return the page ranges of each segment in order, the list is shorter
+	 *         than segmentCount if there are not enough pages.
+	 */
+	public static List<List<long[]>> splitPageSequence(
+			List<long[]> pageSequence, int segmentCount )
+	{
+		long pageCount = 0;
+		for ( long[] range : pageSequence )
+		{
+			pageCount += range[1] - range[0] + 1;
+		}
+		if ( segmentCount > pageCount )
+		{
+			segmentCount = (int) pageCount;
+		}
+		List<List<long[]>> segments = new ArrayList<List<long[]>>( );
+		if ( segmentCount <= 0 )
+		{
+			return segments;
+		}
+		List<long[]> segment = new ArrayList<long[]>( );
+		// the pages outputted before the current segment end
+		long outputPages = 0;
+		long segmentEnd = pageCount / segmentCount;
+		for ( long[] range : pageSequence )
+		{
+			long start = range[0];
+			while ( start <= range[1] )
+			{
+				long end = Math.min( range[1], start + segmentEnd
+						- outputPages - 1 );
+				segment.add( new long[]{start, end} );
+				outputPages += end - start + 1;
+				start = end + 1;
+				if ( outputPages == segmentEnd )
+				{
+					segments.add( segment );
+					segment = new ArrayList<long[]>( );
+					segmentEnd = pageCount * ( segments.size( ) + 1 )
+							/ segmentCount;
+				}
+			}
+		}
+		return segments;
+	}
+
+	/**
+	 * format the page sequence into the page range accepted by
+	 * parsePageSequence.
+	 * 
+	 * @param pageSequence
+	 *            the page ranges, each one is a long[]{start, end}.
+	 * @return the page range such as "1-5,7,9-10"
+	 */
+	public static String toPageRange( List<long[]> pageSequence )
+	{
+		StringBuffer buffer = new StringBuffer( );
+		for ( long[] range : pageSequence )
+		{
+			if ( buffer.length( ) > 0 )
+			{
+				buffer.append( ',' );
+			}
+			buffer.append( range[0] );
+			if ( range[1] != range[0] )
+			{
+				buffer.append( '-' );
+				buffer.append( range[1] );
+			}
+		}
+		return buffer.toString( );
+	}
+
 	private static List sort( List list )
 	{
 		for ( int i = 0; i < list.size( ); i++ )
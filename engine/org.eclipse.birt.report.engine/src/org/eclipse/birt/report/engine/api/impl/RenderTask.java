@@ -11,11 +11,24 @@
 
 package org.eclipse.birt.report.engine.api.impl;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import org.eclipse.birt.core.exception.BirtException;
@@ -32,6 +45,7 @@ import org.eclipse.birt.report.engine.api.IReportDocumentInfo;
 import org.eclipse.birt.report.engine.api.IReportRunnable;
 import org.eclipse.birt.report.engine.api.ITOCTree;
 import org.eclipse.birt.report.engine.api.InstanceID;
+import org.eclipse.birt.report.engine.api.RenderOption;
 import org.eclipse.birt.report.engine.content.IReportContent;
 import org.eclipse.birt.report.engine.emitter.IContentEmitter;
 import org.eclipse.birt.report.engine.executor.EngineExtensionManager;
@@ -87,6 +101,14 @@ public class RenderTask extends EngineTask implements IRenderTask
 	// the html layout engine
 	private IReportLayoutEngine layoutEngine = null;
 
+	// the render rendering the segments in parallel
+	private volatile ParallelPageRangeRender parallelRender = null;
+
+	/**
+	 * the minimum pages rendered by a thread in parallel render.
+	 */
+	protected static final int MIN_SEGMENT_PAGE_COUNT = 16;
+
 	/**
 	 * @param engine
 	 *            the report engine
@@ -318,7 +340,16 @@ public class RenderTask extends EngineTask implements IRenderTask
 				} );
 			}
 
-			innerRender.render( );
+			InnerRender render = innerRender;
+			if ( render instanceof PageRangeRender )
+			{
+				InnerRender parallelRender = createParallelRender( (PageRangeRender) render );
+				if ( parallelRender != null )
+				{
+					render = parallelRender;
+				}
+			}
+			render.render( );
 		}
 		catch ( Throwable t )
 		{
@@ -421,6 +452,85 @@ public class RenderTask extends EngineTask implements IRenderTask
 		{
 			layoutEngine.cancel( );
 		}
+		ParallelPageRangeRender render = parallelRender;
+		if ( render != null )
+		{
+			render.cancelSegments( );
+		}
+	}
+
+	/**
+	 * create the render which renders the page range on several threads. The
+	 * pages are split into segments and each segment is rendered by a render
+	 * task of its own, the outputs of the segments are concatenated in order.
+	 * It is used only if the emitter supports segmented output, the render
+	 * option RENDER_THREAD_COUNT is more than 1 and the document is finished.
+	 * 
+	 * @return the parallel render, null if the pages should be rendered by
+	 *         the current thread.
+	 */
+	private InnerRender createParallelRender( PageRangeRender render )
+			throws EngineException
+	{
+		if ( reportRunnable != null
+				|| !( reportDocument instanceof ReportDocumentReader )
+				|| !reportDocument.isComplete( ) )
+		{
+			return null;
+		}
+		setupRenderOption( );
+		IRenderOption options = executionContext.getRenderOption( );
+		int threadCount = getRenderThreadCount( options );
+		if ( threadCount < 2
+				|| options.getOption( IRenderOption.OUTPUT_SEGMENT ) != null
+				|| !ExtensionManager.getInstance( ).supportSegmentedOutput(
+						emitterID ) )
+		{
+			return null;
+		}
+		if ( options.getOption( IRenderOption.OUTPUT_FILE_NAME ) == null
+				&& !( options.getOption( IRenderOption.OUTPUT_STREAM ) instanceof OutputStream ) )
+		{
+			return null;
+		}
+		// the segments are rendered page by page, so the pages rendered as
+		// a whole can't be split
+		pagination = ExtensionManager.getInstance( ).getPagination( emitterID );
+		if ( !render.needPagedExecutor( render.pageSequences ) )
+		{
+			return null;
+		}
+		int segmentCount = Math.min( threadCount, render.getPageCount( )
+				/ MIN_SEGMENT_PAGE_COUNT );
+		if ( segmentCount < 2 )
+		{
+			return null;
+		}
+		List<List<long[]>> segments = PageSequenceParse.splitPageSequence(
+				render.pageSequences, segmentCount );
+		return new ParallelPageRangeRender( segments, threadCount );
+	}
+
+	private int getRenderThreadCount( IRenderOption options )
+	{
+		Object value = options.getOption( IRenderOption.RENDER_THREAD_COUNT );
+		if ( value instanceof Number )
+		{
+			return ( (Number) value ).intValue( );
+		}
+		if ( value instanceof String )
+		{
+			try
+			{
+				return Integer.parseInt( ( (String) value ).trim( ) );
+			}
+			catch ( NumberFormatException ex )
+			{
+				log.log( Level.WARNING, "invalid render thread count {0}", //$NON-NLS-1$
+						value );
+			}
+		}
+		return 1;
 	}
 
 	private interface InnerRender
@@ -750,6 +860,290 @@ public class RenderTask extends EngineTask implements IRenderTask
 		}
 	}
 
+	/**
+	 * Renders the segments of a page range on several threads, then
+	 * concatenates the outputs of the segments into the output of the task.
+	 */
+	private class ParallelPageRangeRender implements InnerRender
+	{
+
+		private List<List<long[]>> segments;
+		private int threadCount;
+
+		// the tasks rendering the segments, guarded by this
+		private List<RenderTask> segmentTasks = new ArrayList<RenderTask>( );
+		private boolean segmentsCanceled;
+
+		ParallelPageRangeRender( List<List<long[]>> segments, int threadCount )
+		{
+			this.segments = segments;
+			this.threadCount = Math.min( threadCount, segments.size( ) );
+		}
+
+		public void render( ) throws Exception
+		{
+			int count = segments.size( );
+			String tempDir = engine.getConfig( ).getTempDir( );
+			SegmentRender[] renders = new SegmentRender[count];
+			List<Future<Object>> futures = new ArrayList<Future<Object>>( );
+			boolean completed = false;
+			parallelRender = this;
+			ExecutorService threadPool = Executors
+					.newFixedThreadPool( threadCount );
+			try
+			{
+				for ( int i = 0; i < count; i++ )
+				{
+					String segment = i == 0
+							? IRenderOption.OUTPUT_SEGMENT_FIRST
+							: i == count - 1
+									? IRenderOption.OUTPUT_SEGMENT_LAST
+									: IRenderOption.OUTPUT_SEGMENT_MIDDLE;
+					File file = File.createTempFile( "segment", ".tmp", //$NON-NLS-1$ //$NON-NLS-2$
+							tempDir == null ? null : new File( tempDir ) );
+					renders[i] = new SegmentRender( this, segments.get( i ),
+							segment, file );
+					futures.add( threadPool.submit( renders[i] ) );
+				}
+				for ( Future<Object> future : futures )
+				{
+					try
+					{
+						future.get( );
+					}
+					catch ( ExecutionException ex )
+					{
+						Throwable cause = ex.getCause( );
+						if ( cause instanceof EngineException )
+						{
+							throw (EngineException) cause;
+						}
+						throw new EngineException(
+								MessageConstants.REPORT_RUN_ERROR, cause );
+					}
+				}
+				completed = true;
+
+				if ( executionContext.isCanceled( ) )
+				{
+					return;
+				}
+				outputPageCount = 0;
+				for ( SegmentRender render : renders )
+				{
+					outputPageCount += render.pageCount;
+					for ( Object error : render.errors )
+					{
+						if ( error instanceof BirtException )
+						{
+							executionContext
+									.addException( (BirtException) error );
+						}
+					}
+				}
+				writeOutput( renders );
+			}
+			finally
+			{
+				if ( !completed )
+				{
+					// stop the other segments without interrupting the
+					// threads, an interrupted read closes the file of the
+					// report document shared by the segments
+					for ( Future<Object> future : futures )
+					{
+						future.cancel( false );
+					}
+					cancelSegments( );
+				}
+				threadPool.shutdown( );
+				awaitTermination( threadPool );
+				parallelRender = null;
+				for ( SegmentRender render : renders )
+				{
+					if ( render != null )
+					{
+						render.file.delete( );
+					}
+				}
+			}
+		}
+
+		/**
+		 * register the task rendering a segment.
+		 * 
+		 * @return false if the segments have been canceled.
+		 */
+		synchronized boolean addSegmentTask( RenderTask task )
+		{
+			if ( segmentsCanceled )
+			{
+				return false;
+			}
+			segmentTasks.add( task );
+			return true;
+		}
+
+		synchronized void cancelSegments( )
+		{
+			segmentsCanceled = true;
+			for ( RenderTask task : segmentTasks )
+			{
+				task.cancel( );
+			}
+		}
+
+		/**
+		 * wait for the segments to finish before their files are removed.
+		 */
+		private void awaitTermination( ExecutorService threadPool )
+		{
+			try
+			{
+				while ( !threadPool.awaitTermination( 1, TimeUnit.SECONDS ) )
+				{
+					// the canceled segments stop at the next page
+				}
+			}
+			catch ( InterruptedException ex )
+			{
+				Thread.currentThread( ).interrupt( );
+			}
+		}
+
+		private void writeOutput( SegmentRender[] renders ) throws IOException
+		{
+			IRenderOption options = executionContext.getRenderOption( );
+			OutputStream out;
+			boolean closeOnExit;
+			Object fileName = options
+					.getOption( IRenderOption.OUTPUT_FILE_NAME );
+			if ( fileName != null )
+			{
+				File file = new File( fileName.toString( ) );
+				File parent = file.getParentFile( );
+				if ( parent != null && !parent.exists( ) )
+				{
+					parent.mkdirs( );
+				}
+				out = new FileOutputStream( file );
+				closeOnExit = true;
+			}
+			else
+			{
+				out = (OutputStream) options
+						.getOption( IRenderOption.OUTPUT_STREAM );
+				closeOnExit = Boolean.TRUE.equals( options
+						.getOption( IRenderOption.CLOSE_OUTPUTSTREAM_ON_EXIT ) );
+			}
+			try
+			{
+				OutputStream output = new BufferedOutputStream( out );
+				byte[] buffer = new byte[8192];
+				for ( SegmentRender render : renders )
+				{
+					InputStream in = new BufferedInputStream(
+							new FileInputStream( render.file ) );
+					try
+					{
+						int size = in.read( buffer );
+						while ( size != -1 )
+						{
+							output.write( buffer, 0, size );
+							size = in.read( buffer );
+						}
+					}
+					finally
+					{
+						in.close( );
+					}
+				}
+				output.flush( );
+			}
+			finally
+			{
+				if ( closeOnExit )
+				{
+					out.close( );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Renders a segment of the page range into a temporary file by a render
+	 * task of its own. The task reads the same archive as this task.
+	 */
+	private class SegmentRender implements Callable<Object>
+	{
+
+		private ParallelPageRangeRender parallelRender;
+		private List<long[]> pages;
+		private String segment;
+		private File file;
+
+		private long pageCount;
+		private List errors = new ArrayList( );
+
+		SegmentRender( ParallelPageRangeRender parallelRender,
+				List<long[]> pages, String segment, File file )
+		{
+			this.parallelRender = parallelRender;
+			this.pages = pages;
+			this.segment = segment;
+			this.file = file;
+		}
+
+		public Object call( ) throws Exception
+		{
+			if ( executionContext.isCanceled( ) )
+			{
+				return null;
+			}
+			ReportDocumentReader document = new ReportDocumentReader(
+					reportDocument.getSystemId( ), engine,
+					( (ReportDocumentReader) reportDocument ).getArchive( ),
+					true );
+			try
+			{
+				RenderTask task = new RenderTask( engine,
+						document );
+				try
+				{
+					task.setLocale( ulocale );
+					task.setTimeZone( timeZone );
+					task.setAppContext( executionContext.getAppContext( ) );
+					HashMap options = new HashMap( renderOptions.getOptions( ) );
+					options.remove( IRenderOption.OUTPUT_STREAM );
+					options.put( IRenderOption.OUTPUT_FILE_NAME, file
+							.getAbsolutePath( ) );
+					options.put( IRenderOption.RENDER_THREAD_COUNT, Integer
+							.valueOf( 1 ) );
+					options.put( IRenderOption.OUTPUT_SEGMENT, segment );
+					task.setRenderOption( new RenderOption( options ) );
+					task.setPageRange( PageSequenceParse.toPageRange( pages ) );
+					if ( !parallelRender.addSegmentTask( task )
+							|| executionContext.isCanceled( ) )
+					{
+						return null;
+					}
+					task.render( );
+					pageCount = task.getPageCount( );
+					errors = task.getErrors( );
+				}
+				finally
+				{
+					task.close( );
+				}
+			}
+			finally
+			{
+				document.close( );
+			}
+			return null;
+		}
+	}
+
 	protected class ReportletRender implements InnerRender
 	{
 
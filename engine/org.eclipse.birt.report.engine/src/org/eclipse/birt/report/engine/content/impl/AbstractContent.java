@@ -104,6 +104,12 @@ abstract public class AbstractContent extends AbstractElement
 	
 	transient protected int version = -1;
 
+	/**
+	 * the style table of the stream, only set when the content is written or
+	 * read.
+	 */
+	transient protected IStyleTable styleTable;
+
 	/**
 	 * Constructor of the AbstractContent
 	 * @param report report can't be null
@@ -337,23 +343,18 @@ abstract public class AbstractContent extends AbstractElement
 			}
 			else
 			{
-				if ( inlineStyle == null || inlineStyle.isEmpty( ) )
-				{
-					String styleClass = getStyleClass();
-					ComputedStyle pcs = (ComputedStyle) ( (IContent) parent )
-							.getComputedStyle( );
-					ComputedStyle cs = pcs.getCachedStyle( styleClass );
-					if ( cs == null )
-					{
-						cs = new ComputedStyle( this );
-						pcs.addCachedStyle( styleClass, cs );
-					}
-					computedStyle = cs;
-				}
-				else
+				// the children with the same declared style share the
+				// computed style
+				String styleClass = getStyleClass();
+				ComputedStyle pcs = (ComputedStyle) ( (IContent) parent )
+						.getComputedStyle( );
+				ComputedStyle cs = pcs.getCachedStyle( styleClass, inlineStyle );
+				if ( cs == null )
 				{
-					computedStyle = new ComputedStyle( this );
+					cs = pcs.addCachedStyle( styleClass, inlineStyle,
+							ComputedStyle.createSharedStyle( this ) );
 				}
+				computedStyle = cs;
 			}
 		}
 		return computedStyle;
@@ -641,6 +642,8 @@ abstract public class AbstractContent extends AbstractElement
 	final static short FIELD_EXTENSIONS = 15;
 	final static short FIELD_ALTTEXT = 16;
 	final static short FIELD_ALTTEXTKEY = 17;
+	//the inline style is saved in the style table of the stream.
+	final static short FIELD_INLINESTYLE_REF = 18;
 
 	protected void writeFields( DataOutputStream out ) throws IOException
 	{
@@ -698,8 +701,21 @@ abstract public class AbstractContent extends AbstractElement
 		{
 			if( !inlineStyle.isEmpty( ) )
 			{
-				IOUtil.writeShort( out, FIELD_INLINESTYLE_VERSION_1 );
-				inlineStyle.write( out );
+				long styleId = -1;
+				if ( styleTable != null )
+				{
+					styleId = styleTable.addStyle( inlineStyle );
+				}
+				if ( styleId != -1 )
+				{
+					IOUtil.writeShort( out, FIELD_INLINESTYLE_REF );
+					IOUtil.writeLong( out, styleId );
+				}
+				else
+				{
+					IOUtil.writeShort( out, FIELD_INLINESTYLE_VERSION_1 );
+					inlineStyle.write( out );
+				}
 			}
 		}
 		if ( instanceId != null )
@@ -821,6 +837,18 @@ abstract public class AbstractContent extends AbstractElement
 					}
 				}
 				break;
+			case FIELD_INLINESTYLE_REF :
+				long styleId = IOUtil.readLong( in );
+				IStyle sharedStyle = styleTable == null ? null : styleTable
+						.getStyle( styleId );
+				if ( !( sharedStyle instanceof StyleDeclaration ) )
+				{
+					throw new IOException( "Invalid style id " + styleId );
+				}
+				// share the values until the content changes its style
+				inlineStyle = new StyleDeclaration(
+						(StyleDeclaration) sharedStyle );
+				break;
 			case FIELD_INSTANCE_ID :
 				String value = IOUtil.readString( in );
 				instanceId = InstanceID.parse( value );
@@ -939,6 +967,54 @@ abstract public class AbstractContent extends AbstractElement
 	{
 		writeFields( out );
 	}
+
+	/**
+	 * write the content, the inline style is added into the style table.
+	 * 
+	 * @param out
+	 *            the output stream
+	 * @param styleTable
+	 *            the style table of the stream
+	 * @throws IOException
+	 */
+	public void writeContent( DataOutputStream out, IStyleTable styleTable )
+			throws IOException
+	{
+		this.styleTable = styleTable;
+		try
+		{
+			writeContent( out );
+		}
+		finally
+		{
+			this.styleTable = null;
+		}
+	}
+
+	/**
+	 * read the content, the inline style may be loaded from the style table.
+	 * 
+	 * @param in
+	 *            the input stream
+	 * @param loader
+	 *            the class loader
+	 * @param styleTable
+	 *            the style table of the stream
+	 * @throws IOException
+	 */
+	public void readContent( DataInputStream in, ClassLoader loader,
+			IStyleTable styleTable ) throws IOException
+	{
+		this.styleTable = styleTable;
+		try
+		{
+			readContent( in, loader );
+		}
+		finally
+		{
+			this.styleTable = null;
+		}
+	}
 	
 	/**
 	 * @param iVersion
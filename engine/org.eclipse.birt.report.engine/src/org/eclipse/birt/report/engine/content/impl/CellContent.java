@@ -238,38 +238,31 @@ public class CellContent extends AbstractContent implements ICellContent
 	{
 		if ( computedStyle == null )
 		{
-			if ( inlineStyle == null || inlineStyle.isEmpty( ) )
+			String cacheKey = getStyleClass();
+			ITableContent table = ( (IRowContent) parent ).getTable( );
+			int column = getColumn( );
+			if ( column >= 0 && column < table.getColumnCount( ) )
 			{
-				String cacheKey = getStyleClass();
-				ITableContent table = ( (IRowContent) parent ).getTable( );
-				int column = getColumn( );
-				if ( column >= 0 && column < table.getColumnCount( ) )
+				IColumn tblColumn = table.getColumn( column );
+				if ( tblColumn != null )
 				{
-					IColumn tblColumn = table.getColumn( column );
-					if ( tblColumn != null )
+					String columnStyleClass = tblColumn.getStyleClass( );
+					if ( columnStyleClass != null )
 					{
-						String columnStyleClass = tblColumn.getStyleClass( );
-						if ( columnStyleClass != null )
-						{
-							cacheKey = cacheKey + columnStyleClass;
-						}
+						cacheKey = cacheKey + columnStyleClass;
 					}
 				}
-
-				ComputedStyle pcs = (ComputedStyle) ( (IContent) parent )
-						.getComputedStyle( );
-				ComputedStyle cs = pcs.getCachedStyle( cacheKey );
-				if ( cs == null )
-				{
-					cs = new CellComputedStyle( this );
-					pcs.addCachedStyle( cacheKey, cs );
-				}
-				computedStyle = cs;
 			}
-			else
+
+			ComputedStyle pcs = (ComputedStyle) ( (IContent) parent )
+					.getComputedStyle( );
+			ComputedStyle cs = pcs.getCachedStyle( cacheKey, inlineStyle );
+			if ( cs == null )
 			{
-				computedStyle = new CellComputedStyle( this );
+				cs = pcs.addCachedStyle( cacheKey, inlineStyle,
+						CellComputedStyle.createSharedStyle( this ) );
 			}
+			computedStyle = cs;
 		}
 		return computedStyle;
 	}
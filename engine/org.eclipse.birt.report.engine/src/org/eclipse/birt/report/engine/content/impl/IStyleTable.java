@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.content.impl;
+
+import java.io.IOException;
+
+import org.eclipse.birt.report.engine.content.IStyle;
+
+/**
+ * The inline styles shared by the contents of a content stream.
+ *
+ * Most contents of a report use a few distinct inline styles, so the content
+ * saves the id of its inline style in the table instead of the style itself.
+ */
+public interface IStyleTable
+{
+
+	/**
+	 * add the style into the table.
+	 *
+	 * @param style
+	 *            the inline style, not empty.
+	 * @return the id of the style, -1 if the style must be saved with the
+	 *         content.
+	 * @throws IOException
+	 */
+	long addStyle( IStyle style ) throws IOException;
+
+	/**
+	 * get the style of the id. The style is shared by all the contents use
+	 * it, so it must not be changed.
+	 *
+	 * @param id
+	 *            the style id returned by addStyle
+	 * @return the style, null if the table doesn't have it.
+	 * @throws IOException
+	 */
+	IStyle getStyle( long id ) throws IOException;
+}
@@ -8,7 +8,10 @@ public class AreaStyle extends AbstractStyle
 {
 	protected IStyle parent;
 	CSSValue[] values = new CSSValue[NUMBER_OF_STYLE];
-	boolean[] resolveFlags = new boolean[NUMBER_OF_STYLE];
+	/**
+	 * the bit i is set if the property i is resolved.
+	 */
+	long resolveFlags;
 	
 	public AreaStyle(AbstractStyle style)
 	{
@@ -23,13 +26,14 @@ public class AreaStyle extends AbstractStyle
 
 	public CSSValue getProperty(int index)
 	{
-		if ( !resolveFlags[index] )
+		long bit = 1L << index;
+		if ( ( resolveFlags & bit ) == 0 )
 		{
 			if ( parent != null )
 			{
 				values[index] = parent.getProperty( index );
 			}
-			resolveFlags[index] = true;
+			resolveFlags |= bit;
 		}
 		return values[index];
 		
@@ -38,7 +42,7 @@ public class AreaStyle extends AbstractStyle
 	public void setProperty(int index, CSSValue value)
 	{
 		values[index] = value;
-		resolveFlags[index] = true;
+		resolveFlags |= 1L << index;
 	}
 
 	public boolean isEmpty()
@@ -6,6 +6,7 @@ import org.eclipse.birt.report.engine.content.IColumn;
 import org.eclipse.birt.report.engine.content.IRowContent;
 import org.eclipse.birt.report.engine.content.IStyle;
 import org.eclipse.birt.report.engine.content.ITableContent;
+import org.eclipse.birt.report.engine.css.engine.CSSEngine;
 import org.eclipse.birt.report.engine.css.engine.CSSStylableElement;
 import org.eclipse.birt.report.engine.css.engine.StyleConstants;
 import org.eclipse.birt.report.engine.css.engine.value.Value;
@@ -20,10 +21,56 @@ public class CellComputedStyle extends ComputedStyle
 	public CellComputedStyle( ICellContent elt )
 	{
 		super( elt );
+		rowStyle = getRowStyle( elt );
+		columnStyle = getColumnStyle( elt );
+		cell = elt;
+	}
+
+	private CellComputedStyle( StyleSnapshot snapshot, IStyle rowStyle,
+			IStyle columnStyle )
+	{
+		super( snapshot );
+		this.cell = snapshot;
+		this.rowStyle = rowStyle;
+		this.columnStyle = columnStyle;
+	}
+
+	/**
+	 * create the computed style shared by the cells with the same declared
+	 * style as the cell. The style is resolved against a snapshot of the cell,
+	 * its row and its column, so the later changes of the cell don't change
+	 * the style of the other cells.
+	 * 
+	 * @param elt
+	 *            the cell.
+	 * @return the computed style to cache in the row's computed style.
+	 */
+	public static CellComputedStyle createSharedStyle( ICellContent elt )
+	{
+		StyleSnapshot snapshot = new StyleSnapshot( elt );
+		CSSEngine engine = snapshot.getCSSEngine( );
+		CellComputedStyle style = new CellComputedStyle( snapshot,
+				StyleSnapshot.copy( engine, getRowStyle( elt ) ),
+				StyleSnapshot.copy( engine, getColumnStyle( elt ) ) );
+		snapshot.setComputedStyle( style );
+		return style;
+	}
+
+	private static IStyle getRowStyle( ICellContent elt )
+	{
+		IRowContent row = (IRowContent) elt.getParent( );
+		if ( row != null )
+		{
+			return row.getStyle( );
+		}
+		return null;
+	}
+
+	private static IStyle getColumnStyle( ICellContent elt )
+	{
 		IRowContent row = (IRowContent) elt.getParent( );
 		if ( row != null )
 		{
-			rowStyle = row.getStyle();
 			ITableContent table = row.getTable( );
 			if ( table != null )
 			{
@@ -31,11 +78,11 @@ public class CellComputedStyle extends ComputedStyle
 				if ( columnId >= 0 && columnId < table.getColumnCount( ) )
 				{
 					IColumn column = table.getColumn( columnId );
-					columnStyle = column.getStyle( );
+					return column.getStyle( );
 				}
 			}
 		}
-		cell = elt;
+		return null;
 	}
 
 	protected Value resolveProperty( int index )
@@ -1,20 +1,54 @@
 
 package org.eclipse.birt.report.engine.css.dom;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 import org.eclipse.birt.report.engine.content.IStyle;
 import org.eclipse.birt.report.engine.css.engine.CSSStylableElement;
 import org.eclipse.birt.report.engine.css.engine.value.Value;
 import org.w3c.dom.css.CSSValue;
 
+/**
+ * The computed style of a content.
+ * 
+ * The computed style only depends on the computed style of the parent and the
+ * declared style of the content, so the children with the same style class
+ * and the same inline style share the computed style cached in the parent's
+ * computed style. The shared styles are resolved against a snapshot of the
+ * declared style, not against the content creating them. The cache is bounded
+ * and can be used by several threads.
+ * 
+ * A shared style may be read by several threads, so a value is always stored
+ * before its bit is set in the volatile mask, and the bits are updated
+ * atomically. Two threads may resolve the same property at the same time,
+ * which gives them equal values.
+ */
 public class ComputedStyle extends AbstractStyle
 {
-	Map<String, ComputedStyle> cachedStyles = new HashMap<String, ComputedStyle>( );
-	boolean[] caculated;
+
+	/**
+	 * the maximum number of the cached computed styles of the children.
+	 */
+	static final int MAX_CACHED_STYLES = 256;
+
+	/**
+	 * the computed styles of the children, created when the first child style
+	 * is cached.
+	 */
+	Map<StyleKey, ComputedStyle> cachedStyles;
+	private static final AtomicLongFieldUpdater<ComputedStyle> CALCULATED = AtomicLongFieldUpdater
+			.newUpdater( ComputedStyle.class, "calculated" );
+
+	/**
+	 * the bit i is set if the property i is calculated, after the value is
+	 * stored.
+	 */
+	volatile long calculated;
 	CSSStylableElement elt;
-	CSSValue[] values;
+	final CSSValue[] values = new CSSValue[NUMBER_OF_STYLE];
 
 	public ComputedStyle( CSSStylableElement elt )
 	{
@@ -22,26 +56,52 @@ public class ComputedStyle extends AbstractStyle
 		this.elt = elt;
 	}
 
+	/**
+	 * create the computed style shared by the children with the same declared
+	 * style as the element. The style is resolved against a snapshot of the
+	 * element, so the later changes of the element don't change the style of
+	 * its siblings.
+	 *
+	 * @param elt
+	 *            the element.
+	 * @return the computed style to cache in the parent's computed style.
+	 */
+	public static ComputedStyle createSharedStyle( CSSStylableElement elt )
+	{
+		StyleSnapshot snapshot = new StyleSnapshot( elt );
+		ComputedStyle style = new ComputedStyle( snapshot );
+		snapshot.setComputedStyle( style );
+		return style;
+	}
+
 	public CSSValue getProperty( int index )
 	{
-		if ( values == null )
-		{
-			values = new CSSValue[NUMBER_OF_STYLE];
-			caculated = new boolean[NUMBER_OF_STYLE];
-		}
-		if ( caculated[index] )
+		long bit = 1L << index;
+		if ( ( calculated & bit ) != 0 )
 		{
 			return values[index];
 		}
 
 		Value cv = resolveProperty( index );
 
+		// the value is published by setting the bit
 		values[index] = cv;
-		caculated[index] = true;
+		updateCalculated( bit, true );
 
 		return cv;
 	}
 
+	private void updateCalculated( long bit, boolean set )
+	{
+		long mask;
+		do
+		{
+			mask = calculated;
+		} while ( !CALCULATED.compareAndSet( this, mask, set
+				? mask | bit
+				: mask & ~bit ) );
+	}
+
 	//TODO: review, move the engine.resolveStyle here, so we needn't call parent.getComputedStyle() for none-inheireted styles.
 	protected Value resolveProperty( int index )
 	{
@@ -68,18 +128,162 @@ public class ComputedStyle extends AbstractStyle
 
 	public void setProperty( int index, CSSValue value )
 	{
-		caculated[index] = false;
+		updateCalculated( 1L << index, false );
 		values[index] = null;
 		elt.getStyle( ).setProperty( index, value );
 	}
 
 	public void addCachedStyle( String styleClass, ComputedStyle style )
 	{
-		cachedStyles.put( styleClass, style );
+		addCachedStyle( styleClass, null, style );
 	}
 
 	public ComputedStyle getCachedStyle( String styleClass )
 	{
-		return (ComputedStyle) cachedStyles.get( styleClass );
+		return getCachedStyle( styleClass, null );
+	}
+
+	/**
+	 * get the cached computed style of the child.
+	 * 
+	 * @param styleClass
+	 *            the style class of the child.
+	 * @param inlineStyle
+	 *            the inline style of the child, may be null.
+	 * @return the computed style, null if it isn't cached.
+	 */
+	public ComputedStyle getCachedStyle( String styleClass, IStyle inlineStyle )
+	{
+		if ( !isCachable( inlineStyle ) )
+		{
+			return null;
+		}
+		StyleKey key = new StyleKey( styleClass, inlineStyle );
+		synchronized ( this )
+		{
+			if ( cachedStyles == null )
+			{
+				return null;
+			}
+			return cachedStyles.get( key );
+		}
+	}
+
+	/**
+	 * cache the computed style of the child.
+	 * 
+	 * @param styleClass
+	 *            the style class of the child.
+	 * @param inlineStyle
+	 *            the inline style of the child, may be null.
+	 * @param style
+	 *            the computed style of the child.
+	 * @return the cached computed style, which is not the style if another
+	 *         thread has cached one first.
+	 */
+	public ComputedStyle addCachedStyle( String styleClass, IStyle inlineStyle,
+			ComputedStyle style )
+	{
+		if ( !isCachable( inlineStyle ) )
+		{
+			return style;
+		}
+		StyleKey key = new StyleKey( styleClass, inlineStyle );
+		if ( key.inlineValues.length != 0 )
+		{
+			// the inline style may be changed later
+			key.inlineValues = (CSSValue[]) key.inlineValues.clone( );
+		}
+		synchronized ( this )
+		{
+			if ( cachedStyles == null )
+			{
+				cachedStyles = new LinkedHashMap<StyleKey, ComputedStyle>( 16,
+						0.75f, true ) {
+
+					private static final long serialVersionUID = 1L;
+
+					protected boolean removeEldestEntry(
+							Map.Entry<StyleKey, ComputedStyle> eldest )
+					{
+						return size( ) > MAX_CACHED_STYLES;
+					}
+				};
+			}
+			ComputedStyle cachedStyle = cachedStyles.get( key );
+			if ( cachedStyle != null )
+			{
+				return cachedStyle;
+			}
+			cachedStyles.put( key, style );
+			return style;
+		}
+	}
+
+	private static final CSSValue[] EMPTY_VALUES = new CSSValue[0];
+
+	/**
+	 * the inline style can be compared if it is empty or a style declaration.
+	 */
+	private static boolean isCachable( IStyle inlineStyle )
+	{
+		return inlineStyle == null || inlineStyle.isEmpty( )
+				|| inlineStyle instanceof StyleDeclaration;
+	}
+
+	private static class StyleKey
+	{
+
+		String styleClass;
+		long inlineMask;
+		CSSValue[] inlineValues;
+		int hashCode;
+
+		StyleKey( String styleClass, IStyle inlineStyle )
+		{
+			this.styleClass = styleClass;
+			if ( inlineStyle == null || inlineStyle.isEmpty( ) )
+			{
+				this.inlineValues = EMPTY_VALUES;
+			}
+			else
+			{
+				StyleDeclaration style = (StyleDeclaration) inlineStyle;
+				this.inlineMask = style.mask;
+				this.inlineValues = style.values;
+			}
+			this.hashCode = ( styleClass == null ? 0 : styleClass.hashCode( ) )
+					* 31 + (int) ( inlineMask ^ ( inlineMask >>> 32 ) ) * 17
+					+ Arrays.hashCode( inlineValues );
+		}
+
+		public int hashCode( )
+		{
+			return hashCode;
+		}
+
+		public boolean equals( Object o )
+		{
+			if ( !( o instanceof StyleKey ) )
+			{
+				return false;
+			}
+			StyleKey key = (StyleKey) o;
+			if ( hashCode != key.hashCode )
+			{
+				return false;
+			}
+			if ( styleClass == null ? key.styleClass != null : !styleClass
+					.equals( key.styleClass ) )
+			{
+				return false;
+			}
+			if ( inlineMask != key.inlineMask )
+			{
+				return false;
+			}
+			return inlineValues == key.inlineValues
+					|| Arrays.equals( inlineValues, key.inlineValues );
+		}
 	}
 }
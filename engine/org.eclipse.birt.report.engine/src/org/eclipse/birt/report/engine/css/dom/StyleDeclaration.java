@@ -13,16 +13,38 @@ package org.eclipse.birt.report.engine.css.dom;
 
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 
 import org.eclipse.birt.core.util.IOUtil;
 import org.eclipse.birt.report.engine.css.engine.CSSEngine;
 import org.w3c.dom.css.CSSValue;
 
+/**
+ * The style declared by a content or a design element.
+ * 
+ * Most styles define a few properties, so only the defined values are saved.
+ * The bit <code>i</code> of the mask is set if the property <code>i</code> is
+ * defined, and the values are saved in the order of the property index, so
+ * the value of the property is at the number of the bits set below it. There
+ * are less than 64 properties (NUMBER_OF_STYLE), so the mask is a long.
+ */
 public class StyleDeclaration extends AbstractStyle
 {
+
+	private static final CSSValue[] EMPTY_VALUES = new CSSValue[0];
+
+	/**
+	 * the defined properties.
+	 */
+	protected long mask;
+	/**
+	 * the values of the defined properties.
+	 */
 	protected CSSValue[] values;
+	/**
+	 * the values are shared with another style.
+	 */
 	protected boolean shared;
-	protected int propertyCount = 0;
 
 	/**
 	 * set the property
@@ -30,21 +52,42 @@ public class StyleDeclaration extends AbstractStyle
 	public void setProperty( int index, CSSValue value )
 	{
 		//assert index >= 0 && index < NUMBER_OF_STYLE;
-		if ( values[index] != value )
+		long bit = 1L << index;
+		int position = Long.bitCount( mask & ( bit - 1 ) );
+		if ( ( mask & bit ) != 0 )
 		{
-			if ( shared )
-			{
-				decouple( );
-			}
-			if ( values[index] == null )
+			if ( value == null )
 			{
-				propertyCount++;
+				// remove the value, the values are copied so they are not
+				// shared any more
+				CSSValue[] newValues = new CSSValue[values.length - 1];
+				System.arraycopy( values, 0, newValues, 0, position );
+				System.arraycopy( values, position + 1, newValues, position,
+						newValues.length - position );
+				values = newValues;
+				mask &= ~bit;
+				shared = false;
 			}
-			else if ( value == null )
+			else if ( values[position] != value )
 			{
-				propertyCount--;
+				if ( shared )
+				{
+					decouple( );
+				}
+				values[position] = value;
 			}
-			values[index] = value;
+		}
+		else if ( value != null )
+		{
+			// insert the value
+			CSSValue[] newValues = new CSSValue[values.length + 1];
+			System.arraycopy( values, 0, newValues, 0, position );
+			System.arraycopy( values, position, newValues, position + 1,
+					values.length - position );
+			newValues[position] = value;
+			values = newValues;
+			mask |= bit;
+			shared = false;
 		}
 	}
 
@@ -54,41 +97,43 @@ public class StyleDeclaration extends AbstractStyle
 	public CSSValue getProperty( int index )
 	{
 		assert index >= 0 && index < NUMBER_OF_STYLE;
-		return values[index];
+		long bit = 1L << index;
+		if ( ( mask & bit ) == 0 )
+		{
+			return null;
+		}
+		return values[Long.bitCount( mask & ( bit - 1 ) )];
 	}
 
 	public StyleDeclaration( StyleDeclaration style )
 	{
 		super( style.engine );
+		this.mask = style.mask;
 		this.values = style.values;
-		this.propertyCount = style.propertyCount;
 		this.shared = true;
 	}
 
 	public StyleDeclaration( CSSEngine engine )
 	{
 		super( engine );
-		this.values = new CSSValue[NUMBER_OF_STYLE];
+		this.values = EMPTY_VALUES;
 		this.shared = false;
 	}
 
-	//TODO: remoview, there is a problem for list value.
 	protected void decouple( )
 	{
-		CSSValue[] newValues = new CSSValue[NUMBER_OF_STYLE];
-		System.arraycopy( values, 0, newValues, 0, NUMBER_OF_STYLE );
-		values = newValues;
+		values = (CSSValue[]) values.clone( );
 		shared = false;
 	}
 
 	public boolean isEmpty( )
 	{
-		return propertyCount == 0;
+		return mask == 0;
 	}
 
 	public int getLength( )
 	{
-		return propertyCount;
+		return values.length;
 	}
 
 	public boolean equals( Object aStyle )
@@ -96,40 +141,32 @@ public class StyleDeclaration extends AbstractStyle
 		if ( aStyle instanceof StyleDeclaration )
 		{
 			StyleDeclaration style = (StyleDeclaration) aStyle;
-			if ( propertyCount == style.propertyCount )
-			{
-				for ( int i = 0; i < NUMBER_OF_STYLE; i++ )
-				{
-					CSSValue value1 = values[i];
-					CSSValue value2 = style.values[i];
-					if ( value1 != value2
-							&& ( value1 == null || !value1.equals( value2 ) ) )
-					{
-						return false;
-					}
-				}
-				return true;
-			}
+			return mask == style.mask
+					&& ( values == style.values || Arrays.equals( values,
+							style.values ) );
 		}
 		return false;
 	}
-	
+
+	public int hashCode( )
+	{
+		return (int) ( mask ^ ( mask >>> 32 ) ) * 31 + Arrays.hashCode( values );
+	}
 
 	public void write( DataOutputStream out ) throws IOException
 	{
 		// count how many valid value in the style
-		IOUtil.writeInt( out, propertyCount );
+		IOUtil.writeInt( out, values.length );
 
 		// write the style's property
-		for ( int i = 0; i < values.length; i++ )
+		int position = 0;
+		for ( long bits = mask; bits != 0; bits &= bits - 1 )
 		{
-			CSSValue value = values[i];
-			if ( null != value )
-			{
-				String propertyName = engine.getPropertyName( i );
-				IOUtil.writeString( out, propertyName );
-				writeCSSValue( out, propertyName, value );
-			}
+			int index = Long.numberOfTrailingZeros( bits );
+			CSSValue value = values[position++];
+			String propertyName = engine.getPropertyName( index );
+			IOUtil.writeString( out, propertyName );
+			writeCSSValue( out, propertyName, value );
 		}
 	}
 }
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2018 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.css.dom;
+
+import java.util.Collection;
+import java.util.Collections;
+
+import org.eclipse.birt.report.engine.content.IElement;
+import org.eclipse.birt.report.engine.content.IStyle;
+import org.eclipse.birt.report.engine.css.engine.CSSEngine;
+import org.eclipse.birt.report.engine.css.engine.CSSStylableElement;
+import org.eclipse.birt.report.engine.css.engine.StyleConstants;
+import org.w3c.dom.css.CSSValue;
+
+/**
+ * The element a shared computed style is resolved against. It holds a copy
+ * of the declared style of the content creating the computed style and the
+ * computed style of its parent, so the later changes of that content don't
+ * change the style shared by its siblings.
+ */
+class StyleSnapshot implements CSSStylableElement
+{
+
+	private CSSEngine engine;
+	private IStyle style;
+	private IStyle computedStyle;
+	private StyleSnapshot parent;
+
+	/**
+	 * create the snapshot of the element.
+	 *
+	 * @param elt
+	 *            the element creating the shared computed style.
+	 */
+	StyleSnapshot( CSSStylableElement elt )
+	{
+		this.engine = elt.getCSSEngine( );
+		this.style = copy( engine, elt.getStyle( ) );
+		CSSStylableElement parentElt = (CSSStylableElement) elt.getParent( );
+		if ( parentElt != null )
+		{
+			this.parent = new StyleSnapshot( engine, parentElt
+					.getComputedStyle( ) );
+		}
+	}
+
+	private StyleSnapshot( CSSEngine engine, IStyle computedStyle )
+	{
+		this.engine = engine;
+		this.computedStyle = computedStyle;
+	}
+
+	void setComputedStyle( IStyle computedStyle )
+	{
+		this.computedStyle = computedStyle;
+	}
+
+	/**
+	 * copy the declared values of the style.
+	 *
+	 * @return the copy, null if the style is null.
+	 */
+	static IStyle copy( CSSEngine engine, IStyle style )
+	{
+		if ( style == null )
+		{
+			return null;
+		}
+		StyleDeclaration copy = new StyleDeclaration( engine );
+		for ( int i = 0; i < StyleConstants.NUMBER_OF_STYLE; i++ )
+		{
+			CSSValue value = style.getProperty( i );
+			if ( value != null )
+			{
+				copy.setProperty( i, value );
+			}
+		}
+		return copy;
+	}
+
+	public CSSEngine getCSSEngine( )
+	{
+		return engine;
+	}
+
+	public IStyle getComputedStyle( )
+	{
+		return computedStyle;
+	}
+
+	public IStyle getStyle( )
+	{
+		return style;
+	}
+
+	public IElement getParent( )
+	{
+		return parent;
+	}
+
+	public void setParent( IElement parent )
+	{
+		throw new UnsupportedOperationException( );
+	}
+
+	public Collection getChildren( )
+	{
+		return Collections.EMPTY_LIST;
+	}
+}
@@ -77,5 +77,7 @@ public interface StyleConstants
 	final int STYLE_WORD_SPACING = 59;
 	final int STYLE_WHITE_SPACE = 60;
 
+	// the styles keep the defined properties in a long bit mask, so there
+	// must be no more than 64 properties.
 	final int NUMBER_OF_STYLE = 61;
 }
@@ -391,4 +391,11 @@ public class FloatValue extends Value implements CSSPrimitiveValue
 		return false;
 	}
 
+	public int hashCode( )
+	{
+		// 0.0 equals -0.0
+		return Float.floatToIntBits( floatValue == 0 ? 0 : floatValue ) * 31
+				+ unitType;
+	}
+
 }
@@ -116,4 +116,10 @@ public class RGBColorValue extends Value implements RGBColor
 		return false;
 
 	}
+
+	public int hashCode( )
+	{
+		return ( red.hashCode( ) * 31 + green.hashCode( ) ) * 31
+				+ blue.hashCode( );
+	}
 }
@@ -81,6 +81,11 @@ public class StringValue extends Value
 
 	}
 
+	public int hashCode( )
+	{
+		return unitType * 31 + ( value == null ? 0 : value.hashCode( ) );
+	}
+
 	/**
 	 * A string representation of the current value.
 	 */
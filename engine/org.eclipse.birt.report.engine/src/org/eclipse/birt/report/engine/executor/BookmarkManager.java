@@ -10,12 +10,6 @@
  *******************************************************************************/
 package org.eclipse.birt.report.engine.executor;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.DataInput;
-import java.io.DataInputStream;
-import java.io.DataOutput;
-import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -37,6 +31,8 @@ public class BookmarkManager
 {
 
 	static final Integer VALUE = new Integer( 0 );
+	// the bookmarks are checked in random order, keep 256K bytes in memory
+	static final int CACHE_SIZE = 64;
 
 	int sequenceID = 0;
 	BookmarkHashSet hashset;
@@ -84,23 +80,22 @@ public class BookmarkManager
 		return "_recreated__bookmark__" + ( ++sequenceID );
 	}
 
+	/**
+	 * save the bookmark without the length, so the sorted bookmarks share the
+	 * prefix in the btree.
+	 */
 	static private class StringSerializer implements BTreeSerializer<String>
 	{
 
 		public byte[] getBytes( String object ) throws IOException
 		{
-			ByteArrayOutputStream out = new ByteArrayOutputStream( 1024 );
-			DataOutput oo = new DataOutputStream( out );
-			oo.writeUTF( object );
-			return out.toByteArray( );
+			return object.getBytes( "UTF-8" ); //$NON-NLS-1$
 		}
 
 		public String getObject( byte[] bytes ) throws IOException,
 				ClassNotFoundException
 		{
-			DataInput input = new DataInputStream( new ByteArrayInputStream(
-					bytes ) );
-			return input.readUTF( );
+			return new String( bytes, "UTF-8" ); //$NON-NLS-1$
 		}
 	}
 
@@ -195,10 +190,7 @@ public class BookmarkManager
 						}
 					} );
 
-			for ( Map.Entry<String, Integer> entry : entries )
-			{
-				btree.insert( entry.getKey( ), VALUE );
-			}
+			btree.bulkLoad( entries.iterator( ) );
 		}
 
 		protected BTree<String, Integer> createBtree( ) throws IOException
@@ -211,6 +203,8 @@ public class BookmarkManager
 			option.setKeySerializer( new StringSerializer( ) );
 			option.setValueSerializer( new IntegerSerializer( ) );
 			option.setValueSize( 4 );
+			option.setPrefixCompression( true );
+			option.setCacheSize( CACHE_SIZE );
 			option.setFile( file );
 			return new BTree<String, Integer>( option );
 		}
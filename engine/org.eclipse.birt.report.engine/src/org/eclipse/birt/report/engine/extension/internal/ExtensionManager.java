@@ -617,6 +617,8 @@ public class ExtensionManager
 				if ( null != isFormatDeprecated ) {
 					deprecated = Boolean.valueOf( isFormatDeprecated ).booleanValue( );
 				}
+				boolean supportSegmentedOutput = Boolean.valueOf( configs[j]
+						.getAttribute( "supportSegmentedOutput" ) ); //$NON-NLS-1$
 				if ( !Pattern.matches( emitterFormatPattern, format ) )
 				{
 					logger.log(
@@ -634,6 +636,7 @@ public class ExtensionManager
 							configs[j] );
 					emitterInfo.setOverridePriority( priority );
 					emitterInfo.setFormatDeprecated( deprecated );
+					emitterInfo.setSupportSegmentedOutput( supportSegmentedOutput );
 
 					EmitterInfo existedInfo = (EmitterInfo) emitters.get( id );
 					if ( existedInfo != null )
@@ -850,6 +853,16 @@ public class ExtensionManager
 				: emitterInfo.needOutputResultSet( );
 	}
 
+	/**
+	 * @return true if the outputs of the emitter rendering consecutive page
+	 *         ranges can be concatenated.
+	 */
+	public boolean supportSegmentedOutput( String emitterId )
+	{
+		EmitterInfo emitterInfo = getEmitter( emitterId );
+		return emitterInfo != null && emitterInfo.isSupportSegmentedOutput( );
+	}
+
 	private EmitterInfo getEmitter( String emitterId )
 	{
 		if ( emitterId != null )
@@ -14,14 +14,18 @@ package org.eclipse.birt.report.engine.internal.document.v3;
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.eclipse.birt.core.archive.RAInputStream;
 import org.eclipse.birt.core.util.IOUtil;
 import org.eclipse.birt.report.engine.content.IContent;
+import org.eclipse.birt.report.engine.content.IStyle;
 import org.eclipse.birt.report.engine.content.impl.AbstractContent;
+import org.eclipse.birt.report.engine.content.impl.IStyleTable;
 import org.eclipse.birt.report.engine.content.impl.ReportContent;
+import org.eclipse.birt.report.engine.css.dom.StyleDeclaration;
 import org.eclipse.birt.report.engine.internal.document.DocumentExtension;
 
 /**
@@ -43,6 +47,10 @@ public class ReportContentReaderV3
 
 	protected final static int VERSION_0 = 0;
 	protected final static int VERSION_1 = 1;
+	/**
+	 * version 1 with the style records, see ReportContentWriterV3.
+	 */
+	protected final static int VERSION_2 = 2;
 	protected final static int VERSION_SIZE = 4;
 
 	/**
@@ -55,6 +63,31 @@ public class ReportContentReaderV3
 	protected boolean isEmpty = false;
 
 	protected ClassLoader loader;
+
+	/**
+	 * the styles loaded from the style records, shared by the contents.
+	 */
+	private HashMap<Long, IStyle> styles = new HashMap<Long, IStyle>( );
+
+	private IStyleTable styleTable = new IStyleTable( ) {
+
+		public long addStyle( IStyle style )
+		{
+			return -1;
+		}
+
+		public IStyle getStyle( long id ) throws IOException
+		{
+			Long key = Long.valueOf( id );
+			IStyle style = styles.get( key );
+			if ( style == null )
+			{
+				style = readStyle( id );
+				styles.put( key, style );
+			}
+			return style;
+		}
+	};
 	
 	public ReportContentReaderV3( ReportContent reportContent,
 			RAInputStream stream, ClassLoader loader ) throws IOException
@@ -71,8 +104,10 @@ public class ReportContentReaderV3
 			{
 				version = VERSION_0;
 			}
-			else if ( version == VERSION_1 )
+			else if ( version == VERSION_1 || version == VERSION_2 )
 			{
+				// the contents are saved in the same way
+				version = VERSION_1;
 				if ( length == 4 )
 				{
 					isEmpty = true;
@@ -223,10 +258,37 @@ public class ReportContentReaderV3
 						+ contentType + " at object offset " + offset );
 		}
 		object.setVersion( version );
-		object.readContent( oi, loader );
+		object.readContent( oi, loader, styleTable );
 		return object;
 	}
 
+	/**
+	 * read the style record.
+	 * 
+	 * @param offset
+	 *            the offset of the style record.
+	 * @return the style.
+	 * @throws IOException
+	 */
+	private IStyle readStyle( long offset ) throws IOException
+	{
+		if ( VERSION_1 != version || offset < 0
+				|| offset + VERSION_SIZE >= stream.length( ) )
+		{
+			throw new IOException( "Invalid style offset:" + offset );
+		}
+		stream.seek( VERSION_SIZE + offset );
+		int size = stream.readInt( );
+		byte[] buffer = new byte[size];
+		stream.readFully( buffer, 0, size );
+		DataInputStream oi = new DataInputStream( new ByteArrayInputStream(
+				buffer ) );
+		StyleDeclaration style = new StyleDeclaration( reportContent
+				.getCSSEngine( ) );
+		style.read( oi );
+		return style;
+	}
+
 	/**
 	 * read the content object out from the input stream in the curretn offset.
 	 * After call this methods, the offset is position to the next element in
@@ -14,6 +14,8 @@ package org.eclipse.birt.report.engine.internal.document.v3;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Stack;
 import java.util.logging.Level;
@@ -25,9 +27,23 @@ import org.eclipse.birt.core.util.IOUtil;
 import org.eclipse.birt.report.engine.api.impl.ReportDocumentWriter;
 import org.eclipse.birt.report.engine.content.IContent;
 import org.eclipse.birt.report.engine.content.IReportContent;
+import org.eclipse.birt.report.engine.content.IStyle;
+import org.eclipse.birt.report.engine.content.impl.AbstractContent;
+import org.eclipse.birt.report.engine.content.impl.IStyleTable;
 import org.eclipse.birt.report.engine.internal.document.DocumentExtension;
 import org.eclipse.birt.report.engine.internal.document.IReportContentWriter;
 
+/**
+ * write the contents into the content stream.
+ * 
+ * The stream starts with the version, followed by the records of the contents
+ * and the inline styles. The content record is the index entry followed by the
+ * length and the content data. The style record is the length and the style
+ * data, saved before the first content uses it. The content refers to the
+ * style by the offset of the style record, so each distinct inline style is
+ * saved only once. The first content keeps its style, as the reader expects
+ * it at offset 0 or right after the report.
+ */
 public class ReportContentWriterV3 implements IReportContentWriter
 {
 
@@ -54,11 +70,67 @@ public class ReportContentWriterV3 implements IReportContentWriter
 	{
 		cntStream = writer.createRandomAccessStream( name );
 		// write the version information
-		cntStream.writeInt( VERSION_1 );
+		cntStream.writeInt( VERSION_2 );
 		cntOffset = 0;
 		rootOffset = -1;
 	}
 
+	/**
+	 * the maximum number of the styles in the style table, the other styles
+	 * are saved with the contents.
+	 */
+	final static int MAX_STYLE_COUNT = 4096;
+
+	/**
+	 * the style table, the key is the style data, the value is the offset of
+	 * the style record.
+	 */
+	private HashMap<StyleKey, Long> styles = new HashMap<StyleKey, Long>( );
+
+	private ByteArrayOutputStream styleBuffer = new ByteArrayOutputStream( );
+
+	private DataOutputStream styleBufferStream = new DataOutputStream(
+			styleBuffer );
+
+	private IStyleTable styleTable = new IStyleTable( ) {
+
+		public long addStyle( IStyle style ) throws IOException
+		{
+			// the reader expects the first content at offset 0, or right
+			// after the report, so its style is saved with it
+			if ( rootOffset == -1 )
+			{
+				return -1;
+			}
+			styleBuffer.reset( );
+			style.write( styleBufferStream );
+			styleBufferStream.flush( );
+			StyleKey key = new StyleKey( styleBuffer.toByteArray( ) );
+			Long styleOffset = styles.get( key );
+			if ( styleOffset != null )
+			{
+				return styleOffset.longValue( );
+			}
+			if ( styles.size( ) >= MAX_STYLE_COUNT )
+			{
+				return -1;
+			}
+			// write the style out as: length, data
+			long offset = cntOffset;
+			cntStream.seek( cntOffset + VERSION_SIZE );
+			cntStream.writeInt( key.data.length );
+			cntStream.write( key.data );
+			cntOffset = cntOffset + 4 + key.data.length;
+			styles.put( key, Long.valueOf( offset ) );
+			return offset;
+		}
+
+		public IStyle getStyle( long id )
+		{
+			return null;
+		}
+	};
+
 	/**
 	 * close the content writer
 	 */
@@ -112,15 +184,25 @@ public class ReportContentWriterV3 implements IReportContentWriter
 	 */
 	public long writeContent( IContent content ) throws IOException
 	{
-		//write the index into the stream
-		updateIndex(content);
-		
-		// get the byte[] of the content
+		// get the byte[] of the content, the new styles used by the content
+		// are written into the stream before the content.
 		buffer.reset( );
 		IOUtil.writeInt( bufferStream, content.getContentType( ) );
-		content.writeContent( bufferStream );
+		if ( content instanceof AbstractContent )
+		{
+			( (AbstractContent) content ).writeContent( bufferStream,
+					styleTable );
+		}
+		else
+		{
+			content.writeContent( bufferStream );
+		}
 		bufferStream.flush( );
 		byte[] values = buffer.toByteArray( );
+
+		//write the index into the stream
+		updateIndex(content);
+
 		// write the content out as: length, data
 		cntStream.seek( cntOffset + VERSION_SIZE );
 		cntStream.writeInt( values.length );
@@ -197,6 +279,11 @@ public class ReportContentWriterV3 implements IReportContentWriter
 	final static int VERSION_SIZE = 4;
 	
 	protected final static int VERSION_1 = 1;
+
+	/**
+	 * version 1 with the style records.
+	 */
+	protected final static int VERSION_2 = 2;
 	
 	/**
 	 * There is a content start from the offset, which parent start from
@@ -265,4 +352,31 @@ public class ReportContentWriterV3 implements IReportContentWriter
 			cntStream.writeLong( index );
 		}
 	}
+
+	private static class StyleKey
+	{
+
+		byte[] data;
+		int hashCode;
+
+		StyleKey( byte[] data )
+		{
+			this.data = data;
+			this.hashCode = Arrays.hashCode( data );
+		}
+
+		public int hashCode( )
+		{
+			return hashCode;
+		}
+
+		public boolean equals( Object o )
+		{
+			if ( o instanceof StyleKey )
+			{
+				return Arrays.equals( data, ( (StyleKey) o ).data );
+			}
+			return false;
+		}
+	}
 }
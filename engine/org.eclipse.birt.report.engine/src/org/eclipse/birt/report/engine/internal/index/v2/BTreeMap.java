@@ -35,6 +35,9 @@ class BTreeMap extends BTree<String, Object>
 	static final int LONG_VALUE = 1;
 	static final int BOOKMARK_VALUE = 2;
 
+	// the index is looked up by random keys, keep 256K bytes in memory
+	static final int CACHE_SIZE = 64;
+
 	int indexVersion;
 	int indexType;
 
@@ -47,6 +50,7 @@ class BTreeMap extends BTree<String, Object>
 		option.setHasValue( true );
 		option.setAllowDuplicate( false );
 		option.setValueSerializer( new ObjectSerializer( valueType ) );
+		option.setCacheSize( CACHE_SIZE );
 		option.setFile( new ArchiveInputFile( archive, name ) );
 		return new BTreeMap( option, valueType );
 	}
@@ -55,10 +59,12 @@ class BTreeMap extends BTree<String, Object>
 			String name, int valueType ) throws IOException
 	{
 		BTreeOption<String, Object> option = new BTreeOption<String, Object>( );
-		option.setKeySerializer( new StringSerializer( ) );
+		option.setKeySerializer( new UTF8Serializer( ) );
+		option.setPrefixCompression( true );
 		option.setHasValue( true );
 		option.setAllowDuplicate( false );
 		option.setValueSerializer( new ObjectSerializer( valueType ) );
+		option.setCacheSize( CACHE_SIZE );
 		option.setFile( new ArchiveOutputFile( archive, name ) );
 		return new BTreeMap( option, valueType );
 	}
@@ -81,6 +87,10 @@ class BTreeMap extends BTree<String, Object>
 		indexVersion = in.readInt( );
 		indexType = in.readInt( );
 		super.readTreeHead( in );
+		if ( isPrefixCompression( ) )
+		{
+			keySerializer = new UTF8Serializer( );
+		}
 	}
 
 	protected void writeTreeHead( DataOutput out ) throws IOException
@@ -115,6 +125,25 @@ class BTreeMap extends BTree<String, Object>
 		}
 	}
 
+	/**
+	 * the serializer of the prefix compressed keys. The key length is saved by
+	 * the btree, without the length ahead the sorted keys share the prefix.
+	 */
+	static private class UTF8Serializer implements BTreeSerializer<String>
+	{
+
+		public byte[] getBytes( String object ) throws IOException
+		{
+			return object.getBytes( "UTF-8" ); //$NON-NLS-1$
+		}
+
+		public String getObject( byte[] bytes ) throws IOException,
+				ClassNotFoundException
+		{
+			return new String( bytes, "UTF-8" ); //$NON-NLS-1$
+		}
+	}
+
 	static private class ObjectSerializer implements BTreeSerializer<Object>
 	{
 
@@ -28,9 +28,10 @@ public class DocumentIndexReaderV2
 			DocumentIndexV2Constants
 {
 
-	private IndexReader bookmarks;
-	private IndexReader reportlets;
-	private IndexReader pageNumbers;
+	// the readers are shared by the threads reading the document
+	private volatile IndexReader bookmarks;
+	private volatile IndexReader reportlets;
+	private volatile IndexReader pageNumbers;
 
 	private IDocArchiveReader archive;
 
@@ -88,13 +89,10 @@ public class DocumentIndexReaderV2
 
 	public long getOffsetOfBookmark( String bookmark ) throws IOException
 	{
-		if ( bookmarks == null )
+		IndexReader reader = getBookmarkIndex( );
+		if ( reader != null )
 		{
-			bookmarks = createIndexReader( REPORTLET_BOOKMARK_INDEX_STREAM );
-		}
-		if ( bookmarks != null )
-		{
-			Long value = bookmarks.getLong( bookmark );
+			Long value = reader.getLong( bookmark );
 			if ( value != null )
 				return value.longValue( );
 		}
@@ -103,13 +101,10 @@ public class DocumentIndexReaderV2
 
 	public long getOffsetOfInstance( String instanceId ) throws IOException
 	{
-		if ( reportlets == null )
-		{
-			reportlets = createIndexReader( REPORTLET_ID_INDEX_STREAM );
-		}
-		if ( reportlets != null )
+		IndexReader reader = getReportletIndex( );
+		if ( reader != null )
 		{
-			Long value = reportlets.getLong( instanceId );
+			Long value = reader.getLong( instanceId );
 			if ( value != null )
 				return value.longValue( );
 		}
@@ -118,20 +113,17 @@ public class DocumentIndexReaderV2
 
 	public long getPageOfBookmark( String bookmark ) throws IOException
 	{
-		if ( pageNumbers == null )
+		IndexReader reader = getPageNumberIndex( );
+		if ( reader != null )
 		{
-			pageNumbers = createIndexReader( BOOKMARK_STREAM );
-		}
-		if ( pageNumbers != null )
-		{
-			BookmarkContent content = pageNumbers.getBookmarkContent( bookmark );
+			BookmarkContent content = reader.getBookmarkContent( bookmark );
 			if ( content != null )
 				return content.getPageNumber( );
 			
 			// The following is for backward compatibility. 
 			// The old version is a map from bookmark to pageNumber.
 			// The new version should not get here.
-			Long lvalue = pageNumbers.getLong( bookmark );
+			Long lvalue = reader.getLong( bookmark );
 			if ( lvalue != null )
 				return lvalue.longValue( );
 		}
@@ -140,27 +132,21 @@ public class DocumentIndexReaderV2
 
 	public BookmarkContent getBookmark( String bookmark ) throws IOException
 	{
-		if ( pageNumbers == null )
-		{
-			pageNumbers = createIndexReader( BOOKMARK_STREAM );
-		}
-		if ( pageNumbers != null )
+		IndexReader reader = getPageNumberIndex( );
+		if ( reader != null )
 		{
-			return pageNumbers.getBookmarkContent( bookmark );
+			return reader.getBookmarkContent( bookmark );
 		}
 		return null;
 	}
 
 	public List<String> getBookmarks( ) throws IOException
 	{
-		if ( pageNumbers == null )
-		{
-			pageNumbers = createIndexReader( BOOKMARK_STREAM );
-		}
-		if ( pageNumbers != null )
+		IndexReader reader = getPageNumberIndex( );
+		if ( reader != null )
 		{
 			final ArrayList<String> allBookmarks = new ArrayList<String>( );
-			pageNumbers.forAllKeys( new IndexReader.KeyListener( ) {
+			reader.forAllKeys( new IndexReader.KeyListener( ) {
 
 				public void onKey( String key )
 				{
@@ -177,14 +163,11 @@ public class DocumentIndexReaderV2
 
 	public List<BookmarkContent> getBookmarkContents( ) throws IOException
 	{
-		if ( pageNumbers == null )
-		{
-			pageNumbers = createIndexReader( BOOKMARK_STREAM );
-		}
-		if ( pageNumbers != null )
+		IndexReader reader = getPageNumberIndex( );
+		if ( reader != null )
 		{
 			final ArrayList<BookmarkContent> allBookmarks = new ArrayList<BookmarkContent>( );
-			pageNumbers.forAllValues( new IndexReader.ValueListener( ) {
+			reader.forAllValues( new IndexReader.ValueListener( ) {
 
 				public void onValue( Object value )
 				{
@@ -199,6 +182,60 @@ public class DocumentIndexReaderV2
 		return null;
 	}
 
+	private IndexReader getBookmarkIndex( ) throws IOException
+	{
+		IndexReader reader = bookmarks;
+		if ( reader == null )
+		{
+			synchronized ( this )
+			{
+				reader = bookmarks;
+				if ( reader == null )
+				{
+					reader = createIndexReader( REPORTLET_BOOKMARK_INDEX_STREAM );
+					bookmarks = reader;
+				}
+			}
+		}
+		return reader;
+	}
+
+	private IndexReader getReportletIndex( ) throws IOException
+	{
+		IndexReader reader = reportlets;
+		if ( reader == null )
+		{
+			synchronized ( this )
+			{
+				reader = reportlets;
+				if ( reader == null )
+				{
+					reader = createIndexReader( REPORTLET_ID_INDEX_STREAM );
+					reportlets = reader;
+				}
+			}
+		}
+		return reader;
+	}
+
+	private IndexReader getPageNumberIndex( ) throws IOException
+	{
+		IndexReader reader = pageNumbers;
+		if ( reader == null )
+		{
+			synchronized ( this )
+			{
+				reader = pageNumbers;
+				if ( reader == null )
+				{
+					reader = createIndexReader( BOOKMARK_STREAM );
+					pageNumbers = reader;
+				}
+			}
+		}
+		return reader;
+	}
+
 	private IndexReader createIndexReader( String stream ) throws IOException
 	{
 		return new IndexReader( archive, stream );
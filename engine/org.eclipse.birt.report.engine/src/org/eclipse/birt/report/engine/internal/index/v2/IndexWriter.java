@@ -148,9 +148,7 @@ public class IndexWriter implements IndexConstants
 					}
 				} );
 
-		for ( Map.Entry<String, Object> entry : entries )
-		{
-			btree.insert( entry.getKey( ), entry.getValue( ) );
-		}
+		// the first entries are loaded into the empty tree directly
+		btree.bulkLoad( entries.iterator( ) );
 	}
 }
@@ -102,15 +102,17 @@ public class TOCView implements ITOCTree
 			TOCComparator comparator )
 	{
 		List<ViewNode> children = node.getChildren( );
-		if ( children == null || children.isEmpty( ) )
+		if ( children == null )
 		{
 			return null;
 		}
 		// the TOC id is in pre-visit ordered, the parent is less than all its
-		// children,the current node is less than the following siblings
-		for ( int i = 0; i < children.size( ); i++ )
+		// children,the current node is less than the following siblings. The
+		// children are iterated to stop at the first greater node without
+		// loading the following siblings.
+		TOCNode prevNode = null;
+		for ( TOCNode child : children )
 		{
-			TOCNode child = (TOCNode) children.get( i );
 			int result = comparator.compare( child.getNodeID( ), tocNodeId );
 			if ( result == 0 )
 			{
@@ -118,17 +120,15 @@ public class TOCView implements ITOCTree
 			}
 			if ( result > 0 )
 			{
-				if ( i > 0 )
-				{
-					TOCNode prevNode = children.get( i - 1 );
-					return findTOC( prevNode, tocNodeId, comparator );
-				}
-				return null;
+				break;
 			}
+			prevNode = child;
 		}
-
-		TOCNode lastChild = children.get( children.size( ) - 1 );
-		return findTOC( lastChild, tocNodeId, comparator );
+		if ( prevNode != null )
+		{
+			return findTOC( prevNode, tocNodeId, comparator );
+		}
+		return null;
 	}
 
 	public List<ViewNode> findTOCByValue( Object tocValue )
@@ -14,6 +14,7 @@ package org.eclipse.birt.report.engine.toc;
 import java.util.AbstractList;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.NoSuchElementException;
 
 import org.eclipse.birt.report.engine.api.script.instance.IScriptStyle;
 
@@ -86,6 +87,29 @@ public class ViewNodeList extends AbstractList<ViewNode>
 		return size;
 	}
 
+	/**
+	 * the iterator reads the nodes one by one, it doesn't need the size of
+	 * the list, so the following siblings are not loaded if the iteration
+	 * stops early.
+	 */
+	public Iterator<ViewNode> iterator( )
+	{
+		return new ViewNodeIterator( );
+	}
+
+	synchronized public boolean isEmpty( )
+	{
+		if ( size != -1 )
+		{
+			return size == 0;
+		}
+		if ( cacheIndex > 0 )
+		{
+			return false;
+		}
+		return !new ViewNodeIterator( ).hasNext( );
+	}
+
 	private int calculateListSize( )
 	{
 		ViewNodeIterator iter = new ViewNodeIterator( );
@@ -117,13 +141,13 @@ public class ViewNodeList extends AbstractList<ViewNode>
 
 		public ViewNode next( )
 		{
-			if ( nextNode != null )
+			if ( !hasNext( ) )
 			{
-				ViewNode returnNode = nextNode;
-				nextNode = getNextNode( );
-				return returnNode;
+				throw new NoSuchElementException( );
 			}
-			return null;
+			ViewNode returnNode = nextNode;
+			nextNode = getNextNode( );
+			return returnNode;
 		}
 
 		ViewNode getNextNode( )
@@ -16,6 +16,8 @@ import java.io.DataInputStream;
 import java.io.IOException;
 import java.util.AbstractCollection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -31,9 +33,28 @@ public class TOCReaderV3 implements ITOCReader, ITOCConstants
 
 	static final Logger logger = Logger
 			.getLogger( TOCReaderV3.class.getName( ) );
+
+	/**
+	 * the max count of the nodes kept in memory. The nodes are read from the
+	 * stream when they are accessed, so the memory used by the reader doesn't
+	 * depend on the size of the TOC.
+	 */
+	static final int MAX_CACHED_NODES = 1024;
+
 	DocTreeNode root;
 	RAInputStream in;
 	ClassLoader classloader;
+	Map<Integer, DocTreeNode> cachedNodes = new LinkedHashMap<Integer, DocTreeNode>(
+			16, 0.75f, true ) {
+
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(
+				Map.Entry<Integer, DocTreeNode> eldest )
+		{
+			return size( ) > MAX_CACHED_NODES;
+		}
+	};
 
 	public TOCReaderV3( RAInputStream in, ClassLoader loader )
 			throws IOException
@@ -74,6 +95,10 @@ public class TOCReaderV3 implements ITOCReader, ITOCConstants
 				in.close( );
 			}
 		}
+		synchronized ( this )
+		{
+			cachedNodes.clear( );
+		}
 	}
 
 	public ITreeNode readTree( ) throws IOException
@@ -82,6 +107,18 @@ public class TOCReaderV3 implements ITOCReader, ITOCConstants
 	}
 
 	synchronized private DocTreeNode readNode( int offset ) throws IOException
+	{
+		Integer key = Integer.valueOf( offset );
+		DocTreeNode node = cachedNodes.get( key );
+		if ( node == null )
+		{
+			node = loadNode( offset );
+			cachedNodes.put( key, node );
+		}
+		return node;
+	}
+
+	private DocTreeNode loadNode( int offset ) throws IOException
 	{
 		DocTreeNode node = new DocTreeNode( );
 		node.offset = offset;
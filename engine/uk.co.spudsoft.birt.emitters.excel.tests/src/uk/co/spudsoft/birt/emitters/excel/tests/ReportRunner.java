@@ -76,6 +76,8 @@ public class ReportRunner {
 	protected Boolean groupSummaryHeader = null;
 	
 	protected Integer spannedRowHeight = null;
+	protected Boolean streamingXlsx = null;
+	protected Integer streamingXlsxWindowSize = null;
 	
 	protected String templateFile = null;
 	
@@ -553,6 +555,12 @@ public class ReportRunner {
 		if( spannedRowHeight != null ) {
 			renderOptions.setOption( ExcelEmitter.SPANNED_ROW_HEIGHT, spannedRowHeight );			
 		}
+		if( streamingXlsx != null ) {
+			renderOptions.setOption( ExcelEmitter.STREAMING_XLSX, streamingXlsx );
+		}
+		if( streamingXlsxWindowSize != null ) {
+			renderOptions.setOption( ExcelEmitter.STREAMING_XLSX_WINDOW_SIZE, streamingXlsxWindowSize );
+		}
 		if( templateFile != null ) {
 			renderOptions.setOption( ExcelEmitter.TEMPLATE_FILE, templateFile );
 		}
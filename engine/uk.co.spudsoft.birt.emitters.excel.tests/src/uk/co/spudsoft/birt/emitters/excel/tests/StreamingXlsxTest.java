@@ -0,0 +1,111 @@
+/*************************************************************************************
+ * Copyright (c) 2011, 2012, 2013 James Talbut.
+ *  jim-emitters@spudsoft.co.uk
+ *  
+ * All rights reserved. This program and the accompanying materials 
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Contributors:
+ *     James Talbut - Initial implementation.
+ ************************************************************************************/
+
+package uk.co.spudsoft.birt.emitters.excel.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.eclipse.birt.core.exception.BirtException;
+import org.junit.Test;
+
+public class StreamingXlsxTest extends ReportRunner {
+
+	@Test
+	public void testSimpleTable() throws BirtException, IOException {
+
+		streamingXlsx = true;
+		InputStream inputStream = runAndRenderReport("SimpleTable.rptdesign", "xlsx");
+		assertNotNull(inputStream);
+		try {
+			
+			XSSFWorkbook workbook = new XSSFWorkbook(inputStream);
+			assertNotNull(workbook);
+			
+			assertEquals( 1, workbook.getNumberOfSheets() );
+			assertEquals( "Simple Table Report", workbook.getSheetAt(0).getSheetName());
+			
+			Sheet sheet = workbook.getSheetAt(0);
+			assertEquals(2, firstNullRow(sheet));
+			
+			assertEquals( "1", sheet.getRow(0).getCell(0).getStringCellValue() );
+			assertEquals( "2", sheet.getRow(1).getCell(0).getStringCellValue() );
+			assertEquals( 3.0, sheet.getRow(0).getCell(1).getNumericCellValue(), 0.001 );
+			assertEquals( Cell.CELL_TYPE_BLANK, sheet.getRow(1).getCell(1).getCellType() );
+			
+			assertEquals( "Title\nSubtitle", 	sheet.getHeader().getLeft() );
+			assertEquals( "The Writer", 		sheet.getFooter().getLeft() );
+		} finally {
+			inputStream.close();
+		}
+	}
+	
+	@Test
+	public void testMegaXlsxSmallWindow() throws BirtException, IOException {
+
+		streamingXlsx = true;
+		streamingXlsxWindowSize = 100;
+		InputStream inputStream = runAndRenderReport("MegaSize.rptdesign", "xlsx");
+		assertNotNull(inputStream);
+		try {
+			
+			XSSFWorkbook workbook = new XSSFWorkbook(inputStream);
+			assertNotNull(workbook);
+			
+			Sheet sheet = workbook.getSheetAt(0);
+			// Rows flushed out of the window must all have been written to the output
+			assertTrue( lastRow(sheet) > 65535 );
+		} finally {
+			inputStream.close();
+		}
+	}
+	
+	@Test
+	public void testGroupingsSmallWindow() throws BirtException, IOException {
+
+		streamingXlsx = true;
+		streamingXlsxWindowSize = 2;
+		InputStream inputStream = runAndRenderReport("Grouping.rptdesign", "xlsx");
+		assertNotNull(inputStream);
+		try {
+			
+			XSSFWorkbook workbook = new XSSFWorkbook(inputStream);
+			assertNotNull(workbook);
+			
+			assertEquals( 3, workbook.getNumberOfSheets() );
+
+			// Groups are larger than the window, so their rows must not have been flushed before being grouped
+			XSSFSheet sheet0 = workbook.getSheetAt(0);
+			int rowNum0 = 1;
+			for( int i = 1; i < 9; ++i ) {
+				assertEquals( "rowNum=" + rowNum0, 0, sheet0.getRow( rowNum0++ ).getCTRow().getOutlineLevel() );
+				for( int j = 0; j < i; ++j) {
+					assertEquals( "rowNum=" + rowNum0, 1, sheet0.getRow( rowNum0++ ).getCTRow().getOutlineLevel() );
+				}
+				assertEquals( "rowNum=" + rowNum0, 1, sheet0.getRow( rowNum0++ ).getCTRow().getOutlineLevel() );
+			}
+			assertTrue( rowNum0 > 50 );
+		} finally {
+			inputStream.close();
+		}
+	}
+	
+}
@@ -84,6 +84,9 @@ public abstract class ExcelEmitter implements IContentEmitter {
 	public static final String DISPLAYZEROS_PROP = "ExcelEmitter.DisplayZeros";
 
 	public static final String TEMPLATE_FILE = "ExcelEmitter.TemplateFile";
+
+	public static final String STREAMING_XLSX = "ExcelEmitter.StreamingXlsx";
+	public static final String STREAMING_XLSX_WINDOW_SIZE = "ExcelEmitter.StreamingXlsxWindowSize";
 	
 	/**
 	 * Logger.
@@ -163,6 +166,25 @@ public abstract class ExcelEmitter implements IContentEmitter {
 	 */
 	protected abstract Workbook openWorkbook( File templateFile ) throws IOException;
 	
+	/**
+	 * Releases any resources held by the workbook once it has been written.
+	 * <p>
+	 * The default implementation does nothing.
+	 * </p>
+	 * @param wb
+	 * The workbook that has been written.
+	 */
+	protected void disposeWorkbook( Workbook wb ) {
+	}
+	
+	/**
+	 * @return
+	 * The render options passed to initialize().
+	 */
+	protected IRenderOption getRenderOptions() {
+		return renderOptions;
+	}
+	
 	
 	public void initialize( IEmitterServices service ) throws BirtException {
 		renderOptions = service.getRenderOption();
@@ -275,6 +297,7 @@ public abstract class ExcelEmitter implements IContentEmitter {
 					log.debug("ex:", ex.toString());
 				}
 			}
+			disposeWorkbook( handlerState.getWb() );
 			handlerState = null;
 			reportOutputFilename = null;			
 			reportOutputStream = null;
@@ -13,13 +13,18 @@
 
 package uk.co.spudsoft.birt.emitters.excel;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.report.engine.api.IRenderOption;
 import org.eclipse.birt.report.engine.api.ReportEngine;
 import org.eclipse.birt.report.engine.emitter.IContentEmitter;
@@ -120,6 +125,15 @@ public class HandlerState {
      * Any other sheets that exist in the workbook may be overwritten
      */
     public Map<String,Integer> sheetNames = new HashMap<String,Integer>();
+    
+    /**
+     * The number of open groups whose rows are being kept in memory
+     */
+    private int openRowGroups;
+    /**
+     * The streaming sheet that is not flushing rows whilst groups are open
+     */
+    private SXSSFSheet unflushedSheet;
 	
 	/**
 	 * Constructor
@@ -268,7 +282,11 @@ public class HandlerState {
         	
         	float heightUnaccountedFor = a.height;
         	for( int componentRow = a.x.getRow(); componentRow < row; ++componentRow ) {
-        		heightUnaccountedFor -= currentSheet.getRow( componentRow ).getHeightInPoints();
+        		Row componentSheetRow = currentSheet.getRow( componentRow );
+        		// The row may already have been flushed by a streaming workbook
+        		heightUnaccountedFor -= ( componentSheetRow == null ) 
+        				? currentSheet.getDefaultRowHeightInPoints() 
+        				: componentSheetRow.getHeightInPoints();
         	}
         	float heightPerRowRemainig = heightUnaccountedFor / ( 1 + a.y.getRow() - row );
         	if( heightPerRowRemainig > result ) {
@@ -291,4 +309,42 @@ public class HandlerState {
     	}
     	return 0;
     }
+    
+    /**
+     * Stops a streaming sheet from flushing rows until the matching endRowGroup, 
+     * because rows that have been flushed can no longer be grouped.
+     * <p>
+     * The rows of the outermost open group are all kept in memory, so grouped reports 
+     * only stream between groups (or when ExcelEmitter.DisableGrouping is set).
+     * </p>
+     */
+    public void startRowGroup() {
+    	if( ( openRowGroups++ == 0 ) && ( currentSheet instanceof SXSSFSheet ) ) {
+    		log.debug( "Keeping the rows in memory from ", rowNum, " until the group ends" );
+    		unflushedSheet = (SXSSFSheet)currentSheet;
+    		unflushedSheet.setRandomAccessWindowSize( -1 );
+    	}
+    }
+    
+    /**
+     * Lets a streaming sheet flush rows again once the outermost open group has ended.
+     * This must be called after the rows of the group have been grouped.
+     * @throws BirtException
+     */
+    public void endRowGroup() throws BirtException {
+    	if( ( --openRowGroups == 0 ) && ( unflushedSheet != null ) ) {
+    		int windowSize = ((SXSSFWorkbook)wb).getRandomAccessWindowSize();
+    		unflushedSheet.setRandomAccessWindowSize( windowSize );
+    		try {
+    			unflushedSheet.flushRows( windowSize );
+    		} catch( IOException ex ) {
+    			throw new BirtException( EmitterServices.getPluginName()
+    					, "Unable to flush the rows of the streaming sheet"
+    					, ex
+    					);
+    		} finally {
+    			unflushedSheet = null;
+    		}
+    	}
+    }
 }
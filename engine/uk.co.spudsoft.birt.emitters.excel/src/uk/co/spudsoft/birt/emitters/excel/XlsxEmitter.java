@@ -19,15 +19,36 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.report.engine.content.IReportContent;
 
 /**
  * XlsxEmitter is the leaf class for implementing the ExcelEmitter with XSSFWorkbook.
+ * <p>
+ * When the ExcelEmitter.StreamingXlsx option is set the workbook is an SXSSFWorkbook instead,
+ * which only keeps a rolling window of rows in memory and flushes older rows to a temporary file.
+ * Rows that have left the window can no longer be read back, so anything that looks back at them
+ * (auto column widths, images and row spans) only sees the rows still in the window.
+ * The window must be larger than the tallest nested table or row span in the report.
+ * Rows can only be grouped whilst they are in memory, so the rows of an open table or list group
+ * are all kept in memory until the outermost group ends; set ExcelEmitter.DisableGrouping to stream
+ * grouped reports with a bounded window.
+ * </p>
  * @author Jim Talbut
  *
  */
 public class XlsxEmitter extends ExcelEmitter {
 	
+	/**
+	 * Default number of rows kept in memory when streaming.
+	 */
+	public static final int DEFAULT_STREAMING_WINDOW_SIZE = 1000;
+	
+	private boolean streaming;
+	private int streamingWindowSize = DEFAULT_STREAMING_WINDOW_SIZE;
+	
 	/**
 	 */
 	public XlsxEmitter() {
@@ -39,17 +60,45 @@ public class XlsxEmitter extends ExcelEmitter {
 		return "xlsx";
 	}
 
+	@Override
+	public void start( IReportContent report ) throws BirtException {
+		streaming = EmitterServices.booleanOption( getRenderOptions(), report, STREAMING_XLSX, false );
+		streamingWindowSize = EmitterServices.integerOption( getRenderOptions(), report, STREAMING_XLSX_WINDOW_SIZE, DEFAULT_STREAMING_WINDOW_SIZE );
+		if( streamingWindowSize <= 0 ) {
+			streamingWindowSize = DEFAULT_STREAMING_WINDOW_SIZE;
+		}
+		log.debug( "Streaming: ", streaming, " with window size ", streamingWindowSize );
+		super.start( report );
+	}
+
 	protected Workbook createWorkbook() {
+		if( streaming ) {
+			return new SXSSFWorkbook( new XSSFWorkbook(), streamingWindowSize, true );
+		}
 		return new XSSFWorkbook();
 	}
 	
 	protected Workbook openWorkbook( File templateFile ) throws IOException {
 		InputStream stream = new FileInputStream( templateFile );
 		try {
-			return new XSSFWorkbook( stream );
+			XSSFWorkbook template = new XSSFWorkbook( stream );
+			if( streaming ) {
+				return new SXSSFWorkbook( template, streamingWindowSize, true );
+			}
+			return template;
 		} finally {
 			stream.close();
 		}
 	}
+	
+	@Override
+	protected void disposeWorkbook( Workbook wb ) {
+		if( wb instanceof SXSSFWorkbook ) {
+			// Delete the temporary files holding the flushed rows
+			if( ! ((SXSSFWorkbook)wb).dispose() ) {
+				log.debug( "Unable to delete all the temporary files of the streaming workbook" );
+			}
+		}
+	}
 
 }
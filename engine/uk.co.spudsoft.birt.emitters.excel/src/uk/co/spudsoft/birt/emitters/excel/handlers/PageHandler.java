@@ -15,11 +15,11 @@ package uk.co.spudsoft.birt.emitters.excel.handlers;
 
 import java.util.Collection;
 
-import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.ClientAnchor;
 import org.apache.poi.ss.usermodel.Drawing;
 import org.apache.poi.ss.usermodel.HeaderFooter;
 import org.apache.poi.ss.usermodel.PrintSetup;
+import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.util.CellRangeAddress;
 import org.eclipse.birt.core.exception.BirtException;
@@ -272,18 +272,25 @@ public class PageHandler extends AbstractHandler {
 	private void processCellImage( HandlerState state, Drawing drawing, CellImage cellImage ) {
 		Coordinate location = cellImage.location;
 		
-		Cell cell = state.currentSheet.getRow( location.getRow() ).getCell( location.getCol() );
+		// The row is null if it has already been flushed by a streaming workbook, 
+		// in which case the image is placed without adjusting the row heights.
+		Row imageRow = state.currentSheet.getRow( location.getRow() );
+		int rowIndex = location.getRow();
+		int colIndex = location.getCol();
+		float rowHeightInPoints = ( imageRow == null ) 
+				? state.currentSheet.getDefaultRowHeightInPoints() 
+				: imageRow.getHeightInPoints();
 
 		IImageContent image = cellImage.image;		
 		
 		StyleManagerUtils smu = state.getSmu();
-		float ptHeight = cell.getRow().getHeightInPoints();
+		float ptHeight = rowHeightInPoints;
 		if( image.getHeight() != null ) {
 			ptHeight = smu.fontSizeInPoints( image.getHeight().toString() );
 		}
 
 		// Get image width
-		int endCol = cell.getColumnIndex();
+		int endCol = colIndex;
         double lastColWidth = ClientAnchorConversions.widthUnits2Millimetres( (short)state.currentSheet.getColumnWidth( endCol ) )
         		+ 2.0;
         int dx = smu.anchorDxFromMM( lastColWidth, lastColWidth );
@@ -300,7 +307,7 @@ public class PageHandler extends AbstractHandler {
 	        if( mmWidth > 0) {
 	            double mmAccumulatedWidth = 0;
 	            int endColLimit = cellImage.spanColumns ? 256 : mergedRegion.getLastColumn();
-	            for( endCol = cell.getColumnIndex(); mmAccumulatedWidth < mmWidth && endCol < endColLimit; ++ endCol ) {
+	            for( endCol = colIndex; mmAccumulatedWidth < mmWidth && endCol < endColLimit; ++ endCol ) {
 	                lastColWidth = ClientAnchorConversions.widthUnits2Millimetres( (short)state.currentSheet.getColumnWidth( endCol ) )
 	                		+ 2.0;
 	                mmAccumulatedWidth += lastColWidth;
@@ -318,26 +325,29 @@ public class PageHandler extends AbstractHandler {
 			ptHeight = ptHeight / widthRatio;
 		}
 
-		int rowsSpanned = state.findRowsSpanned( cell.getRowIndex(), cell.getColumnIndex() );
+		int rowsSpanned = state.findRowsSpanned( rowIndex, colIndex );
 		float neededRowHeightPoints = ptHeight;
 		
 		for( int i = 0; i < rowsSpanned; ++i ) {
-			int rowIndex = cell.getRowIndex() + 1 + i;
-			neededRowHeightPoints -= state.currentSheet.getRow(rowIndex).getHeightInPoints();
+			Row spannedRow = state.currentSheet.getRow(rowIndex + 1 + i);
+			neededRowHeightPoints -= ( spannedRow == null ) 
+					? state.currentSheet.getDefaultRowHeightInPoints() 
+					: spannedRow.getHeightInPoints();
 		}
 		
-		if( neededRowHeightPoints > cell.getRow().getHeightInPoints()) {
-			cell.getRow().setHeightInPoints( neededRowHeightPoints );
+		if( ( imageRow != null ) && ( neededRowHeightPoints > rowHeightInPoints ) ) {
+			imageRow.setHeightInPoints( neededRowHeightPoints );
+			rowHeightInPoints = neededRowHeightPoints;
 		}
 		
 		// ClientAnchor anchor = wb.getCreationHelper().createClientAnchor();
 		ClientAnchor anchor = state.getWb().getCreationHelper().createClientAnchor();
-        anchor.setCol1(cell.getColumnIndex());
-        anchor.setRow1(cell.getRowIndex());
+        anchor.setCol1(colIndex);
+        anchor.setRow1(rowIndex);
         anchor.setCol2(endCol);
-        anchor.setRow2(cell.getRowIndex() + rowsSpanned);
+        anchor.setRow2(rowIndex + rowsSpanned);
         anchor.setDx2(dx);
-        anchor.setDy2( smu.anchorDyFromPoints( ptHeight, cell.getRow().getHeightInPoints() ) );
+        anchor.setDy2( smu.anchorDyFromPoints( ptHeight, rowHeightInPoints ) );
         anchor.setAnchorType(ClientAnchor.MOVE_DONT_RESIZE);
 	    drawing.createPicture(anchor, cellImage.imageIdx);
 	}
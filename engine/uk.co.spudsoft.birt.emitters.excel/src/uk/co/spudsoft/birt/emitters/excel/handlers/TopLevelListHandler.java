@@ -74,6 +74,10 @@ public class TopLevelListHandler extends AbstractRealListHandler {
 			groupStarts = new Stack<Integer>();
 		}
 		groupStarts.push(state.rowNum);
+		if( ! EmitterServices.booleanOption( state.getRenderOptions(), group, ExcelEmitter.DISABLE_GROUPING, false ) ) {
+			// A streaming sheet must not flush the rows before they are grouped
+			state.startRowGroup();
+		}
 		
 		
 		Object groupDesignObject = group.getGenerateBy();
@@ -99,19 +103,23 @@ public class TopLevelListHandler extends AbstractRealListHandler {
 	@Override
 	public void endListGroup(HandlerState state, IListGroupContent group) throws BirtException {
 		int start = groupStarts.pop();
-		if( start < state.rowNum - 2 ) {
 				
-			boolean disableGrouping = false;
-			
-			// Report user props and context first
-			if( EmitterServices.booleanOption( state.getRenderOptions(), group, ExcelEmitter.DISABLE_GROUPING, false ) ) {
-				disableGrouping = true;
-			}
+		boolean disableGrouping = false;
+		
+		// Report user props and context first
+		if( EmitterServices.booleanOption( state.getRenderOptions(), group, ExcelEmitter.DISABLE_GROUPING, false ) ) {
+			disableGrouping = true;
+		}
 
+		if( start < state.rowNum - 2 ) {
 			if( ! disableGrouping ) {
 				state.currentSheet.groupRow(start, state.rowNum - 2);
 			}
 		}
+		
+		if( ! disableGrouping ) {
+			state.endRowGroup();
+		}
 	}
 
 	@Override
@@ -86,6 +86,10 @@ public class TopLevelTableHandler extends AbstractRealTableHandler {
 			groupStarts = new Stack<Integer>();
 		}
 		groupStarts.push(state.rowNum);
+		if( ! EmitterServices.booleanOption( state.getRenderOptions(), group, ExcelEmitter.DISABLE_GROUPING, false ) ) {
+			// A streaming sheet must not flush the rows before they are grouped
+			state.startRowGroup();
+		}
 		
 		Object groupDesignObject = group.getGenerateBy();
 		if( groupDesignObject instanceof TableGroupDesign ) {
@@ -107,15 +111,15 @@ public class TopLevelTableHandler extends AbstractRealTableHandler {
 	public void endTableGroup(HandlerState state, ITableGroupContent group) throws BirtException {
 		log.debug( "endTableGroup @" + state.rowNum + " called " + group.getBookmark() );
 		int start = groupStarts.pop();
-		if( start < state.rowNum - 1 ) {
-			
-			boolean disableGrouping = false;
 			
-			// Report user props and context first
-			if( EmitterServices.booleanOption( state.getRenderOptions(), group, ExcelEmitter.DISABLE_GROUPING, false ) ) {
-				disableGrouping = true;
-			}
+		boolean disableGrouping = false;
+		
+		// Report user props and context first
+		if( EmitterServices.booleanOption( state.getRenderOptions(), group, ExcelEmitter.DISABLE_GROUPING, false ) ) {
+			disableGrouping = true;
+		}
 
+		if( start < state.rowNum - 1 ) {
 			if( ! disableGrouping ) {
 				if( state.currentSheet.getRowSumsBelow() ) {
 					log.debug( "TableGroup of rows below ", start, " - ", state.rowNum - 2 );
@@ -126,6 +130,10 @@ public class TopLevelTableHandler extends AbstractRealTableHandler {
 				}
 			}
 		}
+		
+		if( ! disableGrouping ) {
+			state.endRowGroup();
+		}
 	}
 	
 }
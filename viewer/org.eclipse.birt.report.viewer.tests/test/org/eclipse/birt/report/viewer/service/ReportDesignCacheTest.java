@@ -0,0 +1,289 @@
+/*************************************************************************************
+ * Copyright (c) 2018 Actuate Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Actuate Corporation - Initial implementation.
+ ************************************************************************************/
+
+package org.eclipse.birt.report.viewer.service;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.eclipse.birt.report.engine.api.EngineException;
+import org.eclipse.birt.report.engine.api.IReportEngine;
+import org.eclipse.birt.report.engine.api.IReportRunnable;
+import org.eclipse.birt.report.model.api.DesignConfig;
+import org.eclipse.birt.report.model.api.DesignEngine;
+import org.eclipse.birt.report.model.api.IModuleOption;
+import org.eclipse.birt.report.model.api.ReportDesignHandle;
+import org.eclipse.birt.report.model.api.SessionHandle;
+import org.eclipse.birt.report.service.ReportDesignCache;
+
+import com.ibm.icu.util.ULocale;
+
+/**
+ * TestCases for ReportDesignCache class. The designs are created in memory
+ * and the engine only wraps the copies of the cached designs.
+ */
+public class ReportDesignCacheTest extends TestCase
+{
+
+	private SessionHandle session;
+	private IReportEngine engine;
+	private File[] files;
+
+	protected void setUp( ) throws Exception
+	{
+		super.setUp( );
+		session = new DesignEngine( new DesignConfig( ) ).newSessionHandle( ULocale.ENGLISH );
+		engine = (IReportEngine) Proxy.newProxyInstance( getClass( ).getClassLoader( ),
+				new Class[]{
+					IReportEngine.class
+				},
+				new InvocationHandler( ) {
+
+					public Object invoke( Object proxy, Method method,
+							Object[] args )
+					{
+						if ( "openReportDesign".equals( method.getName( ) ) //$NON-NLS-1$
+								&& args.length == 1
+								&& args[0] instanceof ReportDesignHandle )
+						{
+							return createRunnable( (ReportDesignHandle) args[0] );
+						}
+						throw new UnsupportedOperationException( method.getName( ) );
+					}
+				} );
+		files = new File[3];
+		for ( int i = 0; i < files.length; i++ )
+		{
+			files[i] = File.createTempFile( "ReportDesignCacheTest", ".rptdesign" ); //$NON-NLS-1$ //$NON-NLS-2$
+			write( files[i], "design" + i ); //$NON-NLS-1$
+		}
+	}
+
+	protected void tearDown( ) throws Exception
+	{
+		for ( int i = 0; i < files.length; i++ )
+		{
+			files[i].delete( );
+		}
+		super.tearDown( );
+	}
+
+	/**
+	 * The second open of a design is served from the cache, and every caller
+	 * gets its own copy.
+	 */
+	public void testHit( ) throws Exception
+	{
+		ReportDesignCache cache = new ReportDesignCache( 10 );
+		DesignLoader loader = new DesignLoader( );
+		IReportRunnable runnable1 = cache.openReportDesign( engine,
+				files[0],
+				"design0", //$NON-NLS-1$
+				null,
+				loader );
+		IReportRunnable runnable2 = cache.openReportDesign( engine,
+				files[0],
+				"design0", //$NON-NLS-1$
+				null,
+				loader );
+		assertEquals( 1, loader.loadCount );
+		assertEquals( 1, cache.getHitCount( ) );
+		assertEquals( 1, cache.getMissCount( ) );
+		assertEquals( 1, cache.size( ) );
+		assertNotSame( runnable1.getDesignHandle( ),
+				runnable2.getDesignHandle( ) );
+		assertNotSame( loader.lastDesign, runnable2.getDesignHandle( ) );
+		assertEquals( "design0", ( (ReportDesignHandle) runnable2.getDesignHandle( ) ).getFileName( ) ); //$NON-NLS-1$
+
+		// the copy can be changed without changing the cached design
+		( (ReportDesignHandle) runnable1.getDesignHandle( ) ).setTitle( "changed" ); //$NON-NLS-1$
+		IReportRunnable runnable3 = cache.openReportDesign( engine,
+				files[0],
+				"design0", //$NON-NLS-1$
+				null,
+				loader );
+		assertNull( ( (ReportDesignHandle) runnable3.getDesignHandle( ) ).getTitle( ) );
+		assertEquals( 1, loader.loadCount );
+	}
+
+	/**
+	 * A modified design file is parsed again and replaces the cached design.
+	 */
+	public void testModified( ) throws Exception
+	{
+		ReportDesignCache cache = new ReportDesignCache( 10 );
+		DesignLoader loader = new DesignLoader( );
+		cache.openReportDesign( engine, files[0], "design0", null, loader ); //$NON-NLS-1$
+		write( files[0], "modified design0" ); //$NON-NLS-1$
+		files[0].setLastModified( files[0].lastModified( ) + 2000 );
+		cache.openReportDesign( engine, files[0], "design0", null, loader ); //$NON-NLS-1$
+		assertEquals( 2, loader.loadCount );
+		assertEquals( 0, cache.getHitCount( ) );
+		assertEquals( 2, cache.getMissCount( ) );
+		assertEquals( 1, cache.size( ) );
+
+		cache.openReportDesign( engine, files[0], "design0", null, loader ); //$NON-NLS-1$
+		assertEquals( 2, loader.loadCount );
+		assertEquals( 1, cache.getHitCount( ) );
+	}
+
+	/**
+	 * The designs are cached per option values, and not cached when an
+	 * option can not be compared.
+	 */
+	public void testOptions( ) throws Exception
+	{
+		ReportDesignCache cache = new ReportDesignCache( 10 );
+		DesignLoader loader = new DesignLoader( );
+		Map options = new HashMap( );
+		options.put( "option", "1" ); //$NON-NLS-1$ //$NON-NLS-2$
+		cache.openReportDesign( engine, files[0], "design0", options, loader ); //$NON-NLS-1$
+		options.put( "option", "2" ); //$NON-NLS-1$ //$NON-NLS-2$
+		cache.openReportDesign( engine, files[0], "design0", options, loader ); //$NON-NLS-1$
+		assertEquals( 2, loader.loadCount );
+		assertEquals( 2, cache.size( ) );
+
+		options.put( "option", new Object( ) ); //$NON-NLS-1$
+		cache.openReportDesign( engine, files[0], "design0", options, loader ); //$NON-NLS-1$
+		cache.openReportDesign( engine, files[0], "design0", options, loader ); //$NON-NLS-1$
+		assertEquals( 4, loader.loadCount );
+		assertEquals( 2, cache.size( ) );
+	}
+
+	/**
+	 * A design is parsed again when a file of the resource folder is
+	 * modified.
+	 */
+	public void testResourceFolder( ) throws Exception
+	{
+		File folder = new File( files[0].getParentFile( ),
+				"ReportDesignCacheTest" + System.currentTimeMillis( ) ); //$NON-NLS-1$
+		File subFolder = new File( folder, "messages" ); //$NON-NLS-1$
+		subFolder.mkdirs( );
+		File resource = new File( subFolder, "messages.properties" ); //$NON-NLS-1$
+		try
+		{
+			write( resource, "key=value" ); //$NON-NLS-1$
+			ReportDesignCache cache = new ReportDesignCache( 10 );
+			DesignLoader loader = new DesignLoader( );
+			Map options = new HashMap( );
+			options.put( IModuleOption.RESOURCE_FOLDER_KEY,
+					folder.getAbsolutePath( ) );
+			cache.openReportDesign( engine, files[0], "design0", options, loader ); //$NON-NLS-1$
+			cache.openReportDesign( engine, files[0], "design0", options, loader ); //$NON-NLS-1$
+			assertEquals( 1, loader.loadCount );
+
+			write( resource, "key=changed" ); //$NON-NLS-1$
+			resource.setLastModified( Math.max( folder.lastModified( ),
+					subFolder.lastModified( ) ) + 2000 );
+			cache.openReportDesign( engine, files[0], "design0", options, loader ); //$NON-NLS-1$
+			assertEquals( 2, loader.loadCount );
+			assertEquals( 1, cache.size( ) );
+			cache.openReportDesign( engine, files[0], "design0", options, loader ); //$NON-NLS-1$
+			assertEquals( 2, loader.loadCount );
+		}
+		finally
+		{
+			resource.delete( );
+			subFolder.delete( );
+			folder.delete( );
+		}
+	}
+
+	/**
+	 * The least recently opened design is removed when the cache is full.
+	 */
+	public void testCapacity( ) throws Exception
+	{
+		ReportDesignCache cache = new ReportDesignCache( 2 );
+		DesignLoader loader = new DesignLoader( );
+		cache.openReportDesign( engine, files[0], "design0", null, loader ); //$NON-NLS-1$
+		cache.openReportDesign( engine, files[1], "design1", null, loader ); //$NON-NLS-1$
+		cache.openReportDesign( engine, files[0], "design0", null, loader ); //$NON-NLS-1$
+		cache.openReportDesign( engine, files[2], "design2", null, loader ); //$NON-NLS-1$
+		assertEquals( 3, loader.loadCount );
+		assertEquals( 2, cache.size( ) );
+
+		// design1 was removed, design0 is still cached
+		cache.openReportDesign( engine, files[0], "design0", null, loader ); //$NON-NLS-1$
+		assertEquals( 3, loader.loadCount );
+		cache.openReportDesign( engine, files[1], "design1", null, loader ); //$NON-NLS-1$
+		assertEquals( 4, loader.loadCount );
+
+		cache.clear( );
+		assertEquals( 0, cache.size( ) );
+
+		// nothing is cached without capacity
+		cache = new ReportDesignCache( 0 );
+		cache.openReportDesign( engine, files[0], "design0", null, loader ); //$NON-NLS-1$
+		cache.openReportDesign( engine, files[0], "design0", null, loader ); //$NON-NLS-1$
+		assertEquals( 6, loader.loadCount );
+		assertEquals( 0, cache.size( ) );
+	}
+
+	private IReportRunnable createRunnable( final ReportDesignHandle design )
+	{
+		return (IReportRunnable) Proxy.newProxyInstance( getClass( ).getClassLoader( ),
+				new Class[]{
+					IReportRunnable.class
+				},
+				new InvocationHandler( ) {
+
+					public Object invoke( Object proxy, Method method,
+							Object[] args )
+					{
+						if ( "getDesignHandle".equals( method.getName( ) ) ) //$NON-NLS-1$
+						{
+							return design;
+						}
+						throw new UnsupportedOperationException( method.getName( ) );
+					}
+				} );
+	}
+
+	private static void write( File file, String content ) throws IOException
+	{
+		FileWriter writer = new FileWriter( file );
+		try
+		{
+			writer.write( content );
+		}
+		finally
+		{
+			writer.close( );
+		}
+	}
+
+	/**
+	 * Creates a new design for every load.
+	 */
+	private class DesignLoader implements ReportDesignCache.IDesignLoader
+	{
+
+		int loadCount;
+		ReportDesignHandle lastDesign;
+
+		public IReportRunnable load( ) throws EngineException
+		{
+			loadCount++;
+			lastDesign = session.createDesign( );
+			return createRunnable( lastDesign );
+		}
+	}
+}
@@ -0,0 +1,420 @@
+/*************************************************************************************
+ * Copyright (c) 2018 Actuate Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Actuate Corporation - Initial implementation.
+ ************************************************************************************/
+
+package org.eclipse.birt.report.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.eclipse.birt.report.engine.api.EngineException;
+import org.eclipse.birt.report.engine.api.IReportEngine;
+import org.eclipse.birt.report.engine.api.IReportRunnable;
+import org.eclipse.birt.report.model.api.IModuleOption;
+import org.eclipse.birt.report.model.api.LibraryHandle;
+import org.eclipse.birt.report.model.api.ReportDesignHandle;
+
+/**
+ * Keeps the parsed report designs of the most recently opened design files,
+ * so that a design is not parsed again for every request.
+ * <p>
+ * A design is cached under its canonical path and the module options it was
+ * opened with, which include the resource folder. It is only reused while
+ * neither the design file, nor any of the libraries it includes, nor any file
+ * of the resource folder has been modified. The resource folder is checked by
+ * the latest modified time of its files and folders, so a large resource
+ * folder makes each open slower. The designs including libraries that are not
+ * files can't be checked and are not cached, and neither are the resources
+ * read from outside the resource folder, for example through a resource
+ * locator. The cached design is never handed out: every caller gets its own
+ * copy, which the tasks are free to change.
+ */
+
+public class ReportDesignCache
+{
+
+	/**
+	 * The maximum number of cached designs.
+	 */
+	private final int capacity;
+
+	/**
+	 * The cached designs in access order.
+	 */
+	private final LinkedHashMap cache;
+
+	private long hitCount = 0;
+
+	private long missCount = 0;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity
+	 *            the maximum number of cached designs
+	 */
+	public ReportDesignCache( final int capacity )
+	{
+		this.capacity = capacity;
+		this.cache = new LinkedHashMap( 16, 0.75f, true ) {
+
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry( Map.Entry eldest )
+			{
+				return size( ) > ReportDesignCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Opens the report design from the cache, parsing the design file only if
+	 * it is not cached or has been modified since it was cached.
+	 *
+	 * @param engine
+	 *            the report engine
+	 * @param file
+	 *            the report design file
+	 * @param systemId
+	 *            the system id of the design
+	 * @param options
+	 *            the module options
+	 * @param loader
+	 *            parses the design on a cache miss
+	 * @return a copy of the cached report runnable
+	 * @throws EngineException
+	 */
+	public IReportRunnable openReportDesign( IReportEngine engine, File file,
+			String systemId, Map options, IDesignLoader loader )
+			throws EngineException
+	{
+		String key = capacity > 0 ? getCacheKey( file, options ) : null;
+		if ( key == null )
+		{
+			return loader.load( );
+		}
+
+		// the files are checked out of the monitor, so a slow file system
+		// doesn't block the requests of the other designs. The resource
+		// version is read first so that a change during the parsing
+		// invalidates the entry.
+		long resourceVersion = getResourceVersion( options );
+		CachedDesign cached;
+		synchronized ( this )
+		{
+			cached = (CachedDesign) cache.get( key );
+		}
+		boolean modified = cached != null
+				&& cached.isModified( resourceVersion );
+		synchronized ( this )
+		{
+			if ( modified )
+			{
+				// another request may have cached the design parsed again
+				if ( cache.get( key ) == cached )
+				{
+					cache.remove( key );
+				}
+				cached = null;
+			}
+			if ( cached != null )
+			{
+				hitCount++;
+			}
+			else
+			{
+				missCount++;
+			}
+		}
+
+		if ( cached == null )
+		{
+			// read the time stamps first so that a change during the parsing
+			// invalidates the entry
+			long lastModified = file.lastModified( );
+			long length = file.length( );
+			IReportRunnable runnable = loader.load( );
+			if ( !( runnable.getDesignHandle( ) instanceof ReportDesignHandle ) )
+			{
+				return runnable;
+			}
+			cached = new CachedDesign( runnable,
+					file,
+					lastModified,
+					length,
+					resourceVersion );
+			if ( !cached.isCachable( ) )
+			{
+				return runnable;
+			}
+			synchronized ( this )
+			{
+				cache.put( key, cached );
+			}
+		}
+		return cached.copy( engine, systemId );
+	}
+
+	/**
+	 * Removes all the cached designs.
+	 */
+	public synchronized void clear( )
+	{
+		cache.clear( );
+	}
+
+	/**
+	 * @return the number of designs served from the cache
+	 */
+	public synchronized long getHitCount( )
+	{
+		return hitCount;
+	}
+
+	/**
+	 * @return the number of designs parsed because they were not cached or
+	 *         had been modified
+	 */
+	public synchronized long getMissCount( )
+	{
+		return missCount;
+	}
+
+	/**
+	 * @return the number of cached designs
+	 */
+	public synchronized int size( )
+	{
+		return cache.size( );
+	}
+
+	/**
+	 * Returns the cache key of the design, or null if the design can not be
+	 * cached because of the options it is opened with.
+	 *
+	 * @param file
+	 * @param options
+	 * @return the cache key
+	 */
+	private static String getCacheKey( File file, Map options )
+	{
+		String path;
+		try
+		{
+			path = file.getCanonicalPath( );
+		}
+		catch ( IOException e )
+		{
+			path = file.getAbsolutePath( );
+		}
+
+		StringBuffer key = new StringBuffer( path );
+		if ( options != null )
+		{
+			// options such as a resource locator can not be compared, so the
+			// designs opened with them are not cached
+			Iterator iter = new TreeMap( options ).entrySet( ).iterator( );
+			while ( iter.hasNext( ) )
+			{
+				Map.Entry entry = (Map.Entry) iter.next( );
+				Object value = entry.getValue( );
+				if ( value != null
+						&& !( value instanceof String
+								|| value instanceof Boolean || value instanceof Number ) )
+				{
+					return null;
+				}
+				key.append( '|' ).append( entry.getKey( ) ).append( '=' ).append( value );
+			}
+		}
+		return key.toString( );
+	}
+
+	/**
+	 * Returns the version of the resource folder of the options, which is the
+	 * latest modified time of the folder and of the files and folders in it.
+	 *
+	 * @param options
+	 * @return the version, or -1 if there is no resource folder
+	 */
+	private static long getResourceVersion( Map options )
+	{
+		Object folder = options == null ? null
+				: options.get( IModuleOption.RESOURCE_FOLDER_KEY );
+		if ( !( folder instanceof String )
+				|| ( (String) folder ).trim( ).length( ) == 0 )
+		{
+			return -1;
+		}
+		return getLastModified( new File( (String) folder ) );
+	}
+
+	private static long getLastModified( File file )
+	{
+		long lastModified = file.lastModified( );
+		File[] children = file.listFiles( );
+		if ( children != null )
+		{
+			for ( int i = 0; i < children.length; i++ )
+			{
+				lastModified = Math.max( lastModified,
+						getLastModified( children[i] ) );
+			}
+		}
+		return lastModified;
+	}
+
+	/**
+	 * Parses a report design.
+	 */
+	public interface IDesignLoader
+	{
+
+		/**
+		 * @return the parsed report runnable
+		 * @throws EngineException
+		 */
+		IReportRunnable load( ) throws EngineException;
+	}
+
+	/**
+	 * A cached design with the time stamps of the files it was parsed from.
+	 */
+	private static class CachedDesign
+	{
+
+		private final ReportDesignHandle design;
+
+		private final File designFile;
+
+		private final long lastModified;
+
+		private final long length;
+
+		private final long resourceVersion;
+
+		private boolean cachable = true;
+
+		private final List libraryFiles = new ArrayList( );
+
+		private final List libraryTimestamps = new ArrayList( );
+
+		CachedDesign( IReportRunnable runnable, File designFile,
+				long lastModified, long length, long resourceVersion )
+		{
+			this.design = (ReportDesignHandle) runnable.getDesignHandle( );
+			this.designFile = designFile;
+			this.lastModified = lastModified;
+			this.length = length;
+			this.resourceVersion = resourceVersion;
+
+			List libraries = design.getAllLibraries( );
+			for ( int i = 0; i < libraries.size( ); i++ )
+			{
+				File file = toFile( ( (LibraryHandle) libraries.get( i ) ).getFileName( ) );
+				if ( file != null )
+				{
+					libraryFiles.add( file );
+					libraryTimestamps.add( Long.valueOf( file.lastModified( ) ) );
+				}
+				else
+				{
+					cachable = false;
+				}
+			}
+		}
+
+		/**
+		 * @return false if a library can't be checked for modifications
+		 */
+		boolean isCachable( )
+		{
+			return cachable;
+		}
+
+		/**
+		 * @param resourceVersion
+		 *            the current version of the resource folder
+		 * @return true if the design file, one of the included libraries or
+		 *         the resource folder has been modified since the design was
+		 *         parsed
+		 */
+		boolean isModified( long resourceVersion )
+		{
+			if ( designFile.lastModified( ) != lastModified
+					|| designFile.length( ) != length
+					|| resourceVersion != this.resourceVersion )
+			{
+				return true;
+			}
+			for ( int i = 0; i < libraryFiles.size( ); i++ )
+			{
+				long timestamp = ( (File) libraryFiles.get( i ) ).lastModified( );
+				if ( timestamp != ( (Long) libraryTimestamps.get( i ) ).longValue( ) )
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+
+		IReportRunnable copy( IReportEngine engine, String systemId )
+				throws EngineException
+		{
+			ReportDesignHandle copy;
+			// the model is not thread safe, even for reading
+			synchronized ( this )
+			{
+				copy = (ReportDesignHandle) design.copy( ).getHandle( null );
+			}
+			copy.setFileName( systemId );
+			return engine.openReportDesign( copy );
+		}
+
+		private static File toFile( String fileName )
+		{
+			if ( fileName == null )
+			{
+				return null;
+			}
+			try
+			{
+				URL url = new URL( fileName );
+				if ( !"file".equals( url.getProtocol( ) ) ) //$NON-NLS-1$
+				{
+					// the libraries out of the file system can't be checked
+					return null;
+				}
+				return new File( url.toURI( ) );
+			}
+			catch ( MalformedURLException e )
+			{
+				return new File( fileName );
+			}
+			catch ( URISyntaxException e )
+			{
+				return null;
+			}
+			catch ( IllegalArgumentException e )
+			{
+				return null;
+			}
+		}
+	}
+}
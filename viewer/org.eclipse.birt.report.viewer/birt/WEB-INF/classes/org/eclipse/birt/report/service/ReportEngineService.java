@@ -136,6 +136,11 @@ public class ReportEngineService
 	 */
 	private HTMLServerImageHandler imageHandler = null;
 
+	/**
+	 * Cache of the parsed report designs.
+	 */
+	private ReportDesignCache designCache = new ReportDesignCache( 0 );
+
 	/**
 	 * Constructor.
 	 * 
@@ -225,6 +230,8 @@ public class ReportEngineService
 		// set maxrows
 		config.setMaxRowsPerQuery( ParameterAccessor.maxRows );
 
+		designCache = new ReportDesignCache( ParameterAccessor.designCacheSize );
+
 		// configure the loggers
 		LoggingUtil.configureLoggers( ParameterAccessor.loggers,
 				level,
@@ -370,35 +377,75 @@ public class ReportEngineService
 	 * @return the report runnable
 	 * @throws EngineException
 	 */
-	public IReportRunnable openReportDesign( String report, Map options )
+	public IReportRunnable openReportDesign( String report, final Map options )
 			throws EngineException
 	{
-		File file = new File( report );
+		final File file = new File( report );
 		if ( !file.exists( ) )
 		{
 			throw new EngineException( MessageConstants.DESIGN_FILE_NOT_FOUND_EXCEPTION,
 					report );
 		}
 
+		String designId = report;
 		try
 		{
-			InputStream in = new FileInputStream( file );
-			String systemId = report;
-			try
-			{
-				systemId = file.toURI( ).toURL( ).toString( );
-			}
-			catch ( MalformedURLException ue )
-			{
-				systemId = report;
-			}
-			return engine.openReportDesign( systemId, in, options );
+			designId = file.toURI( ).toURL( ).toString( );
 		}
-		catch ( FileNotFoundException ioe )
+		catch ( MalformedURLException ue )
 		{
-			throw new EngineException( MessageConstants.DESIGN_FILE_NOT_FOUND_EXCEPTION,
-					report );
+			designId = report;
 		}
+		final String systemId = designId;
+		final String reportName = report;
+		return designCache.openReportDesign( engine,
+				file,
+				systemId,
+				options,
+				new ReportDesignCache.IDesignLoader( ) {
+
+					public IReportRunnable load( ) throws EngineException
+					{
+						InputStream in = null;
+						try
+						{
+							in = new FileInputStream( file );
+							return engine.openReportDesign( systemId,
+									in,
+									options );
+						}
+						catch ( FileNotFoundException ioe )
+						{
+							throw new EngineException( MessageConstants.DESIGN_FILE_NOT_FOUND_EXCEPTION,
+									reportName );
+						}
+						finally
+						{
+							if ( in != null )
+							{
+								try
+								{
+									in.close( );
+								}
+								catch ( IOException e )
+								{
+								}
+							}
+						}
+					}
+				} );
+	}
+
+	/**
+	 * Returns the cache of the parsed report designs, which gives the hit and
+	 * miss counts of the design files opened by
+	 * {@link #openReportDesign(String, Map)}.
+	 * 
+	 * @return the report design cache
+	 */
+	public ReportDesignCache getDesignCache( )
+	{
+		return designCache;
 	}
 
 	/**
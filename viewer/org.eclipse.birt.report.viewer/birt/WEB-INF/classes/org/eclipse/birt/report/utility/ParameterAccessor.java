@@ -434,6 +434,12 @@ public class ParameterAccessor
 	 */
 	public static final String INIT_PARAM_VIEWER_MAXROWS = "BIRT_VIEWER_MAX_ROWS"; //$NON-NLS-1$
 
+	/**
+	 * Context parameter name that gives the number of parsed report designs
+	 * kept in memory.
+	 */
+	public static final String INIT_PARAM_VIEWER_DESIGN_CACHE_SIZE = "BIRT_VIEWER_DESIGN_CACHE_SIZE"; //$NON-NLS-1$
+
 	/**
 	 * Context parameter name that gives preview report cube fetch levels
 	 * limited.
@@ -521,6 +527,17 @@ public class ParameterAccessor
 	 */
 	public static int maxRows;
 
+	/**
+	 * Number of parsed report designs kept in memory
+	 */
+	public static int designCacheSize;
+
+	/**
+	 * Default number of parsed report designs kept in memory, the cache is
+	 * off unless it is configured
+	 */
+	public static final int DEFAULT_DESIGN_CACHE_SIZE = 0;
+
 	/**
 	 * Preview report max cube fetch levels
 	 */
@@ -1586,6 +1603,17 @@ public class ParameterAccessor
 			maxRows = -1;
 		}
 
+		// Get report design cache size parameter from ServletContext
+		String s_designCacheSize = context.getInitParameter( INIT_PARAM_VIEWER_DESIGN_CACHE_SIZE );
+		try
+		{
+			designCacheSize = Integer.valueOf( s_designCacheSize ).intValue( );
+		}
+		catch ( NumberFormatException e )
+		{
+			designCacheSize = DEFAULT_DESIGN_CACHE_SIZE;
+		}
+
 		// Get preview report max cube fetch levels parameter from
 		// ServletContext
 		String s_maxRowLevels = context.getInitParameter( INIT_PARAM_VIEWER_MAXCUBE_ROWLEVELS );